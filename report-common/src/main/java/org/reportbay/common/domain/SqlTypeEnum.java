@@ -1,6 +1,8 @@
 package org.reportbay.common.domain;
 
 import java.sql.Types;
+import java.util.HashMap;
+import java.util.Map;
 
 public enum SqlTypeEnum {
 	ARRAY(Types.ARRAY), 
@@ -40,6 +42,17 @@ public enum SqlTypeEnum {
 	VARBINARY(Types.VARBINARY), 
 	VARCHAR(Types.VARCHAR);
 
+	private static final Map<String, SqlTypeEnum> NAME_LOOKUP = new HashMap<String, SqlTypeEnum>();
+	private static final Map<Integer, SqlTypeEnum> JAVA_SQL_TYPE_LOOKUP = new HashMap<Integer, SqlTypeEnum>();
+	
+	static{
+		for(SqlTypeEnum ref : SqlTypeEnum.values()){
+			NAME_LOOKUP.put(ref.name(), ref);
+			//first declared wins for shared type constant
+			JAVA_SQL_TYPE_LOOKUP.putIfAbsent(ref.getSqlTypeValue(), ref);
+		}
+	}
+
 	private int sqlTypeConstant;
 
 	private SqlTypeEnum(int sqlTypeValue) {
@@ -56,35 +69,15 @@ public enum SqlTypeEnum {
 	 * @return
 	 */
 	public static SqlTypeEnum fromString(String name){
-		SqlTypeEnum enumValue = null;
-		
-		if(name!=null){
-			for(SqlTypeEnum ref : SqlTypeEnum.values()){
-				if(name.equals(ref.name())){
-					enumValue = ref;
-					break;
-				}
-			}
-		}
-		
-		return enumValue;
+		return name==null? null : NAME_LOOKUP.get(name);
 	}
 	
 	/**
-	 * convert to SqlTypeEnum by name
-	 * @param name
+	 * convert to SqlTypeEnum by {@link Types} constant
+	 * @param javaSqlType
 	 * @return
 	 */
 	public static SqlTypeEnum fromJavaSqlType(int javaSqlType){
-		SqlTypeEnum enumValue = null;
-		
-		for(SqlTypeEnum ref : SqlTypeEnum.values()){
-			if(ref.getSqlTypeValue() == javaSqlType){
-				enumValue = ref;
-				break;
-			}
-		}
-		
-		return enumValue;
+		return JAVA_SQL_TYPE_LOOKUP.get(javaSqlType);
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,328 @@
+package org.reportbay.common.util;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * coalesce concurrent identical calls.
+ * The first caller of a key executes the call, callers of the same key arriving while
+ * the call is in flight wait for and share its result (or exception).
+ * Shared result must be treated as read only by the callers.
+ * A waiting caller with a deadline or which can be cancelled gives up waiting on its own,
+ * the call keeps running for the other callers. The number of callers waiting is tracked per call,
+ * a shared call is told once all of them (its leader included) gave up, so that it can abort its work
+ *
+ * @param <K> call identity
+ * @param <V> call result
+ */
+public class SingleFlight<K, V> {
+
+	/**
+	 * call to be coalesced
+	 */
+	@FunctionalInterface
+	public interface Call<V, E extends Exception>{
+		V call() throws E;
+	}
+
+	/**
+	 * call to be coalesced, given the flight it is executed for
+	 */
+	@FunctionalInterface
+	public interface SharedCall<V, E extends Exception>{
+		V call(Flight flight) throws E;
+	}
+
+	/**
+	 * caller waiting for the in flight call
+	 */
+	public interface Waiter{
+		/**
+		 *
+		 * @return time (millisecond) left before the caller gives up, Long.MAX_VALUE if no deadline
+		 */
+		long getRemainingMillis();
+
+		/**
+		 *
+		 * @return true if the caller no longer waits
+		 */
+		boolean isCancelled();
+	}
+
+	/**
+	 * callers waiting for an in flight call, its leader counted from the start
+	 */
+	public static final class Flight{
+		private int waiters = 1;
+		private boolean completed;
+		private Runnable abandonAction;
+
+		/**
+		 * run the action once the last waiter gave up before the call completes, right away if already
+		 * @param action
+		 */
+		public void onAbandoned(Runnable action){
+			boolean abandoned;
+
+			synchronized(this){
+				abandonAction = action;
+				abandoned = waiters==0 && !completed;
+			}
+
+			if(abandoned){
+				action.run();
+			}
+		}
+
+		/**
+		 * the leader (or a follower) gives up waiting for the call
+		 */
+		public void leave(){
+			Runnable action = null;
+
+			synchronized(this){
+				if(waiters > 0 && --waiters==0 && !completed){
+					action = abandonAction;
+				}
+			}
+
+			if(action!=null){
+				action.run();
+			}
+		}
+
+		/**
+		 *
+		 * @return false if the flight is already abandoned
+		 */
+		private synchronized boolean join(){
+			if(waiters==0){
+				return false;
+			}
+			waiters++;
+			return true;
+		}
+
+		private synchronized void complete(){
+			completed = true;
+		}
+	}
+
+	/**
+	 * longest single wait of a follower, so that its cancellation is noticed
+	 */
+	private static final long WAIT_SLICE_MILLIS = 100L;
+
+	private final ConcurrentMap<K, InFlight<V>> inFlight = new ConcurrentHashMap<K, InFlight<V>>();
+
+	private final AtomicLong executionCount = new AtomicLong();
+	private final AtomicLong coalescedCount = new AtomicLong();
+
+	/**
+	 * execute the call, or wait for the in flight call of the same key
+	 * @param key
+	 * @param call
+	 * @return
+	 * @throws E
+	 */
+	public <E extends Exception> V execute(K key, Call<V, E> call) throws E {
+		InFlight<V> current = new InFlight<V>();
+		InFlight<V> existing = inFlight.putIfAbsent(key, current);
+
+		if(existing==null){
+			return lead(key, current, flight -> call.call());
+		}
+
+		//1. flight being aborted, executed on its own instead of sharing the abort
+		if(!existing.flight.join()){
+			executionCount.incrementAndGet();
+			return call.call();
+		}
+
+		//2. follower, share the leader result
+		coalescedCount.incrementAndGet();
+		return await(existing.future);
+	}
+
+	/**
+	 * execute the call, or wait for the in flight call of the same key until the waiter gives up
+	 * @param key
+	 * @param call
+	 * @param waiter caller waiting for the in flight call, null if it waits without bound
+	 * @return
+	 * @throws E
+	 * @throws TimeoutException if the waiter deadline passed before the in flight call completes
+	 * @throws CancellationException if the waiter is cancelled (or interrupted) before the in flight call completes
+	 */
+	public <E extends Exception> V execute(K key, Call<V, E> call, Waiter waiter) throws E, TimeoutException {
+		return execute(key, (SharedCall<V, E>) flight -> call.call(), waiter);
+	}
+
+	/**
+	 * execute the call, or wait for the in flight call of the same key until the waiter gives up.
+	 * The leader is one of the waiters of its flight, it leaves the flight through {@link Flight#leave()}
+	 * @param key
+	 * @param call
+	 * @param waiter caller waiting for the in flight call, null if it waits without bound
+	 * @return
+	 * @throws E
+	 * @throws TimeoutException if the waiter deadline passed before the in flight call completes
+	 * @throws CancellationException if the waiter is cancelled (or interrupted) before the in flight call completes
+	 */
+	public <E extends Exception> V execute(K key, SharedCall<V, E> call, Waiter waiter) throws E, TimeoutException {
+		InFlight<V> current = new InFlight<V>();
+		InFlight<V> existing = inFlight.putIfAbsent(key, current);
+
+		if(existing==null){
+			return lead(key, current, call);
+		}
+
+		//1. flight being aborted, executed on its own instead of sharing the abort
+		if(!existing.flight.join()){
+			executionCount.incrementAndGet();
+			return call.call(new Flight());
+		}
+
+		//2. follower, share the leader result
+		coalescedCount.incrementAndGet();
+
+		if(waiter==null){
+			return await(existing.future);
+		}
+
+		try{
+			return await(existing.future, waiter);
+		}
+		catch(TimeoutException | CancellationException e){
+			//last waiter leaving abandons the call
+			existing.flight.leave();
+			throw e;
+		}
+	}
+
+	/**
+	 *
+	 * @return number of calls actually executed
+	 */
+	public long getExecutionCount() {
+		return executionCount.get();
+	}
+
+	/**
+	 *
+	 * @return number of calls served by an in flight call
+	 */
+	public long getCoalescedCount() {
+		return coalescedCount.get();
+	}
+
+	/**
+	 * leader, execute and publish the result
+	 * @param key
+	 * @param current
+	 * @param call
+	 * @return
+	 * @throws E
+	 */
+	private <E extends Exception> V lead(K key, InFlight<V> current, SharedCall<V, E> call) throws E {
+		executionCount.incrementAndGet();
+
+		try{
+			V result = call.call(current.flight);
+			current.flight.complete();
+			current.future.complete(result);
+			return result;
+		}
+		catch(Exception | Error e){
+			current.flight.complete();
+			current.future.completeExceptionally(e);
+			throw e;
+		}
+		finally{
+			inFlight.remove(key, current);
+		}
+	}
+
+	/**
+	 * cause of failed call is rethrown as is, it can only be E or unchecked
+	 * @param future
+	 * @return
+	 * @throws E
+	 */
+	@SuppressWarnings("unchecked")
+	private <E extends Exception> V await(CompletableFuture<V> future) throws E {
+		try{
+			return future.join();
+		}
+		catch(CompletionException ce){
+			Throwable cause = ce.getCause();
+
+			if(cause instanceof Error){
+				throw (Error)cause;
+			}
+			throw (E)cause;
+		}
+	}
+
+	/**
+	 * wait in slices bounded by the waiter deadline, checking its cancellation in between
+	 * @param future
+	 * @param waiter
+	 * @return
+	 * @throws E
+	 * @throws TimeoutException
+	 */
+	@SuppressWarnings("unchecked")
+	private <E extends Exception> V await(CompletableFuture<V> future, Waiter waiter) throws E, TimeoutException {
+		try{
+			while(true){
+				if(waiter.isCancelled()){
+					throw new CancellationException("cancelled while waiting for in flight call");
+				}
+
+				long remainingMillis = waiter.getRemainingMillis();
+
+				if(remainingMillis <= 0){
+					throw new TimeoutException("deadline passed while waiting for in flight call");
+				}
+
+				try{
+					return future.get(Math.min(remainingMillis, WAIT_SLICE_MILLIS), TimeUnit.MILLISECONDS);
+				}
+				catch(TimeoutException te){
+					//not completed yet, check the waiter again
+				}
+			}
+		}
+		catch(InterruptedException ie){
+			Thread.currentThread().interrupt();
+			throw new CancellationException("interrupted while waiting for in flight call");
+		}
+		catch(ExecutionException ee){
+			Throwable cause = ee.getCause();
+
+			if(cause instanceof Error){
+				throw (Error)cause;
+			}
+			throw (E)cause;
+		}
+	}
+
+	/**
+	 *
+	 * result and waiters of a call in flight
+	 *
+	 */
+	private static class InFlight<V>{
+		private final CompletableFuture<V> future = new CompletableFuture<V>();
+		private final Flight flight = new Flight();
+	}
+}
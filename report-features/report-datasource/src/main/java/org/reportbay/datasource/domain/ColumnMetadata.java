@@ -28,6 +28,14 @@ public class ColumnMetadata implements Serializable{
 		this.order = order;
 	}
 	
+	/**
+	 * copy constructor
+	 * @param other
+	 */
+	public ColumnMetadata(ColumnMetadata other) {
+		this(other.label, other.typeName, other.className, other.order);
+	}
+	
 	public String getLabel() {
 		return label;
 	}
@@ -0,0 +1,141 @@
+package org.reportbay.datasource.domain;
+
+import java.io.Serializable;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.BitSet;
+
+import org.reportbay.common.domain.SqlTypeEnum;
+
+/**
+ * values of a single result column stored contiguously, null tracked by bitmap
+ */
+public abstract class ColumnVector implements Serializable{
+
+	/**
+	 * 
+	 */
+	private static final long serialVersionUID = 1L;
+	
+	protected static final int INITIAL_CAPACITY = 64;
+	
+	private final ColumnMetadata metadata;
+	private final BitSet nulls = new BitSet();
+	
+	protected int size;
+	
+	protected ColumnVector(ColumnMetadata metadata){
+		this.metadata = metadata;
+	}
+	
+	/**
+	 * create the vector matching the sql type of the column
+	 * @param metadata
+	 * @return
+	 */
+	public static ColumnVector create(ColumnMetadata metadata){
+		return create(metadata, false);
+	}
+	
+	/**
+	 * create the vector matching the sql type of the column, resolved once per column
+	 * @param metadata
+	 * @param exactDecimal true to keep DECIMAL / NUMERIC value as BigDecimal instead of double
+	 * @return
+	 */
+	public static ColumnVector create(ColumnMetadata metadata, boolean exactDecimal){
+		SqlTypeEnum sqlType = SqlTypeEnum.fromString(metadata.getTypeName());
+		
+		if(sqlType!=null){
+			switch(sqlType){
+				case BIGINT:
+					//BIGINT may be unsigned (e.g. MySQL BIGINT UNSIGNED) and exceed the range of long
+					return new DecimalColumnVector(metadata);
+				case INTEGER:
+				case SMALLINT:
+				case TINYINT:
+					return new LongColumnVector(metadata);
+				case DECIMAL:
+				case NUMERIC:
+					return exactDecimal? new DecimalColumnVector(metadata) : new DoubleColumnVector(metadata);
+				case DOUBLE:
+				case FLOAT:
+				case REAL:
+					return new DoubleColumnVector(metadata);
+				default:
+					break;
+			}
+		}
+		
+		return new DictionaryColumnVector(metadata);
+	}
+	
+	public ColumnMetadata getMetadata() {
+		return metadata;
+	}
+	
+	/**
+	 * 
+	 * @return number of value(s) stored
+	 */
+	public int size(){
+		return size;
+	}
+	
+	/**
+	 * 
+	 * @param row 0-based row index
+	 * @return
+	 */
+	public boolean isNull(int row){
+		return nulls.get(row);
+	}
+	
+	/**
+	 * 
+	 * @param row
+	 */
+	protected void markNull(int row){
+		nulls.set(row);
+	}
+	
+	/**
+	 * 
+	 * @return true if value is stored in primitive numeric form
+	 */
+	public abstract boolean isNumeric();
+	
+	/**
+	 * read the value of the column from current row of result set and append to the vector
+	 * @param rs
+	 * @param columnIdx jdbc column index, starts from 1
+	 * @throws SQLException
+	 */
+	public abstract void append(ResultSet rs, int columnIdx) throws SQLException;
+	
+	/**
+	 * 
+	 * @param row 0-based row index
+	 * @return null if value is null
+	 */
+	public abstract String getString(int row);
+	
+	/**
+	 * 
+	 * @param row 0-based row index
+	 * @return null if value is null or column is not numeric
+	 */
+	public abstract Number getNumber(int row);
+	
+	/**
+	 * 
+	 * @param capacity
+	 * @param required
+	 * @return
+	 */
+	protected static int grow(int capacity, int required){
+		int newCapacity = capacity << 1;
+		
+		return newCapacity < required ? required : newCapacity;
+	}
+}
@@ -40,6 +40,11 @@ public class Datasource extends BaseJPAEntity{
 	@Column(name = "schema_name")
 	private String schema;
 	private String url;
+	/**
+	 * query timeout (second) of the datasource, null to apply system default, 0 for no limit
+	 */
+	@Column(name = "query_timeout")
+	private Integer queryTimeout;
 
 	public int getId() {
 		return id;
@@ -121,6 +126,14 @@ public class Datasource extends BaseJPAEntity{
 		this.url = url;
 	}
 
+	public Integer getQueryTimeout() {
+		return queryTimeout;
+	}
+
+	public void setQueryTimeout(Integer queryTimeout) {
+		this.queryTimeout = queryTimeout;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -139,7 +152,8 @@ public class Datasource extends BaseJPAEntity{
 		   .append(schema)
 		   .append(getType())
 		   .append(username)
-		   .append(url);
+		   .append(url)
+		   .append(queryTimeout);
 		
 		return hcb.toHashCode();
 	}
@@ -168,7 +182,8 @@ public class Datasource extends BaseJPAEntity{
 		  .append(schema, testRef.schema)
 		  .append(getType(), testRef.getType())
 		  .append(username, testRef.username)
-		  .append(url, testRef.url);
+		  .append(url, testRef.url)
+		  .append(queryTimeout, testRef.queryTimeout);
 
 		return eb.isEquals();
 	}
@@ -178,7 +193,8 @@ public class Datasource extends BaseJPAEntity{
 		return "Datasource [id=" + id + ", name=" + name + ", description="
 				+ description + ", type=" + type + ", hostname=" + hostname
 				+ ", port=" + port + ", username=" + username + ", password="
-				+ password + ", schema=" + schema + ", url=" + url + "]";
+				+ password + ", schema=" + schema + ", url=" + url 
+				+ ", queryTimeout=" + queryTimeout + "]";
 	}
 	
 	
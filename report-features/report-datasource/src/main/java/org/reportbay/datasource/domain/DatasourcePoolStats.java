@@ -0,0 +1,112 @@
+package org.reportbay.datasource.domain;
+
+import java.io.Serializable;
+
+/**
+ * point in time statistics of a pooled datasource connection pool
+ */
+public class DatasourcePoolStats implements Serializable{
+
+	/**
+	 *
+	 */
+	private static final long serialVersionUID = 1L;
+
+	private int datasourceId;
+	private String datasourceName;
+	private int numActive;
+	private int numIdle;
+	private int maxActive;
+	private int maxIdle;
+	private int minIdle;
+	private long borrowCount;
+	private long totalWaitTimeMillis;
+	private long maxWaitTimeMillis;
+	private long creationTime;
+
+	public DatasourcePoolStats() {
+		// Default Constructor.
+	}
+
+	public int getDatasourceId() {
+		return datasourceId;
+	}
+	public void setDatasourceId(int datasourceId) {
+		this.datasourceId = datasourceId;
+	}
+	public String getDatasourceName() {
+		return datasourceName;
+	}
+	public void setDatasourceName(String datasourceName) {
+		this.datasourceName = datasourceName;
+	}
+	public int getNumActive() {
+		return numActive;
+	}
+	public void setNumActive(int numActive) {
+		this.numActive = numActive;
+	}
+	public int getNumIdle() {
+		return numIdle;
+	}
+	public void setNumIdle(int numIdle) {
+		this.numIdle = numIdle;
+	}
+	public int getMaxActive() {
+		return maxActive;
+	}
+	public void setMaxActive(int maxActive) {
+		this.maxActive = maxActive;
+	}
+	public int getMaxIdle() {
+		return maxIdle;
+	}
+	public void setMaxIdle(int maxIdle) {
+		this.maxIdle = maxIdle;
+	}
+	public int getMinIdle() {
+		return minIdle;
+	}
+	public void setMinIdle(int minIdle) {
+		this.minIdle = minIdle;
+	}
+	public long getBorrowCount() {
+		return borrowCount;
+	}
+	public void setBorrowCount(long borrowCount) {
+		this.borrowCount = borrowCount;
+	}
+	public long getTotalWaitTimeMillis() {
+		return totalWaitTimeMillis;
+	}
+	public void setTotalWaitTimeMillis(long totalWaitTimeMillis) {
+		this.totalWaitTimeMillis = totalWaitTimeMillis;
+	}
+	public long getMaxWaitTimeMillis() {
+		return maxWaitTimeMillis;
+	}
+	public void setMaxWaitTimeMillis(long maxWaitTimeMillis) {
+		this.maxWaitTimeMillis = maxWaitTimeMillis;
+	}
+	/**
+	 *
+	 * @return average time spent waiting for a connection, 0 if none borrowed yet
+	 */
+	public long getAverageWaitTimeMillis() {
+		return borrowCount==0? 0 : totalWaitTimeMillis / borrowCount;
+	}
+	public long getCreationTime() {
+		return creationTime;
+	}
+	public void setCreationTime(long creationTime) {
+		this.creationTime = creationTime;
+	}
+
+	@Override
+	public String toString() {
+		return "DatasourcePoolStats [datasourceId=" + datasourceId + ", datasourceName=" + datasourceName
+				+ ", numActive=" + numActive + ", numIdle=" + numIdle
+				+ ", borrowCount=" + borrowCount + ", totalWaitTimeMillis=" + totalWaitTimeMillis
+				+ ", maxWaitTimeMillis=" + maxWaitTimeMillis + "]";
+	}
+}
@@ -0,0 +1,81 @@
+package org.reportbay.datasource.domain;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+/**
+ * exact decimal column stored as BigDecimal[], used for BIGINT and when exact decimal is requested,
+ * fractional column is otherwise stored as double by {@link DoubleColumnVector}
+ */
+public class DecimalColumnVector extends ColumnVector{
+
+	/**
+	 * 
+	 */
+	private static final long serialVersionUID = 1L;
+	
+	private BigDecimal[] values = new BigDecimal[INITIAL_CAPACITY];
+	
+	public DecimalColumnVector(ColumnMetadata metadata) {
+		super(metadata);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean isNumeric() {
+		return true;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void append(ResultSet rs, int columnIdx) throws SQLException {
+		BigDecimal value = rs.getBigDecimal(columnIdx);
+		
+		if(value == null){
+			markNull(size);
+		}
+		append(value);
+	}
+	
+	/**
+	 * 
+	 * @param value
+	 */
+	public void append(BigDecimal value){
+		if(size == values.length){
+			values = Arrays.copyOf(values, grow(values.length, size + 1));
+		}
+		values[size++] = value;
+	}
+	
+	/**
+	 * 
+	 * @param row 0-based row index
+	 * @return null if value is null
+	 */
+	public BigDecimal getDecimal(int row){
+		return values[row];
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String getString(int row) {
+		return isNull(row) ? null : values[row].toPlainString();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Number getNumber(int row) {
+		return values[row];
+	}
+}
@@ -0,0 +1,107 @@
+package org.reportbay.datasource.domain;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * non numeric column stored as string, each distinct value is kept once in the dictionary
+ * and rows refer to it by code
+ */
+public class DictionaryColumnVector extends ColumnVector{
+
+	/**
+	 * 
+	 */
+	private static final long serialVersionUID = 1L;
+	
+	private static final int NULL_CODE = -1;
+	
+	private int[] codes = new int[INITIAL_CAPACITY];
+	private final List<String> dictionary = new ArrayList<String>();
+	private final Map<String, Integer> dictionaryLookup = new HashMap<String, Integer>();
+	
+	public DictionaryColumnVector(ColumnMetadata metadata) {
+		super(metadata);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean isNumeric() {
+		return false;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void append(ResultSet rs, int columnIdx) throws SQLException {
+		append(rs.getString(columnIdx));
+	}
+	
+	/**
+	 * 
+	 * @param value
+	 */
+	public void append(String value){
+		if(size == codes.length){
+			codes = Arrays.copyOf(codes, grow(codes.length, size + 1));
+		}
+		
+		if(value==null){
+			markNull(size);
+			codes[size++] = NULL_CODE;
+		}
+		else{
+			Integer code = dictionaryLookup.get(value);
+			
+			if(code==null){
+				code = dictionary.size();
+				dictionary.add(value);
+				dictionaryLookup.put(value, code);
+			}
+			codes[size++] = code;
+		}
+	}
+	
+	/**
+	 * 
+	 * @param row 0-based row index
+	 * @return dictionary code of the value, -1 if null
+	 */
+	public int getCode(int row){
+		return codes[row];
+	}
+	
+	/**
+	 * 
+	 * @return distinct value(s) in order of first appearance
+	 */
+	public List<String> getDictionary(){
+		return dictionary;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String getString(int row) {
+		int code = codes[row];
+		
+		return code == NULL_CODE ? null : dictionary.get(code);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Number getNumber(int row) {
+		return null;
+	}
+}
@@ -0,0 +1,83 @@
+package org.reportbay.datasource.domain;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+/**
+ * fractional column stored as double[]
+ */
+public class DoubleColumnVector extends ColumnVector{
+
+	/**
+	 * 
+	 */
+	private static final long serialVersionUID = 1L;
+	
+	private double[] values = new double[INITIAL_CAPACITY];
+	
+	public DoubleColumnVector(ColumnMetadata metadata) {
+		super(metadata);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean isNumeric() {
+		return true;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void append(ResultSet rs, int columnIdx) throws SQLException {
+		double value = rs.getDouble(columnIdx);
+		
+		if(rs.wasNull()){
+			markNull(size);
+		}
+		append(value);
+	}
+	
+	/**
+	 * 
+	 * @param value
+	 */
+	public void append(double value){
+		if(size == values.length){
+			values = Arrays.copyOf(values, grow(values.length, size + 1));
+		}
+		values[size++] = value;
+	}
+	
+	/**
+	 * 
+	 * @param row 0-based row index
+	 * @return 0 if value is null
+	 */
+	public double getDouble(int row){
+		return values[row];
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String getString(int row) {
+		if(isNull(row)){
+			return null;
+		}
+		
+		return Double.toString(values[row]);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Number getNumber(int row) {
+		return isNull(row) ? null : Double.valueOf(values[row]);
+	}
+}
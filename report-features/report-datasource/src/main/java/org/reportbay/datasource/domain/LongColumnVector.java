@@ -0,0 +1,79 @@
+package org.reportbay.datasource.domain;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+/**
+ * integral column stored as long[]
+ */
+public class LongColumnVector extends ColumnVector{
+
+	/**
+	 * 
+	 */
+	private static final long serialVersionUID = 1L;
+	
+	private long[] values = new long[INITIAL_CAPACITY];
+	
+	public LongColumnVector(ColumnMetadata metadata) {
+		super(metadata);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean isNumeric() {
+		return true;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void append(ResultSet rs, int columnIdx) throws SQLException {
+		long value = rs.getLong(columnIdx);
+		
+		if(rs.wasNull()){
+			markNull(size);
+		}
+		append(value);
+	}
+	
+	/**
+	 * 
+	 * @param value
+	 */
+	public void append(long value){
+		if(size == values.length){
+			values = Arrays.copyOf(values, grow(values.length, size + 1));
+		}
+		values[size++] = value;
+	}
+	
+	/**
+	 * 
+	 * @param row 0-based row index
+	 * @return 0 if value is null
+	 */
+	public long getLong(int row){
+		return values[row];
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String getString(int row) {
+		return isNull(row) ? null : Long.toString(values[row]);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Number getNumber(int row) {
+		return isNull(row) ? null : Long.valueOf(values[row]);
+	}
+}
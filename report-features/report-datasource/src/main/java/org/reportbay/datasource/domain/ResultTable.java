@@ -0,0 +1,125 @@
+package org.reportbay.datasource.domain;
+
+import java.io.Serializable;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * columnar query result, one {@link ColumnVector} per result column.
+ * Column index used here is 0-based position in {@link #getColumns()}
+ */
+public class ResultTable implements Serializable{
+
+	/**
+	 * 
+	 */
+	private static final long serialVersionUID = 1L;
+	
+	private final List<ColumnMetadata> columns;
+	private final ColumnVector[] vectors;
+	private int rowCount;
+	
+	public ResultTable(List<ColumnMetadata> columns){
+		this(columns, false);
+	}
+	
+	/**
+	 * 
+	 * @param columns
+	 * @param exactDecimal true to keep DECIMAL / NUMERIC value as BigDecimal instead of double
+	 */
+	public ResultTable(List<ColumnMetadata> columns, boolean exactDecimal){
+		this.columns = Collections.unmodifiableList(new ArrayList<ColumnMetadata>(columns));
+		this.vectors = new ColumnVector[columns.size()];
+		
+		for(int idx=0; idx<vectors.length; idx++){
+			vectors[idx] = ColumnVector.create(columns.get(idx), exactDecimal);
+		}
+	}
+	
+	/**
+	 * append the current row of the result set
+	 * @param rs
+	 * @throws SQLException
+	 */
+	public void appendRow(ResultSet rs) throws SQLException{
+		for(int idx=0; idx<vectors.length; idx++){
+			vectors[idx].append(rs, columns.get(idx).getOrder());
+		}
+		rowCount++;
+	}
+	
+	public List<ColumnMetadata> getColumns() {
+		return columns;
+	}
+	
+	public int getColumnCount(){
+		return vectors.length;
+	}
+	
+	public int getRowCount() {
+		return rowCount;
+	}
+	
+	public boolean isEmpty(){
+		return rowCount == 0;
+	}
+	
+	/**
+	 * 
+	 * @param label
+	 * @return 0-based column index matching the label (case insensitive), -1 if not found
+	 */
+	public int findColumnIndex(String label){
+		if(label!=null){
+			for(int idx=0; idx<vectors.length; idx++){
+				if(label.equalsIgnoreCase(columns.get(idx).getLabel())){
+					return idx;
+				}
+			}
+		}
+		return -1;
+	}
+	
+	/**
+	 * 
+	 * @param column
+	 * @return
+	 */
+	public ColumnVector getColumn(int column){
+		return vectors[column];
+	}
+	
+	/**
+	 * 
+	 * @param row
+	 * @param column
+	 * @return
+	 */
+	public boolean isNull(int row, int column){
+		return vectors[column].isNull(row);
+	}
+	
+	/**
+	 * 
+	 * @param row
+	 * @param column
+	 * @return
+	 */
+	public String getString(int row, int column){
+		return vectors[column].getString(row);
+	}
+	
+	/**
+	 * 
+	 * @param row
+	 * @param column
+	 * @return null if value is null or column is not numeric
+	 */
+	public Number getNumber(int row, int column){
+		return vectors[column].getNumber(row);
+	}
+}
@@ -0,0 +1,88 @@
+package org.reportbay.datasource.service;
+
+import java.util.List;
+import java.util.Map;
+
+import javax.ejb.Local;
+
+import org.reportbay.datasource.domain.ColumnMetadata;
+import org.reportbay.datasource.domain.Datasource;
+import org.reportbay.datasource.service.exception.JdbcClientException;
+
+/**
+ * time bounded cache of database metadata (table names, column metadata and identifier quote)
+ * per persisted datasource, so that repeated lookup does not borrow connection for a round trip.
+ * Datasource not persisted yet is never cached
+ */
+@Local
+public interface DatasourceMetadataCache {
+	/**
+	 * 
+	 * @param ds
+	 * @param loader load from database on cache miss
+	 * @return
+	 * @throws JdbcClientException
+	 */
+	String getQuotedIdentifier(Datasource ds, MetadataLoader<String> loader) throws JdbcClientException;
+	
+	/**
+	 * 
+	 * @param ds
+	 * @param loader load from database on cache miss
+	 * @return
+	 * @throws JdbcClientException
+	 */
+	List<String> getTableNames(Datasource ds, MetadataLoader<List<String>> loader) throws JdbcClientException;
+	
+	/**
+	 * 
+	 * @param ds
+	 * @param tableName
+	 * @param loader load from database on cache miss
+	 * @return copy of the cached column metadata
+	 * @throws JdbcClientException
+	 */
+	List<ColumnMetadata> getColumns(Datasource ds, String tableName, MetadataLoader<List<ColumnMetadata>> loader) throws JdbcClientException;
+	
+	/**
+	 * 
+	 * @param ds
+	 * @param query
+	 * @param loader load from database on cache miss
+	 * @return copy of the cached column metadata
+	 * @throws JdbcClientException
+	 */
+	List<ColumnMetadata> getColumnsFromQuery(Datasource ds, String query, MetadataLoader<List<ColumnMetadata>> loader) throws JdbcClientException;
+	
+	/**
+	 * 
+	 * @param ds
+	 * @param schemaName schema the columns belong to, blank for default schema of the connection
+	 * @param loader load all columns of the schema from database on cache miss
+	 * @return column metadata by table name, shared by all callers and must not be modified
+	 * @throws JdbcClientException
+	 */
+	Map<String, List<ColumnMetadata>> getSchemaColumns(Datasource ds, String schemaName, MetadataLoader<Map<String, List<ColumnMetadata>>> loader) throws JdbcClientException;
+	
+	/**
+	 * discard all metadata of the datasource, e.g. on datasource update or schema change
+	 * @param datasourceId
+	 */
+	void invalidate(int datasourceId);
+	
+	/**
+	 * discard all metadata
+	 */
+	void clear();
+	
+	/**
+	 * 
+	 * metadata retrieval from database
+	 *
+	 * @param <T>
+	 */
+	@FunctionalInterface
+	interface MetadataLoader<T> {
+		T load() throws JdbcClientException;
+	}
+}
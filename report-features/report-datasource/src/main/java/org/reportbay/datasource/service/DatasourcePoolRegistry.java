@@ -0,0 +1,46 @@
+package org.reportbay.datasource.service;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+import javax.ejb.Local;
+
+import org.reportbay.datasource.domain.Datasource;
+import org.reportbay.datasource.domain.DatasourcePoolStats;
+
+/**
+ * registry of pooled connection per persisted datasource.
+ * pool is keyed by datasource id and rebuilt whenever the connection fingerprint
+ * (driver, url, credential) of the datasource changes
+ */
+@Local
+public interface DatasourcePoolRegistry {
+	/**
+	 * borrow a connection from the pool of the datasource.
+	 * Closing the returned connection returns it to the pool
+	 * @param ds
+	 * @return
+	 * @throws SQLException
+	 */
+	Connection getConnection(Datasource ds) throws SQLException;
+
+	/**
+	 * close and discard the pool of the datasource, next borrow will rebuild the pool
+	 * @param datasourceId
+	 */
+	void invalidate(int datasourceId);
+
+	/**
+	 *
+	 * @param datasourceId
+	 * @return null if no pool has been created for the datasource
+	 */
+	DatasourcePoolStats getStatistics(int datasourceId);
+
+	/**
+	 *
+	 * @return
+	 */
+	List<DatasourcePoolStats> getStatistics();
+}
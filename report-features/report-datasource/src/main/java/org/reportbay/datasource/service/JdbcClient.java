@@ -1,11 +1,14 @@
 package org.reportbay.datasource.service;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
 import org.reportbay.datasource.domain.ColumnMetadata;
 import org.reportbay.datasource.domain.Datasource;
+import org.reportbay.datasource.domain.ResultTable;
 import org.reportbay.datasource.service.exception.JdbcClientException;
+import org.reportbay.datasource.service.exception.QueryTimeoutException;
 
 public interface JdbcClient {
 	/**
@@ -33,6 +36,18 @@ public interface JdbcClient {
 	 * @throws JdbcClientException
 	 */
 	List<ColumnMetadata> getColumnsFromQuery(Datasource ds, String query) throws JdbcClientException;
+	
+	/**
+	 * column metadata of many tables from one catalog introspection pass
+	 * ({@link java.sql.DatabaseMetaData#getColumns}) over a single connection,
+	 * the catalog is cached per schema
+	 * @param ds
+	 * @param schemaName schema of the tables, default schema of the connection if blank
+	 * @param tableNames
+	 * @return column metadata by table name (case insensitive), table not found in catalog is absent
+	 * @throws JdbcClientException
+	 */
+	Map<String, List<ColumnMetadata>> getColumns(Datasource ds, String schemaName, Collection<String> tableNames) throws JdbcClientException;
 	/**
 	 * 
 	 * @param ds
@@ -51,6 +66,85 @@ public interface JdbcClient {
 	 */
 	List<Map<ColumnMetadata, String>> execute(Datasource ds, String query, int maxRow) throws JdbcClientException;
 	
+	/**
+	 * stream query result row by row to the visitor while the result set is still open,
+	 * using a forward only, read only cursor
+	 * @param ds
+	 * @param query
+	 * @param visitor
+	 * @return number of row(s) visited
+	 * @throws JdbcClientException
+	 */
+	int execute(Datasource ds, String query, RowVisitor visitor) throws JdbcClientException;
+	
+	/**
+	 * 
+	 * @param ds
+	 * @param query
+	 * @param maxRow limit of row(s) to be streamed, no limit if not greater than 0
+	 * @param visitor
+	 * @return number of row(s) visited
+	 * @throws JdbcClientException
+	 */
+	int execute(Datasource ds, String query, int maxRow, RowVisitor visitor) throws JdbcClientException;
+	
+	/**
+	 * 
+	 * @param ds
+	 * @param query
+	 * @param maxRow limit of row(s) to be streamed, no limit if not greater than 0
+	 * @param timeoutSeconds override of datasource query timeout, datasource default applies if not greater than 0
+	 * @param visitor
+	 * @return number of row(s) visited
+	 * @throws QueryTimeoutException if query does not complete in time
+	 * @throws JdbcClientException
+	 */
+	int execute(Datasource ds, String query, int maxRow, int timeoutSeconds, RowVisitor visitor) throws JdbcClientException;
+	
+	/**
+	 * execute query and load the result into columnar table
+	 * @param ds
+	 * @param query
+	 * @return
+	 * @throws JdbcClientException
+	 */
+	ResultTable executeForTable(Datasource ds, String query) throws JdbcClientException;
+	
+	/**
+	 * 
+	 * @param ds
+	 * @param query
+	 * @param maxRow limit of row(s) to be loaded, no limit if not greater than 0
+	 * @return
+	 * @throws JdbcClientException
+	 */
+	ResultTable executeForTable(Datasource ds, String query, int maxRow) throws JdbcClientException;
+	
+	/**
+	 * 
+	 * @param ds
+	 * @param query
+	 * @param maxRow limit of row(s) to be loaded, no limit if not greater than 0
+	 * @param timeoutSeconds override of datasource query timeout, datasource default applies if not greater than 0
+	 * @return
+	 * @throws QueryTimeoutException if query does not complete in time
+	 * @throws JdbcClientException
+	 */
+	ResultTable executeForTable(Datasource ds, String query, int maxRow, int timeoutSeconds) throws JdbcClientException;
+	
+	/**
+	 * 
+	 * @param ds
+	 * @param query
+	 * @param maxRow limit of row(s) to be loaded, no limit if not greater than 0
+	 * @param timeoutSeconds override of datasource query timeout, datasource default applies if not greater than 0
+	 * @param exactDecimal true to load DECIMAL / NUMERIC value as BigDecimal, otherwise as double
+	 * @return
+	 * @throws QueryTimeoutException if query does not complete in time
+	 * @throws JdbcClientException
+	 */
+	ResultTable executeForTable(Datasource ds, String query, int maxRow, int timeoutSeconds, boolean exactDecimal) throws JdbcClientException;
+	
 	/**
 	 * 
 	 * @param ds
@@ -0,0 +1,261 @@
+package org.reportbay.datasource.service;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.reportbay.common.util.SingleFlight;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * execution context of the queries issued by a unit of work (e.g. a report generation job).
+ * The context is bound to the executing thread, statements executed by {@link JdbcClient}
+ * on that thread register with the context so that they can be cancelled from another thread,
+ * and the rows read are accumulated for progress reporting.
+ * The context also waits on behalf of its unit of work for a coalesced call executed by another caller,
+ * abort listener tells the unit of work sharing its call with others that it is cancelled or past its deadline
+ */
+public class QueryContext implements SingleFlight.Waiter {
+	private static final Logger LOG = LoggerFactory.getLogger(QueryContext.class);
+
+	private static final ThreadLocal<QueryContext> CURRENT = new ThreadLocal<QueryContext>();
+
+	/**
+	 * fire abort listeners at the deadline, daemon so that it does not hold the JVM on shutdown
+	 */
+	private static final ScheduledExecutorService DEADLINE_TIMER = Executors.newSingleThreadScheduledExecutor(r -> {
+		Thread thread = new Thread(r, "query-deadline-timer");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	//abort listener without deadline timer
+	private static final Future<?> NO_TIMER = CompletableFuture.completedFuture(null);
+
+	private final String requestId;
+
+	private final long startTime = System.currentTimeMillis();
+
+	private final long deadline;
+
+	private final Set<Statement> statements = ConcurrentHashMap.newKeySet();
+
+	private final AtomicLong rowsRead = new AtomicLong();
+
+	private final QueryContext owner;
+
+	private final ConcurrentMap<Runnable, Future<?>> abortListeners = new ConcurrentHashMap<Runnable, Future<?>>();
+
+	private volatile boolean cancelled;
+
+	/**
+	 *
+	 * @param requestId identity of the unit of work
+	 */
+	public QueryContext(String requestId) {
+		this(requestId, 0);
+	}
+
+	/**
+	 *
+	 * @param requestId identity of the unit of work
+	 * @param deadline time (epoch millisecond) by which all queries of the unit of work must complete, 0 if no deadline
+	 */
+	public QueryContext(String requestId, long deadline) {
+		this.requestId = requestId;
+		this.deadline = deadline;
+		this.owner = null;
+	}
+
+	/**
+	 * context of work done on behalf of another unit of work, without deadline of its own
+	 * @param requestId identity of the work
+	 * @param owner unit of work the rows read are also accumulated to, null if none
+	 */
+	public QueryContext(String requestId, QueryContext owner) {
+		this.requestId = requestId;
+		this.deadline = 0;
+		this.owner = owner;
+	}
+
+	/**
+	 *
+	 * @return context bound to current thread, null if none
+	 */
+	public static QueryContext current(){
+		return CURRENT.get();
+	}
+
+	/**
+	 * bind the context to current thread
+	 * @param context
+	 */
+	public static void bind(QueryContext context){
+		CURRENT.set(context);
+	}
+
+	/**
+	 * unbind the context from current thread
+	 */
+	public static void unbind(){
+		CURRENT.remove();
+	}
+
+	/**
+	 * track the statement for cancellation
+	 * @param stmt
+	 * @throws SQLException if the context is already cancelled
+	 */
+	public void register(Statement stmt) throws SQLException{
+		if(cancelled){
+			throw new SQLException("Query of "+requestId+" is cancelled");
+		}
+
+		statements.add(stmt);
+
+		//cancelled in between, the statement may have been missed by cancel()
+		if(cancelled){
+			statements.remove(stmt);
+			throw new SQLException("Query of "+requestId+" is cancelled");
+		}
+	}
+
+	/**
+	 *
+	 * @param stmt
+	 */
+	public void unregister(Statement stmt){
+		statements.remove(stmt);
+	}
+
+	/**
+	 * abort the running statement(s) and reject further statement
+	 */
+	public void cancel(){
+		cancelled = true;
+
+		for(Statement stmt: statements){
+			try{
+				stmt.cancel();
+			}
+			catch(SQLException e){
+				LOG.warn("Error cancelling statement of {}", requestId, e);
+			}
+		}
+
+		for(Runnable listener: abortListeners.keySet()){
+			fireAbortListener(listener);
+		}
+	}
+
+	/**
+	 * run the listener once when the context is cancelled or its deadline passes, right away if already
+	 * @param listener
+	 */
+	public void addAbortListener(Runnable listener){
+		long remainingMillis = getRemainingMillis();
+
+		abortListeners.put(listener, hasDeadline() && remainingMillis > 0?
+									 DEADLINE_TIMER.schedule(() -> fireAbortListener(listener), remainingMillis, TimeUnit.MILLISECONDS) : NO_TIMER);
+
+		//cancelled in between or already aborted, the listener may have been missed by cancel()
+		if(cancelled || remainingMillis <= 0){
+			fireAbortListener(listener);
+		}
+	}
+
+	/**
+	 *
+	 * @param listener
+	 */
+	public void removeAbortListener(Runnable listener){
+		Future<?> timer = abortListeners.remove(listener);
+
+		if(timer!=null){
+			timer.cancel(false);
+		}
+	}
+
+	/**
+	 *
+	 * @param count
+	 */
+	public void addRowsRead(long count){
+		rowsRead.addAndGet(count);
+
+		if(owner!=null){
+			owner.addRowsRead(count);
+		}
+	}
+
+	public String getRequestId() {
+		return requestId;
+	}
+
+	public long getStartTime() {
+		return startTime;
+	}
+
+	public long getDeadline() {
+		return deadline;
+	}
+
+	/**
+	 *
+	 * @return true if deadline is set
+	 */
+	public boolean hasDeadline() {
+		return deadline > 0;
+	}
+
+	/**
+	 *
+	 * @return time left before deadline, Long.MAX_VALUE if no deadline
+	 */
+	@Override
+	public long getRemainingMillis() {
+		return hasDeadline()? deadline - System.currentTimeMillis() : Long.MAX_VALUE;
+	}
+
+	public int getStatementCount() {
+		return statements.size();
+	}
+
+	public long getRowsRead() {
+		return rowsRead.get();
+	}
+
+	@Override
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 *
+	 * @param listener
+	 */
+	private void fireAbortListener(Runnable listener){
+		Future<?> timer = abortListeners.remove(listener);
+
+		//fired once, by cancellation or by the deadline timer
+		if(timer!=null){
+			timer.cancel(false);
+
+			try{
+				listener.run();
+			}
+			catch(RuntimeException e){
+				LOG.warn("Error notifying abort of {}", requestId, e);
+			}
+		}
+	}
+}
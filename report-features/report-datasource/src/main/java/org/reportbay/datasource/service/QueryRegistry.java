@@ -0,0 +1,36 @@
+package org.reportbay.datasource.service;
+
+import java.util.List;
+
+import javax.ejb.Local;
+
+/**
+ * registry of the query context being executed, allow running statements to be cancelled by request id
+ */
+@Local
+public interface QueryRegistry {
+	/**
+	 * register the context and bind it to current thread
+	 * @param context
+	 */
+	void begin(QueryContext context);
+
+	/**
+	 * unbind the context from current thread and unregister it
+	 * @param context
+	 */
+	void end(QueryContext context);
+
+	/**
+	 * cancel running statement(s) of the request
+	 * @param requestId
+	 * @return false if no running request found
+	 */
+	boolean cancel(String requestId);
+
+	/**
+	 * 
+	 * @return
+	 */
+	List<QueryContext> getRunningQueries();
+}
@@ -0,0 +1,72 @@
+package org.reportbay.datasource.service;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.List;
+
+import org.reportbay.datasource.domain.ColumnMetadata;
+
+/**
+ * forward only, read only view on the current row of an open query result.
+ * Only valid during {@link RowVisitor#visit(RowCursor)}, value must be copied out
+ * if it need to be kept beyond the call
+ */
+public interface RowCursor {
+	/**
+	 * 
+	 * @return column metadata of the result, in select order
+	 */
+	List<ColumnMetadata> getColumns();
+	
+	/**
+	 * 
+	 * @param label
+	 * @return column matching the label (case insensitive), null if not found
+	 */
+	ColumnMetadata findColumn(String label);
+	
+	/**
+	 * 
+	 * @return 1-based row number of the current row
+	 */
+	int getRowNumber();
+	
+	/**
+	 * 
+	 * @param columnIdx column order as in {@link ColumnMetadata#getOrder()}, starts from 1
+	 * @return
+	 * @throws SQLException
+	 */
+	String getString(int columnIdx) throws SQLException;
+	
+	/**
+	 * 
+	 * @param columnIdx column order as in {@link ColumnMetadata#getOrder()}, starts from 1
+	 * @return 0 if value is null, see {@link #wasNull()}
+	 * @throws SQLException
+	 */
+	long getLong(int columnIdx) throws SQLException;
+	
+	/**
+	 * 
+	 * @param columnIdx column order as in {@link ColumnMetadata#getOrder()}, starts from 1
+	 * @return 0 if value is null, see {@link #wasNull()}
+	 * @throws SQLException
+	 */
+	double getDouble(int columnIdx) throws SQLException;
+	
+	/**
+	 * 
+	 * @param columnIdx column order as in {@link ColumnMetadata#getOrder()}, starts from 1
+	 * @return null if value is null
+	 * @throws SQLException
+	 */
+	BigDecimal getBigDecimal(int columnIdx) throws SQLException;
+	
+	/**
+	 * 
+	 * @return true if the last value read is null
+	 * @throws SQLException
+	 */
+	boolean wasNull() throws SQLException;
+}
@@ -0,0 +1,17 @@
+package org.reportbay.datasource.service;
+
+import java.sql.SQLException;
+
+/**
+ * callback receiving each row of a streamed query result while the result set is open
+ */
+@FunctionalInterface
+public interface RowVisitor {
+	/**
+	 * 
+	 * @param row cursor positioned on the current row
+	 * @return true to continue with next row, false to stop streaming
+	 * @throws SQLException
+	 */
+	boolean visit(RowCursor row) throws SQLException;
+}
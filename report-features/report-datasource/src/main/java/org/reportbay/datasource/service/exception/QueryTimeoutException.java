@@ -0,0 +1,30 @@
+package org.reportbay.datasource.service.exception;
+
+/**
+ * query did not complete within the time budget of the datasource, call or request deadline
+ */
+public class QueryTimeoutException extends JdbcClientException {
+
+	/**
+	 * 
+	 */
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * 
+	 * @param message
+	 */
+	public QueryTimeoutException(String message) {
+		super(message);
+	}
+
+	/**
+	 * 
+	 * @param message
+	 * @param cause
+	 */
+	public QueryTimeoutException(String message, Throwable cause) {
+		super(message, cause);
+	}
+
+}
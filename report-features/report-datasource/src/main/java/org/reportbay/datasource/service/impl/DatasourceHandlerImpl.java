@@ -15,6 +15,8 @@ import org.reportbay.datasource.dao.DatasourceDAO;
 import org.reportbay.datasource.dao.exception.DatasourceDAOException;
 import org.reportbay.datasource.domain.Datasource;
 import org.reportbay.datasource.service.DatasourceHandler;
+import org.reportbay.datasource.service.DatasourceMetadataCache;
+import org.reportbay.datasource.service.DatasourcePoolRegistry;
 import org.reportbay.datasource.service.exception.DatasourceHandlerException;
 
 @Stateless
@@ -23,6 +25,12 @@ public class DatasourceHandlerImpl implements DatasourceHandler {
 	@Inject
 	private DatasourceDAO datasourceDAO;
 	
+	@Inject
+	private DatasourcePoolRegistry poolRegistry;
+	
+	@Inject
+	private DatasourceMetadataCache metadataCache;
+	
 	/**
 	 * {@inheritDoc}
 	 */
@@ -52,6 +60,9 @@ public class DatasourceHandlerImpl implements DatasourceHandler {
 		} catch(DatasourceDAOException e) {
 			throw new DatasourceHandlerException("Failed to update Datasource with given information - " + datasource, e);
 		}
+		//connection setting may have changed, rebuild pool and reload metadata on next use
+		poolRegistry.invalidate(datasource.getId());
+		metadataCache.invalidate(datasource.getId());
 	}
 
 	/**
@@ -67,6 +78,8 @@ public class DatasourceHandlerImpl implements DatasourceHandler {
 		} catch(DatasourceDAOException e) {
 			throw new DatasourceHandlerException("Failed to delete Datasource with given id[" + datasource.getId() + "].", e);
 		}
+		poolRegistry.invalidate(datasource.getId());
+		metadataCache.invalidate(datasource.getId());
 	}
 
 	/**
@@ -0,0 +1,267 @@
+package org.reportbay.datasource.service.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Singleton;
+
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.reportbay.common.util.SystemProperties;
+import org.reportbay.datasource.domain.ColumnMetadata;
+import org.reportbay.datasource.domain.Datasource;
+import org.reportbay.datasource.service.DatasourceMetadataCache;
+import org.reportbay.datasource.service.exception.JdbcClientException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Cache sizing is read from system properties (prefix {@value #PROPERTY_PREFIX}):
+ * maxEntries and ttl (second).
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class DatasourceMetadataCacheImpl implements DatasourceMetadataCache {
+	private static final Logger LOG = LoggerFactory.getLogger(DatasourceMetadataCacheImpl.class);
+
+	private static final String PROPERTY_PREFIX = "reportbay.datasource.metadata.";
+
+	private static final int DEFAULT_MAX_ENTRIES = 1000;
+	private static final int DEFAULT_TTL = 300;
+
+	private static final String QUOTED_IDENTIFIER = "QUOTED_IDENTIFIER";
+	private static final String TABLE_NAMES = "TABLE_NAMES";
+	private static final String TABLE_COLUMNS = "TABLE_COLUMNS";
+	private static final String QUERY_COLUMNS = "QUERY_COLUMNS";
+	private static final String SCHEMA_COLUMNS = "SCHEMA_COLUMNS";
+
+	private final int maxEntries = NumberUtils.toInt(SystemProperties.getProperty(PROPERTY_PREFIX+"maxEntries"), DEFAULT_MAX_ENTRIES);
+	private final long ttlMillis = NumberUtils.toInt(SystemProperties.getProperty(PROPERTY_PREFIX+"ttl"), DEFAULT_TTL) * 1000L;
+
+	/**
+	 * access ordered for least recently used eviction, guarded by itself
+	 */
+	private final LinkedHashMap<MetadataKey, MetadataEntry> entries = new LinkedHashMap<MetadataKey, MetadataEntry>(16, 0.75f, true);
+
+	/**
+	 * bumped on every invalidation, metadata loaded across an invalidation is not cached
+	 */
+	private final AtomicLong generation = new AtomicLong();
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String getQuotedIdentifier(Datasource ds, MetadataLoader<String> loader) throws JdbcClientException {
+		return get(ds, QUOTED_IDENTIFIER, "", loader);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public List<String> getTableNames(Datasource ds, MetadataLoader<List<String>> loader) throws JdbcClientException {
+		return new ArrayList<String>(get(ds, TABLE_NAMES, "", loader));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public List<ColumnMetadata> getColumns(Datasource ds, String tableName, MetadataLoader<List<ColumnMetadata>> loader) throws JdbcClientException {
+		return copy(get(ds, TABLE_COLUMNS, tableName, loader));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public List<ColumnMetadata> getColumnsFromQuery(Datasource ds, String query, MetadataLoader<List<ColumnMetadata>> loader) throws JdbcClientException {
+		return copy(get(ds, QUERY_COLUMNS, query, loader));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Map<String, List<ColumnMetadata>> getSchemaColumns(Datasource ds, String schemaName, MetadataLoader<Map<String, List<ColumnMetadata>>> loader) throws JdbcClientException {
+		Map<String, List<ColumnMetadata>> schemaColumns = get(ds, SCHEMA_COLUMNS, schemaName==null? "" : schemaName, loader);
+
+		return schemaColumns==null? null : Collections.unmodifiableMap(schemaColumns);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void invalidate(int datasourceId) {
+		generation.incrementAndGet();
+
+		int removed = 0;
+
+		synchronized(entries){
+			Iterator<MetadataKey> iter = entries.keySet().iterator();
+
+			while(iter.hasNext()){
+				if(iter.next().datasourceId==datasourceId){
+					iter.remove();
+					removed++;
+				}
+			}
+		}
+
+		LOG.info("invalidate {} metadata entry(s) of datasource {}", removed, datasourceId);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void clear() {
+		generation.incrementAndGet();
+
+		synchronized(entries){
+			entries.clear();
+		}
+	}
+
+	/*************** private methods ****************/
+
+	/**
+	 * 
+	 * @param ds
+	 * @param kind
+	 * @param name
+	 * @param loader
+	 * @return
+	 * @throws JdbcClientException
+	 */
+	@SuppressWarnings("unchecked")
+	private <T> T get(Datasource ds, String kind, String name, MetadataLoader<T> loader) throws JdbcClientException{
+		//1. datasource not persisted yet (e.g. connection test), no caching
+		if(ds.getId()<=0 || ttlMillis<=0){
+			return loader.load();
+		}
+
+		MetadataKey key = new MetadataKey(ds.getId(), kind, name);
+		long now = System.currentTimeMillis();
+
+		//2. serve from cache unless expired
+		synchronized(entries){
+			MetadataEntry entry = entries.get(key);
+
+			if(entry!=null){
+				if(entry.expiryTime > now){
+					return (T) entry.value;
+				}
+				entries.remove(key);
+			}
+		}
+
+		//3. load outside the lock, capture generation first so that invalidation in between discards the result
+		long currentGeneration = generation.get();
+
+		T value = loader.load();
+
+		if(value==null){
+			return null;
+		}
+
+		synchronized(entries){
+			if(currentGeneration==generation.get()){
+				entries.put(key, new MetadataEntry(value, now + ttlMillis));
+				evictOverflow();
+			}
+		}
+
+		LOG.debug("{} of datasource {} loaded from database", kind, ds.getId());
+
+		return value;
+	}
+
+	/**
+	 * drop least recently used entries beyond capacity, caller must hold the lock
+	 */
+	private void evictOverflow(){
+		Iterator<Map.Entry<MetadataKey, MetadataEntry>> iter = entries.entrySet().iterator();
+
+		while(entries.size() > maxEntries && iter.hasNext()){
+			iter.next();
+			iter.remove();
+		}
+	}
+
+	/**
+	 * cached column metadata is shared, caller gets its own copy
+	 * @param columns
+	 * @return
+	 */
+	private List<ColumnMetadata> copy(List<ColumnMetadata> columns){
+		if(columns==null){
+			return null;
+		}
+
+		List<ColumnMetadata> copy = new ArrayList<ColumnMetadata>(columns.size());
+
+		for(ColumnMetadata column: columns){
+			copy.add(new ColumnMetadata(column));
+		}
+
+		return copy;
+	}
+
+	/**
+	 * 
+	 * kind of metadata of the datasource, name is the table or query the metadata belongs to
+	 *
+	 */
+	private static class MetadataKey {
+		private final int datasourceId;
+		private final String kind;
+		private final String name;
+
+		MetadataKey(int datasourceId, String kind, String name){
+			this.datasourceId = datasourceId;
+			this.kind = kind;
+			this.name = name;
+		}
+
+		@Override
+		public int hashCode() {
+			return new HashCodeBuilder().append(datasourceId).append(kind).append(name).toHashCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof MetadataKey)) {
+				return false;
+			}
+			MetadataKey other = (MetadataKey) obj;
+			return new EqualsBuilder().append(datasourceId, other.datasourceId)
+									  .append(kind, other.kind)
+									  .append(name, other.name)
+									  .isEquals();
+		}
+	}
+
+	private static class MetadataEntry {
+		private final Object value;
+		private final long expiryTime;
+
+		MetadataEntry(Object value, long expiryTime){
+			this.value = value;
+			this.expiryTime = expiryTime;
+		}
+	}
+}
@@ -0,0 +1,356 @@
+package org.reportbay.datasource.service.impl;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PreDestroy;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Singleton;
+
+import org.apache.commons.dbcp.BasicDataSource;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.reportbay.common.util.SystemProperties;
+import org.reportbay.datasource.domain.DatabaseType.DatabaseFamily;
+import org.reportbay.datasource.domain.Datasource;
+import org.reportbay.datasource.domain.DatasourcePoolStats;
+import org.reportbay.datasource.service.DatasourcePoolRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pool tuning is read from system properties (prefix {@value #PROPERTY_PREFIX}):
+ * minIdle, maxIdle, maxActive, maxWait, validationQuery,
+ * timeBetweenEvictionRunsMillis and minEvictableIdleTimeMillis.
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class DatasourcePoolRegistryImpl implements DatasourcePoolRegistry {
+	private static final Logger LOG = LoggerFactory.getLogger(DatasourcePoolRegistryImpl.class);
+
+	private static final String PROPERTY_PREFIX = "reportbay.datasource.pool.";
+
+	private static final int DEFAULT_MIN_IDLE = 0;
+	private static final int DEFAULT_MAX_IDLE = 4;
+	private static final int DEFAULT_MAX_ACTIVE = 16;
+	private static final long DEFAULT_MAX_WAIT = 30000L;
+	private static final long DEFAULT_EVICTION_INTERVAL = 60000L;
+	private static final long DEFAULT_MIN_EVICTABLE_IDLE_TIME = 300000L;
+
+	private static final String MYSQL_VALIDATION_QUERY = "SELECT 1";
+	private static final String MSSQL_VALIDATION_QUERY = "SELECT 1";
+	private static final String ORACLE_VALIDATION_QUERY = "SELECT 1 FROM DUAL";
+
+	//borrow attempts when the pool is closed by invalidation in between
+	private static final int MAX_BORROW_ATTEMPTS = 3;
+
+	private final ConcurrentMap<Integer, PoolEntry> pools = new ConcurrentHashMap<Integer, PoolEntry>();
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Connection getConnection(Datasource ds) throws SQLException {
+		//1. datasource not persisted yet (e.g. connection test), no pooling
+		if(ds.getId()<=0){
+			return createUnpooledConnection(ds);
+		}
+
+		for(int attempt=1; ; attempt++){
+			//2. obtain the pool matching current datasource fingerprint
+			PoolEntry entry = getPoolEntry(ds);
+
+			//3. borrow connection and record time spent waiting
+			long start = System.currentTimeMillis();
+
+			try{
+				Connection conn = entry.dataSource.getConnection();
+				entry.recordBorrow(System.currentTimeMillis() - start);
+
+				return conn;
+			}
+			catch(SQLException e){
+				//pool closed by invalidate() after the lookup, borrow from the rebuilt one
+				if(!entry.dataSource.isClosed() || attempt >= MAX_BORROW_ATTEMPTS){
+					throw e;
+				}
+				LOG.debug("connection pool of datasource {} closed while borrowing, retry", ds.getId());
+			}
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void invalidate(int datasourceId) {
+		PoolEntry entry = pools.remove(datasourceId);
+
+		if(entry!=null){
+			LOG.info("invalidate connection pool of datasource {}", datasourceId);
+			close(entry);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public DatasourcePoolStats getStatistics(int datasourceId) {
+		PoolEntry entry = pools.get(datasourceId);
+
+		return entry==null? null : entry.toStats();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public List<DatasourcePoolStats> getStatistics() {
+		List<DatasourcePoolStats> statsList = new ArrayList<DatasourcePoolStats>();
+
+		for(PoolEntry entry: pools.values()){
+			statsList.add(entry.toStats());
+		}
+
+		return statsList;
+	}
+
+	@PreDestroy
+	public void shutdown(){
+		for(Integer datasourceId: new ArrayList<Integer>(pools.keySet())){
+			invalidate(datasourceId);
+		}
+	}
+
+	/*************** private methods ****************/
+
+	/**
+	 *
+	 * @param ds
+	 * @return
+	 */
+	private PoolEntry getPoolEntry(Datasource ds){
+		String fingerprint = deriveFingerprint(ds);
+
+		PoolEntry entry = pools.get(ds.getId());
+
+		if(entry!=null && entry.fingerprint.equals(fingerprint) && !entry.dataSource.isClosed()){
+			return entry;
+		}
+
+		synchronized(pools){
+			entry = pools.get(ds.getId());
+
+			if(entry==null || !entry.fingerprint.equals(fingerprint) || entry.dataSource.isClosed()){
+				PoolEntry staleEntry = entry;
+
+				//replaced before closed, so that lookup never sees the closed pool mapped
+				entry = new PoolEntry(ds, fingerprint, createPooledDataSource(ds));
+				pools.put(ds.getId(), entry);
+
+				if(staleEntry!=null){
+					LOG.info("connection setting of datasource {} changed, rebuild pool", ds.getId());
+					close(staleEntry);
+				}
+			}
+		}
+
+		return entry;
+	}
+
+	/**
+	 * connection identity of the datasource, pool is rebuilt when it changes
+	 * @param ds
+	 * @return
+	 */
+	private String deriveFingerprint(Datasource ds){
+		return new StringBuilder()
+					.append(ds.getType().getDriverName()).append('|')
+					.append(deriveUrl(ds)).append('|')
+					.append(ds.getUsername()).append('|')
+					.append(ds.getPassword())
+					.toString();
+	}
+
+	/**
+	 *
+	 * @param ds
+	 * @return
+	 */
+	private String deriveUrl(Datasource ds){
+		return String.format(ds.getType().getUrlPattern(), ds.getHostname(), ds.getPort(), ds.getSchema());
+	}
+
+	/**
+	 *
+	 * @param ds
+	 * @return
+	 */
+	private BasicDataSource createBasicDataSource(Datasource ds){
+		BasicDataSource dbcpDs = new BasicDataSource();
+
+		dbcpDs.setDriverClassName(ds.getType().getDriverName());
+		dbcpDs.setUrl(deriveUrl(ds));
+		dbcpDs.setUsername(ds.getUsername());
+		dbcpDs.setPassword(ds.getPassword());
+
+		return dbcpDs;
+	}
+
+	/**
+	 * physical connection, closed by the caller
+	 * @param ds
+	 * @return
+	 * @throws SQLException
+	 */
+	private Connection createUnpooledConnection(Datasource ds) throws SQLException{
+		try{
+			Class.forName(ds.getType().getDriverName());
+		}
+		catch(ClassNotFoundException e){
+			throw new SQLException("JDBC driver "+ds.getType().getDriverName()+" not found", e);
+		}
+
+		return DriverManager.getConnection(deriveUrl(ds), ds.getUsername(), ds.getPassword());
+	}
+
+	/**
+	 *
+	 * @param ds
+	 * @return
+	 */
+	private BasicDataSource createPooledDataSource(Datasource ds){
+		LOG.debug("creating connection pool for datasource {}", ds.getName());
+
+		BasicDataSource dbcpDs = createBasicDataSource(ds);
+
+		dbcpDs.setMinIdle(getIntProperty("minIdle", DEFAULT_MIN_IDLE));
+		dbcpDs.setMaxIdle(getIntProperty("maxIdle", DEFAULT_MAX_IDLE));
+		dbcpDs.setMaxActive(getIntProperty("maxActive", DEFAULT_MAX_ACTIVE));
+		dbcpDs.setMaxWait(getLongProperty("maxWait", DEFAULT_MAX_WAIT));
+
+		String validationQuery = deriveValidationQuery(ds);
+
+		if(StringUtils.isNotBlank(validationQuery)){
+			dbcpDs.setValidationQuery(validationQuery);
+			dbcpDs.setTestOnBorrow(true);
+			dbcpDs.setTestWhileIdle(true);
+		}
+
+		//idle connection eviction
+		dbcpDs.setTimeBetweenEvictionRunsMillis(getLongProperty("timeBetweenEvictionRunsMillis", DEFAULT_EVICTION_INTERVAL));
+		dbcpDs.setMinEvictableIdleTimeMillis(getLongProperty("minEvictableIdleTimeMillis", DEFAULT_MIN_EVICTABLE_IDLE_TIME));
+
+		return dbcpDs;
+	}
+
+	/**
+	 * configured validation query take precedence over database family default
+	 * @param ds
+	 * @return
+	 */
+	private String deriveValidationQuery(Datasource ds){
+		String validationQuery = SystemProperties.getProperty(PROPERTY_PREFIX+"validationQuery");
+
+		if(StringUtils.isNotBlank(validationQuery)){
+			return validationQuery;
+		}
+
+		DatabaseFamily family = ds.getType().getFamily();
+
+		if(family==null){
+			return null;
+		}
+
+		switch(family){
+			case MySQL:
+				return MYSQL_VALIDATION_QUERY;
+			case MsSQL:
+				return MSSQL_VALIDATION_QUERY;
+			case Oracle:
+				return ORACLE_VALIDATION_QUERY;
+			default:
+				return null;
+		}
+	}
+
+	/**
+	 *
+	 * @param entry
+	 */
+	private void close(PoolEntry entry){
+		try{
+			entry.dataSource.close();
+		}
+		catch(Exception e){
+			LOG.warn("Error closing Basic Data source.", e);
+		}
+	}
+
+	private static int getIntProperty(String name, int defaultValue){
+		return NumberUtils.toInt(SystemProperties.getProperty(PROPERTY_PREFIX+name), defaultValue);
+	}
+
+	private static long getLongProperty(String name, long defaultValue){
+		return NumberUtils.toLong(SystemProperties.getProperty(PROPERTY_PREFIX+name), defaultValue);
+	}
+
+	/**
+	 * pool of a datasource along with its borrow statistic
+	 */
+	private static class PoolEntry{
+		private final int datasourceId;
+		private final String datasourceName;
+		private final String fingerprint;
+		private final BasicDataSource dataSource;
+		private final long creationTime = System.currentTimeMillis();
+
+		private final AtomicLong borrowCount = new AtomicLong();
+		private final AtomicLong totalWaitTime = new AtomicLong();
+		private final AtomicLong maxWaitTime = new AtomicLong();
+
+		PoolEntry(Datasource ds, String fingerprint, BasicDataSource dataSource){
+			this.datasourceId = ds.getId();
+			this.datasourceName = ds.getName();
+			this.fingerprint = fingerprint;
+			this.dataSource = dataSource;
+		}
+
+		void recordBorrow(long waitTime){
+			borrowCount.incrementAndGet();
+			totalWaitTime.addAndGet(waitTime);
+
+			long currentMax;
+			do{
+				currentMax = maxWaitTime.get();
+			}
+			while(waitTime > currentMax && !maxWaitTime.compareAndSet(currentMax, waitTime));
+		}
+
+		DatasourcePoolStats toStats(){
+			DatasourcePoolStats stats = new DatasourcePoolStats();
+
+			stats.setDatasourceId(datasourceId);
+			stats.setDatasourceName(datasourceName);
+			stats.setNumActive(dataSource.getNumActive());
+			stats.setNumIdle(dataSource.getNumIdle());
+			stats.setMaxActive(dataSource.getMaxActive());
+			stats.setMaxIdle(dataSource.getMaxIdle());
+			stats.setMinIdle(dataSource.getMinIdle());
+			stats.setBorrowCount(borrowCount.get());
+			stats.setTotalWaitTimeMillis(totalWaitTime.get());
+			stats.setMaxWaitTimeMillis(maxWaitTime.get());
+			stats.setCreationTime(creationTime);
+
+			return stats;
+		}
+	}
+}
@@ -1,59 +1,85 @@
 package org.reportbay.datasource.service.impl;
 
+import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 
-import javax.sql.DataSource;
+import javax.inject.Inject;
 
-import org.apache.commons.dbcp.BasicDataSource;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
 import org.reportbay.common.domain.SqlTypeEnum;
+import org.reportbay.common.util.SystemProperties;
 import org.reportbay.datasource.domain.ColumnMetadata;
+import org.reportbay.datasource.domain.DatabaseType.DatabaseFamily;
 import org.reportbay.datasource.domain.Datasource;
+import org.reportbay.datasource.domain.ResultTable;
+import org.reportbay.datasource.service.DatasourceMetadataCache;
+import org.reportbay.datasource.service.DatasourcePoolRegistry;
 import org.reportbay.datasource.service.JdbcClient;
+import org.reportbay.datasource.service.QueryContext;
+import org.reportbay.datasource.service.RowCursor;
+import org.reportbay.datasource.service.RowVisitor;
 import org.reportbay.datasource.service.exception.JdbcClientException;
+import org.reportbay.datasource.service.exception.QueryTimeoutException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class JdbcClientImpl implements JdbcClient {
 	private static final Logger LOG = LoggerFactory.getLogger(JdbcClientImpl.class);
 	private static final int TABLE_NAME = 3;
+	// Note: column index of DatabaseMetaData.getColumns result
+	private static final int COLUMN_NAME = 4;
+	private static final int COLUMN_DATA_TYPE = 5;
+	private static final int COLUMN_ORDINAL_POSITION = 17;
 	private static final String SELECT_ALL = "SELECT * FROM %s";
 
 	// Note: Column index starts from 1
 	private static final int DB_COLUMN_START_IDX = 1;
 	
 	private static final int MIN_ROW = 1;
+	
+	private static final String FETCH_SIZE_PROPERTY = "reportbay.datasource.fetchSize";
+	private static final int DEFAULT_FETCH_SIZE = 500;
+	
+	private static final String QUERY_TIMEOUT_PROPERTY = "reportbay.datasource.queryTimeout";
+	//no timeout unless configured, as before the property was introduced
+	private static final int DEFAULT_QUERY_TIMEOUT = 0;
+
+	@Inject
+	private DatasourcePoolRegistry poolRegistry;
+	
+	@Inject
+	private DatasourceMetadataCache metadataCache;
 
 	/**
 	 * Apache Commons DBCP API helps us in getting rid of tightly coupleness to
 	 * respective driver API by providing DataSource implementation that works
 	 * as an abstraction layer between our program and different JDBC drivers.
+	 * Connection is borrowed from the pool registered for the datasource,
+	 * closing it returns the connection back to the pool.
 	 * <p>
 	 * 
 	 * @param ds
 	 * @return
+	 * @throws SQLException
 	 */
-	private DataSource getDatasource(Datasource ds) {
-		LOG.trace("Getting datasource for {}..",ds.getName());
+	private Connection getConnection(Datasource ds) throws SQLException {
+		LOG.trace("Getting connection for {}..",ds.getName());
 
-		BasicDataSource dbcpDs = new BasicDataSource();
-		
-		dbcpDs.setDriverClassName(ds.getType().getDriverName());
-		dbcpDs.setUrl(String.format(ds.getType().getUrlPattern(), ds.getHostname(), ds.getPort(), ds.getSchema()));
-		dbcpDs.setUsername(ds.getUsername());
-		dbcpDs.setPassword(ds.getPassword());
-
-		LOG.trace("Datasource returned.");
-		return dbcpDs;
+		return poolRegistry.getConnection(ds);
 	}
 
 	/**
@@ -64,8 +90,12 @@ public class JdbcClientImpl implements JdbcClient {
 	 * @param stmt
 	 * @param rs
 	 */
-	private void release(DataSource ds, Connection conn, Statement stmt, ResultSet rs) {
+	private void release(Connection conn, Statement stmt, ResultSet rs) {
 		LOG.debug("Attempting to release resources after use..");
+		QueryContext context = QueryContext.current();
+		if (context != null && stmt != null) {
+			context.unregister(stmt);
+		}
 		if (rs != null) {
 			LOG.trace("Closing Resultset..");
 			try{
@@ -96,30 +126,143 @@ public class JdbcClientImpl implements JdbcClient {
 				LOG.warn("Error releasing Connection.", e);
 			}
 		}
+	}
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public List<String> getTableNames(Datasource ds) throws JdbcClientException {
+		return metadataCache.getTableNames(ds, () -> loadTableNames(ds));
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public List<ColumnMetadata> getColumns(Datasource ds, String tableName) throws JdbcClientException {
+		return metadataCache.getColumns(ds, tableName, () -> loadColumns(ds, tableName));
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public List<ColumnMetadata> getColumnsFromQuery(Datasource ds, String query) throws JdbcClientException {
+		return metadataCache.getColumnsFromQuery(ds, query, () -> loadColumnsFromQuery(ds, query));
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Map<String, List<ColumnMetadata>> getColumns(Datasource ds, String schemaName, Collection<String> tableNames) throws JdbcClientException {
+		Map<String, List<ColumnMetadata>> schemaColumns = metadataCache.getSchemaColumns(ds, schemaName, () -> loadSchemaColumns(ds, schemaName));
 		
-		if(ds instanceof BasicDataSource){
-			try{
-				((BasicDataSource)ds).close();
+		Map<String, List<ColumnMetadata>> tableColumns = new TreeMap<String, List<ColumnMetadata>>(String.CASE_INSENSITIVE_ORDER);
+		
+		for(String tableName: tableNames){
+			List<ColumnMetadata> columns = schemaColumns.get(tableName);
+			
+			if(columns!=null){
+				//cached catalog is shared, copy for the caller
+				List<ColumnMetadata> copy = new ArrayList<ColumnMetadata>(columns.size());
+				
+				for(ColumnMetadata column: columns){
+					copy.add(new ColumnMetadata(column));
+				}
+				tableColumns.put(tableName, copy);
 			}
-			catch(Exception e){
-				LOG.warn("Error closing Basic Data source.", e);
+		}
+		
+		return tableColumns;
+	}
+	
+	/**
+	 * 
+	 * @param ds
+	 * @param schemaName
+	 * @return column metadata of all tables in the schema, by table name (case insensitive) 
+	 * @throws JdbcClientException
+	 */
+	private Map<String, List<ColumnMetadata>> loadSchemaColumns(Datasource ds, String schemaName) throws JdbcClientException {
+		LOG.debug("Getting column metadata of schema [{}] from catalog..", schemaName);
+		Connection conn = null;
+		ResultSet rs = null;
+		
+		try {
+			LOG.trace("Getting connection from DataSource..");
+			conn = getConnection(ds);
+			
+			//1. MySQL treat database as catalog instead of schema
+			boolean catalogAsSchema = ds.getType()!=null && DatabaseFamily.MySQL.equals(ds.getType().getFamily());
+			
+			String catalog;
+			String schemaPattern;
+			
+			if(StringUtils.isBlank(schemaName)){
+				catalog = conn.getCatalog();
+				schemaPattern = catalogAsSchema? null : getCurrentSchema(conn);
+			}
+			else{
+				catalog = catalogAsSchema? schemaName : conn.getCatalog();
+				schemaPattern = catalogAsSchema? null : schemaName;
+			}
+			
+			//2. single pass over the columns of all tables, ordered by table and ordinal position
+			rs = conn.getMetaData().getColumns(catalog, schemaPattern, "%", "%");
+			
+			Map<String, List<ColumnMetadata>> schemaColumns = new TreeMap<String, List<ColumnMetadata>>(String.CASE_INSENSITIVE_ORDER);
+			
+			while (rs.next()) {
+				SqlTypeEnum sqlType = SqlTypeEnum.fromJavaSqlType(rs.getInt(COLUMN_DATA_TYPE));
+				
+				schemaColumns.computeIfAbsent(rs.getString(TABLE_NAME), k -> new ArrayList<ColumnMetadata>())
+							 .add(new ColumnMetadata(rs.getString(COLUMN_NAME), 
+									 				 sqlType==null? "": sqlType.name(), 
+									 				 null, 
+									 				 rs.getInt(COLUMN_ORDINAL_POSITION)));
 			}
+			
+			LOG.debug("Column metadata of {} table(s) returned", schemaColumns.size());
+			
+			return schemaColumns;
+		} catch (SQLException e) {
+			throw new JdbcClientException("Failed to get column metadata of schema "+schemaName, e);
+		} finally {
+			release(conn, null, rs);
 		}
 	}
+	
 	/**
-	 * {@inheritDoc}
+	 * 
+	 * @param conn
+	 * @return null if driver does not tell
 	 */
-	@Override
-	public List<String> getTableNames(Datasource ds) throws JdbcClientException {
+	private String getCurrentSchema(Connection conn){
+		try{
+			return conn.getSchema();
+		}
+		//driver before JDBC 4.1
+		catch(SQLException | AbstractMethodError e){
+			LOG.debug("Unable to get current schema of connection", e);
+			return null;
+		}
+	}
+	
+	/**
+	 * 
+	 * @param ds
+	 * @return
+	 * @throws JdbcClientException
+	 */
+	private List<String> loadTableNames(Datasource ds) throws JdbcClientException {
 		LOG.debug("Getting existing metadata table names from the schema of given Database..");
 		LOG.trace("Target Database Schema Details = {}", ds);
 		Connection conn = null;
 		ResultSet rs = null;
-		DataSource dbcpDs = null;
 		try {
-			dbcpDs = getDatasource(ds);
 			LOG.trace("Getting connection from DataSource..");
-			conn = dbcpDs.getConnection();
+			conn = getConnection(ds);
 			LOG.trace("Getting metadata table names..");
 			rs = conn.getMetaData().getTables(null, null, "%", null);
 
@@ -133,26 +276,31 @@ public class JdbcClientImpl implements JdbcClient {
 		} catch (SQLException e) {
 			throw new JdbcClientException("Failed to get metadata table names for given schema.", e);
 		} finally {
-			release(dbcpDs, conn, null, rs);
+			release(conn, null, rs);
 		}
 	}
 
-	@Override
-	public List<ColumnMetadata> getColumns(Datasource ds, String tableName) throws JdbcClientException {
+	/**
+	 * 
+	 * @param ds
+	 * @param tableName
+	 * @return
+	 * @throws JdbcClientException
+	 */
+	private List<ColumnMetadata> loadColumns(Datasource ds, String tableName) throws JdbcClientException {
 		LOG.debug("Getting existing metadata column names of the given table[{}]..",tableName);
 		Connection conn = null;
 		Statement stmt = null;
 		ResultSet rs = null;
-		DataSource dbcpDs = null;
 
 		try {
-			dbcpDs = getDatasource(ds);
 			LOG.trace("Getting connection from DataSource..");
-			conn = dbcpDs.getConnection();
+			conn = getConnection(ds);
 			stmt = conn.createStatement();
 			stmt.setMaxRows(MIN_ROW);
+			prepareStatement(stmt, ds, 0);
 			LOG.trace("Getting all column names from Table - {}..", tableName);
-			rs = stmt.executeQuery(String.format(SELECT_ALL, tableName));
+			rs = stmt.executeQuery(RowLimitRewriter.limit(getFamily(ds), String.format(SELECT_ALL, tableName), MIN_ROW));
 
 			List<ColumnMetadata> columnNames = getColumnMetadata(rs);
 			
@@ -160,29 +308,34 @@ public class JdbcClientImpl implements JdbcClient {
 
 			return columnNames;
 		} catch (SQLException e) {
-			throw new JdbcClientException("Failed to get metadata table names for given schema.", e);
+			throw translateException("Failed to get metadata table names for given schema.", e, stmt);
 		} finally {
-			release(dbcpDs, conn, stmt, rs);
+			release(conn, stmt, rs);
 		}
 	}
 
 	
-	@Override
-	public List<ColumnMetadata> getColumnsFromQuery(Datasource ds, String query) throws JdbcClientException {
+	/**
+	 * 
+	 * @param ds
+	 * @param query
+	 * @return
+	 * @throws JdbcClientException
+	 */
+	private List<ColumnMetadata> loadColumnsFromQuery(Datasource ds, String query) throws JdbcClientException {
 		LOG.debug("Getting existing metadata column names of the given query[{}]..",query);
 		Connection conn = null;
 		Statement stmt = null;
 		ResultSet rs = null;
-		DataSource dbcpDs = null;
 
 		try {
-			dbcpDs = getDatasource(ds);
 			LOG.trace("Getting connection from DataSource..");
-			conn = dbcpDs.getConnection();
+			conn = getConnection(ds);
 			stmt = conn.createStatement();
 			stmt.setMaxRows(MIN_ROW);
+			prepareStatement(stmt, ds, 0);
 			LOG.trace("Getting all column names from query - {}..", query);
-			rs = stmt.executeQuery(query);
+			rs = stmt.executeQuery(RowLimitRewriter.limit(getFamily(ds), query, MIN_ROW));
 			
 			List<ColumnMetadata> columnNames = getColumnMetadata(rs);
 			
@@ -190,37 +343,12 @@ public class JdbcClientImpl implements JdbcClient {
 
 			return columnNames;
 		} catch (SQLException e) {
-			throw new JdbcClientException("Failed to get metadata table names for given schema.", e);
+			throw translateException("Failed to get metadata table names for given schema.", e, stmt);
 		} finally {
-			release(dbcpDs, conn, stmt, rs);
+			release(conn, stmt, rs);
 		}
 	}
 
-	/**
-	 * 
-	 * @param rs
-	 * @return
-	 * @throws SQLException
-	 */
-	private List<Map<ColumnMetadata, String>> process(ResultSet rs) throws SQLException {
-		List<Map<ColumnMetadata, String>> rows = new ArrayList<Map<ColumnMetadata, String>>();
-		
-		//get column name from result set
-		List<ColumnMetadata> columns = getColumnMetadata(rs);
-		
-		// Populate the map.
-		while (rs.next()) {
-			Map<ColumnMetadata, String> row = new LinkedHashMap<ColumnMetadata, String>();
-			for (ColumnMetadata column : columns) {
-				row.put(column, rs.getString(column.getLabel()));
-			}
-			rows.add(row);
-		}
-
-		LOG.debug("({}) rows returned.", rows.size());
-		return rows;
-	}
-
 	/**
 	 * 
 	 * @param rs
@@ -259,34 +387,273 @@ public class JdbcClientImpl implements JdbcClient {
 	 */
 	@Override
 	public List<Map<ColumnMetadata, String>> execute(Datasource ds, String query, int maxRow) throws JdbcClientException {
+		List<Map<ColumnMetadata, String>> rows = new ArrayList<Map<ColumnMetadata, String>>();
+		
+		execute(ds, query, maxRow, row -> {
+			// Populate the map.
+			Map<ColumnMetadata, String> rowMap = new LinkedHashMap<ColumnMetadata, String>();
+			for (ColumnMetadata column : row.getColumns()) {
+				rowMap.put(column, row.getString(column.getOrder()));
+			}
+			rows.add(rowMap);
+			return true;
+		});
+		
+		return rows;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int execute(Datasource ds, String query, RowVisitor visitor) throws JdbcClientException {
+		return execute(ds, query, -1, visitor);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int execute(Datasource ds, String query, int maxRow, RowVisitor visitor) throws JdbcClientException {
+		return execute(ds, query, maxRow, 0, visitor);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int execute(Datasource ds, String query, int maxRow, int timeoutSeconds, RowVisitor visitor) throws JdbcClientException {
+		QueryContext context = QueryContext.current();
+		
+		return executeQuery(ds, query, maxRow, timeoutSeconds, rs -> {
+			ResultSetRowCursor cursor = new ResultSetRowCursor(rs, getColumnMetadata(rs));
+			
+			while (rs.next()) {
+				cursor.rowNumber++;
+				if(context!=null){
+					context.addRowsRead(1);
+				}
+				if(!visitor.visit(cursor)){
+					LOG.debug("Streaming stopped by visitor at row {}", cursor.rowNumber);
+					cancelStreaming(rs.getStatement());
+					break;
+				}
+			}
+			
+			LOG.debug("({}) rows visited.", cursor.rowNumber);
+			return cursor.rowNumber;
+		});
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public ResultTable executeForTable(Datasource ds, String query) throws JdbcClientException {
+		return executeForTable(ds, query, -1);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public ResultTable executeForTable(Datasource ds, String query, int maxRow) throws JdbcClientException {
+		return executeForTable(ds, query, maxRow, 0);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public ResultTable executeForTable(Datasource ds, String query, int maxRow, int timeoutSeconds) throws JdbcClientException {
+		return executeForTable(ds, query, maxRow, timeoutSeconds, false);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public ResultTable executeForTable(Datasource ds, String query, int maxRow, int timeoutSeconds, boolean exactDecimal) throws JdbcClientException {
+		QueryContext context = QueryContext.current();
+		
+		return executeQuery(ds, query, maxRow, timeoutSeconds, rs -> {
+			ResultTable table = new ResultTable(getColumnMetadata(rs), exactDecimal);
+			
+			while (rs.next()) {
+				table.appendRow(rs);
+				if(context!=null){
+					context.addRowsRead(1);
+				}
+			}
+			
+			LOG.debug("({}) rows returned.", table.getRowCount());
+			return table;
+		});
+	}
+	
+	/**
+	 * execute the query with forward only, read only cursor and hand over the open result set to the extractor
+	 * @param ds
+	 * @param query
+	 * @param maxRow
+	 * @param timeoutSeconds
+	 * @param extractor
+	 * @return
+	 * @throws JdbcClientException
+	 */
+	private <T> T executeQuery(Datasource ds, String query, int maxRow, int timeoutSeconds, ResultSetExtractor<T> extractor) throws JdbcClientException {
 		LOG.trace("Target datasource - {}", ds.getName());
 		LOG.trace("Query to be executed - {}", query);
 
 		Connection conn = null;
 		Statement stmt = null;
 		ResultSet rs = null;
-		DataSource dbcpDs = null;
 
 		try {
-			dbcpDs = getDatasource(ds);
 			LOG.trace("Getting connection from DataSource..");
-			conn = dbcpDs.getConnection();
-			stmt = conn.createStatement();
-			//limit result rows to max row defined
+			conn = getConnection(ds);
+			//forward only + read only cursor so that driver is free to stream the rows
+			stmt = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+			prepareStatement(stmt, ds, timeoutSeconds);
+			stmt.setFetchSize(deriveFetchSize(ds));
+			//limit result rows to max row defined, natively at database and at driver as safety net
 			if(maxRow>0){
 				stmt.setMaxRows(maxRow);
 			}
 			LOG.debug("Executing given query in the respective database..");
 
-			rs = stmt.executeQuery(query);
+			rs = stmt.executeQuery(maxRow>0? RowLimitRewriter.limit(getFamily(ds), query, maxRow) : query);
 
 			LOG.debug("Query execution completed.");
-			return process(rs);
+			
+			return extractor.extract(rs);
 		} catch (SQLException e) {
-			throw new JdbcClientException("Query execution failed.", e);
+			throw translateException("Query execution failed.", e, stmt);
 		} finally {
-			release(dbcpDs, conn, stmt, rs);
+			release(conn, stmt, rs);
+		}
+	}
+	
+	/**
+	 * 
+	 * @param ds
+	 * @return null if database type not known
+	 */
+	private DatabaseFamily getFamily(Datasource ds){
+		return ds.getType()==null? null : ds.getType().getFamily();
+	}
+	
+	/**
+	 * apply the time budget and register the statement with the query context of current thread (if any)
+	 * so that it can be cancelled
+	 * @param stmt
+	 * @param ds
+	 * @param timeoutSeconds call specific timeout, datasource default applies if not greater than 0
+	 * @throws SQLException
+	 */
+	private void prepareStatement(Statement stmt, Datasource ds, int timeoutSeconds) throws SQLException {
+		QueryContext context = QueryContext.current();
+		
+		int timeout = timeoutSeconds > 0? timeoutSeconds : deriveQueryTimeout(ds);
+		
+		if(context!=null){
+			//1. request deadline cap the statement timeout
+			if(context.hasDeadline()){
+				long remainingMillis = context.getRemainingMillis();
+				
+				if(remainingMillis <= 0){
+					throw new SQLTimeoutException("Deadline of request "+context.getRequestId()+" exceeded");
+				}
+				
+				int remainingSeconds = (int)Math.min(Integer.MAX_VALUE, (remainingMillis + 999) / 1000);
+				timeout = timeout > 0? Math.min(timeout, remainingSeconds) : remainingSeconds;
+			}
+			
+			//2. track for cancellation
+			context.register(stmt);
+		}
+		
+		if(timeout > 0){
+			stmt.setQueryTimeout(timeout);
+		}
+	}
+	
+	/**
+	 * datasource own timeout take precedence over the system property, no timeout if neither is set
+	 * @param ds
+	 * @return timeout in second, 0 if no limit
+	 */
+	private int deriveQueryTimeout(Datasource ds){
+		if(ds.getQueryTimeout()!=null){
+			return ds.getQueryTimeout();
+		}
+		
+		return NumberUtils.toInt(SystemProperties.getProperty(QUERY_TIMEOUT_PROPERTY), DEFAULT_QUERY_TIMEOUT);
+	}
+	
+	/**
+	 * timeout reported by driver (or cancelled by its timer) is surfaced as {@link QueryTimeoutException}
+	 * @param message
+	 * @param e
+	 * @param stmt
+	 * @return
+	 */
+	private JdbcClientException translateException(String message, SQLException e, Statement stmt){
+		QueryContext context = QueryContext.current();
+		
+		if(context!=null && context.isCancelled()){
+			return new JdbcClientException("Query of request "+context.getRequestId()+" is cancelled.", e);
+		}
+		
+		if(e instanceof SQLTimeoutException || (context!=null && context.hasDeadline() && context.getRemainingMillis()<=0)){
+			return new QueryTimeoutException("Query execution timed out.", e);
+		}
+		
+		//driver not reporting timeout with SQLTimeoutException (e.g. cancelled by its timer)
+		if(stmt!=null){
+			try{
+				int timeout = stmt.getQueryTimeout();
+				
+				if(timeout > 0 && "70100".equals(e.getSQLState())){
+					return new QueryTimeoutException("Query execution timed out after "+timeout+"s.", e);
+				}
+			}
+			catch(SQLException ignore){
+				LOG.trace("unable to obtain query timeout of closed statement", ignore);
+			}
+		}
+		
+		return new JdbcClientException(message, e);
+	}
+	
+	/**
+	 * MySQL driver reads (and discards) the rest of a streamed result on close,
+	 * cancel the statement first so that stopping early does not pull the whole result over the wire
+	 * @param stmt
+	 */
+	private void cancelStreaming(Statement stmt){
+		try{
+			if(stmt.getFetchSize()==Integer.MIN_VALUE){
+				stmt.cancel();
+			}
+		}
+		catch(SQLException e){
+			LOG.debug("unable to cancel streamed statement, remaining rows are read on close", e);
+		}
+	}
+	
+	/**
+	 * fetch size from system property, MySQL driver only stream row by row 
+	 * when fetch size is Integer.MIN_VALUE, otherwise whole result is buffered
+	 * @param ds
+	 * @return
+	 */
+	private int deriveFetchSize(Datasource ds){
+		if(ds.getType()!=null && DatabaseFamily.MySQL.equals(ds.getType().getFamily())){
+			return Integer.MIN_VALUE;
 		}
+		
+		return NumberUtils.toInt(SystemProperties.getProperty(FETCH_SIZE_PROPERTY), DEFAULT_FETCH_SIZE);
 	}
 	
 	/**
@@ -305,12 +672,11 @@ public class JdbcClientImpl implements JdbcClient {
 				Connection conn = null;
 				Statement stmt = null;
 				ResultSet rs = null;
-				DataSource dbcpDs = null;
 				try {
-					dbcpDs = getDatasource(ds);
 					LOG.trace("Getting connection from DataSource..");
-					conn = dbcpDs.getConnection();
+					conn = getConnection(ds);
 					stmt = conn.createStatement();
+					prepareStatement(stmt, ds, 0);
 					
 					rs = stmt.executeQuery(tempQuery);
 					
@@ -319,9 +685,9 @@ public class JdbcClientImpl implements JdbcClient {
 					}
 					
 				} catch (SQLException e) {
-					throw new JdbcClientException("Query execution failed.", e);
+					throw translateException("Query execution failed.", e, stmt);
 				} finally {
-					release(dbcpDs, conn, stmt, rs);
+					release(conn, stmt, rs);
 				}
 			}
 		}
@@ -337,16 +703,15 @@ public class JdbcClientImpl implements JdbcClient {
 		LOG.debug("Trying to connect to database - {}@{}:{}..", ds.getSchema(), ds.getHostname(), ds.getPort());
 		boolean result = false;
 		Connection conn = null;
-		DataSource dataSource = null;
 		try {
-			dataSource = getDatasource(ds);
-			conn = dataSource.getConnection();
+			LOG.trace("Getting connection from DataSource..");
+			conn = getConnection(ds);
 			LOG.debug("Successfully established the connection.");
 			result = true;
 		} catch (SQLException e) {
 			LOG.debug("Failed to establish the connection.", e);
 		} finally {
-			release(dataSource, conn, null, null);
+			release(conn, null, null);
 		}
 		return result;
 	}
@@ -356,14 +721,23 @@ public class JdbcClientImpl implements JdbcClient {
 	 */
 	@Override
 	public String getQuotedIdentifier(Datasource ds) throws JdbcClientException{
+		return metadataCache.getQuotedIdentifier(ds, () -> loadQuotedIdentifier(ds));
+	}
+	
+	/**
+	 * 
+	 * @param ds
+	 * @return
+	 * @throws JdbcClientException
+	 */
+	private String loadQuotedIdentifier(Datasource ds) throws JdbcClientException{
 		String quotedIdentifier = null;
 		
 		Connection conn = null;
-		DataSource dataSource = null;
 		
 		try{
-			dataSource = getDatasource(ds);
-			conn = dataSource.getConnection();
+			LOG.trace("Getting connection from DataSource..");
+			conn = getConnection(ds);
 			DatabaseMetaData dbMetaData = conn.getMetaData();
 			
 			quotedIdentifier = dbMetaData.getIdentifierQuoteString();
@@ -376,9 +750,76 @@ public class JdbcClientImpl implements JdbcClient {
 			throw new JdbcClientException(e);
 		}
 		finally {
-			release(dataSource, conn, null, null);
+			release(conn, null, null);
 		}
 		
 		return quotedIdentifier;
 	}
+	
+	/**
+	 * cursor over the current row of an open result set
+	 */
+	private static class ResultSetRowCursor implements RowCursor {
+		private final ResultSet rs;
+		private final List<ColumnMetadata> columns;
+		private int rowNumber;
+		
+		ResultSetRowCursor(ResultSet rs, List<ColumnMetadata> columns){
+			this.rs = rs;
+			this.columns = Collections.unmodifiableList(columns);
+		}
+		
+		@Override
+		public List<ColumnMetadata> getColumns() {
+			return columns;
+		}
+		
+		@Override
+		public ColumnMetadata findColumn(String label) {
+			for(ColumnMetadata column: columns){
+				if(column.getLabel()!=null && column.getLabel().equalsIgnoreCase(label)){
+					return column;
+				}
+			}
+			return null;
+		}
+		
+		@Override
+		public int getRowNumber() {
+			return rowNumber;
+		}
+		
+		@Override
+		public String getString(int columnIdx) throws SQLException {
+			return rs.getString(columnIdx);
+		}
+		
+		@Override
+		public long getLong(int columnIdx) throws SQLException {
+			return rs.getLong(columnIdx);
+		}
+		
+		@Override
+		public double getDouble(int columnIdx) throws SQLException {
+			return rs.getDouble(columnIdx);
+		}
+		
+		@Override
+		public BigDecimal getBigDecimal(int columnIdx) throws SQLException {
+			return rs.getBigDecimal(columnIdx);
+		}
+		
+		@Override
+		public boolean wasNull() throws SQLException {
+			return rs.wasNull();
+		}
+	}
+	
+	/**
+	 * consume the open result set of executed query
+	 */
+	@FunctionalInterface
+	private interface ResultSetExtractor<T> {
+		T extract(ResultSet rs) throws SQLException;
+	}
 }
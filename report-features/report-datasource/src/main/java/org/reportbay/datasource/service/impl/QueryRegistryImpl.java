@@ -0,0 +1,66 @@
+package org.reportbay.datasource.service.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Singleton;
+
+import org.reportbay.datasource.service.QueryContext;
+import org.reportbay.datasource.service.QueryRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class QueryRegistryImpl implements QueryRegistry {
+	private static final Logger LOG = LoggerFactory.getLogger(QueryRegistryImpl.class);
+
+	private final ConcurrentMap<String, QueryContext> contexts = new ConcurrentHashMap<String, QueryContext>();
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void begin(QueryContext context) {
+		contexts.put(context.getRequestId(), context);
+		QueryContext.bind(context);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void end(QueryContext context) {
+		QueryContext.unbind();
+		contexts.remove(context.getRequestId(), context);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean cancel(String requestId) {
+		QueryContext context = contexts.get(requestId);
+
+		if(context==null){
+			return false;
+		}
+
+		LOG.info("cancel running query of request {}", requestId);
+		context.cancel();
+
+		return true;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public List<QueryContext> getRunningQueries() {
+		return new ArrayList<QueryContext>(contexts.values());
+	}
+}
@@ -0,0 +1,154 @@
+package org.reportbay.datasource.service.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.expression.Alias;
+import net.sf.jsqlparser.expression.LongValue;
+import net.sf.jsqlparser.expression.operators.relational.MinorThanEquals;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import net.sf.jsqlparser.schema.Column;
+import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.statement.select.AllColumns;
+import net.sf.jsqlparser.statement.select.Limit;
+import net.sf.jsqlparser.statement.select.PlainSelect;
+import net.sf.jsqlparser.statement.select.Select;
+import net.sf.jsqlparser.statement.select.SelectBody;
+import net.sf.jsqlparser.statement.select.SelectItem;
+import net.sf.jsqlparser.statement.select.SubSelect;
+import net.sf.jsqlparser.statement.select.Top;
+
+import org.reportbay.datasource.domain.DatabaseType.DatabaseFamily;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * rewrite of select query with database native row limit, so that database stop producing rows
+ * beyond the limit instead of driver discarding them after {@link java.sql.Statement#setMaxRows(int)}
+ */
+final class RowLimitRewriter {
+	private static final Logger LOG = LoggerFactory.getLogger(RowLimitRewriter.class);
+	
+	private static final String LIMITED_TABLE_ALIAS = "limited_rows";
+	private static final String ORACLE_ROWNUM = "ROWNUM";
+	
+	private RowLimitRewriter(){
+	}
+	
+	/**
+	 * 
+	 * @param family database family of the datasource
+	 * @param query
+	 * @param maxRow
+	 * @return query limited to max row, the query as is if it can't be rewritten
+	 */
+	static String limit(DatabaseFamily family, String query, int maxRow){
+		if(family==null || maxRow<=0){
+			return query;
+		}
+		
+		try{
+			Statement statement = CCJSqlParserUtil.parse(query);
+			
+			if(!(statement instanceof Select) || ((Select)statement).getWithItemsList()!=null){
+				return query;
+			}
+			
+			SelectBody selectBody = ((Select)statement).getSelectBody();
+			
+			switch(family){
+				case MySQL:
+					return limitMySQL(selectBody, maxRow).toString();
+				case MsSQL:
+					return limitMsSQL(selectBody, maxRow).toString();
+				case Oracle:
+					return limitOracle(selectBody, maxRow).toString();
+				default:
+					return query;
+			}
+		}
+		catch(JSQLParserException e){
+			//dialect syntax beyond the parser, driver side max row still applies
+			LOG.debug("Unable to apply row limit to query {}", query, e);
+			return query;
+		}
+	}
+	
+	/**
+	 * SELECT ... LIMIT n
+	 * @param selectBody
+	 * @param maxRow
+	 * @return
+	 */
+	private static PlainSelect limitMySQL(SelectBody selectBody, int maxRow){
+		PlainSelect ps = selectBody instanceof PlainSelect? (PlainSelect)selectBody : wrap(selectBody);
+		Limit limit = ps.getLimit();
+		
+		//keep the tighter limit of the query itself
+		if(limit==null || limit.isRowCountJdbcParameter() || limit.isLimitAll() || limit.getRowCount() > maxRow){
+			limit = new Limit();
+			limit.setOffset(ps.getLimit()==null? 0 : ps.getLimit().getOffset());
+			limit.setRowCount(maxRow);
+			ps.setLimit(limit);
+		}
+		
+		return ps;
+	}
+	
+	/**
+	 * SELECT TOP n ...
+	 * @param selectBody
+	 * @param maxRow
+	 * @return
+	 */
+	private static PlainSelect limitMsSQL(SelectBody selectBody, int maxRow){
+		PlainSelect ps = selectBody instanceof PlainSelect? (PlainSelect)selectBody : wrap(selectBody);
+		Top top = ps.getTop();
+		
+		if(top==null || top.isRowCountJdbcParameter() || top.getRowCount() > maxRow){
+			top = new Top();
+			top.setRowCount(maxRow);
+			ps.setTop(top);
+		}
+		
+		return ps;
+	}
+	
+	/**
+	 * SELECT * FROM (...) WHERE ROWNUM &lt;= n, ROWNUM applies after the ordering of the inner query
+	 * @param selectBody
+	 * @param maxRow
+	 * @return
+	 */
+	private static PlainSelect limitOracle(SelectBody selectBody, int maxRow){
+		PlainSelect ps = wrap(selectBody);
+		
+		MinorThanEquals rowNumLimit = new MinorThanEquals();
+		rowNumLimit.setLeftExpression(new Column(ORACLE_ROWNUM));
+		rowNumLimit.setRightExpression(new LongValue(maxRow));
+		ps.setWhere(rowNumLimit);
+		
+		return ps;
+	}
+	
+	/**
+	 * SELECT * FROM (...) limited_rows
+	 * @param selectBody
+	 * @return
+	 */
+	private static PlainSelect wrap(SelectBody selectBody){
+		SubSelect subSelect = new SubSelect();
+		subSelect.setSelectBody(selectBody);
+		subSelect.setAlias(new Alias(LIMITED_TABLE_ALIAS, false));
+		
+		List<SelectItem> selectItems = new ArrayList<SelectItem>();
+		selectItems.add(new AllColumns());
+		
+		PlainSelect ps = new PlainSelect();
+		ps.setSelectItems(selectItems);
+		ps.setFromItem(subSelect);
+		
+		return ps;
+	}
+}
@@ -0,0 +1,82 @@
+package org.reportbay.datasource.service.impl;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+import org.reportbay.datasource.domain.DatabaseType.DatabaseFamily;
+
+public class RowLimitRewriterTest {
+
+	private static final String QUERY = "SELECT a, b FROM t WHERE a > 1 ORDER BY b";
+	private static final String UNION = "SELECT a FROM t UNION SELECT a FROM u";
+
+	@Test
+	public void testMySQL(){
+		assertEquals("SELECT a, b FROM t WHERE a > 1 ORDER BY b LIMIT 20",
+				RowLimitRewriter.limit(DatabaseFamily.MySQL, QUERY, 20));
+	}
+
+	@Test
+	public void testMySQLUnion(){
+		assertEquals("SELECT * FROM ((SELECT a FROM t) UNION (SELECT a FROM u)) limited_rows LIMIT 20",
+				RowLimitRewriter.limit(DatabaseFamily.MySQL, UNION, 20));
+	}
+
+	@Test
+	public void testMySQLKeepsTighterLimit(){
+		String query = "SELECT a FROM t LIMIT 5";
+
+		assertEquals(query, RowLimitRewriter.limit(DatabaseFamily.MySQL, query, 20));
+	}
+
+	@Test
+	public void testMySQLReplacesLooserLimitKeepingOffset(){
+		assertEquals("SELECT a FROM t LIMIT 20 OFFSET 10",
+				RowLimitRewriter.limit(DatabaseFamily.MySQL, "SELECT a FROM t LIMIT 10, 100", 20));
+	}
+
+	@Test
+	public void testMsSQL(){
+		assertEquals("SELECT TOP 20 a, b FROM t WHERE a > 1 ORDER BY b",
+				RowLimitRewriter.limit(DatabaseFamily.MsSQL, QUERY, 20));
+	}
+
+	@Test
+	public void testMsSQLUnion(){
+		assertEquals("SELECT TOP 20 * FROM ((SELECT a FROM t) UNION (SELECT a FROM u)) limited_rows",
+				RowLimitRewriter.limit(DatabaseFamily.MsSQL, UNION, 20));
+	}
+
+	@Test
+	public void testMsSQLTop(){
+		String query = "SELECT TOP 5 a FROM t";
+
+		assertEquals(query, RowLimitRewriter.limit(DatabaseFamily.MsSQL, query, 20));
+		assertEquals("SELECT TOP 20 a FROM t", RowLimitRewriter.limit(DatabaseFamily.MsSQL, "SELECT TOP 100 a FROM t", 20));
+	}
+
+	@Test
+	public void testOracle(){
+		assertEquals("SELECT * FROM (SELECT a, b FROM t WHERE a > 1 ORDER BY b) limited_rows WHERE ROWNUM <= 20",
+				RowLimitRewriter.limit(DatabaseFamily.Oracle, QUERY, 20));
+	}
+
+	@Test
+	public void testOracleUnion(){
+		assertEquals("SELECT * FROM ((SELECT a FROM t) UNION (SELECT a FROM u)) limited_rows WHERE ROWNUM <= 20",
+				RowLimitRewriter.limit(DatabaseFamily.Oracle, UNION, 20));
+	}
+
+	@Test
+	public void testQueryKeptWithoutLimitOrFamily(){
+		assertEquals(QUERY, RowLimitRewriter.limit(DatabaseFamily.MySQL, QUERY, 0));
+		assertEquals(QUERY, RowLimitRewriter.limit(null, QUERY, 20));
+	}
+
+	@Test
+	public void testUnparsableQueryKept(){
+		String query = "SELECT a FROM t WHERE";
+
+		assertEquals(query, RowLimitRewriter.limit(DatabaseFamily.MySQL, query, 20));
+	}
+}
@@ -0,0 +1,57 @@
+package org.reportbay.report.domain;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * header of a crosstab row or column, identified by the grouping value(s) from the top level down.
+ * Total header carries the values of the group it sums up, grand total has no value
+ */
+public class CrossTabHeader implements Serializable{
+
+	/**
+	 * 
+	 */
+	private static final long serialVersionUID = 1L;
+
+	private List<String> values;
+	private boolean total;
+
+	public CrossTabHeader() {
+		// Default Constructor.
+	}
+
+	public CrossTabHeader(List<String> values, boolean total) {
+		this.values = values;
+		this.total = total;
+	}
+
+	public List<String> getValues() {
+		return values;
+	}
+	public void setValues(List<String> values) {
+		this.values = values;
+	}
+	/**
+	 * 
+	 * @return number of grouping level(s) the header is nested in
+	 */
+	public int getLevel() {
+		return values==null? 0 : values.size();
+	}
+	/**
+	 * 
+	 * @return true for subtotal or grand total
+	 */
+	public boolean isTotal() {
+		return total;
+	}
+	public void setTotal(boolean total) {
+		this.total = total;
+	}
+
+	@Override
+	public String toString() {
+		return "CrossTabHeader [values=" + values + ", total=" + total + "]";
+	}
+}
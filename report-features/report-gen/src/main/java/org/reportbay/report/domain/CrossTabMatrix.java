@@ -0,0 +1,197 @@
+package org.reportbay.report.domain;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * pivoted crosstab result. Cells are held row major in a single double[], cell of row header i, 
+ * column header j and measure k is at i * (columnHeaderCount * measureCount) + j * measureCount + k,
+ * a cell is empty (not filled) if no source row falls into it
+ */
+public class CrossTabMatrix implements Serializable{
+
+	/**
+	 * 
+	 */
+	private static final long serialVersionUID = 1L;
+
+	private List<String> rowFields;
+	private List<String> columnFields;
+	private List<String> measureFields;
+	private List<CrossTabHeader> rowHeaders;
+	private List<CrossTabHeader> columnHeaders;
+	private double[] cellValues;
+	private BitSet filledCells;
+	private int sourceRowCount;
+	private int rowOffset;
+	private int totalRowCount;
+
+	/**
+	 * 
+	 * @param offset index of first row header
+	 * @param limit maximum number of row headers, 0 for all remaining
+	 * @return matrix sharing the fields and column headers, holding only the row headers (and cells) of the page
+	 */
+	public CrossTabMatrix page(int offset, int limit) {
+		int total = getRowHeaders().size();
+		int from = Math.min(Math.max(offset, 0), total);
+		int to = limit > 0? (int) Math.min((long) from + limit, total) : total;
+		
+		CrossTabMatrix page = new CrossTabMatrix();
+		page.setRowFields(getRowFields());
+		page.setColumnFields(getColumnFields());
+		page.setMeasureFields(getMeasureFields());
+		page.setColumnHeaders(getColumnHeaders());
+		page.setRowHeaders(new ArrayList<CrossTabHeader>(getRowHeaders().subList(from, to)));
+		
+		if(cellValues!=null){
+			int columns = cellColumnCount();
+			page.setCells(Arrays.copyOfRange(cellValues, from * columns, to * columns), filledCells.get(from * columns, to * columns));
+		}
+		page.setSourceRowCount(sourceRowCount);
+		page.setRowOffset(rowOffset + from);
+		page.setTotalRowCount(getTotalRowCount());
+		
+		return page;
+	}
+
+	public List<String> getRowFields() {
+		if (rowFields==null) {
+			rowFields = new ArrayList<String>();
+		}
+		return rowFields;
+	}
+	public void setRowFields(List<String> rowFields) {
+		this.rowFields = rowFields;
+	}
+	public List<String> getColumnFields() {
+		if (columnFields==null) {
+			columnFields = new ArrayList<String>();
+		}
+		return columnFields;
+	}
+	public void setColumnFields(List<String> columnFields) {
+		this.columnFields = columnFields;
+	}
+	public List<String> getMeasureFields() {
+		if (measureFields==null) {
+			measureFields = new ArrayList<String>();
+		}
+		return measureFields;
+	}
+	public void setMeasureFields(List<String> measureFields) {
+		this.measureFields = measureFields;
+	}
+	public List<CrossTabHeader> getRowHeaders() {
+		if (rowHeaders==null) {
+			rowHeaders = new ArrayList<CrossTabHeader>();
+		}
+		return rowHeaders;
+	}
+	public void setRowHeaders(List<CrossTabHeader> rowHeaders) {
+		this.rowHeaders = rowHeaders;
+	}
+	public List<CrossTabHeader> getColumnHeaders() {
+		if (columnHeaders==null) {
+			columnHeaders = new ArrayList<CrossTabHeader>();
+		}
+		return columnHeaders;
+	}
+	public void setColumnHeaders(List<CrossTabHeader> columnHeaders) {
+		this.columnHeaders = columnHeaders;
+	}
+	/**
+	 * 
+	 * @return number of cells per row header
+	 */
+	public int cellColumnCount() {
+		return getColumnHeaders().size() * getMeasureFields().size();
+	}
+	/**
+	 * 
+	 * @return true if the cells are set
+	 */
+	public boolean hasCells() {
+		return cellValues!=null;
+	}
+	/**
+	 * 
+	 * @param row index of row header
+	 * @param column index of cell within the row, see {@link #cellColumnCount()}
+	 * @return true if any source row falls into the cell
+	 */
+	public boolean isFilled(int row, int column) {
+		return filledCells.get(row * cellColumnCount() + column);
+	}
+	/**
+	 * 
+	 * @param row index of row header
+	 * @param column index of cell within the row, see {@link #cellColumnCount()}
+	 * @return 0 if the cell is empty
+	 */
+	public double getCell(int row, int column) {
+		return cellValues[row * cellColumnCount() + column];
+	}
+	/**
+	 * 
+	 * @param cellValues cell values in row major order
+	 * @param filledCells bit of each non empty cell, in the same order
+	 */
+	public void setCells(double[] cellValues, BitSet filledCells) {
+		this.cellValues = cellValues;
+		this.filledCells = filledCells;
+	}
+	/**
+	 * 
+	 * @return cells per row header, null for empty cell. Boxed copy for JSON serialization
+	 */
+	public Double[][] getCells() {
+		if(cellValues==null){
+			return null;
+		}
+		int columns = cellColumnCount();
+		Double[][] cells = new Double[getRowHeaders().size()][columns];
+		
+		for(int row = 0; row < cells.length; row++){
+			for(int column = 0; column < columns; column++){
+				if(isFilled(row, column)){
+					cells[row][column] = getCell(row, column);
+				}
+			}
+		}
+		return cells;
+	}
+	/**
+	 * 
+	 * @return number of query result row(s) pivoted
+	 */
+	public int getSourceRowCount() {
+		return sourceRowCount;
+	}
+	public void setSourceRowCount(int sourceRowCount) {
+		this.sourceRowCount = sourceRowCount;
+	}
+	/**
+	 * 
+	 * @return index of the first row header within the full matrix
+	 */
+	public int getRowOffset() {
+		return rowOffset;
+	}
+	public void setRowOffset(int rowOffset) {
+		this.rowOffset = rowOffset;
+	}
+	/**
+	 * 
+	 * @return number of row headers of the full matrix
+	 */
+	public int getTotalRowCount() {
+		return totalRowCount;
+	}
+	public void setTotalRowCount(int totalRowCount) {
+		this.totalRowCount = totalRowCount;
+	}
+}
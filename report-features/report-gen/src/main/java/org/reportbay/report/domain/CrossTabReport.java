@@ -13,6 +13,33 @@ public class CrossTabReport extends BaseReport {
 	
 	private List<CrossTabAttribute> attributes;
 	private List<Map<String, String>> resultSet;
+	private CrossTabMatrix matrix;
+	private int resultSetTotalCount;
+
+	/**
+	 * 
+	 * @param offset index of first row
+	 * @param limit maximum number of rows, 0 for all remaining
+	 * @return report holding only a page of the matrix row headers, or of the result set of report pivoted by client
+	 */
+	public CrossTabReport page(int offset, int limit) {
+		CrossTabReport page = new CrossTabReport();
+		page.setReportName(getReportName());
+		page.setReportType(getReportType());
+		page.setAttributes(getAttributes());
+		
+		if (matrix!=null) {
+			page.setMatrix(matrix.page(offset, limit));
+		}
+		
+		int total = getResultSet().size();
+		int from = Math.min(Math.max(offset, 0), total);
+		int to = limit > 0? (int) Math.min((long) from + limit, total) : total;
+		page.setResultSet(new ArrayList<Map<String,String>>(getResultSet().subList(from, to)));
+		page.setResultSetTotalCount(total);
+		
+		return page;
+	}
 
 	public List<CrossTabAttribute> getAttributes() {
 		if (attributes==null) {
@@ -36,4 +63,28 @@ public class CrossTabReport extends BaseReport {
 		this.resultSet = resultSet;
 	}
 
+	/**
+	 * 
+	 * @return number of rows of the full result set, 0 if not paged
+	 */
+	public int getResultSetTotalCount() {
+		return resultSetTotalCount;
+	}
+
+	public void setResultSetTotalCount(int resultSetTotalCount) {
+		this.resultSetTotalCount = resultSetTotalCount;
+	}
+
+	/**
+	 * 
+	 * @return pivoted result with subtotals and grand totals
+	 */
+	public CrossTabMatrix getMatrix() {
+		return matrix;
+	}
+
+	public void setMatrix(CrossTabMatrix matrix) {
+		this.matrix = matrix;
+	}
+
 }
@@ -0,0 +1,119 @@
+package org.reportbay.report.domain;
+
+import java.io.Serializable;
+
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+
+/**
+ * identity of a cached generated report.
+ * Only template id, template version, normalized report query and datasource id take part in equality,
+ * the remaining attributes are carried along for invalidation and expiry
+ */
+public class ReportResultCacheKey implements Serializable{
+
+	/**
+	 *
+	 */
+	private static final long serialVersionUID = 1L;
+
+	private final int templateId;
+	private final long templateVersion;
+	private final String query;
+	private final int datasourceId;
+
+	private final int modelId;
+	private final int ttlSeconds;
+	private final long generation;
+
+	/**
+	 *
+	 * @param templateId
+	 * @param templateVersion
+	 * @param query normalized report query
+	 * @param datasourceId
+	 * @param modelId
+	 * @param ttlSeconds time to live of the cached report, 0 if report should not be cached
+	 * @param generation cache invalidation generation at the time the key is created
+	 */
+	public ReportResultCacheKey(int templateId, long templateVersion, String query, int datasourceId,
+								int modelId, int ttlSeconds, long generation) {
+		this.templateId = templateId;
+		this.templateVersion = templateVersion;
+		this.query = query;
+		this.datasourceId = datasourceId;
+		this.modelId = modelId;
+		this.ttlSeconds = ttlSeconds;
+		this.generation = generation;
+	}
+
+	public int getTemplateId() {
+		return templateId;
+	}
+	public long getTemplateVersion() {
+		return templateVersion;
+	}
+	public String getQuery() {
+		return query;
+	}
+	public int getDatasourceId() {
+		return datasourceId;
+	}
+	public int getModelId() {
+		return modelId;
+	}
+	public int getTtlSeconds() {
+		return ttlSeconds;
+	}
+	public long getGeneration() {
+		return generation;
+	}
+	/**
+	 *
+	 * @return false if the template opt out of result caching
+	 */
+	public boolean isCacheable() {
+		return ttlSeconds > 0;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public boolean equals(Object ref) {
+		if(this==ref){
+			return true;
+		}
+		if(!(ref instanceof ReportResultCacheKey)){
+			return false;
+		}
+
+		ReportResultCacheKey testRef = (ReportResultCacheKey)ref;
+
+		return new EqualsBuilder()
+					.append(templateId, testRef.templateId)
+					.append(templateVersion, testRef.templateVersion)
+					.append(datasourceId, testRef.datasourceId)
+					.append(query, testRef.query)
+					.isEquals();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int hashCode() {
+		return new HashCodeBuilder()
+					.append(templateId)
+					.append(templateVersion)
+					.append(datasourceId)
+					.append(query)
+					.toHashCode();
+	}
+
+	@Override
+	public String toString() {
+		return "ReportResultCacheKey [templateId=" + templateId + ", templateVersion=" + templateVersion
+				+ ", datasourceId=" + datasourceId + ", modelId=" + modelId + "]";
+	}
+}
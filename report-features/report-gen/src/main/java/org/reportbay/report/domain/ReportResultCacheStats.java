@@ -0,0 +1,141 @@
+package org.reportbay.report.domain;
+
+import java.io.Serializable;
+
+/**
+ * point in time statistics of the generated report result cache
+ */
+public class ReportResultCacheStats implements Serializable{
+
+	/**
+	 *
+	 */
+	private static final long serialVersionUID = 1L;
+
+	private int size;
+	private int maxEntries;
+	private int defaultTtlSeconds;
+	private long hitCount;
+	private long missCount;
+	private long evictionCount;
+	private long invalidationCount;
+	private int snapShotSize;
+	private int maxSnapShotEntries;
+	private long snapShotHitCount;
+	private long snapShotMissCount;
+	private long snapShotEvictionCount;
+
+	public ReportResultCacheStats() {
+		// Default Constructor.
+	}
+
+	public int getSize() {
+		return size;
+	}
+	public void setSize(int size) {
+		this.size = size;
+	}
+	public int getMaxEntries() {
+		return maxEntries;
+	}
+	public void setMaxEntries(int maxEntries) {
+		this.maxEntries = maxEntries;
+	}
+	public int getDefaultTtlSeconds() {
+		return defaultTtlSeconds;
+	}
+	public void setDefaultTtlSeconds(int defaultTtlSeconds) {
+		this.defaultTtlSeconds = defaultTtlSeconds;
+	}
+	public long getHitCount() {
+		return hitCount;
+	}
+	public void setHitCount(long hitCount) {
+		this.hitCount = hitCount;
+	}
+	public long getMissCount() {
+		return missCount;
+	}
+	public void setMissCount(long missCount) {
+		this.missCount = missCount;
+	}
+	/**
+	 *
+	 * @return number of entries removed due to expiry or size limit
+	 */
+	public long getEvictionCount() {
+		return evictionCount;
+	}
+	public void setEvictionCount(long evictionCount) {
+		this.evictionCount = evictionCount;
+	}
+	/**
+	 *
+	 * @return number of entries removed due to template, model or datasource changes
+	 */
+	public long getInvalidationCount() {
+		return invalidationCount;
+	}
+	public void setInvalidationCount(long invalidationCount) {
+		this.invalidationCount = invalidationCount;
+	}
+	/**
+	 *
+	 * @return ratio of lookup served from cache, 0 if no lookup yet
+	 */
+	public double getHitRatio() {
+		long lookupCount = hitCount + missCount;
+		return lookupCount==0? 0 : (double)hitCount / lookupCount;
+	}
+	public int getSnapShotSize() {
+		return snapShotSize;
+	}
+	public void setSnapShotSize(int snapShotSize) {
+		this.snapShotSize = snapShotSize;
+	}
+	public int getMaxSnapShotEntries() {
+		return maxSnapShotEntries;
+	}
+	public void setMaxSnapShotEntries(int maxSnapShotEntries) {
+		this.maxSnapShotEntries = maxSnapShotEntries;
+	}
+	public long getSnapShotHitCount() {
+		return snapShotHitCount;
+	}
+	public void setSnapShotHitCount(long snapShotHitCount) {
+		this.snapShotHitCount = snapShotHitCount;
+	}
+	public long getSnapShotMissCount() {
+		return snapShotMissCount;
+	}
+	public void setSnapShotMissCount(long snapShotMissCount) {
+		this.snapShotMissCount = snapShotMissCount;
+	}
+	/**
+	 *
+	 * @return number of decoded snapshots removed due to size limit
+	 */
+	public long getSnapShotEvictionCount() {
+		return snapShotEvictionCount;
+	}
+	public void setSnapShotEvictionCount(long snapShotEvictionCount) {
+		this.snapShotEvictionCount = snapShotEvictionCount;
+	}
+	/**
+	 *
+	 * @return ratio of snapshot lookup served from cache, 0 if no lookup yet
+	 */
+	public double getSnapShotHitRatio() {
+		long lookupCount = snapShotHitCount + snapShotMissCount;
+		return lookupCount==0? 0 : (double)snapShotHitCount / lookupCount;
+	}
+
+	@Override
+	public String toString() {
+		return "ReportResultCacheStats [size=" + size + ", maxEntries=" + maxEntries
+				+ ", hitCount=" + hitCount + ", missCount=" + missCount
+				+ ", evictionCount=" + evictionCount + ", invalidationCount=" + invalidationCount
+				+ ", snapShotSize=" + snapShotSize + ", snapShotHitCount=" + snapShotHitCount
+				+ ", snapShotMissCount=" + snapShotMissCount + ", snapShotEvictionCount=" + snapShotEvictionCount + "]";
+	}
+}
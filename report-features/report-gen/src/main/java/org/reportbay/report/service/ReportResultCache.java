@@ -0,0 +1,84 @@
+package org.reportbay.report.service;
+
+import javax.ejb.Local;
+
+import org.reportbay.report.domain.BaseReport;
+import org.reportbay.report.domain.ReportResultCacheKey;
+import org.reportbay.report.domain.ReportResultCacheStats;
+import org.reportbay.reporttemplate.domain.BaseReportTemplate;
+import org.reportbay.reporttemplate.domain.ReportQuery;
+
+/**
+ * bounded cache of generated report of persisted template.
+ * Entries expire after the template time to live, least recently used entries are evicted
+ * when the cache is full, and are invalidated when the template, model or datasource is changed.
+ * Cached report is shared among callers and must not be modified
+ */
+@Local
+public interface ReportResultCache {
+	/**
+	 * create the lookup key of the report generated by the template with the report query
+	 * @param template
+	 * @param reportQuery
+	 * @return
+	 */
+	ReportResultCacheKey createKey(BaseReportTemplate template, ReportQuery reportQuery);
+
+	/**
+	 *
+	 * @param key
+	 * @return null if not cached or expired
+	 */
+	BaseReport get(ReportResultCacheKey key);
+
+	/**
+	 * cache the generated report. Report is discarded if the cache was invalidated after the key is created
+	 * @param key
+	 * @param report
+	 */
+	void put(ReportResultCacheKey key, BaseReport report);
+
+	/**
+	 *
+	 * @param snapShotId
+	 * @return decoded report of the snapshot, null if not cached
+	 */
+	BaseReport getSnapShot(int snapShotId);
+
+	/**
+	 * cache the decoded report of the snapshot, so that paging through it does not decode it again.
+	 * Snapshot is immutable, entry is only evicted when the cache is full
+	 * @param snapShotId
+	 * @param report
+	 */
+	void putSnapShot(int snapShotId, BaseReport report);
+
+	/**
+	 *
+	 * @param templateId
+	 */
+	void invalidateTemplate(int templateId);
+
+	/**
+	 *
+	 * @param modelId
+	 */
+	void invalidateModel(int modelId);
+
+	/**
+	 *
+	 * @param datasourceId
+	 */
+	void invalidateDatasource(int datasourceId);
+
+	/**
+	 * remove all cached report
+	 */
+	void clear();
+
+	/**
+	 *
+	 * @return
+	 */
+	ReportResultCacheStats getStatistics();
+}
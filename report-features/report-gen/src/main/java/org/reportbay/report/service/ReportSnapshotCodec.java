@@ -0,0 +1,61 @@
+package org.reportbay.report.service;
+
+import java.nio.ByteBuffer;
+
+import javax.ejb.Local;
+
+import org.reportbay.report.domain.BaseReport;
+import org.reportbay.report.service.exception.ReportSnapshotCodecException;
+
+/**
+ * versioned binary encoding of generated report for snapshot storage.
+ * Labels are dictionary encoded, numeric values are written as primitive blocks
+ * and the body is optionally compressed. Snapshot stored with Java serialization
+ * by earlier release remains readable. A snapshot may also be encoded as delta of
+ * the previous report of the same template, it is decoded on top of that report
+ */
+@Local
+public interface ReportSnapshotCodec {
+	/**
+	 * 
+	 * @param report
+	 * @return encoded snapshot
+	 * @throws ReportSnapshotCodecException if the report type is not supported
+	 */
+	byte[] encode(BaseReport report) throws ReportSnapshotCodecException;
+
+	/**
+	 * encode only what is changed since the base report: changed series points or categories,
+	 * added and removed crosstab rows and changed cells
+	 * @param base report the delta is applied to on decoding
+	 * @param report
+	 * @return encoded delta, null if the report can not be encoded against the base (e.g. different kind of report)
+	 * @throws ReportSnapshotCodecException if the report type is not supported
+	 */
+	byte[] encodeDelta(BaseReport base, BaseReport report) throws ReportSnapshotCodecException;
+
+	/**
+	 * 
+	 * @param snapshot encoded snapshot or Java serialized report
+	 * @return
+	 * @throws ReportSnapshotCodecException if the snapshot is corrupted or of unknown version
+	 */
+	BaseReport decode(byte[] snapshot) throws ReportSnapshotCodecException;
+
+	/**
+	 * decode without copying the uncompressed snapshot (e.g. memory mapped file)
+	 * @param snapshot read from its position to its limit
+	 * @return
+	 * @throws ReportSnapshotCodecException if the snapshot is corrupted or of unknown version
+	 */
+	BaseReport decode(ByteBuffer snapshot) throws ReportSnapshotCodecException;
+
+	/**
+	 * decode snapshot which may be a delta, the base is ignored if the snapshot is a full report
+	 * @param snapshot read from its position to its limit
+	 * @param base decoded report the delta is encoded against, not modified
+	 * @return
+	 * @throws ReportSnapshotCodecException if the snapshot is corrupted or is a delta of a missing or different base
+	 */
+	BaseReport decode(ByteBuffer snapshot, BaseReport base) throws ReportSnapshotCodecException;
+}
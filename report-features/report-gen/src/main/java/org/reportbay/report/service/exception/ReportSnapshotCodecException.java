@@ -0,0 +1,35 @@
+package org.reportbay.report.service.exception;
+
+import javax.ejb.ApplicationException;
+
+//roll back any transaction
+@ApplicationException(rollback=true)
+public class ReportSnapshotCodecException extends Exception{
+
+	/**
+	 * 
+	 */
+	private static final long serialVersionUID = 1L;
+	/**
+	 * 
+	 * @param message
+	 */
+	public ReportSnapshotCodecException(String message) {
+		super(message);
+	}
+	/**
+	 * 
+	 * @param cause
+	 */
+	public ReportSnapshotCodecException(Throwable cause) {
+		super(cause);
+	}
+	/**
+	 * 
+	 * @param message
+	 * @param cause
+	 */
+	public ReportSnapshotCodecException(String message, Throwable cause) {
+		super(message, cause);
+	}
+}
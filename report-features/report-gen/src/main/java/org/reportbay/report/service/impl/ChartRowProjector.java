@@ -0,0 +1,115 @@
+package org.reportbay.report.service.impl;
+
+import java.sql.SQLException;
+
+import org.apache.commons.lang3.math.NumberUtils;
+import org.reportbay.datasource.domain.ColumnMetadata;
+import org.reportbay.datasource.service.RowCursor;
+
+/**
+ * compiled projection of a streamed chart query result. Position and numeric reader of the label,
+ * value and (optional) series field is resolved once against the result metadata on the first row,
+ * each row is then read by column index without looking at the other column(s)
+ */
+class ChartRowProjector {
+
+	private static final int NOT_FOUND = -1;
+
+	private final String labelField;
+	private final String valueField;
+	private final String seriesField;
+	private final boolean exactDecimal;
+
+	private int labelColumn = NOT_FOUND;
+	private int valueColumn = NOT_FOUND;
+	private int seriesColumn = NOT_FOUND;
+
+	private NumericColumnReader labelReader = NumericColumnReader.NONE;
+	private NumericColumnReader valueReader = NumericColumnReader.NONE;
+
+	/**
+	 *
+	 * @param labelField
+	 * @param valueField
+	 * @param seriesField null if chart has no series grouping
+	 * @param exactDecimal true to keep DECIMAL / NUMERIC value as BigDecimal instead of double
+	 */
+	ChartRowProjector(String labelField, String valueField, String seriesField, boolean exactDecimal){
+		this.labelField = labelField;
+		this.valueField = valueField;
+		this.seriesField = seriesField;
+		this.exactDecimal = exactDecimal;
+	}
+
+	/**
+	 * resolve the column of the field(s) against the result metadata
+	 * @param row cursor of the first row
+	 */
+	void resolve(RowCursor row){
+		ColumnMetadata label = row.findColumn(labelField);
+		ColumnMetadata value = row.findColumn(valueField);
+		ColumnMetadata series = seriesField == null ? null : row.findColumn(seriesField);
+
+		if(label != null){
+			labelColumn = label.getOrder();
+			labelReader = NumericColumnReader.of(label, false);
+		}
+		if(value != null){
+			valueColumn = value.getOrder();
+			valueReader = NumericColumnReader.of(value, exactDecimal);
+		}
+		if(series != null){
+			seriesColumn = series.getOrder();
+		}
+	}
+
+	/**
+	 *
+	 * @param withSeries
+	 * @return true if all required field(s) present in the result
+	 */
+	boolean isResolved(boolean withSeries){
+		return labelColumn != NOT_FOUND && valueColumn != NOT_FOUND && (!withSeries || seriesColumn != NOT_FOUND);
+	}
+
+	/**
+	 *
+	 * @param row
+	 * @return label as returned by the driver
+	 * @throws SQLException
+	 */
+	String getLabel(RowCursor row) throws SQLException{
+		return row.getString(labelColumn);
+	}
+
+	/**
+	 *
+	 * @param row
+	 * @return null if value is null or not numeric
+	 * @throws SQLException
+	 */
+	Number getValue(RowCursor row) throws SQLException{
+		return valueReader.read(row, valueColumn);
+	}
+
+	String getSeries(RowCursor row) throws SQLException{
+		return row.getString(seriesColumn);
+	}
+
+	/**
+	 *
+	 * @return true if label column is numeric
+	 */
+	boolean isLabelNumeric(){
+		return labelReader.isNumeric();
+	}
+
+	/**
+	 *
+	 * @param label label read by {@link #getLabel(RowCursor)}
+	 * @return numeric label, NaN if label is null or not numeric
+	 */
+	double getLabelNumber(String label){
+		return label == null ? Double.NaN : NumberUtils.toDouble(label, Double.NaN);
+	}
+}
@@ -0,0 +1,468 @@
+package org.reportbay.report.service.impl;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.reportbay.datasource.domain.ColumnMetadata;
+import org.reportbay.datasource.service.RowCursor;
+import org.reportbay.report.domain.CrossTabHeader;
+import org.reportbay.report.domain.CrossTabMatrix;
+import org.reportbay.report.service.exception.ReportGenerationServiceException;
+import org.reportbay.reporttemplate.domain.CrossTabFieldType;
+import org.reportbay.reporttemplate.domain.CrossTabTemplateDetail;
+import org.reportbay.reporttemplate.domain.GroupOrSum;
+import org.reportbay.reporttemplate.domain.SqlFunction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * pivot of a streamed crosstab query result into row / column headers and measure cells.
+ * Each result row is hashed to its row group and column group as it arrives, measures are
+ * accumulated into primitive arrays of the cell(s) touched (including subtotal and grand total cells),
+ * so that memory follows the number of distinct groups instead of the row count.
+ *
+ * Query result is already aggregated by all grouping fields, subtotal combines the group partials:
+ * SUM and COUNT add up, MIN / MAX / FIRST / LAST pick, AVG divides the sum by the count of source rows
+ * (selected along the sum as {@link CrossTabTemplateDetail#AVG_COUNT_ALIAS_SUFFIX})
+ */
+class CrossTabPivot {
+	private static final Logger LOG = LoggerFactory.getLogger(CrossTabPivot.class);
+
+	private static final int NOT_FOUND = -1;
+	private static final int NO_PARENT = -1;
+	private static final int ROOT = 0;
+
+	private final List<CrossTabTemplateDetail> templateDetails;
+	private final int maxCells;
+
+	private final List<Integer> rowColumns = new ArrayList<Integer>();
+	private final List<Integer> columnColumns = new ArrayList<Integer>();
+	private final List<Integer> measureColumns = new ArrayList<Integer>();
+	private final List<NumericColumnReader> measureReaders = new ArrayList<NumericColumnReader>();
+	private final List<SqlFunction> measureFunctions = new ArrayList<SqlFunction>();
+	//column of source row count of AVG measure, NOT_FOUND for other measure
+	private final List<Integer> countColumns = new ArrayList<Integer>();
+
+	private Axis rowAxis;
+	private Axis columnAxis;
+
+	//cell of (row group, column group) to its slot
+	private final Map<Long, Integer> cellSlots = new HashMap<Long, Integer>();
+	private double[] values = new double[0];
+	//number of source rows accumulated per slot, used for AVG and to tell empty cell
+	private long[] counts = new long[0];
+
+	private int sourceRowCount;
+	private boolean limitExceeded;
+
+	private final CrossTabMatrix matrix = new CrossTabMatrix();
+
+	/**
+	 *
+	 * @param templateDetails sorted template details, grouping field(s) first
+	 * @param maxCells limit of cells (including totals) of the pivoted result
+	 */
+	CrossTabPivot(List<CrossTabTemplateDetail> templateDetails, int maxCells){
+		this.templateDetails = templateDetails;
+		this.maxCells = maxCells;
+	}
+
+	/**
+	 * resolve the column of each template field against the result metadata, by label
+	 * @param row cursor of the first row
+	 */
+	void resolve(RowCursor row){
+		List<Boolean> numericRows = new ArrayList<Boolean>();
+		List<Boolean> numericColumns = new ArrayList<Boolean>();
+
+		for(int i = 0; i < templateDetails.size(); i++){
+			CrossTabTemplateDetail detail = templateDetails.get(i);
+			ColumnMetadata column = row.findColumn(detail.getModelAttributeName());
+
+			if(column == null){
+				LOG.warn("Unable to find column of crosstab field {}", detail.getModelAttributeName());
+				continue;
+			}
+
+			String label = StringUtils.defaultIfBlank(detail.getAttributeDisplayName(), detail.getModelAttributeName());
+			boolean numeric = NumericColumnReader.of(column, false).isNumeric();
+
+			if(detail.getGroupOrAggregate() == GroupOrSum.SUM){
+				SqlFunction function = detail.getSqlFunction()==null? SqlFunction.SUM : detail.getSqlFunction();
+				ColumnMetadata countColumn = function == SqlFunction.AVG?
+						row.findColumn(detail.getModelAttributeName() + CrossTabTemplateDetail.AVG_COUNT_ALIAS_SUFFIX) : null;
+
+				if(function == SqlFunction.AVG && countColumn == null){
+					LOG.warn("Row count of AVG field {} not found, subtotal is the average of group averages", detail.getModelAttributeName());
+				}
+
+				measureColumns.add(column.getOrder());
+				measureReaders.add(NumericColumnReader.of(column, false));
+				measureFunctions.add(function);
+				countColumns.add(countColumn==null? NOT_FOUND : countColumn.getOrder());
+				matrix.getMeasureFields().add(label);
+			}
+			else if(detail.getFieldType() == CrossTabFieldType.COLUMN){
+				columnColumns.add(column.getOrder());
+				numericColumns.add(numeric);
+				matrix.getColumnFields().add(label);
+			}
+			else{
+				rowColumns.add(column.getOrder());
+				numericRows.add(numeric);
+				matrix.getRowFields().add(label);
+			}
+		}
+
+		rowAxis = new Axis(rowColumns, numericRows);
+		columnAxis = new Axis(columnColumns, numericColumns);
+	}
+
+	/**
+	 * accumulate the measures of the row into its leaf cell and every subtotal / grand total cell above it
+	 * @param row
+	 * @return false if the accumulated cells exceed the cell limit, remaining rows need not to be read
+	 * @throws SQLException
+	 */
+	boolean add(RowCursor row) throws SQLException{
+		sourceRowCount++;
+
+		int rowLeaf = rowAxis.resolve(row);
+		int columnLeaf = columnAxis.resolve(row);
+		int measureCount = measureColumns.size();
+
+		for(int measure = 0; measure < measureCount; measure++){
+			double value = measureReaders.get(measure).readDouble(row, measureColumns.get(measure));
+
+			if(Double.isNaN(value)){
+				continue;
+			}
+
+			SqlFunction function = measureFunctions.get(measure);
+			int countColumn = countColumns.get(measure);
+			long weight = 1;
+
+			if(countColumn != NOT_FOUND){
+				weight = row.getLong(countColumn);
+
+				if(weight <= 0){
+					continue;
+				}
+			}
+
+			for(int rowGroup = rowLeaf; rowGroup != NO_PARENT; rowGroup = rowAxis.getParent(rowGroup)){
+				for(int columnGroup = columnLeaf; columnGroup != NO_PARENT; columnGroup = columnAxis.getParent(columnGroup)){
+					int slot = slotOf(rowGroup, columnGroup);
+					
+					if(slot == NOT_FOUND){
+						limitExceeded = true;
+						return false;
+					}
+					accumulate(slot * measureCount + measure, function, value, weight);
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 *
+	 * @return
+	 * @throws ReportGenerationServiceException if the pivoted result exceeds the cell limit
+	 */
+	CrossTabMatrix pivot() throws ReportGenerationServiceException{
+		int measureCount = measureColumns.size();
+
+		if(limitExceeded){
+			throw new ReportGenerationServiceException("Crosstab of more than "+rowAxis.size()+" row group(s) by "+columnAxis.size()
+														+" column group(s) exceeds limit of "+maxCells+" cells");
+		}
+
+		//1. order the headers, subtotal follows its members and grand total comes last
+		List<Integer> rowOrder = rowAxis.order(matrix.getRowHeaders());
+		List<Integer> columnOrder = columnAxis.order(matrix.getColumnHeaders());
+
+		int cellColumns = columnOrder.size() * measureCount;
+
+		if((long) rowOrder.size() * Math.max(1, cellColumns) > maxCells){
+			throw new ReportGenerationServiceException("Crosstab of "+rowOrder.size()+" row group(s) by "+columnOrder.size()
+														+" column group(s) exceeds limit of "+maxCells+" cells");
+		}
+
+		//2. lay out the cells in header order
+		double[] cells = new double[rowOrder.size() * cellColumns];
+		BitSet filled = new BitSet(cells.length);
+
+		for(int i = 0; i < rowOrder.size(); i++){
+			for(int j = 0; j < columnOrder.size(); j++){
+				Integer slot = cellSlots.get(cellKey(rowOrder.get(i), columnOrder.get(j)));
+
+				if(slot == null){
+					continue;
+				}
+
+				for(int measure = 0; measure < measureCount; measure++){
+					int idx = slot * measureCount + measure;
+
+					if(counts[idx] > 0){
+						int cell = i * cellColumns + j * measureCount + measure;
+
+						cells[cell] = measureFunctions.get(measure) == SqlFunction.AVG? values[idx] / counts[idx] : values[idx];
+						filled.set(cell);
+					}
+				}
+			}
+		}
+
+		matrix.setCells(cells, filled);
+		matrix.setSourceRowCount(sourceRowCount);
+		matrix.setTotalRowCount(rowOrder.size());
+
+		LOG.debug("Pivoted {} row(s) into {} x {} header(s)", sourceRowCount, rowOrder.size(), columnOrder.size());
+
+		return matrix;
+	}
+
+	/**
+	 *
+	 * @param rowGroup
+	 * @param columnGroup
+	 * @return slot of the cell, allocated on first use. NOT_FOUND if the number of cells exceed the cell limit
+	 */
+	private int slotOf(int rowGroup, int columnGroup){
+		Long key = cellKey(rowGroup, columnGroup);
+		Integer slot = cellSlots.get(key);
+
+		if(slot == null){
+			int measureCount = measureColumns.size();
+
+			slot = cellSlots.size();
+
+			if((long) (slot + 1) * measureCount > maxCells){
+				return NOT_FOUND;
+			}
+			if((slot + 1) * measureCount > values.length){
+				int capacity = Math.max((slot + 1) * measureCount, values.length << 1);
+
+				values = Arrays.copyOf(values, capacity);
+				counts = Arrays.copyOf(counts, capacity);
+			}
+			cellSlots.put(key, slot);
+		}
+
+		return slot;
+	}
+
+	private static Long cellKey(int rowGroup, int columnGroup){
+		return ((long) rowGroup << 32) | columnGroup;
+	}
+
+	/**
+	 *
+	 * @param idx
+	 * @param function
+	 * @param value
+	 * @param weight number of source rows of the value
+	 */
+	private void accumulate(int idx, SqlFunction function, double value, long weight){
+		switch(function){
+			case MIN:
+				values[idx] = counts[idx] == 0? value : Math.min(values[idx], value);
+				break;
+			case MAX:
+				values[idx] = counts[idx] == 0? value : Math.max(values[idx], value);
+				break;
+			case FIRST:
+				if(counts[idx] == 0){
+					values[idx] = value;
+				}
+				break;
+			case LAST:
+				values[idx] = value;
+				break;
+			default:
+				//SUM and COUNT add up group partials, AVG sum up the group sums to be divided by the count
+				values[idx] += value;
+				break;
+		}
+		counts[idx] += weight;
+	}
+
+	/**
+	 *
+	 * grouping hierarchy of row or column, group is identified by index.
+	 * Root group (grand total) is at index 0, group of level n is nested under group of level n-1
+	 *
+	 */
+	private static class Axis {
+		private final List<Integer> columns;
+		private final List<Boolean> numeric;
+		//dictionary of distinct values per level
+		private final List<Map<String, Integer>> valueIds = new ArrayList<Map<String, Integer>>();
+		private final List<List<String>> values = new ArrayList<List<String>>();
+		//child group by (parent group, value id)
+		private final Map<Long, Integer> childLookup = new HashMap<Long, Integer>();
+
+		private final List<Integer> parents = new ArrayList<Integer>();
+		private final List<Integer> groupValues = new ArrayList<Integer>();
+		private final List<Integer> levels = new ArrayList<Integer>();
+		private final List<List<Integer>> children = new ArrayList<List<Integer>>();
+
+		/**
+		 *
+		 * @param columns column of each level
+		 * @param numeric whether column of each level is numeric
+		 */
+		Axis(List<Integer> columns, List<Boolean> numeric){
+			this.columns = columns;
+			this.numeric = numeric;
+
+			for(int level = 0; level < columns.size(); level++){
+				valueIds.add(new HashMap<String, Integer>());
+				values.add(new ArrayList<String>());
+			}
+
+			addGroup(NO_PARENT, NOT_FOUND, 0);
+		}
+
+		/**
+		 *
+		 * @param row
+		 * @return leaf group of the row
+		 * @throws SQLException
+		 */
+		int resolve(RowCursor row) throws SQLException{
+			int group = ROOT;
+
+			for(int level = 0; level < columns.size(); level++){
+				int valueId = getValueId(level, row.getString(columns.get(level)));
+				Long key = ((long) group << 32) | valueId;
+
+				Integer child = childLookup.get(key);
+
+				if(child == null){
+					child = addGroup(group, valueId, level + 1);
+					childLookup.put(key, child);
+				}
+				group = child;
+			}
+
+			return group;
+		}
+
+		int size(){
+			return parents.size();
+		}
+
+		int getParent(int group){
+			return parents.get(group);
+		}
+
+		/**
+		 *
+		 * @param headers headers to be filled in display order
+		 * @return group index in display order
+		 */
+		List<Integer> order(List<CrossTabHeader> headers){
+			List<Integer> order = new ArrayList<Integer>(size());
+
+			emit(ROOT, order, headers);
+
+			return order;
+		}
+
+		/**
+		 *
+		 * @param group
+		 * @param order
+		 * @param headers
+		 */
+		private void emit(int group, List<Integer> order, List<CrossTabHeader> headers){
+			int level = levels.get(group);
+
+			if(level == columns.size()){
+				order.add(group);
+				headers.add(new CrossTabHeader(getPath(group), false));
+				return;
+			}
+
+			List<Integer> members = children.get(group);
+			Collections.sort(members, createComparator(level));
+
+			for(Integer member: members){
+				emit(member, order, headers);
+			}
+
+			order.add(group);
+			headers.add(new CrossTabHeader(getPath(group), true));
+		}
+
+		/**
+		 *
+		 * @param level level of the parent group
+		 * @return
+		 */
+		private Comparator<Integer> createComparator(int level){
+			List<String> levelValues = values.get(level);
+
+			Comparator<String> valueComparator = numeric.get(level)?
+				Comparator.nullsFirst(Comparator.comparingDouble(NumberUtils::toDouble)) :
+				Comparator.nullsFirst(Comparator.<String>naturalOrder());
+
+			return (g1, g2) -> valueComparator.compare(levelValues.get(groupValues.get(g1)), levelValues.get(groupValues.get(g2)));
+		}
+
+		/**
+		 *
+		 * @param group
+		 * @return grouping values from top level down
+		 */
+		private List<String> getPath(int group){
+			List<String> path = new ArrayList<String>();
+
+			for(int g = group; g != ROOT; g = parents.get(g)){
+				path.add(values.get(levels.get(g) - 1).get(groupValues.get(g)));
+			}
+			Collections.reverse(path);
+
+			return path;
+		}
+
+		private int getValueId(int level, String value){
+			Map<String, Integer> dictionary = valueIds.get(level);
+			Integer valueId = dictionary.get(value);
+
+			if(valueId == null){
+				valueId = dictionary.size();
+				dictionary.put(value, valueId);
+				values.get(level).add(value);
+			}
+
+			return valueId;
+		}
+
+		private int addGroup(int parent, int valueId, int level){
+			int group = parents.size();
+
+			parents.add(parent);
+			groupValues.add(valueId);
+			levels.add(level);
+			children.add(new ArrayList<Integer>());
+
+			if(parent != NO_PARENT){
+				children.get(parent).add(group);
+			}
+
+			return group;
+		}
+	}
+}
@@ -0,0 +1,131 @@
+package org.reportbay.report.service.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import net.sf.jsqlparser.schema.Column;
+import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.statement.select.OrderByElement;
+import net.sf.jsqlparser.statement.select.PlainSelect;
+import net.sf.jsqlparser.statement.select.Select;
+import net.sf.jsqlparser.statement.select.SelectExpressionItem;
+import net.sf.jsqlparser.statement.select.SelectItem;
+
+import org.reportbay.report.service.exception.ReportGenerationServiceException;
+
+/**
+ * queries of a downsampled cartesian chart. Points are streamed ordered by series then label, so that
+ * each series is fed to its downsampler in one pass, and the number of points per series is counted
+ * up front by the database
+ */
+class DownsampleQuery {
+
+	private static final String SOURCE_ALIAS = "downsample_source";
+	private static final String QUOTE_CHARACTERS = "\"`[";
+
+	private final String orderedQuery;
+	private final String countQuery;
+
+	/**
+	 *
+	 * @param query compiled chart query, label / value / series field selected under their field name as alias
+	 * @param labelField
+	 * @param valueField
+	 * @param seriesField
+	 * @throws ReportGenerationServiceException if the query is not a plain select of the fields
+	 */
+	DownsampleQuery(String query, String labelField, String valueField, String seriesField) throws ReportGenerationServiceException{
+		PlainSelect ps = parse(query);
+
+		String labelAlias = findAlias(ps, labelField);
+		String valueAlias = findAlias(ps, valueField);
+		String seriesAlias = findAlias(ps, seriesField);
+
+		//1. ordering of the model query is replaced
+		ps.setOrderByElements(null);
+
+		countQuery = "SELECT " + seriesAlias + ", COUNT(*) FROM (" + ps + ") " + SOURCE_ALIAS
+					 + " WHERE " + labelAlias + " IS NOT NULL AND " + valueAlias + " IS NOT NULL GROUP BY " + seriesAlias;
+
+		//2. series then label order
+		List<OrderByElement> orderBy = new ArrayList<OrderByElement>();
+		orderBy.add(createOrderBy(seriesAlias));
+		orderBy.add(createOrderBy(labelAlias));
+		ps.setOrderByElements(orderBy);
+
+		orderedQuery = ps.toString();
+	}
+
+	/**
+	 *
+	 * @return chart query ordered by series then label
+	 */
+	String getOrderedQuery() {
+		return orderedQuery;
+	}
+
+	/**
+	 *
+	 * @return query of series name and its number of points, one row per series
+	 */
+	String getCountQuery() {
+		return countQuery;
+	}
+
+	private static PlainSelect parse(String query) throws ReportGenerationServiceException{
+		try {
+			Statement statement = CCJSqlParserUtil.parse(query);
+
+			if(statement instanceof Select && ((Select) statement).getSelectBody() instanceof PlainSelect){
+				return (PlainSelect) ((Select) statement).getSelectBody();
+			}
+		} catch (JSQLParserException e) {
+			throw new ReportGenerationServiceException("Unable to parse chart query " + query, e);
+		}
+		throw new ReportGenerationServiceException("Unable to downsample non plain select chart query " + query);
+	}
+
+	/**
+	 *
+	 * @param ps
+	 * @param field
+	 * @return alias of the select item of the field, as quoted in the query
+	 * @throws ReportGenerationServiceException
+	 */
+	private static String findAlias(PlainSelect ps, String field) throws ReportGenerationServiceException{
+		for(SelectItem si: ps.getSelectItems()){
+			if(si instanceof SelectExpressionItem && ((SelectExpressionItem) si).getAlias() != null){
+				String alias = ((SelectExpressionItem) si).getAlias().getName();
+
+				if(unquote(alias).equalsIgnoreCase(field)){
+					return alias;
+				}
+			}
+		}
+		throw new ReportGenerationServiceException("Unable to find chart field " + field + " in query");
+	}
+
+	/**
+	 *
+	 * @param alias
+	 * @return alias without the JDBC driver specific quoted identifier character
+	 */
+	private static String unquote(String alias){
+		if(alias.length() > 1 && QUOTE_CHARACTERS.indexOf(alias.charAt(0)) >= 0){
+			return alias.substring(1, alias.length() - 1);
+		}
+		return alias;
+	}
+
+	private static OrderByElement createOrderBy(String alias){
+		Column column = new Column();
+		column.setColumnName(alias);
+
+		OrderByElement element = new OrderByElement();
+		element.setExpression(column);
+
+		return element;
+	}
+}
@@ -0,0 +1,143 @@
+package org.reportbay.report.service.impl;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+
+import org.reportbay.common.domain.SqlTypeEnum;
+import org.reportbay.datasource.domain.ColumnMetadata;
+import org.reportbay.datasource.service.RowCursor;
+
+/**
+ * reading of a numeric column from the streamed row, resolved once per column from its sql type.
+ * Integral and floating point value is read as primitive long / double, BIGINT and exact decimal
+ * go through BigDecimal as they may not fit in a long / double
+ */
+enum NumericColumnReader {
+
+	INTEGRAL {
+		@Override
+		Number read(RowCursor row, int columnIdx) throws SQLException {
+			long value = row.getLong(columnIdx);
+
+			return row.wasNull()? null : Long.valueOf(value);
+		}
+
+		@Override
+		double readDouble(RowCursor row, int columnIdx) throws SQLException {
+			long value = row.getLong(columnIdx);
+
+			return row.wasNull()? Double.NaN : value;
+		}
+	},
+
+	/**
+	 * BIGINT may be unsigned (e.g. MySQL BIGINT UNSIGNED) and exceed the range of long
+	 */
+	BIG_INTEGRAL {
+		@Override
+		Number read(RowCursor row, int columnIdx) throws SQLException {
+			BigDecimal value = row.getBigDecimal(columnIdx);
+
+			if(value == null){
+				return null;
+			}
+			return value.unscaledValue().bitLength() < Long.SIZE && value.scale() == 0?
+					Long.valueOf(value.longValue()) : value.toBigInteger();
+		}
+	},
+
+	FRACTIONAL {
+		@Override
+		Number read(RowCursor row, int columnIdx) throws SQLException {
+			double value = row.getDouble(columnIdx);
+
+			return row.wasNull()? null : Double.valueOf(value);
+		}
+
+		@Override
+		double readDouble(RowCursor row, int columnIdx) throws SQLException {
+			double value = row.getDouble(columnIdx);
+
+			return row.wasNull()? Double.NaN : value;
+		}
+	},
+
+	EXACT_DECIMAL {
+		@Override
+		Number read(RowCursor row, int columnIdx) throws SQLException {
+			return row.getBigDecimal(columnIdx);
+		}
+	},
+
+	/**
+	 * column is not numeric
+	 */
+	NONE {
+		@Override
+		Number read(RowCursor row, int columnIdx) throws SQLException {
+			return null;
+		}
+	};
+
+	/**
+	 *
+	 * @param column
+	 * @param exactDecimal true to keep DECIMAL / NUMERIC value as BigDecimal instead of double
+	 * @return
+	 */
+	static NumericColumnReader of(ColumnMetadata column, boolean exactDecimal){
+		SqlTypeEnum sqlType = SqlTypeEnum.fromString(column.getTypeName());
+
+		if(sqlType!=null){
+			switch(sqlType){
+				case BIGINT:
+					return BIG_INTEGRAL;
+				case INTEGER:
+				case SMALLINT:
+				case TINYINT:
+					return INTEGRAL;
+				case DECIMAL:
+				case NUMERIC:
+					return exactDecimal? EXACT_DECIMAL : FRACTIONAL;
+				case DOUBLE:
+				case FLOAT:
+				case REAL:
+					return FRACTIONAL;
+				default:
+					break;
+			}
+		}
+
+		return NONE;
+	}
+
+	/**
+	 *
+	 * @return true if column is numeric
+	 */
+	boolean isNumeric(){
+		return this != NONE;
+	}
+
+	/**
+	 *
+	 * @param row
+	 * @param columnIdx column order as in {@link ColumnMetadata#getOrder()}
+	 * @return null if value is null or column is not numeric
+	 * @throws SQLException
+	 */
+	abstract Number read(RowCursor row, int columnIdx) throws SQLException;
+
+	/**
+	 *
+	 * @param row
+	 * @param columnIdx column order as in {@link ColumnMetadata#getOrder()}
+	 * @return NaN if value is null or column is not numeric
+	 * @throws SQLException
+	 */
+	double readDouble(RowCursor row, int columnIdx) throws SQLException {
+		Number value = read(row, columnIdx);
+
+		return value == null? Double.NaN : value.doubleValue();
+	}
+}
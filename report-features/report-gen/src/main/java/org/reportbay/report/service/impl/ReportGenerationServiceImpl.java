@@ -1,7 +1,5 @@
 package org.reportbay.report.service.impl;
 
-import java.math.BigDecimal;
-import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -15,11 +13,11 @@ import javax.ejb.TransactionManagement;
 import javax.ejb.TransactionManagementType;
 import javax.inject.Inject;
 
-import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
 import org.reportbay.common.dao.exception.BaseDAOException;
-import org.reportbay.common.domain.SqlTypeEnum;
 import org.reportbay.common.util.CommonUtils;
+import org.reportbay.common.util.SystemProperties;
 import org.reportbay.datasource.domain.ColumnMetadata;
 import org.reportbay.datasource.domain.Datasource;
 import org.reportbay.datasource.service.JdbcClient;
@@ -46,6 +44,7 @@ import org.reportbay.reporttemplate.domain.CartesianChartTemplate;
 import org.reportbay.reporttemplate.domain.ColumnChartTemplate;
 import org.reportbay.reporttemplate.domain.CrossTabTemplate;
 import org.reportbay.reporttemplate.domain.CrossTabTemplateDetail;
+import org.reportbay.reporttemplate.domain.DownsampleAlgorithm;
 import org.reportbay.reporttemplate.domain.LineChartTemplate;
 import org.reportbay.reporttemplate.domain.PieChartTemplate;
 import org.reportbay.reporttemplate.domain.ReportQuery;
@@ -62,6 +61,9 @@ import org.slf4j.LoggerFactory;
 public class ReportGenerationServiceImpl implements ReportGenerationService {
 
 	private final Logger LOG = LoggerFactory.getLogger(ReportGenerationServiceImpl.class);
+	
+	private static final String CROSSTAB_MAX_CELLS_PROPERTY = "reportbay.report.crosstab.maxCells";
+	private static final int DEFAULT_CROSSTAB_MAX_CELLS = 1000000;
 
 	@Inject
 	private ReportTemplateDAO reportTemplateDAO;
@@ -222,33 +224,30 @@ public class ReportGenerationServiceImpl implements ReportGenerationService {
 		if (reportQuery == null) {
 			reportQuery = reportQueryDAO.find(chartTemplate.getId());
 		}
-		List<Map<ColumnMetadata, String>> resultList = jdbcClient.execute(reportQuery.getDatasource(), reportQuery.getQuery());
-
-		String modelCategoryField = chartTemplate.getModelCategoryField();
-		String modelDataField = chartTemplate.getModelDataField();
-
-		// for each result row
-		for (Map<ColumnMetadata, String> row : resultList) {
-			String categoryName = null;
-			Number categoryValue = null;
-
-			// for each field in the row
-			for (Map.Entry<ColumnMetadata, String> rowField : row.entrySet()) {
-				String fieldLabel = rowField.getKey().getLabel();
-
-				if (fieldLabel != null) {
-					if (fieldLabel.equals(modelCategoryField)) {
-						categoryName = rowField.getValue();
-					} else if (fieldLabel.equals(modelDataField)) {
-						categoryValue = convertToNumber(rowField.getKey().getTypeName(), rowField.getValue());
-					}
+		ChartRowProjector projector = new ChartRowProjector(chartTemplate.getModelCategoryField(), chartTemplate.getModelDataField(), null,
+				Boolean.TRUE.equals(chartTemplate.getExactDecimal()));
+
+		// stream each result row, only the category map is kept in memory
+		jdbcClient.execute(reportQuery.getDatasource(), reportQuery.getQuery(), row -> {
+			// resolve the column position of template fields once
+			if (row.getRowNumber() == 1) {
+				projector.resolve(row);
+
+				if (!projector.isResolved(false)) {
+					LOG.warn("category field {} or data field {} not found in query result", chartTemplate.getModelCategoryField(),
+							chartTemplate.getModelDataField());
+					return false;
 				}
 			}
 
-			if (StringUtils.isNoneBlank(categoryName) && categoryValue != null) {
+			String categoryName = projector.getLabel(row);
+			Number categoryValue = projector.getValue(row);
+
+			if (StringUtils.isNotBlank(categoryName) && categoryValue != null) {
 				categoryDataMap.put(categoryName, categoryValue);
 			}
-		}
+			return true;
+		});
 	}
 
 	/**
@@ -340,8 +339,10 @@ public class ReportGenerationServiceImpl implements ReportGenerationService {
 	 * @param chartTemplate
 	 * @throws JdbcClientException
 	 * @throws ReportQueryDAOException
+	 * @throws ReportGenerationServiceException
 	 */
-	private void populateCartesianReportSeriesResult(CartesianChartReport report, CartesianChartTemplate chartTemplate) throws JdbcClientException, ReportQueryDAOException {
+	private void populateCartesianReportSeriesResult(CartesianChartReport report, CartesianChartTemplate chartTemplate) throws JdbcClientException, ReportQueryDAOException,
+			ReportGenerationServiceException {
 
 		report.setChartDataSeries(new ArrayList<ChartSeries>());
 
@@ -352,38 +353,37 @@ public class ReportGenerationServiceImpl implements ReportGenerationService {
 			reportQuery = reportQueryDAO.find(chartTemplate.getId());
 		}
 
-		List<Map<ColumnMetadata, String>> resultList = jdbcClient.execute(reportQuery.getDatasource(), reportQuery.getQuery());
+		Map<String, ChartSeries> seriesLookupMap = prepareSeriesLookupMap(report, chartTemplate);
+
+		// numeric value is read as primitive long / double, exact decimal only when template asks for it
+		ChartRowProjector projector = new ChartRowProjector(chartTemplate.getModelDataLabelField(), chartTemplate.getModelDataValueField(),
+				chartTemplate.getModelSeriesGroupField(), Boolean.TRUE.equals(chartTemplate.getExactDecimal()));
 
-		String modelDataLabelField = chartTemplate.getModelDataLabelField();
-		String modelDataValueField = chartTemplate.getModelDataValueField();
-		String modelSeriesGroupField = chartTemplate.getModelSeriesGroupField();
+		Integer downsamplePoints = chartTemplate.getDownsamplePoints();
 
-		Map<String, ChartSeries> seriesLookupMap = prepareSeriesLookupMap(report, chartTemplate);
+		if (downsamplePoints != null && downsamplePoints > 0) {
+			populateDownsampledSeriesResult(reportQuery, chartTemplate, projector, seriesLookupMap, downsamplePoints);
+			return;
+		}
 
-		// for each result row
-		for (Map<ColumnMetadata, String> row : resultList) {
-			String seriesName = null;
-			String dataLabel = null;
-			Number dataValue = null;
-
-			// for each field in the row
-			for (Map.Entry<ColumnMetadata, String> rowField : row.entrySet()) {
-				String fieldLabel = rowField.getKey().getLabel();
-
-				if (fieldLabel != null) {
-					// if the field belongs to dataLabel
-					if (fieldLabel.equals(modelDataLabelField)) {
-						dataLabel = rowField.getValue();
-					} else if (fieldLabel.equals(modelDataValueField)) {
-						dataValue = convertToNumber(rowField.getKey().getTypeName(), rowField.getValue());
-					} else if (fieldLabel.equals(modelSeriesGroupField)) {
-						seriesName = rowField.getValue();
-					}
+		// stream each result row, only the series data is kept in memory
+		jdbcClient.execute(reportQuery.getDatasource(), reportQuery.getQuery(), row -> {
+			// resolve the column position of template fields once
+			if (row.getRowNumber() == 1) {
+				projector.resolve(row);
+
+				if (!projector.isResolved(true)) {
+					LOG.warn("label, value or series field of template {} not found in query result", chartTemplate.getTemplateName());
+					return false;
 				}
 			}
 
+			String seriesName = projector.getSeries(row);
+			String dataLabel = projector.getLabel(row);
+			Number dataValue = projector.getValue(row);
+
 			// if all are valid
-			if (StringUtils.isNoneBlank(seriesName) && StringUtils.isNoneBlank(dataLabel) && dataValue != null) {
+			if (StringUtils.isNotBlank(seriesName) && StringUtils.isNotBlank(dataLabel) && dataValue != null) {
 				// lookup the series to store the value
 				ChartSeries series = seriesLookupMap.get(seriesName);
 
@@ -391,56 +391,109 @@ public class ReportGenerationServiceImpl implements ReportGenerationService {
 					series.getSeriesData().put(dataLabel, dataValue);
 				}
 			}
-		}
+			return true;
+		});
 	}
 
 	/**
-	 * convert the value according to type to java.lang.Number
 	 * 
-	 * @param valueType
-	 * @param valueStr
-	 * @return
+	 * @param reportQuery
+	 * @param chartTemplate
+	 * @param projector
+	 * @param seriesLookupMap
+	 * @param targetPoints number of point(s) to be kept per series
+	 * @throws JdbcClientException
+	 * @throws ReportGenerationServiceException
 	 */
-	private Number convertToNumber(String valueType, String valueStr) {
-		Number convertedNumber = null;
+	private void populateDownsampledSeriesResult(ReportQuery reportQuery, CartesianChartTemplate chartTemplate, ChartRowProjector projector,
+			Map<String, ChartSeries> seriesLookupMap, int targetPoints) throws JdbcClientException, ReportGenerationServiceException {
 
-		SqlTypeEnum sqlType = SqlTypeEnum.fromString(valueType);
+		DownsampleQuery downsampleQuery = new DownsampleQuery(reportQuery.getQuery(), chartTemplate.getModelDataLabelField(),
+				chartTemplate.getModelDataValueField(), chartTemplate.getModelSeriesGroupField());
 
-		if (sqlType != null && valueStr != null) {
-			try {
-				switch (sqlType) {
-				case BIGINT:
-					convertedNumber = new BigInteger(valueStr);
-					break;
-				case DECIMAL:
-				case NUMERIC:
-					convertedNumber = new BigDecimal(valueStr);
-					break;
-				case DOUBLE:
-				case FLOAT:
-					convertedNumber = Double.valueOf(valueStr);
-					break;
-				case INTEGER:
-					convertedNumber = Integer.valueOf(valueStr);
-					break;
-				case REAL:
-					convertedNumber = Float.valueOf(valueStr);
-					break;
-				case SMALLINT:
-					convertedNumber = Short.valueOf(valueStr);
-					break;
-				case TINYINT:
-					convertedNumber = Byte.valueOf(valueStr);
-					break;
-				default:
-					break;
+		// 1. number of point(s) of each series, downsampler buckets are sized up front
+		Map<String, Integer> pointCounts = new HashMap<String, Integer>();
+
+		jdbcClient.execute(reportQuery.getDatasource(), downsampleQuery.getCountQuery(), row -> {
+			pointCounts.put(row.getString(1), (int) row.getLong(2));
+			return true;
+		});
+
+		// 2. stream the point(s) ordered by series then label, each series is fed to its downsampler in one pass
+		SeriesFeed feed = new SeriesFeed(chartTemplate.getDownsampleAlgorithm(), targetPoints);
+
+		jdbcClient.execute(reportQuery.getDatasource(), downsampleQuery.getOrderedQuery(), row -> {
+			// resolve the column position of template fields once
+			if (row.getRowNumber() == 1) {
+				projector.resolve(row);
+
+				if (!projector.isResolved(true)) {
+					LOG.warn("label, value or series field of template {} not found in query result", chartTemplate.getTemplateName());
+					return false;
+				}
+			}
+
+			String seriesName = projector.getSeries(row);
+			String dataLabel = projector.getLabel(row);
+			Number dataValue = projector.getValue(row);
+
+			// if all are valid
+			if (StringUtils.isNotBlank(seriesName) && StringUtils.isNotBlank(dataLabel) && dataValue != null) {
+				ChartSeries series = seriesLookupMap.get(seriesName);
+
+				if (series != null) {
+					if (!seriesName.equals(feed.seriesName)) {
+						Integer pointCount = pointCounts.get(seriesName);
+						feed.start(seriesName, pointCount == null ? 0 : pointCount, series.getSeriesData());
+					}
+					// numeric label keeps its spacing, otherwise points are evenly spaced
+					feed.add(dataLabel, projector.isLabelNumeric() ? projector.getLabelNumber(dataLabel) : feed.position, dataValue);
 				}
-			} catch (NumberFormatException nfe) {
-				LOG.info("{} can't be converted to Number type {}" ,valueStr, valueType, nfe);
 			}
+			return true;
+		});
+
+		feed.finish();
+	}
+
+	/**
+	 * 
+	 * downsampler of the series being streamed
+	 *
+	 */
+	private class SeriesFeed {
+		private final DownsampleAlgorithm algorithm;
+		private final int targetPoints;
+
+		private String seriesName;
+		private SeriesDownsampler downsampler;
+		private int position;
+
+		SeriesFeed(DownsampleAlgorithm algorithm, int targetPoints) {
+			this.algorithm = algorithm;
+			this.targetPoints = targetPoints;
+		}
+
+		void start(String seriesName, int pointCount, Map<String, Number> seriesData) {
+			finish();
+
+			this.seriesName = seriesName;
+			this.downsampler = SeriesDownsampler.create(algorithm, pointCount, targetPoints, seriesData);
+			this.position = 0;
+		}
+
+		void add(String label, double x, Number value) {
+			downsampler.add(label, x, value);
+			position++;
 		}
 
-		return convertedNumber;
+		void finish() {
+			if (downsampler != null) {
+				downsampler.finish();
+				LOG.debug("series {} downsampled from {} point(s)", seriesName, position);
+				downsampler = null;
+			}
+		}
 	}
 
 	/**
@@ -459,7 +512,7 @@ public class ReportGenerationServiceImpl implements ReportGenerationService {
 				// create a new entry and register
 				ChartSeries chartSeries = new ChartSeries();
 				// initialize with empty series data
-				chartSeries.setSeriesData(new HashMap<String, Number>());
+				chartSeries.setSeriesData(new LinkedHashMap<String, Number>());
 				chartSeries.setSeriesName(series.getName());
 				seriesLookupMap.put(series.getModelSeriesValue(), chartSeries);
 
@@ -474,15 +527,16 @@ public class ReportGenerationServiceImpl implements ReportGenerationService {
 	public List<String> getDataFieldValues(Datasource dataSource, String query) throws ReportGenerationServiceException {
 		List<String> dataFieldValues = new ArrayList<String>();
 		try {
-			List<Map<ColumnMetadata, String>> resultList = jdbcClient.execute(dataSource, query);
 			// for each result row
-			for (Map<ColumnMetadata, String> row : resultList) {
-				for (Map.Entry<ColumnMetadata, String> rowField : row.entrySet()) {
-					if (rowField.getValue() != null && !"null".equals(rowField.getValue())) {
-						dataFieldValues.add(rowField.getValue());
+			jdbcClient.execute(dataSource, query, row -> {
+				for (ColumnMetadata column : row.getColumns()) {
+					String value = row.getString(column.getOrder());
+					if (value != null && !"null".equals(value)) {
+						dataFieldValues.add(value);
 					}
 				}
-			}
+				return true;
+			});
 		} catch (JdbcClientException e) {
 			throw new ReportGenerationServiceException("Exception while getting data field values ", e);
 		}
@@ -539,44 +593,20 @@ public class ReportGenerationServiceImpl implements ReportGenerationService {
 			Collections.sort(templateDetails,new CrossTabDetailsComparator());
 			//Execute the query and get the result
 			LOG.info("Executing the query {} ",reportQuery.getQuery());
-			List<Map<ColumnMetadata, String>> resultList = jdbcClient.execute(reportQuery.getDatasource(), reportQuery.getQuery());
-			if (CollectionUtils.isNotEmpty(resultList)) {
-				//verify the column metadata with crosstab template name
-				Map<ColumnMetadata, String> row= resultList.get(0);
-//				List<ColumnMetadata> metaDatas = new ArrayList<ColumnMetadata>();
-				for (CrossTabTemplateDetail detail : templateDetails) {
-					boolean matchFound = false;
-					//Add individual ColumnMetadata to the list
-					for(Map.Entry<ColumnMetadata, String> map : row.entrySet()){
-						ColumnMetadata metaData = map.getKey();
-						if (detail.getModelAttributeName().equalsIgnoreCase(metaData.getLabel())) {
-							matchFound=true;
-							LOG.info("Column Label Matched {} ", metaData.getLabel());
-							CrossTabAttribute attribute = new CrossTabAttribute();
-							attribute.setAttributeDisplaySequence(detail.getAttributeDisplaySequence());
-							attribute.setFieldType(detail.getFieldType());
-							attribute.setGroupOrAggregate(detail.getGroupOrAggregate());
-							attribute.setMetaData(metaData);
-							attribute.setType(detail.getSqltype());
-							report.getAttributes().add(attribute);
-							//Break from the loop if match is found
-							break;
-						}
-					}
-					if (!matchFound) {
-						LOG.error("Unable to Find Column Label against Attribute Mapping");
-					}
-				}
-				for (Map<ColumnMetadata, String> list : resultList) {
-					//Store the resultset from query in the order which can be access. Linked HashMap maintain the insertion order
-					Map<String, String> rowSet = new LinkedHashMap<String, String>();
-					for (Map.Entry<ColumnMetadata, String> map: list.entrySet()) {
-						String columnName = map.getKey().getLabel();
-						rowSet.put(columnName, map.getValue());
-					}
-					//Add each row set value to the list and the map will maintain insertion order
-					report.getResultSet().add(rowSet);
+			//pivot on server into headers and cells with subtotals while streaming, instead of shipping every row
+			int maxCells = NumberUtils.toInt(SystemProperties.getProperty(CROSSTAB_MAX_CELLS_PROPERTY), DEFAULT_CROSSTAB_MAX_CELLS);
+			CrossTabPivot pivot = new CrossTabPivot(templateDetails, maxCells);
+			//streaming stop once the cell limit is exceeded
+			int rowCount = jdbcClient.execute(reportQuery.getDatasource(), reportQuery.getQuery(), row -> {
+				if (row.getRowNumber() == 1) {
+					//verify the column metadata with crosstab template name
+					populateCrossTabAttributes(report, templateDetails, row.getColumns());
+					pivot.resolve(row);
 				}
+				return pivot.add(row);
+			});
+			if (rowCount > 0) {
+				report.setMatrix(pivot.pivot());
 				return Optional.of(report);
 			}else{
 				LOG.warn("ResultSet is empty for the query {} ",reportQuery.getQuery());
@@ -589,4 +619,35 @@ public class ReportGenerationServiceImpl implements ReportGenerationService {
 		}
 	}
 
+	/**
+	 * 
+	 * @param report
+	 * @param templateDetails
+	 * @param columns
+	 */
+	private void populateCrossTabAttributes(CrossTabReport report, List<CrossTabTemplateDetail> templateDetails, List<ColumnMetadata> columns) {
+		for (CrossTabTemplateDetail detail : templateDetails) {
+			boolean matchFound = false;
+			//Add individual ColumnMetadata to the list
+			for (ColumnMetadata metaData : columns) {
+				if (detail.getModelAttributeName().equalsIgnoreCase(metaData.getLabel())) {
+					matchFound=true;
+					LOG.info("Column Label Matched {} ", metaData.getLabel());
+					CrossTabAttribute attribute = new CrossTabAttribute();
+					attribute.setAttributeDisplaySequence(detail.getAttributeDisplaySequence());
+					attribute.setFieldType(detail.getFieldType());
+					attribute.setGroupOrAggregate(detail.getGroupOrAggregate());
+					attribute.setMetaData(metaData);
+					attribute.setType(detail.getSqltype());
+					report.getAttributes().add(attribute);
+					//Break from the loop if match is found
+					break;
+				}
+			}
+			if (!matchFound) {
+				LOG.error("Unable to Find Column Label against Attribute Mapping");
+			}
+		}
+	}
+
 }
@@ -0,0 +1,314 @@
+package org.reportbay.report.service.impl;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Singleton;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.reportbay.common.util.SystemProperties;
+import org.reportbay.report.domain.BaseReport;
+import org.reportbay.report.domain.ReportResultCacheKey;
+import org.reportbay.report.domain.ReportResultCacheStats;
+import org.reportbay.report.service.ReportResultCache;
+import org.reportbay.reporttemplate.domain.BaseReportTemplate;
+import org.reportbay.reporttemplate.domain.ReportQuery;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Cache sizing is read from system properties (prefix {@value #PROPERTY_PREFIX}):
+ * maxEntries, ttl (second, applied to template without its own time to live) and snapShotEntries.
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class ReportResultCacheImpl implements ReportResultCache {
+	private static final Logger LOG = LoggerFactory.getLogger(ReportResultCacheImpl.class);
+
+	private static final String PROPERTY_PREFIX = "reportbay.report.cache.";
+
+	private static final int DEFAULT_MAX_ENTRIES = 200;
+	private static final int DEFAULT_TTL = 60;
+	private static final int DEFAULT_SNAPSHOT_ENTRIES = 20;
+
+	private final int maxEntries = getIntProperty("maxEntries", DEFAULT_MAX_ENTRIES);
+	private final int defaultTtl = getIntProperty("ttl", DEFAULT_TTL);
+	private final int maxSnapShotEntries = getIntProperty("snapShotEntries", DEFAULT_SNAPSHOT_ENTRIES);
+
+	/**
+	 * access ordered for least recently used eviction, guarded by itself
+	 */
+	private final LinkedHashMap<ReportResultCacheKey, CacheEntry> entries = new LinkedHashMap<ReportResultCacheKey, CacheEntry>(16, 0.75f, true);
+
+	/**
+	 * decoded snapshot by snapshot id, access ordered for least recently used eviction, guarded by itself
+	 */
+	private final LinkedHashMap<Integer, BaseReport> snapShots = new LinkedHashMap<Integer, BaseReport>(16, 0.75f, true);
+
+	/**
+	 * bumped on every invalidation, report generated with key of older generation may be stale
+	 */
+	private final AtomicLong generation = new AtomicLong();
+
+	private final ConcurrentMap<Integer, Long> templateVersions = new ConcurrentHashMap<Integer, Long>();
+
+	private final AtomicLong hitCount = new AtomicLong();
+	private final AtomicLong missCount = new AtomicLong();
+	private final AtomicLong evictionCount = new AtomicLong();
+	private final AtomicLong invalidationCount = new AtomicLong();
+
+	//decoded snapshot lookups are counted apart from generated report lookups
+	private final AtomicLong snapShotHitCount = new AtomicLong();
+	private final AtomicLong snapShotMissCount = new AtomicLong();
+	private final AtomicLong snapShotEvictionCount = new AtomicLong();
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public ReportResultCacheKey createKey(BaseReportTemplate template, ReportQuery reportQuery) {
+		//1. capture generation before template version, so that invalidation in between discard the result
+		long currentGeneration = generation.get();
+		long templateVersion = templateVersions.getOrDefault(template.getId(), 0L);
+
+		//2. template own time to live take precedence over the default
+		Integer templateTtl = template.getResultCacheTtl();
+		int ttl = templateTtl==null? defaultTtl : templateTtl;
+
+		//3. formatting difference of the same query should share the same entry
+		String query = StringUtils.normalizeSpace(reportQuery.getQuery());
+
+		int datasourceId = reportQuery.getDatasource()==null? 0 : reportQuery.getDatasource().getId();
+
+		return new ReportResultCacheKey(template.getId(), templateVersion, query, datasourceId,
+										template.getModelId(), ttl, currentGeneration);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public BaseReport get(ReportResultCacheKey key) {
+		if(!key.isCacheable()){
+			return null;
+		}
+
+		CacheEntry entry = null;
+
+		synchronized(entries){
+			entry = entries.get(key);
+
+			if(entry!=null && entry.isExpired(System.currentTimeMillis())){
+				entries.remove(key);
+				evictionCount.incrementAndGet();
+				entry = null;
+			}
+		}
+
+		if(entry==null){
+			missCount.incrementAndGet();
+			return null;
+		}
+
+		hitCount.incrementAndGet();
+		return entry.report;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void put(ReportResultCacheKey key, BaseReport report) {
+		if(report==null || !key.isCacheable()){
+			return;
+		}
+
+		long expiryTime = System.currentTimeMillis() + key.getTtlSeconds() * 1000L;
+
+		synchronized(entries){
+			//1. template, model or datasource changed while the report was being generated
+			if(key.getGeneration()!=generation.get()){
+				LOG.debug("discard report generated before invalidation {}", key);
+				return;
+			}
+
+			entries.put(key, new CacheEntry(report, expiryTime));
+
+			//2. evict least recently used entries beyond the limit
+			Iterator<ReportResultCacheKey> iter = entries.keySet().iterator();
+
+			while(entries.size() > maxEntries && iter.hasNext()){
+				iter.next();
+				iter.remove();
+				evictionCount.incrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public BaseReport getSnapShot(int snapShotId) {
+		BaseReport report = null;
+
+		synchronized(snapShots){
+			report = snapShots.get(snapShotId);
+		}
+
+		if(report==null){
+			snapShotMissCount.incrementAndGet();
+			return null;
+		}
+
+		snapShotHitCount.incrementAndGet();
+		return report;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void putSnapShot(int snapShotId, BaseReport report) {
+		if(report==null || maxSnapShotEntries<=0){
+			return;
+		}
+
+		synchronized(snapShots){
+			snapShots.put(snapShotId, report);
+
+			Iterator<Integer> iter = snapShots.keySet().iterator();
+
+			while(snapShots.size() > maxSnapShotEntries && iter.hasNext()){
+				iter.next();
+				iter.remove();
+				snapShotEvictionCount.incrementAndGet();
+			}
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void invalidateTemplate(int templateId) {
+		templateVersions.merge(templateId, 1L, Long::sum);
+
+		invalidate(key -> key.getTemplateId()==templateId);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void invalidateModel(int modelId) {
+		invalidate(key -> key.getModelId()==modelId);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void invalidateDatasource(int datasourceId) {
+		invalidate(key -> key.getDatasourceId()==datasourceId);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void clear() {
+		invalidate(key -> true);
+
+		synchronized(snapShots){
+			snapShots.clear();
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public ReportResultCacheStats getStatistics() {
+		ReportResultCacheStats stats = new ReportResultCacheStats();
+
+		synchronized(entries){
+			stats.setSize(entries.size());
+		}
+
+		stats.setMaxEntries(maxEntries);
+		stats.setDefaultTtlSeconds(defaultTtl);
+		stats.setHitCount(hitCount.get());
+		stats.setMissCount(missCount.get());
+		stats.setEvictionCount(evictionCount.get());
+		stats.setInvalidationCount(invalidationCount.get());
+
+		synchronized(snapShots){
+			stats.setSnapShotSize(snapShots.size());
+		}
+
+		stats.setMaxSnapShotEntries(maxSnapShotEntries);
+		stats.setSnapShotHitCount(snapShotHitCount.get());
+		stats.setSnapShotMissCount(snapShotMissCount.get());
+		stats.setSnapShotEvictionCount(snapShotEvictionCount.get());
+
+		return stats;
+	}
+
+	/*************** private methods ****************/
+
+	/**
+	 *
+	 * @param matcher
+	 */
+	private void invalidate(Predicate<ReportResultCacheKey> matcher){
+		int removed = 0;
+
+		synchronized(entries){
+			generation.incrementAndGet();
+
+			Iterator<Map.Entry<ReportResultCacheKey, CacheEntry>> iter = entries.entrySet().iterator();
+
+			while(iter.hasNext()){
+				if(matcher.test(iter.next().getKey())){
+					iter.remove();
+					removed++;
+				}
+			}
+		}
+
+		if(removed > 0){
+			LOG.debug("invalidated {} cached report", removed);
+			invalidationCount.addAndGet(removed);
+		}
+	}
+
+	private static int getIntProperty(String name, int defaultValue){
+		return NumberUtils.toInt(SystemProperties.getProperty(PROPERTY_PREFIX+name), defaultValue);
+	}
+
+	/**
+	 * cached report along with its expiry time
+	 */
+	private static class CacheEntry{
+		private final BaseReport report;
+		private final long expiryTime;
+
+		CacheEntry(BaseReport report, long expiryTime){
+			this.report = report;
+			this.expiryTime = expiryTime;
+		}
+
+		boolean isExpired(long now){
+			return now >= expiryTime;
+		}
+	}
+}
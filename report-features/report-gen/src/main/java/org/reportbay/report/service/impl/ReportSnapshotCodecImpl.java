@@ -0,0 +1,1323 @@
+package org.reportbay.report.service.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import javax.ejb.Stateless;
+
+import org.apache.commons.lang3.BooleanUtils;
+import org.apache.commons.lang3.SerializationException;
+import org.apache.commons.lang3.SerializationUtils;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.reportbay.common.domain.SqlTypeEnum;
+import org.reportbay.common.util.SystemProperties;
+import org.reportbay.datasource.domain.ColumnMetadata;
+import org.reportbay.report.domain.AreaChartReport;
+import org.reportbay.report.domain.BarChartReport;
+import org.reportbay.report.domain.BaseReport;
+import org.reportbay.report.domain.CartesianChartReport;
+import org.reportbay.report.domain.ChartReport;
+import org.reportbay.report.domain.ChartSeries;
+import org.reportbay.report.domain.ColumnChartReport;
+import org.reportbay.report.domain.CrossTabAttribute;
+import org.reportbay.report.domain.CrossTabHeader;
+import org.reportbay.report.domain.CrossTabMatrix;
+import org.reportbay.report.domain.CrossTabReport;
+import org.reportbay.report.domain.LineChartReport;
+import org.reportbay.report.domain.PieChartReport;
+import org.reportbay.report.service.ReportSnapshotCodec;
+import org.reportbay.report.service.exception.ReportSnapshotCodecException;
+import org.reportbay.reporttemplate.domain.CrossTabFieldType;
+import org.reportbay.reporttemplate.domain.GroupOrSum;
+import org.reportbay.reporttemplate.domain.PieChartDataTypeEnum;
+import org.reportbay.reporttemplate.domain.ReportTemplateTypeEnum;
+
+/**
+ * Snapshot layout: magic, format version, flags, length of the uncompressed body, then the body
+ * (deflated when flagged). Body start with the report kind followed by the fields of the report.
+ * A delta body (flagged, format version 2) keeps the layout except for the data: labels and crosstab
+ * rows are written as runs of the base positions with the new ones following, values as the changes only.
+ * Compression is configured by system properties (prefix {@value #PROPERTY_PREFIX}):
+ * compress (default true) and compressMinBytes (body smaller than it is stored as is).
+ */
+@Stateless
+public class ReportSnapshotCodecImpl implements ReportSnapshotCodec {
+
+	private static final String PROPERTY_PREFIX = "reportbay.snapshot.codec.";
+
+	private static final int DEFAULT_COMPRESS_MIN_BYTES = 512;
+
+	private static final byte[] MAGIC = {'R', 'B', 'S'};
+
+	private static final int VERSION = 2;
+
+	//full snapshot keeps the layout of version 1, readable by release without delta support
+	private static final int VERSION_FULL = 1;
+
+	private static final int FLAG_DEFLATE = 0x01;
+	private static final int FLAG_DELTA = 0x02;
+
+	//crosstab row of delta snapshot
+	private static final int ROW_FULL = 0;
+	private static final int ROW_DELTA = 1;
+
+	//first bytes of Java serialization stream, snapshot stored by earlier release
+	private static final int JAVA_SERIAL_MAGIC_0 = 0xAC;
+	private static final int JAVA_SERIAL_MAGIC_1 = 0xED;
+
+	private static final int KIND_AREA = 1;
+	private static final int KIND_BAR = 2;
+	private static final int KIND_COLUMN = 3;
+	private static final int KIND_LINE = 4;
+	private static final int KIND_PIE = 5;
+	private static final int KIND_CROSSTAB = 6;
+
+	private final boolean compress = BooleanUtils.toBooleanDefaultIfNull(
+									BooleanUtils.toBooleanObject(SystemProperties.getProperty(PROPERTY_PREFIX+"compress")), true);
+
+	private final int compressMinBytes = NumberUtils.toInt(SystemProperties.getProperty(PROPERTY_PREFIX+"compressMinBytes"), DEFAULT_COMPRESS_MIN_BYTES);
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public byte[] encode(BaseReport report) throws ReportSnapshotCodecException {
+		return encode(report, null);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public byte[] encodeDelta(BaseReport base, BaseReport report) throws ReportSnapshotCodecException {
+		//delta between reports of the same kind only
+		if(base==null || getKind(report)!=getKind(base)){
+			return null;
+		}
+		return encode(report, base);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public BaseReport decode(byte[] snapshot) throws ReportSnapshotCodecException {
+		return decode(snapshot==null? null : ByteBuffer.wrap(snapshot));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public BaseReport decode(ByteBuffer snapshot) throws ReportSnapshotCodecException {
+		return decode(snapshot, null);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public BaseReport decode(ByteBuffer snapshot, BaseReport base) throws ReportSnapshotCodecException {
+		if(snapshot==null || snapshot.remaining() < 2){
+			throw new ReportSnapshotCodecException("report snapshot is empty");
+		}
+
+		int start = snapshot.position();
+
+		//1. snapshot stored before the codec is introduced
+		if((snapshot.get(start) & 0xFF)==JAVA_SERIAL_MAGIC_0 && (snapshot.get(start+1) & 0xFF)==JAVA_SERIAL_MAGIC_1){
+			return deserialize(toByteArray(snapshot));
+		}
+
+		//2. header
+		SnapshotBinaryReader header = new SnapshotBinaryReader(snapshot);
+
+		for(byte b: MAGIC){
+			if(header.readByte()!=(b & 0xFF)){
+				throw new ReportSnapshotCodecException("unrecognized report snapshot format");
+			}
+		}
+
+		int version = header.readByte();
+
+		if(version > VERSION){
+			throw new ReportSnapshotCodecException("unsupported report snapshot version "+version);
+		}
+
+		int flags = header.readByte();
+		int rawLength = header.readVarInt();
+
+		boolean delta = (flags & FLAG_DELTA)!=0;
+
+		if(delta && base==null){
+			throw new ReportSnapshotCodecException("report snapshot is a delta but its base report is not provided");
+		}
+
+		//3. body, read in place unless compressed
+		SnapshotBinaryReader body = null;
+
+		if((flags & FLAG_DEFLATE)!=0){
+			body = new SnapshotBinaryReader(ByteBuffer.wrap(inflate(toByteArray(header.remainingBuffer()), rawLength)));
+		}
+		else{
+			body = new SnapshotBinaryReader(header.remainingBuffer());
+		}
+
+		BaseReport report = readReport(body, delta? base : null);
+
+		if(!body.isExhausted()){
+			throw new ReportSnapshotCodecException("unexpected trailing data in report snapshot");
+		}
+
+		return report;
+	}
+
+	/*************** private methods ****************/
+
+	/**
+	 * 
+	 * @param report
+	 * @param base null for full snapshot
+	 * @return
+	 * @throws ReportSnapshotCodecException
+	 */
+	private byte[] encode(BaseReport report, BaseReport base) throws ReportSnapshotCodecException {
+		//1. encode the body
+		SnapshotBinaryWriter body = new SnapshotBinaryWriter(4096);
+		writeReport(body, report, base);
+
+		byte[] raw = body.toByteArray();
+
+		//2. compress, kept as is if not worthwhile
+		byte[] payload = raw;
+		int flags = base==null? 0 : FLAG_DELTA;
+
+		if(compress && raw.length >= compressMinBytes){
+			byte[] deflated = deflate(raw);
+
+			if(deflated.length < raw.length){
+				payload = deflated;
+				flags |= FLAG_DEFLATE;
+			}
+		}
+
+		//3. header followed by payload
+		SnapshotBinaryWriter snapshot = new SnapshotBinaryWriter(payload.length + 16);
+
+		for(byte b: MAGIC){
+			snapshot.writeByte(b);
+		}
+		snapshot.writeByte(base==null? VERSION_FULL : VERSION);
+		snapshot.writeByte(flags);
+		snapshot.writeVarLong(raw.length);
+
+		byte[] header = snapshot.toByteArray();
+		byte[] encoded = new byte[header.length + payload.length];
+
+		System.arraycopy(header, 0, encoded, 0, header.length);
+		System.arraycopy(payload, 0, encoded, header.length, payload.length);
+
+		return encoded;
+	}
+
+	/**
+	 * 
+	 * @param out
+	 * @param report
+	 * @param base report of the same kind the data is written against, null to write in full
+	 * @throws ReportSnapshotCodecException
+	 */
+	private void writeReport(SnapshotBinaryWriter out, BaseReport report, BaseReport base) throws ReportSnapshotCodecException{
+		//1. kind of report, concrete class is restored from it
+		out.writeByte(getKind(report));
+
+		//2. base fields
+		out.writeString(report.getReportName());
+		out.writeEnum(report.getReportType());
+
+		//3. specific fields
+		if(report instanceof ChartReport){
+			ChartReport chartReport = (ChartReport) report;
+
+			out.writeString(chartReport.getTitle());
+			out.writeBoolean(chartReport.getShowLegend());
+		}
+
+		if(report instanceof CartesianChartReport){
+			writeCartesianChart(out, (CartesianChartReport) report, (CartesianChartReport) base);
+		}
+		else if(report instanceof PieChartReport){
+			writePieChart(out, (PieChartReport) report, (PieChartReport) base);
+		}
+		else{
+			writeCrossTab(out, (CrossTabReport) report, (CrossTabReport) base);
+		}
+	}
+
+	/**
+	 * 
+	 * @param in
+	 * @param base report the data is read against, null if written in full
+	 * @return
+	 * @throws ReportSnapshotCodecException
+	 */
+	private BaseReport readReport(SnapshotBinaryReader in, BaseReport base) throws ReportSnapshotCodecException{
+		//1. instantiate by kind
+		int kind = in.readByte();
+
+		if(base!=null && getKind(base)!=kind){
+			throw new ReportSnapshotCodecException("delta report snapshot of kind "+kind+" does not match its base report");
+		}
+
+		BaseReport report = createReport(kind);
+
+		//2. base fields
+		report.setReportName(in.readString());
+		report.setReportType(in.readEnum(ReportTemplateTypeEnum.class));
+
+		//3. specific fields
+		if(report instanceof ChartReport){
+			ChartReport chartReport = (ChartReport) report;
+
+			chartReport.setTitle(in.readString());
+			chartReport.setShowLegend(in.readBoolean());
+		}
+
+		if(report instanceof CartesianChartReport){
+			readCartesianChart(in, (CartesianChartReport) report, (CartesianChartReport) base);
+		}
+		else if(report instanceof PieChartReport){
+			readPieChart(in, (PieChartReport) report, (PieChartReport) base);
+		}
+		else{
+			readCrossTab(in, (CrossTabReport) report, (CrossTabReport) base);
+		}
+
+		return report;
+	}
+
+	/**
+	 * 
+	 * @param report
+	 * @return
+	 * @throws ReportSnapshotCodecException
+	 */
+	private int getKind(BaseReport report) throws ReportSnapshotCodecException{
+		Class<?> reportClass = report==null? null : report.getClass();
+
+		if(reportClass==AreaChartReport.class){
+			return KIND_AREA;
+		}
+		if(reportClass==BarChartReport.class){
+			return KIND_BAR;
+		}
+		if(reportClass==ColumnChartReport.class){
+			return KIND_COLUMN;
+		}
+		if(reportClass==LineChartReport.class){
+			return KIND_LINE;
+		}
+		if(reportClass==PieChartReport.class){
+			return KIND_PIE;
+		}
+		if(reportClass==CrossTabReport.class){
+			return KIND_CROSSTAB;
+		}
+		throw new ReportSnapshotCodecException("unsupported report "+reportClass+" for snapshot");
+	}
+
+	/**
+	 * 
+	 * @param kind
+	 * @return
+	 * @throws ReportSnapshotCodecException
+	 */
+	private BaseReport createReport(int kind) throws ReportSnapshotCodecException{
+		switch(kind){
+		case KIND_AREA:
+			return new AreaChartReport();
+		case KIND_BAR:
+			return new BarChartReport();
+		case KIND_COLUMN:
+			return new ColumnChartReport();
+		case KIND_LINE:
+			return new LineChartReport();
+		case KIND_PIE:
+			return new PieChartReport();
+		case KIND_CROSSTAB:
+			return new CrossTabReport();
+		default:
+			throw new ReportSnapshotCodecException("unknown report kind "+kind+" in report snapshot");
+		}
+	}
+
+	/**
+	 * 
+	 * @param out
+	 * @param report
+	 * @param base null to write in full
+	 */
+	private void writeCartesianChart(SnapshotBinaryWriter out, CartesianChartReport report, CartesianChartReport base){
+		out.writeString(report.getXAxisTitle());
+		out.writeString(report.getYAxisTitle());
+		out.writeBoolean(report.getShowXAxis());
+		out.writeBoolean(report.getShowYAxis());
+		out.writeBoolean(report.getShowDataLabel());
+
+		if(out.writeSize(report.getChartDataSeries()) <= 0){
+			return;
+		}
+
+		//series of the base by name, first one of duplicated name
+		Map<String, Integer> baseSeriesIndex = new HashMap<String, Integer>();
+
+		if(base!=null && base.getChartDataSeries()!=null){
+			for(int i=0; i<base.getChartDataSeries().size(); i++){
+				baseSeriesIndex.putIfAbsent(base.getChartDataSeries().get(i).getSeriesName(), i);
+			}
+		}
+
+		for(ChartSeries series: report.getChartDataSeries()){
+			out.writeString(series.getSeriesName());
+
+			if(base==null){
+				writeNumberMap(out, series.getSeriesData());
+				continue;
+			}
+
+			//position of the series in base (+1), 0 for new series
+			Integer index = baseSeriesIndex.get(series.getSeriesName());
+
+			out.writeVarLong(index==null? 0 : index + 1);
+			writeNumberMapDelta(out, series.getSeriesData(), index==null? null : base.getChartDataSeries().get(index).getSeriesData());
+		}
+	}
+
+	/**
+	 * 
+	 * @param in
+	 * @param report
+	 * @param base null if written in full
+	 * @throws ReportSnapshotCodecException
+	 */
+	private void readCartesianChart(SnapshotBinaryReader in, CartesianChartReport report, CartesianChartReport base) throws ReportSnapshotCodecException{
+		report.setXAxisTitle(in.readString());
+		report.setYAxisTitle(in.readString());
+		report.setShowXAxis(in.readBoolean());
+		report.setShowYAxis(in.readBoolean());
+		report.setShowDataLabel(in.readBoolean());
+
+		int seriesCount = in.readSize();
+
+		if(seriesCount >= 0){
+			List<ChartSeries> seriesList = new ArrayList<ChartSeries>(seriesCount);
+
+			for(int i=0; i<seriesCount; i++){
+				ChartSeries series = new ChartSeries();
+				series.setSeriesName(in.readString());
+
+				if(base==null){
+					series.setSeriesData(readNumberMap(in));
+				}
+				else{
+					int index = in.readVarInt() - 1;
+
+					if(index >= 0 && (base.getChartDataSeries()==null || index >= base.getChartDataSeries().size())){
+						throw new ReportSnapshotCodecException("series "+index+" not found in base report");
+					}
+					series.setSeriesData(readNumberMapDelta(in, index < 0? null : base.getChartDataSeries().get(index).getSeriesData()));
+				}
+				seriesList.add(series);
+			}
+			report.setChartDataSeries(seriesList);
+		}
+	}
+
+	/**
+	 * 
+	 * @param out
+	 * @param report
+	 * @param base null to write in full
+	 */
+	private void writePieChart(SnapshotBinaryWriter out, PieChartReport report, PieChartReport base){
+		out.writeBoolean(report.getShowDataLabel());
+		out.writeEnum(report.getDataTypeFormat());
+
+		if(base==null){
+			writeNumberMap(out, report.getCategoryData());
+		}
+		else{
+			writeNumberMapDelta(out, report.getCategoryData(), base.getCategoryData());
+		}
+	}
+
+	/**
+	 * 
+	 * @param in
+	 * @param report
+	 * @param base null if written in full
+	 * @throws ReportSnapshotCodecException
+	 */
+	private void readPieChart(SnapshotBinaryReader in, PieChartReport report, PieChartReport base) throws ReportSnapshotCodecException{
+		report.setShowDataLabel(in.readBoolean());
+		report.setDataTypeFormat(in.readEnum(PieChartDataTypeEnum.class));
+		report.setCategoryData(base==null? readNumberMap(in) : readNumberMapDelta(in, base.getCategoryData()));
+	}
+
+	/**
+	 * 
+	 * @param out
+	 * @param report
+	 * @param base null to write in full
+	 */
+	private void writeCrossTab(SnapshotBinaryWriter out, CrossTabReport report, CrossTabReport base){
+		//1. attributes
+		if(out.writeSize(report.getAttributes()) > 0){
+			for(CrossTabAttribute attribute: report.getAttributes()){
+				out.writeEnum(attribute.getGroupOrAggregate());
+				out.writeEnum(attribute.getFieldType());
+				out.writeSignedVarLong(attribute.getAttributeDisplaySequence());
+				out.writeEnum(attribute.getType());
+
+				ColumnMetadata metaData = attribute.getMetaData();
+
+				out.writeBoolean(metaData!=null);
+
+				if(metaData!=null){
+					out.writeString(metaData.getLabel());
+					out.writeString(metaData.getTypeName());
+					out.writeString(metaData.getClassName());
+					out.writeSignedVarLong(metaData.getOrder());
+				}
+			}
+		}
+
+		//2. flat result set
+		if(out.writeSize(report.getResultSet()) > 0){
+			for(Map<String, String> row: report.getResultSet()){
+				if(out.writeSize(row) > 0){
+					for(Map.Entry<String, String> entry: row.entrySet()){
+						out.writeString(entry.getKey());
+						out.writeString(entry.getValue());
+					}
+				}
+			}
+		}
+		out.writeSignedVarLong(report.getResultSetTotalCount());
+
+		//3. pivoted matrix
+		CrossTabMatrix matrix = report.getMatrix();
+
+		out.writeBoolean(matrix!=null);
+
+		if(matrix!=null){
+			out.writeStrings(matrix.getRowFields());
+			out.writeStrings(matrix.getColumnFields());
+			out.writeStrings(matrix.getMeasureFields());
+
+			if(base==null){
+				writeHeaders(out, matrix.getRowHeaders());
+				writeHeaders(out, matrix.getColumnHeaders());
+				writeCells(out, matrix);
+			}
+			else{
+				writeMatrixDelta(out, matrix, base.getMatrix());
+			}
+			out.writeSignedVarLong(matrix.getSourceRowCount());
+			out.writeSignedVarLong(matrix.getRowOffset());
+			out.writeSignedVarLong(matrix.getTotalRowCount());
+		}
+	}
+
+	/**
+	 * 
+	 * @param in
+	 * @param report
+	 * @param base null if written in full
+	 * @throws ReportSnapshotCodecException
+	 */
+	private void readCrossTab(SnapshotBinaryReader in, CrossTabReport report, CrossTabReport base) throws ReportSnapshotCodecException{
+		//1. attributes
+		int attributeCount = in.readSize();
+
+		for(int i=0; i<attributeCount; i++){
+			CrossTabAttribute attribute = new CrossTabAttribute();
+
+			attribute.setGroupOrAggregate(in.readEnum(GroupOrSum.class));
+			attribute.setFieldType(in.readEnum(CrossTabFieldType.class));
+			attribute.setAttributeDisplaySequence((int) in.readSignedVarLong());
+			attribute.setType(in.readEnum(SqlTypeEnum.class));
+
+			if(in.readBoolean()){
+				attribute.setMetaData(new ColumnMetadata(in.readString(), in.readString(), in.readString(), (int) in.readSignedVarLong()));
+			}
+			report.getAttributes().add(attribute);
+		}
+
+		//2. flat result set
+		int rowCount = in.readSize();
+
+		for(int i=0; i<rowCount; i++){
+			int columnCount = in.readSize();
+
+			Map<String, String> row = null;
+
+			if(columnCount >= 0){
+				row = new LinkedHashMap<String, String>();
+
+				for(int j=0; j<columnCount; j++){
+					row.put(in.readString(), in.readString());
+				}
+			}
+			report.getResultSet().add(row);
+		}
+		report.setResultSetTotalCount((int) in.readSignedVarLong());
+
+		//3. pivoted matrix
+		if(in.readBoolean()){
+			CrossTabMatrix matrix = new CrossTabMatrix();
+
+			matrix.setRowFields(in.readStrings());
+			matrix.setColumnFields(in.readStrings());
+			matrix.setMeasureFields(in.readStrings());
+
+			if(base==null){
+				matrix.setRowHeaders(readHeaders(in));
+				matrix.setColumnHeaders(readHeaders(in));
+				readCells(in, matrix);
+			}
+			else{
+				readMatrixDelta(in, matrix, base.getMatrix());
+			}
+			matrix.setSourceRowCount((int) in.readSignedVarLong());
+			matrix.setRowOffset((int) in.readSignedVarLong());
+			matrix.setTotalRowCount((int) in.readSignedVarLong());
+
+			report.setMatrix(matrix);
+		}
+	}
+
+	/**
+	 * labels first (dictionary encoded), followed by the values as a numeric block
+	 * @param out
+	 * @param data
+	 */
+	private void writeNumberMap(SnapshotBinaryWriter out, Map<String, Number> data){
+		if(out.writeSize(data) < 0){
+			return;
+		}
+
+		for(String label: data.keySet()){
+			out.writeString(label);
+		}
+		out.writeNumbers(data.values());
+	}
+
+	/**
+	 * 
+	 * @param in
+	 * @return map in encoded order
+	 * @throws ReportSnapshotCodecException
+	 */
+	private Map<String, Number> readNumberMap(SnapshotBinaryReader in) throws ReportSnapshotCodecException{
+		int size = in.readSize();
+
+		if(size < 0){
+			return null;
+		}
+
+		String[] labels = new String[size];
+
+		for(int i=0; i<size; i++){
+			labels[i] = in.readString();
+		}
+
+		Number[] values = in.readNumbers(size);
+
+		Map<String, Number> data = new LinkedHashMap<String, Number>();
+
+		for(int i=0; i<size; i++){
+			data.put(labels[i], values[i]);
+		}
+		return data;
+	}
+
+	/**
+	 * 
+	 * @param out
+	 * @param headers
+	 */
+	private void writeHeaders(SnapshotBinaryWriter out, List<CrossTabHeader> headers){
+		if(out.writeSize(headers) > 0){
+			for(CrossTabHeader header: headers){
+				out.writeStrings(header.getValues());
+				out.writeBoolean(header.isTotal());
+			}
+		}
+	}
+
+	/**
+	 * 
+	 * @param in
+	 * @return
+	 * @throws ReportSnapshotCodecException
+	 */
+	private List<CrossTabHeader> readHeaders(SnapshotBinaryReader in) throws ReportSnapshotCodecException{
+		int size = in.readSize();
+
+		if(size < 0){
+			return null;
+		}
+
+		List<CrossTabHeader> headers = new ArrayList<CrossTabHeader>(size);
+
+		for(int i=0; i<size; i++){
+			List<String> values = in.readStrings();
+			headers.add(new CrossTabHeader(values, in.readBoolean()));
+		}
+		return headers;
+	}
+
+	/**
+	 * each row is written as a bitmap of the empty cells followed by the values of the others
+	 * @param out
+	 * @param matrix
+	 */
+	private void writeCells(SnapshotBinaryWriter out, CrossTabMatrix matrix){
+		if(out.writeSize(matrix.hasCells()? matrix.getRowHeaders().size() : -1) <= 0){
+			return;
+		}
+
+		for(int r=0; r<matrix.getRowHeaders().size(); r++){
+			writeCellRow(out, matrix, r);
+		}
+	}
+
+	/**
+	 * 
+	 * @param out
+	 * @param matrix
+	 * @param row
+	 */
+	private void writeCellRow(SnapshotBinaryWriter out, CrossTabMatrix matrix, int row){
+		int columnCount = matrix.cellColumnCount();
+
+		if(out.writeSize(columnCount) <= 0){
+			return;
+		}
+
+		for(int from=0; from<columnCount; from+=8){
+			int bits = 0;
+
+			for(int i=from; i<Math.min(from+8, columnCount); i++){
+				if(!matrix.isFilled(row, i)){
+					bits |= 1 << (i - from);
+				}
+			}
+			out.writeByte(bits);
+		}
+
+		for(int i=0; i<columnCount; i++){
+			if(matrix.isFilled(row, i)){
+				out.writeDouble(matrix.getCell(row, i));
+			}
+		}
+	}
+
+	/**
+	 * fields and column headers of the matrix must be read already
+	 * @param in
+	 * @param matrix
+	 * @throws ReportSnapshotCodecException
+	 */
+	private void readCells(SnapshotBinaryReader in, CrossTabMatrix matrix) throws ReportSnapshotCodecException{
+		int rowCount = in.readSize();
+
+		if(rowCount < 0){
+			return;
+		}
+
+		int columnCount = matrix.cellColumnCount();
+		double[] values = new double[rowCount * columnCount];
+		BitSet filled = new BitSet(values.length);
+
+		for(int r=0; r<rowCount; r++){
+			readCellRow(in, values, filled, r, columnCount);
+		}
+		matrix.setCells(values, filled);
+	}
+
+	/**
+	 * 
+	 * @param in
+	 * @param values
+	 * @param filled
+	 * @param row
+	 * @param columnCount
+	 * @throws ReportSnapshotCodecException
+	 */
+	private void readCellRow(SnapshotBinaryReader in, double[] values, BitSet filled, int row, int columnCount) throws ReportSnapshotCodecException{
+		int size = in.readSize();
+
+		if(size < 0){
+			return;
+		}
+		if(size != columnCount){
+			throw new ReportSnapshotCodecException("crosstab row "+row+" of "+size+" cell(s) does not match "+columnCount+" cell column(s)");
+		}
+
+		boolean[] empty = new boolean[columnCount];
+
+		for(int from=0; from<columnCount; from+=8){
+			int bits = in.readByte();
+
+			for(int i=from; i<Math.min(from+8, columnCount); i++){
+				empty[i] = (bits & (1 << (i - from)))!=0;
+			}
+		}
+
+		int offset = row * columnCount;
+
+		for(int i=0; i<columnCount; i++){
+			if(!empty[i]){
+				values[offset + i] = in.readDouble();
+				filled.set(offset + i);
+			}
+		}
+	}
+
+	/**
+	 * labels as runs of the base labels with the new labels following, then the values differing from the base
+	 * @param out
+	 * @param data
+	 * @param base null if all entries are new
+	 */
+	private void writeNumberMapDelta(SnapshotBinaryWriter out, Map<String, Number> data, Map<String, Number> base){
+		if(out.writeSize(data) < 0){
+			return;
+		}
+
+		List<String> labels = new ArrayList<String>(data.keySet());
+		List<Number> values = new ArrayList<Number>(data.values());
+		List<Number> baseValues = base==null? Collections.<Number>emptyList() : new ArrayList<Number>(base.values());
+
+		//1. labels
+		int[] source = matchBase(labels, base==null? Collections.<String>emptyList() : new ArrayList<String>(base.keySet()));
+
+		writeSequence(out, source);
+
+		for(int i=0; i<labels.size(); i++){
+			if(source[i] < 0){
+				out.writeString(labels.get(i));
+			}
+		}
+
+		//2. values of new entry or changed since base
+		List<Integer> changedIndexes = new ArrayList<Integer>();
+		List<Number> changedValues = new ArrayList<Number>();
+
+		for(int i=0; i<values.size(); i++){
+			if(source[i] < 0 || !Objects.equals(values.get(i), baseValues.get(source[i]))){
+				changedIndexes.add(i);
+				changedValues.add(values.get(i));
+			}
+		}
+		writeChanges(out, changedIndexes, changedValues);
+	}
+
+	/**
+	 * 
+	 * @param in
+	 * @param base null if all entries are new
+	 * @return map in encoded order
+	 * @throws ReportSnapshotCodecException
+	 */
+	private Map<String, Number> readNumberMapDelta(SnapshotBinaryReader in, Map<String, Number> base) throws ReportSnapshotCodecException{
+		int size = in.readSize(base==null? 0 : base.size());
+
+		if(size < 0){
+			return null;
+		}
+
+		List<String> baseLabels = base==null? Collections.<String>emptyList() : new ArrayList<String>(base.keySet());
+		List<Number> baseValues = base==null? Collections.<Number>emptyList() : new ArrayList<Number>(base.values());
+
+		//1. labels, unchanged value is taken from the base
+		int[] source = readSequence(in, size, baseLabels.size());
+
+		String[] labels = new String[size];
+		Number[] values = new Number[size];
+
+		for(int i=0; i<size; i++){
+			if(source[i] < 0){
+				labels[i] = in.readString();
+			}
+			else{
+				labels[i] = baseLabels.get(source[i]);
+				values[i] = baseValues.get(source[i]);
+			}
+		}
+
+		//2. changed values
+		readChanges(in, values);
+
+		Map<String, Number> data = new LinkedHashMap<String, Number>();
+
+		for(int i=0; i<size; i++){
+			data.put(labels[i], values[i]);
+		}
+		return data;
+	}
+
+	/**
+	 * column headers in full, row headers and cells against the base if the columns are laid out the same,
+	 * e.g. rows added or removed with the period of the report
+	 * @param out
+	 * @param matrix
+	 * @param base null if the base report is not pivoted
+	 */
+	private void writeMatrixDelta(SnapshotBinaryWriter out, CrossTabMatrix matrix, CrossTabMatrix base){
+		writeHeaders(out, matrix.getColumnHeaders());
+
+		//1. rows are matched only if each cell of a row stands for the same column and measure
+		boolean sameColumns = base!=null && base.getRowHeaders()!=null && base.hasCells()
+							  && Objects.equals(matrix.getMeasureFields(), base.getMeasureFields())
+							  && Objects.equals(toHeaderKeys(matrix.getColumnHeaders()), toHeaderKeys(base.getColumnHeaders()));
+
+		out.writeBoolean(sameColumns);
+
+		if(!sameColumns){
+			writeHeaders(out, matrix.getRowHeaders());
+			writeCells(out, matrix);
+			return;
+		}
+
+		//2. row headers as runs of the base rows with the new rows following
+		List<CrossTabHeader> rowHeaders = matrix.getRowHeaders();
+
+		int[] source = new int[0];
+
+		if(out.writeSize(rowHeaders) >= 0){
+			source = matchBase(toHeaderKeys(rowHeaders), toHeaderKeys(base.getRowHeaders()));
+
+			writeSequence(out, source);
+
+			for(int i=0; i<source.length; i++){
+				if(source[i] < 0){
+					out.writeStrings(rowHeaders.get(i).getValues());
+					out.writeBoolean(rowHeaders.get(i).isTotal());
+				}
+			}
+		}
+
+		//3. cells of matched row as the changes to the base row
+		if(out.writeSize(matrix.hasCells()? rowHeaders.size() : -1) <= 0){
+			return;
+		}
+
+		int columnCount = matrix.cellColumnCount();
+
+		for(int r=0; r<rowHeaders.size(); r++){
+			int baseRow = getBaseRow(base, source, r);
+
+			if(baseRow < 0){
+				out.writeByte(ROW_FULL);
+				writeCellRow(out, matrix, r);
+				continue;
+			}
+
+			List<Integer> changedIndexes = new ArrayList<Integer>();
+			List<Double> changedValues = new ArrayList<Double>();
+
+			for(int i=0; i<columnCount; i++){
+				boolean filled = matrix.isFilled(r, i);
+
+				if(filled!=base.isFilled(baseRow, i) 
+				   || (filled && Double.doubleToLongBits(matrix.getCell(r, i))!=Double.doubleToLongBits(base.getCell(baseRow, i)))){
+					changedIndexes.add(i);
+					changedValues.add(filled? matrix.getCell(r, i) : null);
+				}
+			}
+
+			out.writeByte(ROW_DELTA);
+			writeChanges(out, changedIndexes, changedValues);
+		}
+	}
+
+	/**
+	 * 
+	 * @param in
+	 * @param matrix
+	 * @param base
+	 * @throws ReportSnapshotCodecException
+	 */
+	private void readMatrixDelta(SnapshotBinaryReader in, CrossTabMatrix matrix, CrossTabMatrix base) throws ReportSnapshotCodecException{
+		matrix.setColumnHeaders(readHeaders(in));
+
+		//1. written in full if the columns differ from the base
+		if(!in.readBoolean()){
+			matrix.setRowHeaders(readHeaders(in));
+			readCells(in, matrix);
+			return;
+		}
+
+		if(base==null || base.getRowHeaders()==null || !base.hasCells()){
+			throw new ReportSnapshotCodecException("crosstab rows of delta report snapshot not found in base report");
+		}
+
+		//2. row headers
+		int rowHeaderCount = in.readSize(base.getRowHeaders().size());
+
+		int[] source = new int[0];
+
+		if(rowHeaderCount >= 0){
+			source = readSequence(in, rowHeaderCount, base.getRowHeaders().size());
+
+			List<CrossTabHeader> rowHeaders = new ArrayList<CrossTabHeader>(rowHeaderCount);
+
+			for(int i=0; i<rowHeaderCount; i++){
+				if(source[i] < 0){
+					List<String> values = in.readStrings();
+					rowHeaders.add(new CrossTabHeader(values, in.readBoolean()));
+				}
+				else{
+					//copied, the base report is not shared
+					CrossTabHeader baseHeader = base.getRowHeaders().get(source[i]);
+					rowHeaders.add(new CrossTabHeader(baseHeader.getValues()==null? null : new ArrayList<String>(baseHeader.getValues()), baseHeader.isTotal()));
+				}
+			}
+			matrix.setRowHeaders(rowHeaders);
+		}
+
+		//3. cells
+		int rowCount = in.readSize();
+
+		if(rowCount < 0){
+			return;
+		}
+
+		int columnCount = matrix.cellColumnCount();
+
+		if(base.cellColumnCount()!=columnCount){
+			throw new ReportSnapshotCodecException("crosstab columns of delta report snapshot do not match base report");
+		}
+
+		double[] values = new double[rowCount * columnCount];
+		BitSet filled = new BitSet(values.length);
+		Number[] row = new Number[columnCount];
+
+		for(int r=0; r<rowCount; r++){
+			int mode = in.readByte();
+
+			if(mode==ROW_FULL){
+				readCellRow(in, values, filled, r, columnCount);
+				continue;
+			}
+
+			int baseRow = getBaseRow(base, source, r);
+
+			if(mode!=ROW_DELTA || baseRow < 0){
+				throw new ReportSnapshotCodecException("crosstab row "+r+" of delta report snapshot not found in base report");
+			}
+
+			for(int i=0; i<columnCount; i++){
+				row[i] = base.isFilled(baseRow, i)? Double.valueOf(base.getCell(baseRow, i)) : null;
+			}
+
+			readChanges(in, row);
+
+			for(int i=0; i<columnCount; i++){
+				if(row[i]!=null && !(row[i] instanceof Double)){
+					throw new ReportSnapshotCodecException("unexpected cell value "+row[i]+" in report snapshot");
+				}
+				if(row[i]!=null){
+					values[r * columnCount + i] = (Double) row[i];
+					filled.set(r * columnCount + i);
+				}
+			}
+		}
+		matrix.setCells(values, filled);
+	}
+
+	/**
+	 * 
+	 * @param base
+	 * @param source position of each row in the base, -1 for new row
+	 * @param row
+	 * @return row of the base, -1 if the row is new
+	 */
+	private int getBaseRow(CrossTabMatrix base, int[] source, int row){
+		if(row >= source.length || source[row] < 0 || source[row] >= base.getRowHeaders().size()){
+			return -1;
+		}
+		return source[row];
+	}
+
+	/**
+	 * 
+	 * @param headers
+	 * @return identity of each header, null if no header
+	 */
+	private List<List<Object>> toHeaderKeys(List<CrossTabHeader> headers){
+		if(headers==null){
+			return null;
+		}
+
+		List<List<Object>> keys = new ArrayList<List<Object>>(headers.size());
+
+		for(CrossTabHeader header: headers){
+			keys.add(Arrays.<Object>asList(header.getValues(), header.isTotal()));
+		}
+		return keys;
+	}
+
+	/**
+	 * 
+	 * @param items
+	 * @param baseItems
+	 * @return position of each item in the base, -1 if not found
+	 */
+	private <T> int[] matchBase(List<T> items, List<T> baseItems){
+		Map<T, Integer> baseIndex = new HashMap<T, Integer>();
+
+		for(int i=0; i<baseItems.size(); i++){
+			baseIndex.putIfAbsent(baseItems.get(i), i);
+		}
+
+		int[] source = new int[items.size()];
+
+		for(int i=0; i<source.length; i++){
+			Integer index = baseIndex.get(items.get(i));
+			source[i] = index==null? -1 : index;
+		}
+		return source;
+	}
+
+	/**
+	 * runs of consecutive base positions (length and start) and of new items (length only),
+	 * the run length is shifted to flag the kind of run
+	 * @param out
+	 * @param source position of each item in the base, -1 for new item
+	 */
+	private void writeSequence(SnapshotBinaryWriter out, int[] source){
+		int from = 0;
+
+		while(from < source.length){
+			int to = from + 1;
+
+			if(source[from] < 0){
+				while(to < source.length && source[to] < 0){
+					to++;
+				}
+				out.writeVarLong((long) (to - from) << 1);
+			}
+			else{
+				while(to < source.length && source[to]==source[to-1] + 1){
+					to++;
+				}
+				out.writeVarLong(((long) (to - from) << 1) | 1);
+				out.writeVarLong(source[from]);
+			}
+			from = to;
+		}
+	}
+
+	/**
+	 * 
+	 * @param in
+	 * @param size number of items
+	 * @param baseSize number of items in the base
+	 * @return position of each item in the base, -1 for new item
+	 * @throws ReportSnapshotCodecException
+	 */
+	private int[] readSequence(SnapshotBinaryReader in, int size, int baseSize) throws ReportSnapshotCodecException{
+		int[] source = new int[size];
+
+		int from = 0;
+
+		while(from < size){
+			long run = in.readVarLong();
+			long length = run >>> 1;
+
+			if(length==0 || length > size - from){
+				throw new ReportSnapshotCodecException("malformed run of length "+length+" in report snapshot");
+			}
+
+			int start = -1;
+
+			if((run & 1)!=0){
+				long baseStart = in.readVarLong();
+
+				if(baseStart < 0 || baseStart + length > baseSize){
+					throw new ReportSnapshotCodecException("run out of base report in report snapshot");
+				}
+				start = (int) baseStart;
+			}
+
+			for(int i=0; i<length; i++){
+				source[from + i] = start < 0? -1 : start + i;
+			}
+			from += length;
+		}
+		return source;
+	}
+
+	/**
+	 * number of changes, the gap between changed positions, then the changed values as a numeric block
+	 * @param out
+	 * @param indexes ascending
+	 * @param values
+	 */
+	private void writeChanges(SnapshotBinaryWriter out, List<Integer> indexes, List<? extends Number> values){
+		out.writeVarLong(indexes.size());
+
+		int previous = -1;
+
+		for(int index: indexes){
+			out.writeVarLong(index - previous - 1);
+			previous = index;
+		}
+		out.writeNumbers(values);
+	}
+
+	/**
+	 * 
+	 * @param in
+	 * @param values base values, overwritten by the changes
+	 * @throws ReportSnapshotCodecException
+	 */
+	private void readChanges(SnapshotBinaryReader in, Number[] values) throws ReportSnapshotCodecException{
+		int count = in.readVarInt();
+
+		if(count > values.length){
+			throw new ReportSnapshotCodecException(count+" changes out of "+values.length+" values in report snapshot");
+		}
+
+		int[] indexes = new int[count];
+
+		long previous = -1;
+
+		for(int i=0; i<count; i++){
+			previous += 1L + in.readVarInt();
+
+			if(previous >= values.length){
+				throw new ReportSnapshotCodecException("changed position "+previous+" out of "+values.length+" values in report snapshot");
+			}
+			indexes[i] = (int) previous;
+		}
+
+		Number[] changes = in.readNumbers(count);
+
+		for(int i=0; i<count; i++){
+			values[indexes[i]] = changes[i];
+		}
+	}
+
+	/**
+	 * 
+	 * @param raw
+	 * @return
+	 */
+	private byte[] deflate(byte[] raw){
+		Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+
+		try{
+			deflater.setInput(raw);
+			deflater.finish();
+
+			ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 2 + 64);
+			byte[] buffer = new byte[8192];
+
+			while(!deflater.finished()){
+				int length = deflater.deflate(buffer);
+				out.write(buffer, 0, length);
+			}
+			return out.toByteArray();
+		}
+		finally{
+			deflater.end();
+		}
+	}
+
+	/**
+	 * 
+	 * @param deflated
+	 * @param rawLength
+	 * @return
+	 * @throws ReportSnapshotCodecException
+	 */
+	private byte[] inflate(byte[] deflated, int rawLength) throws ReportSnapshotCodecException{
+		Inflater inflater = new Inflater();
+
+		try{
+			inflater.setInput(deflated);
+
+			byte[] raw = new byte[rawLength];
+			int length = 0;
+
+			while(length < rawLength){
+				int inflated = inflater.inflate(raw, length, rawLength - length);
+
+				if(inflated==0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())){
+					break;
+				}
+				length += inflated;
+			}
+
+			if(length!=rawLength){
+				throw new ReportSnapshotCodecException("report snapshot is truncated");
+			}
+			return raw;
+		}
+		catch(DataFormatException dfe){
+			throw new ReportSnapshotCodecException("corrupted report snapshot", dfe);
+		}
+		finally{
+			inflater.end();
+		}
+	}
+
+	/**
+	 * 
+	 * @param buffer
+	 * @return content from position to limit of the buffer
+	 */
+	private byte[] toByteArray(ByteBuffer buffer){
+		ByteBuffer view = buffer.slice();
+
+		if(view.hasArray() && view.arrayOffset()==0 && view.array().length==view.remaining()){
+			return view.array();
+		}
+
+		byte[] bytes = new byte[view.remaining()];
+		view.get(bytes);
+		return bytes;
+	}
+
+	/**
+	 * 
+	 * @param snapshot Java serialized report
+	 * @return
+	 * @throws ReportSnapshotCodecException
+	 */
+	private BaseReport deserialize(byte[] snapshot) throws ReportSnapshotCodecException{
+		try{
+			return (BaseReport) SerializationUtils.deserialize(snapshot);
+		}
+		catch(SerializationException | ClassCastException e){
+			throw new ReportSnapshotCodecException("unable to read legacy report snapshot", e);
+		}
+	}
+}
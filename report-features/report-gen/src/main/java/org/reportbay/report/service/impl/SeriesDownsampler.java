@@ -0,0 +1,357 @@
+package org.reportbay.report.service.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.reportbay.reporttemplate.domain.DownsampleAlgorithm;
+
+/**
+ * downsampling of a cartesian chart series to a target number of points.
+ * Points are fed one by one in label order, only the bucket(s) in progress are held
+ * and the kept points are written to the series data as soon as they are decided
+ */
+abstract class SeriesDownsampler {
+	
+	protected final int pointCount;
+	protected final Map<String, Number> seriesData;
+	
+	/**
+	 * position of the point being fed
+	 */
+	protected int index;
+	
+	/**
+	 * 
+	 * @param pointCount
+	 * @param seriesData
+	 */
+	protected SeriesDownsampler(int pointCount, Map<String, Number> seriesData){
+		this.pointCount = pointCount;
+		this.seriesData = seriesData;
+	}
+	
+	/**
+	 * 
+	 * @param algorithm LTTB if null
+	 * @param pointCount number of point(s) to be fed
+	 * @param targetPoints number of point(s) to be kept
+	 * @param seriesData
+	 * @return
+	 */
+	static SeriesDownsampler create(DownsampleAlgorithm algorithm, int pointCount, int targetPoints, Map<String, Number> seriesData){
+		if(pointCount <= targetPoints){
+			return new PassThrough(pointCount, seriesData);
+		}
+		
+		switch(algorithm==null? DownsampleAlgorithm.LTTB : algorithm){
+			case MIN_MAX:
+				return new MinMax(pointCount, Math.max(1, targetPoints / 2), seriesData);
+			case AVERAGE:
+				return new Average(pointCount, targetPoints, seriesData);
+			default:
+				//first and last point are always kept, at least one bucket in between
+				return new LargestTriangleThreeBuckets(pointCount, Math.max(1, targetPoints - 2), seriesData);
+		}
+	}
+	
+	/**
+	 * 
+	 * @param label
+	 * @param x position of the point on label axis
+	 * @param value
+	 */
+	void add(String label, double x, Number value){
+		accept(label, x, value);
+		index++;
+	}
+	
+	/**
+	 * write out the point(s) of the bucket(s) still in progress
+	 */
+	abstract void finish();
+	
+	protected abstract void accept(String label, double x, Number value);
+	
+	/**
+	 * 
+	 * @param position
+	 * @param positions
+	 * @param bucketCount
+	 * @return bucket of the position when positions are evenly split into buckets
+	 */
+	protected static int bucketOf(int position, int positions, int bucketCount){
+		return (int) ((long) position * bucketCount / positions);
+	}
+	
+	/**
+	 * 
+	 * series already within target
+	 *
+	 */
+	private static class PassThrough extends SeriesDownsampler{
+		
+		PassThrough(int pointCount, Map<String, Number> seriesData){
+			super(pointCount, seriesData);
+		}
+		
+		@Override
+		protected void accept(String label, double x, Number value) {
+			seriesData.put(label, value);
+		}
+		
+		@Override
+		void finish() {
+		}
+	}
+	
+	/**
+	 * 
+	 * Largest-Triangle-Three-Buckets. Point of a bucket is selected once the following bucket is complete,
+	 * hence at most two buckets are held
+	 *
+	 */
+	private static class LargestTriangleThreeBuckets extends SeriesDownsampler{
+		private final int bucketCount;
+		
+		private Bucket pending;
+		private Bucket filling;
+		
+		private double selectedX;
+		private double selectedY;
+		
+		LargestTriangleThreeBuckets(int pointCount, int bucketCount, Map<String, Number> seriesData){
+			super(pointCount, seriesData);
+			this.bucketCount = bucketCount;
+		}
+		
+		@Override
+		protected void accept(String label, double x, Number value) {
+			double y = value.doubleValue();
+			
+			//1. first point is always kept
+			if(index == 0){
+				seriesData.put(label, value);
+				selectedX = x;
+				selectedY = y;
+				return;
+			}
+			
+			//2. last point close the remaining bucket(s) and is always kept
+			if(index == pointCount - 1){
+				if(pending != null){
+					select(pending, filling.getAverageX(), filling.getAverageY());
+				}
+				if(filling != null){
+					select(filling, x, y);
+				}
+				pending = null;
+				filling = null;
+				seriesData.put(label, value);
+				return;
+			}
+			
+			//3. bucket complete, select the point of the bucket before it
+			int bucket = bucketOf(index - 1, pointCount - 2, bucketCount);
+			
+			if(filling == null || filling.id != bucket){
+				if(pending != null){
+					select(pending, filling.getAverageX(), filling.getAverageY());
+				}
+				pending = filling;
+				filling = new Bucket(bucket);
+			}
+			
+			filling.add(label, x, value);
+		}
+		
+		@Override
+		void finish() {
+			if(pending != null){
+				select(pending, filling.getAverageX(), filling.getAverageY());
+			}
+			if(filling != null){
+				select(filling, filling.getAverageX(), filling.getAverageY());
+			}
+			pending = null;
+			filling = null;
+		}
+		
+		/**
+		 * keep the point forming the largest triangle with last selected point and average of next bucket
+		 * @param bucket
+		 * @param nextX
+		 * @param nextY
+		 */
+		private void select(Bucket bucket, double nextX, double nextY){
+			int selected = 0;
+			double maxArea = -1;
+			
+			for(int i = 0; i < bucket.size(); i++){
+				double area = Math.abs((selectedX - nextX) * (bucket.getY(i) - selectedY) 
+										- (selectedX - bucket.getX(i)) * (nextY - selectedY));
+				
+				if(area > maxArea){
+					maxArea = area;
+					selected = i;
+				}
+			}
+			
+			seriesData.put(bucket.labels.get(selected), bucket.values.get(selected));
+			selectedX = bucket.getX(selected);
+			selectedY = bucket.getY(selected);
+		}
+	}
+	
+	/**
+	 * 
+	 * keep the minimum and maximum of each bucket, in label order
+	 *
+	 */
+	private static class MinMax extends SeriesDownsampler{
+		private final int bucketCount;
+		
+		private int bucket = -1;
+		private String minLabel;
+		private Number minValue;
+		private int minIndex;
+		private String maxLabel;
+		private Number maxValue;
+		private int maxIndex;
+		
+		MinMax(int pointCount, int bucketCount, Map<String, Number> seriesData){
+			super(pointCount, seriesData);
+			this.bucketCount = bucketCount;
+		}
+		
+		@Override
+		protected void accept(String label, double x, Number value) {
+			int pointBucket = bucketOf(index, pointCount, bucketCount);
+			
+			if(pointBucket != bucket){
+				finish();
+				bucket = pointBucket;
+				minLabel = maxLabel = label;
+				minValue = maxValue = value;
+				minIndex = maxIndex = index;
+				return;
+			}
+			
+			if(value.doubleValue() < minValue.doubleValue()){
+				minLabel = label;
+				minValue = value;
+				minIndex = index;
+			}
+			if(value.doubleValue() > maxValue.doubleValue()){
+				maxLabel = label;
+				maxValue = value;
+				maxIndex = index;
+			}
+		}
+		
+		@Override
+		void finish() {
+			if(minLabel == null){
+				return;
+			}
+			
+			if(minIndex <= maxIndex){
+				seriesData.put(minLabel, minValue);
+				seriesData.put(maxLabel, maxValue);
+			}
+			else{
+				seriesData.put(maxLabel, maxValue);
+				seriesData.put(minLabel, minValue);
+			}
+			minLabel = maxLabel = null;
+		}
+	}
+	
+	/**
+	 * 
+	 * average of each bucket
+	 *
+	 */
+	private static class Average extends SeriesDownsampler{
+		private final int bucketCount;
+		
+		private int bucket = -1;
+		private String firstLabel;
+		private double sum;
+		private int count;
+		
+		Average(int pointCount, int bucketCount, Map<String, Number> seriesData){
+			super(pointCount, seriesData);
+			this.bucketCount = bucketCount;
+		}
+		
+		@Override
+		protected void accept(String label, double x, Number value) {
+			int pointBucket = bucketOf(index, pointCount, bucketCount);
+			
+			if(pointBucket != bucket){
+				finish();
+				bucket = pointBucket;
+				firstLabel = label;
+			}
+			
+			sum += value.doubleValue();
+			count++;
+		}
+		
+		@Override
+		void finish() {
+			if(count > 0){
+				seriesData.put(firstLabel, sum / count);
+			}
+			sum = 0;
+			count = 0;
+		}
+	}
+	
+	/**
+	 * 
+	 * points of a LTTB bucket
+	 *
+	 */
+	private static class Bucket{
+		private final int id;
+		private final List<String> labels = new ArrayList<String>();
+		private final List<Number> values = new ArrayList<Number>();
+		private final List<Double> xs = new ArrayList<Double>();
+		private double sumX;
+		private double sumY;
+		
+		Bucket(int id){
+			this.id = id;
+		}
+		
+		void add(String label, double x, Number value){
+			labels.add(label);
+			values.add(value);
+			xs.add(x);
+			sumX += x;
+			sumY += value.doubleValue();
+		}
+		
+		int size(){
+			return labels.size();
+		}
+		
+		double getX(int i){
+			return xs.get(i);
+		}
+		
+		double getY(int i){
+			return values.get(i).doubleValue();
+		}
+		
+		double getAverageX(){
+			return sumX / size();
+		}
+		
+		double getAverageY(){
+			return sumY / size();
+		}
+	}
+}
@@ -0,0 +1,286 @@
+package org.reportbay.report.service.impl;
+
+import static org.reportbay.report.service.impl.SnapshotBinaryWriter.*;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.reportbay.report.service.exception.ReportSnapshotCodecException;
+
+/**
+ * counterpart of {@link SnapshotBinaryWriter}, reads from heap or memory mapped buffer
+ */
+class SnapshotBinaryReader {
+
+	private final ByteBuffer buffer;
+
+	private final List<String> dictionary = new ArrayList<String>();
+
+	/**
+	 * 
+	 * @param buffer read from its position to its limit, position of the buffer is not changed
+	 */
+	SnapshotBinaryReader(ByteBuffer buffer){
+		this.buffer = buffer.slice();
+	}
+
+	int readByte() throws ReportSnapshotCodecException{
+		if(!buffer.hasRemaining()){
+			throw new ReportSnapshotCodecException("report snapshot is truncated");
+		}
+		return buffer.get() & 0xFF;
+	}
+
+	boolean readBoolean() throws ReportSnapshotCodecException{
+		return readByte()!=0;
+	}
+
+	long readVarLong() throws ReportSnapshotCodecException{
+		long value = 0;
+
+		for(int shift=0; shift<64; shift+=7){
+			int b = readByte();
+			value |= (long) (b & 0x7F) << shift;
+
+			if((b & 0x80)==0){
+				return value;
+			}
+		}
+		throw new ReportSnapshotCodecException("malformed variable length integer in report snapshot");
+	}
+
+	/**
+	 * 
+	 * @return non negative int value
+	 * @throws ReportSnapshotCodecException
+	 */
+	int readVarInt() throws ReportSnapshotCodecException{
+		long value = readVarLong();
+
+		if(value < 0 || value > Integer.MAX_VALUE){
+			throw new ReportSnapshotCodecException("value "+value+" out of range in report snapshot");
+		}
+		return (int) value;
+	}
+
+	long readSignedVarLong() throws ReportSnapshotCodecException{
+		long value = readVarLong();
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	double readDouble() throws ReportSnapshotCodecException{
+		if(buffer.remaining() < 8){
+			throw new ReportSnapshotCodecException("report snapshot is truncated");
+		}
+		return buffer.getDouble();
+	}
+
+	/**
+	 * 
+	 * @return size, -1 for null
+	 * @throws ReportSnapshotCodecException
+	 */
+	int readSize() throws ReportSnapshotCodecException{
+		return readSize(0);
+	}
+
+	/**
+	 * 
+	 * @param copyable number of elements which may be copied from base report instead of being read
+	 * @return size, -1 for null
+	 * @throws ReportSnapshotCodecException
+	 */
+	int readSize(int copyable) throws ReportSnapshotCodecException{
+		int size = readVarInt() - 1;
+
+		//every element take at least a byte unless copied
+		if(size > (long) buffer.remaining() + copyable){
+			throw new ReportSnapshotCodecException("size "+size+" exceeds remaining report snapshot");
+		}
+		return size;
+	}
+
+	String readString() throws ReportSnapshotCodecException{
+		int code = readVarInt();
+
+		if(code==STRING_NULL){
+			return null;
+		}
+
+		if(code==STRING_LITERAL){
+			int length = readVarInt();
+
+			if(length > buffer.remaining()){
+				throw new ReportSnapshotCodecException("report snapshot is truncated");
+			}
+
+			String value = null;
+
+			if(buffer.hasArray()){
+				value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+				buffer.position(buffer.position() + length);
+			}
+			else{
+				byte[] bytes = new byte[length];
+				buffer.get(bytes);
+				value = new String(bytes, StandardCharsets.UTF_8);
+			}
+			dictionary.add(value);
+			return value;
+		}
+
+		int id = code - STRING_REFERENCE_BASE;
+
+		if(id >= dictionary.size()){
+			throw new ReportSnapshotCodecException("unknown string reference "+id+" in report snapshot");
+		}
+		return dictionary.get(id);
+	}
+
+	/**
+	 * 
+	 * @param enumType
+	 * @return
+	 * @throws ReportSnapshotCodecException if the constant no longer exist
+	 */
+	<E extends Enum<E>> E readEnum(Class<E> enumType) throws ReportSnapshotCodecException{
+		String name = readString();
+
+		if(name==null){
+			return null;
+		}
+
+		try{
+			return Enum.valueOf(enumType, name);
+		}
+		catch(IllegalArgumentException iae){
+			throw new ReportSnapshotCodecException("unknown "+enumType.getSimpleName()+" "+name+" in report snapshot", iae);
+		}
+	}
+
+	/**
+	 * 
+	 * @return
+	 * @throws ReportSnapshotCodecException
+	 */
+	List<String> readStrings() throws ReportSnapshotCodecException{
+		int size = readSize();
+
+		if(size < 0){
+			return null;
+		}
+
+		List<String> values = new ArrayList<String>(size);
+
+		for(int i=0; i<size; i++){
+			values.add(readString());
+		}
+		return values;
+	}
+
+	/**
+	 * 
+	 * @param count number of values in the block
+	 * @return
+	 * @throws ReportSnapshotCodecException
+	 */
+	Number[] readNumbers(int count) throws ReportSnapshotCodecException{
+		int blockType = readByte();
+
+		Number[] values = new Number[count];
+
+		for(int i=0; i<count; i++){
+			switch(blockType){
+			case BLOCK_INT:
+				values[i] = (int) readSignedVarLong();
+				break;
+			case BLOCK_LONG:
+				values[i] = readSignedVarLong();
+				break;
+			case BLOCK_DOUBLE:
+				values[i] = readDouble();
+				break;
+			case BLOCK_MIXED:
+				values[i] = readTaggedNumber();
+				break;
+			default:
+				throw new ReportSnapshotCodecException("unknown numeric block "+blockType+" in report snapshot");
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * 
+	 * @return number of bytes not yet read
+	 */
+	int remaining(){
+		return buffer.remaining();
+	}
+
+	/**
+	 * 
+	 * @return view of the bytes not yet read
+	 */
+	ByteBuffer remainingBuffer(){
+		return buffer.slice();
+	}
+
+	/**
+	 * 
+	 * @return true if all bytes are consumed
+	 */
+	boolean isExhausted(){
+		return !buffer.hasRemaining();
+	}
+
+	/**
+	 * 
+	 * @return
+	 * @throws ReportSnapshotCodecException
+	 */
+	private Number readTaggedNumber() throws ReportSnapshotCodecException{
+		int tag = readByte();
+
+		switch(tag){
+		case NUMBER_NULL:
+			return null;
+		case NUMBER_INT:
+			return (int) readSignedVarLong();
+		case NUMBER_LONG:
+			return readSignedVarLong();
+		case NUMBER_DOUBLE:
+			return readDouble();
+		case NUMBER_FLOAT:
+			return (float) readDouble();
+		case NUMBER_SHORT:
+			return (short) readSignedVarLong();
+		case NUMBER_BYTE:
+			return (byte) readSignedVarLong();
+		case NUMBER_BIG_INTEGER:
+			return new BigInteger(readNonNullString());
+		case NUMBER_DECIMAL:
+			return new BigDecimal(readNonNullString());
+		default:
+			throw new ReportSnapshotCodecException("unknown numeric type "+tag+" in report snapshot");
+		}
+	}
+
+	/**
+	 * 
+	 * @return
+	 * @throws ReportSnapshotCodecException
+	 */
+	private String readNonNullString() throws ReportSnapshotCodecException{
+		String value = readString();
+
+		if(value==null){
+			throw new ReportSnapshotCodecException("missing numeric value in report snapshot");
+		}
+		return value;
+	}
+}
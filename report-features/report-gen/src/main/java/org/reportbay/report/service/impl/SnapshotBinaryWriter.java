@@ -0,0 +1,274 @@
+package org.reportbay.report.service.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * primitive encoding of report snapshot body.
+ * Integer is written as variable length (zigzag for signed value), string is dictionary encoded
+ * so that repeated label is written once, and numeric values are written as block
+ * of the narrowest primitive type shared by all values of the block
+ */
+class SnapshotBinaryWriter {
+
+	static final int STRING_NULL = 0;
+	static final int STRING_LITERAL = 1;
+	static final int STRING_REFERENCE_BASE = 2;
+
+	static final int BLOCK_INT = 1;
+	static final int BLOCK_LONG = 2;
+	static final int BLOCK_DOUBLE = 3;
+	static final int BLOCK_MIXED = 4;
+
+	static final int NUMBER_NULL = 0;
+	static final int NUMBER_INT = 1;
+	static final int NUMBER_LONG = 2;
+	static final int NUMBER_DOUBLE = 3;
+	static final int NUMBER_FLOAT = 4;
+	static final int NUMBER_DECIMAL = 5;
+	static final int NUMBER_BIG_INTEGER = 6;
+	static final int NUMBER_SHORT = 7;
+	static final int NUMBER_BYTE = 8;
+
+	private final ByteArrayOutputStream out;
+
+	private final Map<String, Integer> dictionary = new HashMap<String, Integer>();
+
+	/**
+	 * 
+	 * @param initialSize
+	 */
+	SnapshotBinaryWriter(int initialSize){
+		out = new ByteArrayOutputStream(initialSize);
+	}
+
+	void writeByte(int value){
+		out.write(value);
+	}
+
+	void writeBoolean(boolean value){
+		out.write(value? 1 : 0);
+	}
+
+	/**
+	 * 
+	 * @param value non negative value
+	 */
+	void writeVarLong(long value){
+		while((value & ~0x7FL) != 0){
+			out.write((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.write((int) value);
+	}
+
+	/**
+	 * zigzag encoding, small negative value remains short
+	 * @param value
+	 */
+	void writeSignedVarLong(long value){
+		writeVarLong((value << 1) ^ (value >> 63));
+	}
+
+	void writeDouble(double value){
+		long bits = Double.doubleToRawLongBits(value);
+
+		for(int shift=56; shift>=0; shift-=8){
+			out.write((int) (bits >>> shift));
+		}
+	}
+
+	/**
+	 * 
+	 * @param collection
+	 * @return size, or -1 for null collection (written as 0)
+	 */
+	int writeSize(Collection<?> collection){
+		return writeSize(collection==null? -1 : collection.size());
+	}
+
+	/**
+	 * 
+	 * @param map
+	 * @return size, or -1 for null map (written as 0)
+	 */
+	int writeSize(Map<?, ?> map){
+		return writeSize(map==null? -1 : map.size());
+	}
+
+	/**
+	 * 
+	 * @param size -1 for null
+	 * @return size
+	 */
+	int writeSize(int size){
+		writeVarLong(size + 1L);
+		return size;
+	}
+
+	/**
+	 * string already written is replaced by its index in the dictionary
+	 * @param value
+	 */
+	void writeString(String value){
+		if(value==null){
+			writeVarLong(STRING_NULL);
+			return;
+		}
+
+		Integer id = dictionary.get(value);
+
+		if(id!=null){
+			writeVarLong(STRING_REFERENCE_BASE + (long) id);
+			return;
+		}
+
+		dictionary.put(value, dictionary.size());
+
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		writeVarLong(STRING_LITERAL);
+		writeVarLong(bytes.length);
+		out.write(bytes, 0, bytes.length);
+	}
+
+	/**
+	 * 
+	 * @param value
+	 */
+	void writeEnum(Enum<?> value){
+		writeString(value==null? null : value.name());
+	}
+
+	/**
+	 * 
+	 * @param values
+	 */
+	void writeStrings(Collection<String> values){
+		if(writeSize(values) > 0){
+			for(String value: values){
+				writeString(value);
+			}
+		}
+	}
+
+	/**
+	 * write the values as block of the narrowest type shared by all of them,
+	 * value of different types (or null) are tagged one by one.
+	 * Count of values is not written
+	 * @param values
+	 */
+	void writeNumbers(Collection<? extends Number> values){
+		int blockType = resolveBlockType(values);
+
+		writeByte(blockType);
+
+		for(Number value: values){
+			switch(blockType){
+			case BLOCK_INT:
+			case BLOCK_LONG:
+				writeSignedVarLong(value.longValue());
+				break;
+			case BLOCK_DOUBLE:
+				writeDouble(value.doubleValue());
+				break;
+			default:
+				writeTaggedNumber(value);
+			}
+		}
+	}
+
+	/**
+	 * 
+	 * @return
+	 */
+	int size(){
+		return out.size();
+	}
+
+	/**
+	 * 
+	 * @return
+	 */
+	byte[] toByteArray(){
+		return out.toByteArray();
+	}
+
+	/**
+	 * 
+	 * @param values
+	 * @return
+	 */
+	private static int resolveBlockType(Collection<? extends Number> values){
+		Class<?> valueClass = null;
+
+		for(Number value: values){
+			if(value==null || (valueClass!=null && valueClass!=value.getClass())){
+				return BLOCK_MIXED;
+			}
+			valueClass = value.getClass();
+		}
+
+		if(valueClass==null || valueClass==Integer.class){
+			return BLOCK_INT;
+		}
+		if(valueClass==Long.class){
+			return BLOCK_LONG;
+		}
+		if(valueClass==Double.class){
+			return BLOCK_DOUBLE;
+		}
+		return BLOCK_MIXED;
+	}
+
+	/**
+	 * 
+	 * @param value
+	 */
+	private void writeTaggedNumber(Number value){
+		if(value==null){
+			writeByte(NUMBER_NULL);
+		}
+		else if(value instanceof Integer){
+			writeByte(NUMBER_INT);
+			writeSignedVarLong(value.longValue());
+		}
+		else if(value instanceof Long){
+			writeByte(NUMBER_LONG);
+			writeSignedVarLong(value.longValue());
+		}
+		else if(value instanceof Double){
+			writeByte(NUMBER_DOUBLE);
+			writeDouble(value.doubleValue());
+		}
+		else if(value instanceof Float){
+			writeByte(NUMBER_FLOAT);
+			writeDouble(value.doubleValue());
+		}
+		else if(value instanceof Short){
+			writeByte(NUMBER_SHORT);
+			writeSignedVarLong(value.longValue());
+		}
+		else if(value instanceof Byte){
+			writeByte(NUMBER_BYTE);
+			writeSignedVarLong(value.longValue());
+		}
+		else if(value instanceof BigInteger){
+			writeByte(NUMBER_BIG_INTEGER);
+			writeString(value.toString());
+		}
+		else if(value instanceof BigDecimal){
+			writeByte(NUMBER_DECIMAL);
+			writeString(((BigDecimal) value).toString());
+		}
+		else{
+			//other number implementation is kept at its exact decimal value
+			writeByte(NUMBER_DECIMAL);
+			writeString(new BigDecimal(value.toString()).toString());
+		}
+	}
+}
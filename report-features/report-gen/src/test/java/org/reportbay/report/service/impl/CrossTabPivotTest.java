@@ -0,0 +1,148 @@
+package org.reportbay.report.service.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+import org.reportbay.common.domain.SqlTypeEnum;
+import org.reportbay.report.domain.CrossTabHeader;
+import org.reportbay.report.domain.CrossTabMatrix;
+import org.reportbay.report.service.exception.ReportGenerationServiceException;
+import org.reportbay.reporttemplate.domain.CrossTabFieldType;
+import org.reportbay.reporttemplate.domain.CrossTabTemplateDetail;
+import org.reportbay.reporttemplate.domain.GroupOrSum;
+import org.reportbay.reporttemplate.domain.SqlFunction;
+
+public class CrossTabPivotTest {
+
+	private static final double DELTA = 1e-9;
+
+	private List<CrossTabTemplateDetail> createDetails(){
+		List<CrossTabTemplateDetail> details = new ArrayList<CrossTabTemplateDetail>();
+		details.add(new CrossTabTemplateDetail("region", null, CrossTabFieldType.ROW, SqlTypeEnum.VARCHAR, SqlFunction.GROUPBY, 1, GroupOrSum.GROUPING));
+		details.add(new CrossTabTemplateDetail("year", null, CrossTabFieldType.COLUMN, SqlTypeEnum.INTEGER, SqlFunction.GROUPBY, 2, GroupOrSum.GROUPING));
+		details.add(new CrossTabTemplateDetail("amount", null, CrossTabFieldType.ROW, SqlTypeEnum.DOUBLE, SqlFunction.SUM, 3, GroupOrSum.SUM));
+		details.add(new CrossTabTemplateDetail("price", null, CrossTabFieldType.ROW, SqlTypeEnum.DOUBLE, SqlFunction.AVG, 4, GroupOrSum.SUM));
+		return details;
+	}
+
+	/**
+	 * result of the compiled crosstab query, grouped by region and year, AVG selected as sum and count.
+	 * Column are not in template order
+	 */
+	private ListRowCursor createResult(){
+		return new ListRowCursor()
+				.column("price" + CrossTabTemplateDetail.AVG_COUNT_ALIAS_SUFFIX, "BIGINT")
+				.column("year", "INTEGER")
+				.column("region", "VARCHAR")
+				.column("amount", "DOUBLE")
+				.column("price", "DOUBLE")
+				.row(3L, 2014, "East", 10d, 30d)
+				.row(1L, 2015, "East", 20d, 40d)
+				.row(2L, 2014, "West", 5d, 20d);
+	}
+
+	private CrossTabMatrix pivot(ListRowCursor result, int maxCells) throws Exception{
+		CrossTabPivot pivot = new CrossTabPivot(createDetails(), maxCells);
+
+		result.stream(row -> {
+			if(row.getRowNumber() == 1){
+				pivot.resolve(row);
+			}
+			return pivot.add(row);
+		});
+
+		return pivot.pivot();
+	}
+
+	private static double[] row(CrossTabMatrix matrix, int row){
+		double[] values = new double[matrix.cellColumnCount()];
+
+		for(int column = 0; column < values.length; column++){
+			values[column] = matrix.isFilled(row, column)? matrix.getCell(row, column) : Double.NaN;
+		}
+		return values;
+	}
+
+	@Test
+	public void testHeadersInDisplayOrderWithTotalsLast() throws Exception{
+		CrossTabMatrix matrix = pivot(createResult(), 1000);
+
+		assertEquals(Arrays.asList("region"), matrix.getRowFields());
+		assertEquals(Arrays.asList("year"), matrix.getColumnFields());
+		assertEquals(Arrays.asList("amount", "price"), matrix.getMeasureFields());
+
+		List<CrossTabHeader> rows = matrix.getRowHeaders();
+		assertEquals(3, rows.size());
+		assertEquals(Arrays.asList("East"), rows.get(0).getValues());
+		assertEquals(Arrays.asList("West"), rows.get(1).getValues());
+		assertEquals(Collections.emptyList(), rows.get(2).getValues());
+		assertTrue(rows.get(2).isTotal());
+
+		List<CrossTabHeader> columns = matrix.getColumnHeaders();
+		assertEquals(3, columns.size());
+		assertEquals(Arrays.asList("2014"), columns.get(0).getValues());
+		assertEquals(Arrays.asList("2015"), columns.get(1).getValues());
+		assertTrue(columns.get(2).isTotal());
+
+		assertEquals(3, matrix.getSourceRowCount());
+		assertEquals(3, matrix.getTotalRowCount());
+	}
+
+	@Test
+	public void testSumTotals() throws Exception{
+		CrossTabMatrix matrix = pivot(createResult(), 1000);
+
+		//amount is the first measure of each column header
+		assertEquals(30d, matrix.getCell(0, 4), DELTA);
+		assertEquals(5d, matrix.getCell(1, 4), DELTA);
+		assertEquals(15d, matrix.getCell(2, 0), DELTA);
+		assertEquals(20d, matrix.getCell(2, 2), DELTA);
+		assertEquals(35d, matrix.getCell(2, 4), DELTA);
+	}
+
+	@Test
+	public void testAverageTotalsWeightedBySourceRows() throws Exception{
+		CrossTabMatrix matrix = pivot(createResult(), 1000);
+
+		//East: (30 + 40) / (3 + 1), not the average of 10 and 40
+		assertArrayEquals(new double[]{10d, 10d, 20d, 40d, 30d, 17.5d}, row(matrix, 0), DELTA);
+		//West has no 2015 row
+		assertArrayEquals(new double[]{5d, 10d, Double.NaN, Double.NaN, 5d, 10d}, row(matrix, 1), DELTA);
+		//grand total: 90 / 6
+		assertArrayEquals(new double[]{15d, 10d, 20d, 40d, 35d, 15d}, row(matrix, 2), DELTA);
+	}
+
+	@Test
+	public void testEmptyCell() throws Exception{
+		CrossTabMatrix matrix = pivot(createResult(), 1000);
+
+		assertFalse(matrix.isFilled(1, 2));
+		assertFalse(matrix.isFilled(1, 3));
+		assertEquals(null, matrix.getCells()[1][2]);
+		assertEquals(Double.valueOf(5d), matrix.getCells()[1][0]);
+	}
+
+	@Test
+	public void testPageSharesColumnsAndSlicesRows() throws Exception{
+		CrossTabMatrix page = pivot(createResult(), 1000).page(1, 1);
+
+		assertEquals(1, page.getRowHeaders().size());
+		assertEquals(Arrays.asList("West"), page.getRowHeaders().get(0).getValues());
+		assertEquals(1, page.getRowOffset());
+		assertEquals(3, page.getTotalRowCount());
+		assertArrayEquals(new double[]{5d, 10d, Double.NaN, Double.NaN, 5d, 10d}, row(page, 0), DELTA);
+	}
+
+	@Test(expected = ReportGenerationServiceException.class)
+	public void testCellLimit() throws Exception{
+		pivot(createResult(), 10);
+	}
+}
@@ -0,0 +1,32 @@
+package org.reportbay.report.service.impl;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+import org.reportbay.report.service.exception.ReportGenerationServiceException;
+
+public class DownsampleQueryTest {
+
+	@Test
+	public void testOrderedBySeriesThenLabel() throws Exception{
+		DownsampleQuery query = new DownsampleQuery("SELECT day AS \"Day\", SUM(amount) AS \"Amount\", region AS \"Region\" FROM sales GROUP BY day, region ORDER BY day",
+				"day", "amount", "region");
+
+		assertEquals("SELECT day AS \"Day\", SUM(amount) AS \"Amount\", region AS \"Region\" FROM sales GROUP BY day, region ORDER BY \"Region\", \"Day\"",
+				query.getOrderedQuery());
+	}
+
+	@Test
+	public void testCountPerSeries() throws Exception{
+		DownsampleQuery query = new DownsampleQuery("SELECT day AS `day`, amount AS `amount`, region AS `region` FROM sales ORDER BY day",
+				"day", "amount", "region");
+
+		assertEquals("SELECT `region`, COUNT(*) FROM (SELECT day AS `day`, amount AS `amount`, region AS `region` FROM sales) downsample_source"
+				+ " WHERE `day` IS NOT NULL AND `amount` IS NOT NULL GROUP BY `region`", query.getCountQuery());
+	}
+
+	@Test(expected = ReportGenerationServiceException.class)
+	public void testMissingField() throws Exception{
+		new DownsampleQuery("SELECT day AS day, amount AS amount FROM sales", "day", "amount", "region");
+	}
+}
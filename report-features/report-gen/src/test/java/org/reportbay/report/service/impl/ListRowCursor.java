@@ -0,0 +1,107 @@
+package org.reportbay.report.service.impl;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.reportbay.datasource.domain.ColumnMetadata;
+import org.reportbay.datasource.service.RowCursor;
+import org.reportbay.datasource.service.RowVisitor;
+
+/**
+ * in memory {@link RowCursor} over rows of values, standing in for an open result set
+ */
+class ListRowCursor implements RowCursor {
+	private final List<ColumnMetadata> columns = new ArrayList<ColumnMetadata>();
+	private final List<Object[]> rows = new ArrayList<Object[]>();
+
+	private int rowNumber;
+	private boolean wasNull;
+
+	/**
+	 *
+	 * @param label
+	 * @param typeName name of {@link org.reportbay.common.domain.SqlTypeEnum}
+	 * @return
+	 */
+	ListRowCursor column(String label, String typeName){
+		columns.add(new ColumnMetadata(label, typeName, null, columns.size() + 1));
+		return this;
+	}
+
+	ListRowCursor row(Object... values){
+		rows.add(values);
+		return this;
+	}
+
+	/**
+	 * stream the rows to the visitor as JdbcClient does
+	 * @param visitor
+	 * @return number of rows visited
+	 * @throws SQLException
+	 */
+	int stream(RowVisitor visitor) throws SQLException{
+		for(rowNumber = 1; rowNumber <= rows.size(); rowNumber++){
+			if(!visitor.visit(this)){
+				return rowNumber;
+			}
+		}
+		return rows.size();
+	}
+
+	@Override
+	public List<ColumnMetadata> getColumns() {
+		return columns;
+	}
+
+	@Override
+	public ColumnMetadata findColumn(String label) {
+		for(ColumnMetadata column: columns){
+			if(column.getLabel().equalsIgnoreCase(label)){
+				return column;
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public int getRowNumber() {
+		return rowNumber;
+	}
+
+	private Object value(int columnIdx){
+		Object value = rows.get(rowNumber - 1)[columnIdx - 1];
+		wasNull = value == null;
+		return value;
+	}
+
+	@Override
+	public String getString(int columnIdx) throws SQLException {
+		Object value = value(columnIdx);
+		return value == null? null : value.toString();
+	}
+
+	@Override
+	public long getLong(int columnIdx) throws SQLException {
+		Object value = value(columnIdx);
+		return value == null? 0 : ((Number) value).longValue();
+	}
+
+	@Override
+	public double getDouble(int columnIdx) throws SQLException {
+		Object value = value(columnIdx);
+		return value == null? 0 : ((Number) value).doubleValue();
+	}
+
+	@Override
+	public BigDecimal getBigDecimal(int columnIdx) throws SQLException {
+		Object value = value(columnIdx);
+		return value == null? null : new BigDecimal(value.toString());
+	}
+
+	@Override
+	public boolean wasNull() throws SQLException {
+		return wasNull;
+	}
+}
@@ -0,0 +1,235 @@
+package org.reportbay.report.service.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.SerializationUtils;
+import org.junit.Test;
+import org.reportbay.common.domain.SqlTypeEnum;
+import org.reportbay.report.domain.BaseReport;
+import org.reportbay.report.domain.ChartSeries;
+import org.reportbay.report.domain.CrossTabHeader;
+import org.reportbay.report.domain.CrossTabMatrix;
+import org.reportbay.report.domain.CrossTabReport;
+import org.reportbay.report.domain.LineChartReport;
+import org.reportbay.report.service.exception.ReportSnapshotCodecException;
+import org.reportbay.reporttemplate.domain.CrossTabFieldType;
+import org.reportbay.reporttemplate.domain.CrossTabTemplateDetail;
+import org.reportbay.reporttemplate.domain.GroupOrSum;
+import org.reportbay.reporttemplate.domain.ReportTemplateTypeEnum;
+import org.reportbay.reporttemplate.domain.SqlFunction;
+
+public class ReportSnapshotCodecImplTest {
+
+	private static final double DELTA = 1e-9;
+
+	private final ReportSnapshotCodecImpl codec = new ReportSnapshotCodecImpl();
+
+	private LineChartReport createLineChart(){
+		LineChartReport report = new LineChartReport();
+		report.setReportName("sales");
+		report.setReportType(ReportTemplateTypeEnum.SIMPLE);
+		report.setTitle("Monthly sales");
+		report.setXAxisTitle("month");
+		report.setYAxisTitle("amount");
+		report.setShowXAxis(true);
+		report.setShowLegend(true);
+
+		Map<String, Number> data = new LinkedHashMap<String, Number>();
+		data.put("2015-01", 10.5d);
+		data.put("2015-02", 7L);
+		data.put("2015-03", -3.25d);
+
+		ChartSeries series = new ChartSeries();
+		series.setSeriesName("East");
+		series.setSeriesData(data);
+
+		report.setChartDataSeries(new ArrayList<ChartSeries>(Arrays.asList(series)));
+		return report;
+	}
+
+	/**
+	 * crosstab of amount by region and year
+	 */
+	private CrossTabReport createCrossTab(Object[]... rows) throws Exception{
+		List<CrossTabTemplateDetail> details = new ArrayList<CrossTabTemplateDetail>();
+		details.add(new CrossTabTemplateDetail("region", null, CrossTabFieldType.ROW, SqlTypeEnum.VARCHAR, SqlFunction.GROUPBY, 1, GroupOrSum.GROUPING));
+		details.add(new CrossTabTemplateDetail("year", null, CrossTabFieldType.COLUMN, SqlTypeEnum.INTEGER, SqlFunction.GROUPBY, 2, GroupOrSum.GROUPING));
+		details.add(new CrossTabTemplateDetail("amount", null, CrossTabFieldType.ROW, SqlTypeEnum.DOUBLE, SqlFunction.SUM, 3, GroupOrSum.SUM));
+
+		ListRowCursor result = new ListRowCursor()
+				.column("region", "VARCHAR")
+				.column("year", "INTEGER")
+				.column("amount", "DOUBLE");
+
+		for(Object[] row: rows){
+			result.row(row);
+		}
+
+		CrossTabPivot pivot = new CrossTabPivot(details, 1000);
+
+		result.stream(row -> {
+			if(row.getRowNumber() == 1){
+				pivot.resolve(row);
+			}
+			return pivot.add(row);
+		});
+
+		CrossTabReport report = new CrossTabReport();
+		report.setReportName("amount by region");
+		report.setReportType(ReportTemplateTypeEnum.CUSTOM);
+		report.setMatrix(pivot.pivot());
+		return report;
+	}
+
+	private CrossTabReport createBaseCrossTab() throws Exception{
+		return createCrossTab(new Object[]{"East", 2014, 10d},
+							  new Object[]{"East", 2015, 20d},
+							  new Object[]{"West", 2014, 5d});
+	}
+
+	private static void assertLineChartEquals(LineChartReport expected, BaseReport decoded){
+		assertTrue(decoded instanceof LineChartReport);
+		LineChartReport actual = (LineChartReport) decoded;
+
+		assertEquals(expected.getReportName(), actual.getReportName());
+		assertEquals(expected.getReportType(), actual.getReportType());
+		assertEquals(expected.getTitle(), actual.getTitle());
+		assertEquals(expected.getXAxisTitle(), actual.getXAxisTitle());
+		assertEquals(expected.getYAxisTitle(), actual.getYAxisTitle());
+		assertEquals(expected.isShowXAxis(), actual.isShowXAxis());
+		assertEquals(expected.isShowYAxis(), actual.isShowYAxis());
+		assertEquals(expected.isShowLegend(), actual.isShowLegend());
+		assertEquals(expected.getChartDataSeries().size(), actual.getChartDataSeries().size());
+
+		for(int i = 0; i < expected.getChartDataSeries().size(); i++){
+			ChartSeries expectedSeries = expected.getChartDataSeries().get(i);
+			ChartSeries actualSeries = actual.getChartDataSeries().get(i);
+
+			assertEquals(expectedSeries.getSeriesName(), actualSeries.getSeriesName());
+			assertEquals(new ArrayList<String>(expectedSeries.getSeriesData().keySet()), new ArrayList<String>(actualSeries.getSeriesData().keySet()));
+
+			for(Map.Entry<String, Number> point: expectedSeries.getSeriesData().entrySet()){
+				assertEquals(point.getValue().doubleValue(), actualSeries.getSeriesData().get(point.getKey()).doubleValue(), DELTA);
+			}
+		}
+	}
+
+	private static void assertCrossTabEquals(CrossTabReport expected, BaseReport decoded){
+		assertTrue(decoded instanceof CrossTabReport);
+		CrossTabMatrix expectedMatrix = expected.getMatrix();
+		CrossTabMatrix actualMatrix = ((CrossTabReport) decoded).getMatrix();
+
+		assertEquals(expected.getReportName(), decoded.getReportName());
+		assertEquals(expectedMatrix.getRowFields(), actualMatrix.getRowFields());
+		assertEquals(expectedMatrix.getColumnFields(), actualMatrix.getColumnFields());
+		assertEquals(expectedMatrix.getMeasureFields(), actualMatrix.getMeasureFields());
+		assertEquals(values(expectedMatrix.getRowHeaders()), values(actualMatrix.getRowHeaders()));
+		assertEquals(values(expectedMatrix.getColumnHeaders()), values(actualMatrix.getColumnHeaders()));
+		assertEquals(expectedMatrix.getSourceRowCount(), actualMatrix.getSourceRowCount());
+		assertArrayEquals(expectedMatrix.getCells(), actualMatrix.getCells());
+	}
+
+	private static List<List<String>> values(List<CrossTabHeader> headers){
+		List<List<String>> values = new ArrayList<List<String>>();
+
+		for(CrossTabHeader header: headers){
+			values.add(header.getValues());
+		}
+		return values;
+	}
+
+	@Test
+	public void testChartRoundTrip() throws Exception{
+		LineChartReport report = createLineChart();
+
+		assertLineChartEquals(report, codec.decode(codec.encode(report)));
+	}
+
+	@Test
+	public void testCrossTabRoundTrip() throws Exception{
+		CrossTabReport report = createBaseCrossTab();
+
+		assertCrossTabEquals(report, codec.decode(codec.encode(report)));
+	}
+
+	@Test
+	public void testLegacyJavaSerializedSnapshot() throws Exception{
+		LineChartReport report = createLineChart();
+
+		//snapshot stored by release before the codec
+		byte[] legacy = SerializationUtils.serialize(report);
+
+		assertLineChartEquals(report, codec.decode(legacy));
+	}
+
+	@Test
+	public void testChartDelta() throws Exception{
+		LineChartReport base = createLineChart();
+		LineChartReport report = createLineChart();
+		report.getChartDataSeries().get(0).getSeriesData().put("2015-02", 8.5d);
+		report.getChartDataSeries().get(0).getSeriesData().put("2015-04", 12d);
+
+		byte[] delta = codec.encodeDelta(base, report);
+
+		assertLineChartEquals(report, codec.decode(ByteBuffer.wrap(delta), base));
+	}
+
+	@Test
+	public void testCrossTabDeltaChainOverKeyFrame() throws Exception{
+		CrossTabReport keyFrame = createBaseCrossTab();
+		//changed cell and added row
+		CrossTabReport second = createCrossTab(new Object[]{"East", 2014, 10d},
+											   new Object[]{"East", 2015, 25d},
+											   new Object[]{"North", 2015, 1d},
+											   new Object[]{"West", 2014, 5d});
+		//removed row
+		CrossTabReport third = createCrossTab(new Object[]{"East", 2014, 10d},
+											  new Object[]{"East", 2015, 25d},
+											  new Object[]{"North", 2015, 1d});
+
+		byte[] encodedKeyFrame = codec.encode(keyFrame);
+		byte[] firstDelta = codec.encodeDelta(keyFrame, second);
+		byte[] secondDelta = codec.encodeDelta(second, third);
+
+		//reconstruct from the key frame, each delta on top of the previous decoded report
+		BaseReport decoded = codec.decode(encodedKeyFrame);
+		assertCrossTabEquals(keyFrame, decoded);
+
+		decoded = codec.decode(ByteBuffer.wrap(firstDelta), decoded);
+		assertCrossTabEquals(second, decoded);
+
+		decoded = codec.decode(ByteBuffer.wrap(secondDelta), decoded);
+		assertCrossTabEquals(third, decoded);
+	}
+
+	@Test
+	public void testKeyFrameIgnoresBase() throws Exception{
+		CrossTabReport report = createBaseCrossTab();
+
+		assertCrossTabEquals(report, codec.decode(ByteBuffer.wrap(codec.encode(report)), createLineChart()));
+	}
+
+	@Test
+	public void testNoDeltaOfDifferentKind() throws Exception{
+		assertNull(codec.encodeDelta(createLineChart(), createBaseCrossTab()));
+	}
+
+	@Test(expected = ReportSnapshotCodecException.class)
+	public void testDeltaWithoutBase() throws Exception{
+		LineChartReport base = createLineChart();
+		LineChartReport report = createLineChart();
+		report.getChartDataSeries().get(0).getSeriesData().put("2015-02", 8.5d);
+
+		codec.decode(codec.encodeDelta(base, report));
+	}
+}
@@ -0,0 +1,74 @@
+package org.reportbay.report.service.impl;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Test;
+import org.reportbay.reporttemplate.domain.DownsampleAlgorithm;
+
+public class SeriesDownsamplerTest {
+
+	private static final double DELTA = 1e-9;
+
+	/**
+	 * feed the value(s) labelled p0, p1, ... evenly spaced as the chart generation does
+	 */
+	private Map<String, Number> downsample(DownsampleAlgorithm algorithm, int targetPoints, double... values){
+		Map<String, Number> seriesData = new LinkedHashMap<String, Number>();
+		SeriesDownsampler downsampler = SeriesDownsampler.create(algorithm, values.length, targetPoints, seriesData);
+
+		for(int i = 0; i < values.length; i++){
+			downsampler.add("p" + i, i, values[i]);
+		}
+		downsampler.finish();
+
+		return seriesData;
+	}
+
+	@Test
+	public void testSeriesWithinTargetIsKept(){
+		Map<String, Number> seriesData = downsample(DownsampleAlgorithm.LTTB, 5, 1, 2, 3);
+
+		assertEquals(Arrays.asList("p0", "p1", "p2"), new ArrayList<String>(seriesData.keySet()));
+	}
+
+	@Test
+	public void testLargestTriangleKeepsFirstLastAndPeaks(){
+		Map<String, Number> seriesData = downsample(DownsampleAlgorithm.LTTB, 4, 0, 1, 2, 100, 2, 1, 0, -50, 0, 1);
+
+		assertEquals(Arrays.asList("p0", "p3", "p7", "p9"), new ArrayList<String>(seriesData.keySet()));
+	}
+
+	@Test
+	public void testDefaultAlgorithmIsLargestTriangle(){
+		Map<String, Number> seriesData = downsample(null, 4, 0, 1, 2, 100, 2, 1, 0, -50, 0, 1);
+
+		assertEquals(Arrays.asList("p0", "p3", "p7", "p9"), new ArrayList<String>(seriesData.keySet()));
+	}
+
+	@Test
+	public void testMinMaxInLabelOrder(){
+		Map<String, Number> seriesData = downsample(DownsampleAlgorithm.MIN_MAX, 4, 5, 9, 1, 4, 7, 3, 8, 2);
+
+		//bucket p0..p3 keeps max p1 then min p2, bucket p4..p7 keeps max p6 then min p7
+		assertEquals(Arrays.asList("p1", "p2", "p6", "p7"), new ArrayList<String>(seriesData.keySet()));
+		assertEquals(9d, seriesData.get("p1").doubleValue(), DELTA);
+		assertEquals(1d, seriesData.get("p2").doubleValue(), DELTA);
+		assertEquals(8d, seriesData.get("p6").doubleValue(), DELTA);
+		assertEquals(2d, seriesData.get("p7").doubleValue(), DELTA);
+	}
+
+	@Test
+	public void testAverageUnderFirstLabelOfBucket(){
+		Map<String, Number> seriesData = downsample(DownsampleAlgorithm.AVERAGE, 3, 1, 3, 10, 20, 5, 5);
+
+		assertEquals(Arrays.asList("p0", "p2", "p4"), new ArrayList<String>(seriesData.keySet()));
+		assertEquals(2d, seriesData.get("p0").doubleValue(), DELTA);
+		assertEquals(15d, seriesData.get("p2").doubleValue(), DELTA);
+		assertEquals(5d, seriesData.get("p4").doubleValue(), DELTA);
+	}
+}
@@ -0,0 +1,84 @@
+package org.reportbay.model.domain;
+
+import java.io.Serializable;
+
+/**
+ * point in time statistics of the parsed query cache
+ */
+public class ParsedQueryCacheStats implements Serializable{
+
+	/**
+	 *
+	 */
+	private static final long serialVersionUID = 1L;
+
+	private int size;
+	private int maxEntries;
+	private long hitCount;
+	private long missCount;
+	private long parseCount;
+	private long parseTimeMillis;
+
+	public ParsedQueryCacheStats() {
+		// Default Constructor.
+	}
+
+	public int getSize() {
+		return size;
+	}
+	public void setSize(int size) {
+		this.size = size;
+	}
+	public int getMaxEntries() {
+		return maxEntries;
+	}
+	public void setMaxEntries(int maxEntries) {
+		this.maxEntries = maxEntries;
+	}
+	public long getHitCount() {
+		return hitCount;
+	}
+	public void setHitCount(long hitCount) {
+		this.hitCount = hitCount;
+	}
+	public long getMissCount() {
+		return missCount;
+	}
+	public void setMissCount(long missCount) {
+		this.missCount = missCount;
+	}
+	public long getParseCount() {
+		return parseCount;
+	}
+	public void setParseCount(long parseCount) {
+		this.parseCount = parseCount;
+	}
+	/**
+	 * @return accumulated time spent on parsing
+	 */
+	public long getParseTimeMillis() {
+		return parseTimeMillis;
+	}
+	public void setParseTimeMillis(long parseTimeMillis) {
+		this.parseTimeMillis = parseTimeMillis;
+	}
+
+	/**
+	 *
+	 * @return ratio of lookup served without parsing, 0 if no lookup yet
+	 */
+	public double getHitRatio() {
+		long total = hitCount + missCount;
+		return total==0? 0 : (double) hitCount / total;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString() {
+		return "ParsedQueryCacheStats [size=" + size + ", maxEntries=" + maxEntries
+				+ ", hitCount=" + hitCount + ", missCount=" + missCount
+				+ ", parseCount=" + parseCount + ", parseTimeMillis=" + parseTimeMillis + "]";
+	}
+}
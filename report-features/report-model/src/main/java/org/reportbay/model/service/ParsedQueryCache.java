@@ -0,0 +1,37 @@
+package org.reportbay.model.service;
+
+import javax.ejb.Local;
+
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.statement.select.Select;
+
+import org.reportbay.model.domain.ParsedQueryCacheStats;
+
+/**
+ * cache of parsed SELECT statement keyed by model id and query text, 
+ * so that the same model query is parsed once instead of on every chart build or unique value lookup.
+ * The cached statement is never handed out, caller gets its own copy to mutate
+ */
+@Local
+public interface ParsedQueryCache {
+	/**
+	 * 
+	 * @param modelId owner of the query, 0 if query is not bound to persisted model
+	 * @param query
+	 * @return copy of the parsed statement, null if query is not a SELECT statement
+	 * @throws JSQLParserException
+	 */
+	Select parseSelect(int modelId, String query) throws JSQLParserException;
+	
+	/**
+	 * discard parsed queries of the model
+	 * @param modelId
+	 */
+	void invalidateModel(int modelId);
+	
+	/**
+	 * 
+	 * @return
+	 */
+	ParsedQueryCacheStats getStatistics();
+}
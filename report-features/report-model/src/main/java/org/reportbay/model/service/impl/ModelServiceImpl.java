@@ -2,10 +2,10 @@ package org.reportbay.model.service.impl;
 
 import static org.reportbay.common.util.CommonUtils.checkForNull;
 
-import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeoutException;
 
 import javax.ejb.Stateless;
 import javax.ejb.TransactionAttribute;
@@ -15,7 +15,6 @@ import javax.ejb.TransactionManagementType;
 import javax.inject.Inject;
 
 import net.sf.jsqlparser.JSQLParserException;
-import net.sf.jsqlparser.parser.CCJSqlParserManager;
 import net.sf.jsqlparser.statement.select.Distinct;
 import net.sf.jsqlparser.statement.select.PlainSelect;
 import net.sf.jsqlparser.statement.select.Select;
@@ -23,18 +22,22 @@ import net.sf.jsqlparser.statement.select.SelectBody;
 import net.sf.jsqlparser.statement.select.SelectItem;
 
 import org.apache.commons.collections.CollectionUtils;
+import org.reportbay.common.util.SingleFlight;
 import org.reportbay.datasource.dao.DatasourceDAO;
 import org.reportbay.datasource.dao.exception.DatasourceDAOException;
 import org.reportbay.datasource.domain.ColumnMetadata;
 import org.reportbay.datasource.domain.Datasource;
 import org.reportbay.datasource.service.JdbcClient;
+import org.reportbay.datasource.service.QueryContext;
 import org.reportbay.datasource.service.exception.JdbcClientException;
+import org.reportbay.datasource.service.exception.QueryTimeoutException;
 import org.reportbay.model.dao.ModelDAO;
 import org.reportbay.model.dao.exception.ModelDAOException;
 import org.reportbay.model.domain.AttributeMapping;
 import org.reportbay.model.domain.Model;
 import org.reportbay.model.domain.SimpleModel;
 import org.reportbay.model.service.ModelService;
+import org.reportbay.model.service.ParsedQueryCache;
 import org.reportbay.model.service.exception.ModelServiceException;
 import org.reportbay.model.service.util.JoinQueryConverter;
 import org.reportbay.model.service.util.SelectFieldMatcher;
@@ -47,6 +50,11 @@ public class ModelServiceImpl implements ModelService {
 	private final Logger LOG = LoggerFactory.getLogger(ModelServiceImpl.class);
 
 	private static final String SELECT_QUERY = "SELECT * FROM %s";
+	
+	/**
+	 * in flight unique value query shared by all instances, keyed by datasource and query
+	 */
+	private static final SingleFlight<String, List<String>> UNIQUE_VALUE_QUERIES = new SingleFlight<String, List<String>>();
 
 	@Inject
 	private ModelDAO modelDAO;
@@ -57,6 +65,9 @@ public class ModelServiceImpl implements ModelService {
 	@Inject
 	private JdbcClient jdbcClient;
 	
+	@Inject
+	private ParsedQueryCache parsedQueryCache;
+	
 	/**
 	 * {@inheritDoc}
 	 */
@@ -87,6 +98,7 @@ public class ModelServiceImpl implements ModelService {
 		} catch (ModelDAOException e) {
 			throw new ModelServiceException("Failed to update Model with given information - " + model, e);
 		}
+		parsedQueryCache.invalidateModel(model.getId());
 	}
 
 	/**
@@ -103,6 +115,7 @@ public class ModelServiceImpl implements ModelService {
 		} catch (ModelDAOException e) {
 			throw new ModelServiceException("Failed to delete Model with given id[" + model.getId() + "].", e);
 		}
+		parsedQueryCache.invalidateModel(model.getId());
 
 	}
 
@@ -148,14 +161,11 @@ public class ModelServiceImpl implements ModelService {
 	public void updateModelQueryFromJoinQuery(Model model) throws ModelServiceException {
 		JoinQueryConverter jqConverter = new JoinQueryConverter(getModelDataSource(model), jdbcClient);
 		
-		CCJSqlParserManager pm = new CCJSqlParserManager();
-		
 		try {
 			//1. expand all * to actual column
-			net.sf.jsqlparser.statement.Statement statement = pm.parse(new StringReader(model.getQuery().getJoinQuery()));
+			Select selectStatement = parsedQueryCache.parseSelect(model.getId(), model.getQuery().getJoinQuery());
 			
-			if (statement instanceof Select) {
-				Select selectStatement = (Select) statement;
+			if (selectStatement!=null) {
 				selectStatement.getSelectBody().accept(jqConverter);
 				
 				model.getQuery().setValue(jqConverter.getConvertedQuery());
@@ -173,16 +183,14 @@ public class ModelServiceImpl implements ModelService {
 		String tableName = ((SimpleModel) model).getTable();
 		JoinQueryConverter jqConverter = new JoinQueryConverter(getModelDataSource(model), jdbcClient);
 		
-		CCJSqlParserManager pm = new CCJSqlParserManager();
 		//1. construct into select * from table query string
 		String query = String.format(SELECT_QUERY, tableName);
 		try {
 			
 			//2. expand the * to actual column
-			net.sf.jsqlparser.statement.Statement statement = pm.parse(new StringReader(query));
+			Select selectStatement = parsedQueryCache.parseSelect(model.getId(), query);
 			
-			if (statement instanceof Select) {
-				Select selectStatement = (Select) statement;
+			if (selectStatement!=null) {
 				selectStatement.getSelectBody().accept(jqConverter);
 				
 				model.getQuery().setValue(jqConverter.getConvertedQuery());
@@ -250,15 +258,12 @@ public class ModelServiceImpl implements ModelService {
 			throw new ModelServiceException("alias field name ["+aliasFieldName+"] not exist in model");
 		}
 
-		//autoclose string reader
-		try(StringReader queryStringReader = new StringReader(model.getQuery().getValue())) {
-
-			CCJSqlParserManager pm = new CCJSqlParserManager();
-			//2. parse model's query string
-			net.sf.jsqlparser.statement.Statement statement = pm.parse(queryStringReader);
+		try {
+			//2. parse model's query string, own copy of the cached statement is safe to rewrite
+			Select statement = parsedQueryCache.parseSelect(model.getId(), model.getQuery().getValue());
 			
-			if (statement instanceof Select) {
-				SelectBody selectBody = ((Select)statement).getSelectBody();
+			if (statement!=null) {
+				SelectBody selectBody = statement.getSelectBody();
 				
 				if(selectBody instanceof PlainSelect){
 					PlainSelect ps = (PlainSelect)selectBody;
@@ -311,17 +316,27 @@ public class ModelServiceImpl implements ModelService {
 	 */
 	private List<String> retrieveFieldUniqueValue(Datasource ds, String query) throws JdbcClientException{
 		
-		List<String> uniqueValueList = new ArrayList<String>();
-		
-		List<Map<ColumnMetadata, String>> resultList = jdbcClient.execute(ds, query);
-		
-		for (Map<ColumnMetadata, String> map : resultList) {
-			for(Map.Entry<ColumnMetadata, String> entry: map.entrySet()){
-				uniqueValueList.add(entry.getValue());
-			}
+		//concurrent request of the same field share a single query execution, waiting within the request deadline
+		try{
+			return UNIQUE_VALUE_QUERIES.execute(ds.getId()+"|"+query, () -> {
+				List<String> uniqueValueList = new ArrayList<String>();
+				
+				jdbcClient.execute(ds, query, row -> {
+					for(ColumnMetadata column: row.getColumns()){
+						uniqueValueList.add(row.getString(column.getOrder()));
+					}
+					return true;
+				});
+				
+				return uniqueValueList;
+			}, QueryContext.current());
+		}
+		catch(TimeoutException e){
+			throw new QueryTimeoutException("Deadline exceeded waiting for field unique value query", e);
+		}
+		catch(CancellationException e){
+			throw new JdbcClientException("Field unique value query is cancelled", e);
 		}
-		
-		return uniqueValueList;
 	}
 	
 	/**
@@ -0,0 +1,194 @@
+package org.reportbay.model.service.impl;
+
+import java.io.StringReader;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.Singleton;
+
+import net.sf.jsqlparser.JSQLParserException;
+import net.sf.jsqlparser.parser.CCJSqlParserManager;
+import net.sf.jsqlparser.statement.Statement;
+import net.sf.jsqlparser.statement.select.Select;
+
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.reportbay.common.util.SystemProperties;
+import org.reportbay.model.domain.ParsedQueryCacheStats;
+import org.reportbay.model.service.ParsedQueryCache;
+import org.reportbay.model.service.util.SelectCopier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Cache sizing is read from system property {@value #MAX_ENTRIES_PROPERTY}.
+ */
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class ParsedQueryCacheImpl implements ParsedQueryCache {
+	private static final Logger LOG = LoggerFactory.getLogger(ParsedQueryCacheImpl.class);
+
+	private static final String MAX_ENTRIES_PROPERTY = "reportbay.model.parsedQuery.maxEntries";
+	private static final int DEFAULT_MAX_ENTRIES = 500;
+
+	private final int maxEntries = NumberUtils.toInt(SystemProperties.getProperty(MAX_ENTRIES_PROPERTY), DEFAULT_MAX_ENTRIES);
+
+	/**
+	 * access ordered for least recently used eviction, guarded by itself
+	 */
+	private final LinkedHashMap<QueryKey, Select> entries = new LinkedHashMap<QueryKey, Select>(16, 0.75f, true);
+
+	private final AtomicLong hitCount = new AtomicLong();
+	private final AtomicLong missCount = new AtomicLong();
+	private final AtomicLong parseCount = new AtomicLong();
+	private final AtomicLong parseTimeNanos = new AtomicLong();
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public Select parseSelect(int modelId, String query) throws JSQLParserException {
+		QueryKey key = new QueryKey(modelId, query);
+		
+		//1. copy the cached statement
+		Select cached;
+		
+		synchronized(entries){
+			cached = entries.get(key);
+		}
+		
+		if(cached!=null){
+			hitCount.incrementAndGet();
+			return SelectCopier.copy(cached);
+		}
+		
+		missCount.incrementAndGet();
+		
+		//2. parse outside the lock, concurrent miss of the same query may parse twice
+		Statement statement = parse(query);
+		
+		if(!(statement instanceof Select)){
+			return null;
+		}
+		
+		//3. cache the parsed statement and hand out the copy, cached one is never exposed
+		synchronized(entries){
+			entries.put(key, (Select) statement);
+			evictOverflow();
+		}
+		
+		return SelectCopier.copy((Select) statement);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void invalidateModel(int modelId) {
+		synchronized(entries){
+			Iterator<QueryKey> iter = entries.keySet().iterator();
+			
+			while(iter.hasNext()){
+				if(iter.next().modelId==modelId){
+					iter.remove();
+				}
+			}
+		}
+		
+		LOG.debug("invalidate parsed queries of model {}", modelId);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public ParsedQueryCacheStats getStatistics() {
+		ParsedQueryCacheStats stats = new ParsedQueryCacheStats();
+		
+		synchronized(entries){
+			stats.setSize(entries.size());
+		}
+		
+		stats.setMaxEntries(maxEntries);
+		stats.setHitCount(hitCount.get());
+		stats.setMissCount(missCount.get());
+		stats.setParseCount(parseCount.get());
+		stats.setParseTimeMillis(parseTimeNanos.get() / 1000000L);
+		
+		return stats;
+	}
+
+	/*************** private methods ****************/
+
+	/**
+	 * 
+	 * @param query
+	 * @return
+	 * @throws JSQLParserException
+	 */
+	private Statement parse(String query) throws JSQLParserException{
+		long start = System.nanoTime();
+		
+		try(StringReader queryStringReader = new StringReader(query)){
+			return new CCJSqlParserManager().parse(queryStringReader);
+		}
+		finally{
+			parseCount.incrementAndGet();
+			parseTimeNanos.addAndGet(System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * drop least recently used entries beyond capacity, caller must hold the lock
+	 */
+	private void evictOverflow(){
+		Iterator<Map.Entry<QueryKey, Select>> iter = entries.entrySet().iterator();
+
+		while(entries.size() > maxEntries && iter.hasNext()){
+			iter.next();
+			iter.remove();
+		}
+	}
+
+	/**
+	 * 
+	 * query of the model, new query text of the model is a new key
+	 *
+	 */
+	private static class QueryKey {
+		private final int modelId;
+		private final String query;
+		private final int hash;
+
+		QueryKey(int modelId, String query){
+			this.modelId = modelId;
+			this.query = query;
+			this.hash = new HashCodeBuilder().append(modelId).append(query).toHashCode();
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof QueryKey)) {
+				return false;
+			}
+			QueryKey other = (QueryKey) obj;
+			return hash==other.hash 
+					&& new EqualsBuilder().append(modelId, other.modelId)
+										  .append(query, other.query)
+										  .isEquals();
+		}
+	}
+}
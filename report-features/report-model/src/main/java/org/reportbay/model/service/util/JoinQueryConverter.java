@@ -2,8 +2,12 @@ package org.reportbay.model.service.util;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 
 import net.sf.jsqlparser.expression.Alias;
 import net.sf.jsqlparser.expression.Expression;
@@ -33,12 +37,19 @@ import org.reportbay.datasource.domain.ColumnMetadata;
 import org.reportbay.datasource.domain.Datasource;
 import org.reportbay.datasource.service.JdbcClient;
 import org.reportbay.datasource.service.exception.JdbcClientException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class JoinQueryConverter implements SelectVisitor, SelectItemVisitor, FromItemVisitor{
+	private static final Logger LOG = LoggerFactory.getLogger(JoinQueryConverter.class);
 	
 	private static final String ALL_TABLE = "ALL_TABLE";
 	
 	private Map<String, String> fromAliasLookupMap = new HashMap<String, String>();
+	//physical table of the from item alias, sub select is absent
+	private Map<String, Table> fromTableLookupMap = new HashMap<String, Table>();
+	//columns of physical tables from catalog, keyed by (schema qualified) table name
+	private Map<String, List<ColumnMetadata>> catalogColumnMap = new TreeMap<String, List<ColumnMetadata>>(String.CASE_INSENSITIVE_ORDER);
 	private List<SelectItem> newSelectItemList = new ArrayList<SelectItem>();
 	private List<String> processedColumnNameList = new ArrayList<String>();
 	private int position;
@@ -83,6 +94,7 @@ public class JoinQueryConverter implements SelectVisitor, SelectItemVisitor, Fro
 	private void handlePlainSelectVisitor(PlainSelect plainSelect){
 
 		fromAliasLookupMap.clear();
+		fromTableLookupMap.clear();
 		newSelectItemList.clear();
 		processedColumnNameList.clear();
 		position = 1;
@@ -97,6 +109,9 @@ public class JoinQueryConverter implements SelectVisitor, SelectItemVisitor, Fro
 				fromItem.accept(this);
 			}
 		}
+		
+		//columns of all joined tables in one catalog pass instead of a query per table
+		loadCatalogColumns();
 
 		List<SelectItem> selectItemList = plainSelect.getSelectItems();
 		
@@ -110,15 +125,65 @@ public class JoinQueryConverter implements SelectVisitor, SelectItemVisitor, Fro
 		plainSelect.setSelectItems(newSelectItemList);
 	}
 	
+	/**
+	 * fetch the columns of joined physical tables, grouped by schema
+	 */
+	private void loadCatalogColumns(){
+		Map<String, Set<String>> schemaTableMap = new LinkedHashMap<String, Set<String>>();
+		
+		for(Table table: fromTableLookupMap.values()){
+			String schemaName = StringUtils.defaultString(table.getSchemaName());
+			
+			if(!catalogColumnMap.containsKey(getQualifiedName(schemaName, table.getName()))){
+				schemaTableMap.computeIfAbsent(schemaName, k -> new LinkedHashSet<String>()).add(table.getName());
+			}
+		}
+		
+		for(Map.Entry<String, Set<String>> entry: schemaTableMap.entrySet()){
+			String schemaName = entry.getKey();
+			
+			try {
+				Map<String, List<ColumnMetadata>> tableColumns = jdbcClient.getColumns(datasource, schemaName, entry.getValue());
+				
+				for(Map.Entry<String, List<ColumnMetadata>> tableEntry: tableColumns.entrySet()){
+					catalogColumnMap.put(getQualifiedName(schemaName, tableEntry.getKey()), tableEntry.getValue());
+				}
+			} catch (JdbcClientException e) {
+				//fall back to query per table
+				LOG.warn("Failed to get catalog columns of schema [{}]", schemaName, e);
+			}
+		}
+	}
+	
+	/**
+	 * 
+	 * @param schemaName
+	 * @param tableName
+	 * @return
+	 */
+	private String getQualifiedName(String schemaName, String tableName){
+		return StringUtils.isBlank(schemaName)? tableName : schemaName+"."+tableName;
+	}
+	
 	/**
 	 * 
 	 * @param aliasRef
+	 * @param table physical table of the query, null if query is a sub select
 	 * @param query
 	 */
-	private void expandAllTableSelectItem(String aliasRef, String query){
+	private void expandAllTableSelectItem(String aliasRef, Table table, String query){
 		String processColumnName;
 		try {
-			List<ColumnMetadata> results = jdbcClient.getColumnsFromQuery(datasource, query);
+			List<ColumnMetadata> results = null;
+			
+			//physical table resolved from catalog, view or table not listed in catalog goes by query
+			if(table!=null){
+				results = catalogColumnMap.get(getQualifiedName(table.getSchemaName(), table.getName()));
+			}
+			
+			if(results==null){
+				results = jdbcClient.getColumnsFromQuery(datasource, query);
+			}
 			
 			//for each expanded column
 			for(ColumnMetadata columnMetadata: results){
@@ -134,8 +199,8 @@ public class JoinQueryConverter implements SelectVisitor, SelectItemVisitor, Fro
 				Column expr = new Column();
 				expr.setColumnName(columnName);
 				
-				Table table = new Table(new Database(null,null),null, aliasRef);
-				expr.setTable(table);
+				Table aliasTable = new Table(new Database(null,null),null, aliasRef);
+				expr.setTable(aliasTable);
 
 				sei.setExpression(expr);
 				
@@ -194,7 +259,7 @@ public class JoinQueryConverter implements SelectVisitor, SelectItemVisitor, Fro
 		
 		if(query!=null){
 			//expand * without alias
-			expandAllTableSelectItem(null, query);
+			expandAllTableSelectItem(null, fromTableLookupMap.get(ALL_TABLE), query);
 		}
 	}
 	/**
@@ -211,11 +276,11 @@ public class JoinQueryConverter implements SelectVisitor, SelectItemVisitor, Fro
 		String alias = fromAliasLookupMap.get(allTableAliasName);
 		
 		if(alias!=null){
-			expandAllTableSelectItem(allTableAliasName,alias);
+			expandAllTableSelectItem(allTableAliasName, fromTableLookupMap.get(allTableAliasName), alias);
 		}
 		else{
 			String refAliasName = (StringUtils.isBlank(table.getSchemaName())?"":table.getSchemaName()+".")+allTableAliasName;
-			expandAllTableSelectItem(refAliasName, "Select * from "+refAliasName);
+			expandAllTableSelectItem(refAliasName, table, "Select * from "+refAliasName);
 		}
 	}
 
@@ -298,6 +363,7 @@ public class JoinQueryConverter implements SelectVisitor, SelectItemVisitor, Fro
 		}
 		
 		fromAliasLookupMap.put(aliasReference, "select * from "+tableName.toString());
+		fromTableLookupMap.put(aliasReference, tableName);
 	}
 
 	@Override
@@ -0,0 +1,204 @@
+package org.reportbay.model.service.util;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import net.sf.jsqlparser.expression.AllComparisonExpression;
+import net.sf.jsqlparser.expression.Alias;
+import net.sf.jsqlparser.expression.AnyComparisonExpression;
+import net.sf.jsqlparser.expression.DateValue;
+import net.sf.jsqlparser.expression.DoubleValue;
+import net.sf.jsqlparser.expression.LongValue;
+import net.sf.jsqlparser.expression.SignedExpression;
+import net.sf.jsqlparser.expression.StringValue;
+import net.sf.jsqlparser.expression.TimeValue;
+import net.sf.jsqlparser.expression.TimestampValue;
+import net.sf.jsqlparser.expression.operators.conditional.AndExpression;
+import net.sf.jsqlparser.expression.operators.conditional.OrExpression;
+import net.sf.jsqlparser.expression.operators.relational.RegExpMatchOperator;
+import net.sf.jsqlparser.expression.operators.relational.RegExpMySQLOperator;
+import net.sf.jsqlparser.schema.Database;
+import net.sf.jsqlparser.schema.Server;
+import net.sf.jsqlparser.statement.select.Select;
+
+/**
+ * deep copy of parsed SELECT statement, so that the copy can be rewritten by report and model services
+ * without affecting the original. JSqlParser AST is neither Cloneable nor Serializable, every node
+ * (statement, select body, expression, from item, schema object) is copied field by field, hence no node
+ * is shared between the original and the copy. String, primitive and enum values are immutable and shared.
+ */
+public final class SelectCopier {
+
+	private static final String NODE_PACKAGE = "net.sf.jsqlparser.";
+
+	private static final ConcurrentMap<Class<?>, List<Field>> FIELD_CACHE = new ConcurrentHashMap<Class<?>, List<Field>>();
+
+	private static final ConcurrentMap<Class<?>, Constructor<?>> CONSTRUCTOR_CACHE = new ConcurrentHashMap<Class<?>, Constructor<?>>();
+
+	private SelectCopier(){
+		// utility class
+	}
+
+	/**
+	 *
+	 * @param select
+	 * @return
+	 */
+	public static Select copy(Select select){
+		return (Select) copyValue(select, new IdentityHashMap<Object, Object>());
+	}
+
+	/**
+	 *
+	 * @param value
+	 * @param copies node already copied, node referenced twice is copied once
+	 * @return copy of node, list and date, same value if it is immutable
+	 */
+	private static Object copyValue(Object value, Map<Object, Object> copies){
+		if(value==null || value instanceof Enum){
+			return value;
+		}
+
+		//list is copied, so that add / remove on copy does not affect the cached statement
+		if(value instanceof List){
+			List<Object> listCopy = new ArrayList<Object>(((List<?>) value).size());
+
+			for(Object element: (List<?>) value){
+				listCopy.add(copyValue(element, copies));
+			}
+			return listCopy;
+		}
+
+		//java.sql date, time and timestamp of literal
+		if(value instanceof Date){
+			return ((Date) value).clone();
+		}
+
+		if(!value.getClass().getName().startsWith(NODE_PACKAGE)){
+			return value;
+		}
+
+		Object copy = copies.get(value);
+
+		if(copy!=null){
+			return copy;
+		}
+
+		try {
+			copy = newInstance(value.getClass());
+			copies.put(value, copy);
+
+			for(Field field: getFields(value.getClass())){
+				field.set(copy, copyValue(field.get(value), copies));
+			}
+
+			return copy;
+		}
+		catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("Failed to copy "+value.getClass().getName(), e);
+		}
+	}
+
+	/**
+	 *
+	 * @param clazz
+	 * @return instance of the node class, its fields are overwritten by the copy
+	 * @throws ReflectiveOperationException
+	 */
+	private static Object newInstance(Class<?> clazz) throws ReflectiveOperationException{
+		//1. nodes without default constructor, created with placeholder argument
+		if(clazz==Alias.class){
+			return new Alias(null);
+		}
+		if(clazz==AndExpression.class){
+			return new AndExpression(null, null);
+		}
+		if(clazz==OrExpression.class){
+			return new OrExpression(null, null);
+		}
+		if(clazz==AllComparisonExpression.class){
+			return new AllComparisonExpression(null);
+		}
+		if(clazz==AnyComparisonExpression.class){
+			return new AnyComparisonExpression(null);
+		}
+		if(clazz==SignedExpression.class){
+			return new SignedExpression('+', null);
+		}
+		if(clazz==RegExpMatchOperator.class){
+			return new RegExpMatchOperator(null);
+		}
+		if(clazz==RegExpMySQLOperator.class){
+			return new RegExpMySQLOperator(null);
+		}
+		if(clazz==LongValue.class){
+			return new LongValue(0L);
+		}
+		if(clazz==DoubleValue.class){
+			return new DoubleValue("0");
+		}
+		if(clazz==StringValue.class){
+			return new StringValue("''");
+		}
+		if(clazz==DateValue.class){
+			return new DateValue("'1970-01-01'");
+		}
+		if(clazz==TimeValue.class){
+			return new TimeValue("'00:00:00'");
+		}
+		if(clazz==TimestampValue.class){
+			return new TimestampValue("'1970-01-01 00:00:00'");
+		}
+		if(clazz==Database.class){
+			return new Database((String) null);
+		}
+		if(clazz==Server.class){
+			return new Server(null, null);
+		}
+
+		//2. the others
+		Constructor<?> constructor = CONSTRUCTOR_CACHE.get(clazz);
+
+		if(constructor==null){
+			constructor = clazz.getDeclaredConstructor();
+			constructor.setAccessible(true);
+			CONSTRUCTOR_CACHE.putIfAbsent(clazz, constructor);
+		}
+
+		return constructor.newInstance();
+	}
+
+	/**
+	 *
+	 * @param clazz
+	 * @return instance fields of the class and its super classes
+	 */
+	private static List<Field> getFields(Class<?> clazz){
+		List<Field> fields = FIELD_CACHE.get(clazz);
+
+		if(fields==null){
+			fields = new ArrayList<Field>();
+
+			for(Class<?> c = clazz; c!=null && c!=Object.class; c = c.getSuperclass()){
+				for(Field field: c.getDeclaredFields()){
+					if(!Modifier.isStatic(field.getModifiers())){
+						field.setAccessible(true);
+						fields.add(field);
+					}
+				}
+			}
+
+			FIELD_CACHE.putIfAbsent(clazz, fields);
+		}
+
+		return fields;
+	}
+}
@@ -0,0 +1,97 @@
+package org.reportbay.model.service.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+
+import net.sf.jsqlparser.expression.Alias;
+import net.sf.jsqlparser.expression.LongValue;
+import net.sf.jsqlparser.expression.StringValue;
+import net.sf.jsqlparser.expression.operators.relational.EqualsTo;
+import net.sf.jsqlparser.expression.operators.relational.GreaterThan;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
+import net.sf.jsqlparser.schema.Column;
+import net.sf.jsqlparser.schema.Table;
+import net.sf.jsqlparser.statement.select.PlainSelect;
+import net.sf.jsqlparser.statement.select.Select;
+import net.sf.jsqlparser.statement.select.SelectExpressionItem;
+import net.sf.jsqlparser.statement.select.SetOperationList;
+
+import org.junit.Test;
+
+public class SelectCopierTest {
+
+	private static final String QUERY = "SELECT a AS x, b FROM t WHERE a > 1 GROUP BY a, b ORDER BY b";
+
+	@Test
+	public void testCopyIsEquivalent() throws Exception{
+		Select cached = (Select) CCJSqlParserUtil.parse(QUERY);
+
+		Select copy = SelectCopier.copy(cached);
+
+		assertNotSame(cached, copy);
+		assertEquals(cached.toString(), copy.toString());
+	}
+
+	@Test
+	public void testMutatingCopyLeavesOriginalUntouched() throws Exception{
+		Select cached = (Select) CCJSqlParserUtil.parse(QUERY);
+		String original = cached.toString();
+
+		PlainSelect copy = (PlainSelect) SelectCopier.copy(cached).getSelectBody();
+
+		//rewritten list and alias
+		((SelectExpressionItem) copy.getSelectItems().get(0)).setAlias(new Alias("y"));
+		copy.getSelectItems().add(new SelectExpressionItem(new Column("c")));
+		copy.getGroupByColumnReferences().remove(1);
+		copy.setOrderByElements(null);
+
+		//nodes shared by a shallow copy
+		((GreaterThan) copy.getWhere()).setRightExpression(new LongValue("2"));
+		((Column) ((SelectExpressionItem) copy.getSelectItems().get(1)).getExpression()).setColumnName("d");
+		((Table) copy.getFromItem()).setName("u");
+
+		assertEquals(original, cached.toString());
+		assertEquals("SELECT a AS y, d, c FROM u WHERE a > 2 GROUP BY a", copy.toString());
+	}
+
+	@Test
+	public void testCopyOfUnion() throws Exception{
+		Select cached = (Select) CCJSqlParserUtil.parse("SELECT a FROM t UNION SELECT a FROM u");
+		String original = cached.toString();
+
+		SetOperationList copy = (SetOperationList) SelectCopier.copy(cached).getSelectBody();
+		((Table) ((PlainSelect) copy.getPlainSelects().get(1)).getFromItem()).setName("v");
+
+		assertEquals(original, cached.toString());
+	}
+
+	@Test
+	public void testCopyOfExpressionsWithoutDefaultConstructor() throws Exception{
+		Select cached = (Select) CCJSqlParserUtil.parse("SELECT -a AS n, 'x', 1.5, {t '10:00:00'}, {ts '2015-01-31 10:00:00'},"
+														+ " CASE WHEN b IN (SELECT c FROM s WHERE EXISTS (SELECT e FROM v)) THEN 1 ELSE 2 END"
+														+ " FROM db.t JOIN u ON t.id = u.id WHERE a BETWEEN 1 AND 2 AND f = 'y' OR b LIKE 'z%'");
+		String original = cached.toString();
+
+		Select copy = SelectCopier.copy(cached);
+		assertEquals(original, copy.toString());
+
+		PlainSelect body = (PlainSelect) copy.getSelectBody();
+		((StringValue) ((SelectExpressionItem) body.getSelectItems().get(1)).getExpression()).setValue("w");
+		((SelectExpressionItem) body.getSelectItems().get(0)).getAlias().setName("m");
+		((Table) body.getFromItem()).getDatabase().setDatabaseName("other");
+
+		assertEquals(original, cached.toString());
+	}
+
+	@Test
+	public void testCopyOfSubSelectCondition() throws Exception{
+		Select cached = (Select) CCJSqlParserUtil.parse("SELECT a FROM t WHERE b = (SELECT MAX(b) FROM t WHERE c = 1)");
+		String original = cached.toString();
+
+		PlainSelect copy = (PlainSelect) SelectCopier.copy(cached).getSelectBody();
+		((EqualsTo) copy.getWhere()).setRightExpression(new LongValue("3"));
+
+		assertEquals(original, cached.toString());
+		assertEquals("SELECT a FROM t WHERE b = 3", copy.toString());
+	}
+}
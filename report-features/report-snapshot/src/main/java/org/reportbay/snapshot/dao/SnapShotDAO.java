@@ -1,11 +1,16 @@
 package org.reportbay.snapshot.dao;
 
+import java.nio.ByteBuffer;
+import java.util.Collection;
 import java.util.List;
 
 import org.reportbay.common.dao.BaseDAO;
 import org.reportbay.snapshot.dao.exception.SnapShotDAOException;
 import org.reportbay.snapshot.domain.ReportSnapShot;
 import org.reportbay.snapshot.domain.ReportSnapShotBase;
+import org.reportbay.snapshot.domain.ReportSnapShotFilter;
+import org.reportbay.snapshot.domain.ReportSnapShotStorage;
+import org.reportbay.snapshot.domain.SnapShotCompactionResult;
 
 
 public interface SnapShotDAO extends BaseDAO<ReportSnapShot, SnapShotDAOException> {
@@ -16,4 +21,69 @@ public interface SnapShotDAO extends BaseDAO<ReportSnapShot, SnapShotDAOExceptio
 	 * @throws SnapShotDAOException
 	 */
 	List<ReportSnapShotBase> findAllBase() throws SnapShotDAOException;
+	
+	/**
+	 * page of snapshot matching the filter, newest first, without loading the payload
+	 * @param filter
+	 * @param maxResults
+	 * @return
+	 * @throws SnapShotDAOException
+	 */
+	List<ReportSnapShotBase> findBase(ReportSnapShotFilter filter, int maxResults) throws SnapShotDAOException;
+	
+	/**
+	 * 
+	 * @param templateId
+	 * @return most recent snapshot of the template, null if none
+	 * @throws SnapShotDAOException
+	 */
+	ReportSnapShot findLatestByTemplate(int templateId) throws SnapShotDAOException;
+	
+	/**
+	 * payload of the snapshot, wherever it is stored
+	 * @param reportSnapShot
+	 * @return null if the snapshot has no payload
+	 * @throws SnapShotDAOException
+	 */
+	ByteBuffer readSnapShot(ReportSnapShot reportSnapShot) throws SnapShotDAOException;
+	
+	/**
+	 * 
+	 * @return id of templates having snapshot
+	 * @throws SnapShotDAOException
+	 */
+	List<Integer> findTemplateIds() throws SnapShotDAOException;
+	
+	/**
+	 * 
+	 * @param templateId
+	 * @return storage footprint of the snapshots of the template, newest first
+	 * @throws SnapShotDAOException
+	 */
+	List<ReportSnapShotStorage> findStorageByTemplate(int templateId) throws SnapShotDAOException;
+	
+	/**
+	 * bulk delete without loading the snapshots, segment files are left for {@link #releaseSegments(Collection, long, SnapShotCompactionResult)}
+	 * @param ids
+	 * @return number of snapshots deleted
+	 * @throws SnapShotDAOException
+	 */
+	int deleteByIds(List<Integer> ids) throws SnapShotDAOException;
+	
+	/**
+	 * remove the segment files no longer referenced by any snapshot
+	 * @param hashes
+	 * @param modifiedBefore epoch millisecond, newer segment may belong to snapshot being inserted
+	 * @param result accumulate removed segments and reclaimed bytes
+	 * @throws SnapShotDAOException
+	 */
+	void releaseSegments(Collection<String> hashes, long modifiedBefore, SnapShotCompactionResult result) throws SnapShotDAOException;
+	
+	/**
+	 * remove segment files not referenced by any snapshot, e.g. left by failed insertion or deleted snapshot
+	 * @param modifiedBefore epoch millisecond, newer segment may belong to snapshot being inserted
+	 * @param result accumulate removed segments and reclaimed bytes
+	 * @throws SnapShotDAOException
+	 */
+	void purgeOrphanSegments(long modifiedBefore, SnapShotCompactionResult result) throws SnapShotDAOException;
 }
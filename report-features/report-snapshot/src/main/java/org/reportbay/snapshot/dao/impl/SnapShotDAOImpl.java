@@ -1,26 +1,50 @@
 package org.reportbay.snapshot.dao.impl;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import javax.ejb.Local;
 import javax.ejb.Stateless;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
 import javax.ejb.TransactionManagement;
 import javax.ejb.TransactionManagementType;
 import javax.interceptor.Interceptors;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import javax.persistence.PersistenceException;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
 
+import org.apache.commons.lang3.StringUtils;
 import org.reportbay.common.dao.impl.BaseDAOImpl;
 import org.reportbay.common.interceptor.DAOLogger;
 import org.reportbay.common.interceptor.LogInterceptable;
+import org.reportbay.common.util.SystemProperties;
 import org.reportbay.snapshot.dao.SnapShotDAO;
 import org.reportbay.snapshot.dao.exception.SnapShotDAOException;
 import org.reportbay.snapshot.domain.ReportSnapShot;
 import org.reportbay.snapshot.domain.ReportSnapShotBase;
+import org.reportbay.snapshot.domain.ReportSnapShotFilter;
+import org.reportbay.snapshot.domain.ReportSnapShotStorage;
+import org.reportbay.snapshot.domain.SnapShotCompactionResult;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Snapshot payload is stored in the snap_shot column unless a store directory is configured by
+ * system property {@value #STORE_DIR_PROPERTY}, in which case the payload is written to a content
+ * addressed segment file under the directory and only its hash and size are kept in the table
+ */
 @Local(SnapShotDAO.class)
 @Stateless
 @TransactionManagement(TransactionManagementType.CONTAINER)
@@ -30,9 +54,158 @@ public class SnapShotDAOImpl extends BaseDAOImpl<ReportSnapShot, SnapShotDAOExce
 	
 	private final Logger LOG = LoggerFactory.getLogger(SnapShotDAOImpl.class);
 	
+	private static final String STORE_DIR_PROPERTY = "reportbay.snapshot.store.dir";
+	
+	private static final SnapShotFileStore FILE_STORE = createFileStore();
+	
+	//bound of IN list of segment reference lookup
+	private static final int HASH_LOOKUP_SIZE = 500;
+	
 	@PersistenceContext(unitName="reportbay")
 	private EntityManager em;
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public List<ReportSnapShotBase> findBase(ReportSnapShotFilter filter, int maxResults) throws SnapShotDAOException{
+		try {
+			CriteriaBuilder criteriaBuilder = em.getCriteriaBuilder();
+			
+			CriteriaQuery<ReportSnapShotBase> criteriaQuery = criteriaBuilder.createQuery(ReportSnapShotBase.class);
+			
+			Root<ReportSnapShot> snapShotTable = criteriaQuery.from(ReportSnapShot.class);
+			
+			//select base columns only, payload is never loaded
+			criteriaQuery.select(criteriaBuilder.construct(ReportSnapShotBase.class, 
+															snapShotTable.get("id"), 
+															snapShotTable.get("creationDate"), 
+															snapShotTable.get("templateType"), 
+															snapShotTable.get("templateId"), 
+															snapShotTable.get("reportName")));
+			
+			//where condition
+			List<Predicate> whereConds = new ArrayList<Predicate>();
+			
+			if(filter.getTemplateId()!=null){
+				whereConds.add(criteriaBuilder.equal(snapShotTable.get("templateId"), filter.getTemplateId()));
+			}
+			if(filter.getTemplateType()!=null){
+				whereConds.add(criteriaBuilder.equal(snapShotTable.get("templateType"), filter.getTemplateType()));
+			}
+			if(filter.getFromDate()!=null){
+				whereConds.add(criteriaBuilder.greaterThanOrEqualTo(snapShotTable.<Date>get("creationDate"), filter.getFromDate()));
+			}
+			if(filter.getToDate()!=null){
+				whereConds.add(criteriaBuilder.lessThan(snapShotTable.<Date>get("creationDate"), filter.getToDate()));
+			}
+			
+			//keyset, strictly after the last snapshot of previous page
+			if(filter.getAfterCreationDate()!=null){
+				whereConds.add(criteriaBuilder.or(
+						criteriaBuilder.lessThan(snapShotTable.<Date>get("creationDate"), filter.getAfterCreationDate()),
+						criteriaBuilder.and(criteriaBuilder.equal(snapShotTable.get("creationDate"), filter.getAfterCreationDate()),
+											criteriaBuilder.lessThan(snapShotTable.<Integer>get("id"), filter.getAfterId()))));
+			}
+			
+			criteriaQuery.where(whereConds.toArray(new Predicate[whereConds.size()]));
+			
+			//order by creation_date desc, id desc, matching the index
+			criteriaQuery.orderBy(criteriaBuilder.desc(snapShotTable.get("creationDate")),
+								  criteriaBuilder.desc(snapShotTable.get("id")));
+			
+			return em.createQuery(criteriaQuery).setMaxResults(maxResults).getResultList();
+		} 
+		catch (PersistenceException e) {
+			throw new SnapShotDAOException("Failed to find snapshot by filter.", e);
+		}
+	}
+	/**
+	 * {@inheritDoc}
+	 */
+	@TransactionAttribute(TransactionAttributeType.REQUIRED)
+	@Override
+	public ReportSnapShot insert(ReportSnapShot entity) throws SnapShotDAOException {
+		storeSnapShot(entity);
+		
+		return super.insert(entity);
+	}
+	/**
+	 * {@inheritDoc}
+	 */
+	@TransactionAttribute(TransactionAttributeType.REQUIRED)
+	@Override
+	public ReportSnapShot update(ReportSnapShot entity) throws SnapShotDAOException {
+		storeSnapShot(entity);
+		
+		return super.update(entity);
+	}
+	/**
+	 * {@inheritDoc}
+	 */
+	@TransactionAttribute(TransactionAttributeType.REQUIRED)
+	@Override
+	public void delete(ReportSnapShot entity) throws SnapShotDAOException {
+		//delta snapshot can not be reconstructed without its base
+		long dependents = 0;
+		
+		try{
+			dependents = em.createNamedQuery("ReportSnapShot.countByBase", Long.class)
+						   .setParameter("baseSnapShotId", entity.getId())
+						   .getSingleResult();
+		}
+		catch(PersistenceException e){
+			throw new SnapShotDAOException("Failed to find snapshots based on "+entity.getId(), e);
+		}
+		
+		if(dependents > 0){
+			throw new SnapShotDAOException("Snapshot "+entity.getId()+" is the base of "+dependents+" delta snapshot(s)");
+		}
+		
+		//segment file is shared by identical snapshots and the deletion may still be rolled back,
+		//it is left for purgeOrphanSegments once no snapshot references it
+		super.delete(entity);
+	}
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public ReportSnapShot findLatestByTemplate(int templateId) throws SnapShotDAOException{
+		try {
+			List<ReportSnapShot> snapShots = em.createNamedQuery("ReportSnapShot.findByTemplate", ReportSnapShot.class)
+											   .setParameter("templateId", templateId)
+											   .setMaxResults(1)
+											   .getResultList();
+			
+			return snapShots.isEmpty()? null : snapShots.get(0);
+		} 
+		catch (PersistenceException e) {
+			throw new SnapShotDAOException("Failed to find latest snapshot of template "+templateId, e);
+		}
+	}
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public ByteBuffer readSnapShot(ReportSnapShot reportSnapShot) throws SnapShotDAOException{
+		//1. stored in database
+		if(reportSnapShot.getSnapShotHash()==null){
+			return reportSnapShot.getSnapShot()==null? null : ByteBuffer.wrap(reportSnapShot.getSnapShot());
+		}
+		
+		//2. stored in file
+		if(FILE_STORE==null){
+			throw new SnapShotDAOException("Snapshot "+reportSnapShot.getId()+" is stored in file but "+STORE_DIR_PROPERTY+" is not set");
+		}
+		
+		try{
+			return FILE_STORE.read(reportSnapShot.getSnapShotHash(), reportSnapShot.getSnapShotSize());
+		}
+		catch(IOException e){
+			throw new SnapShotDAOException("Failed to read snapshot "+reportSnapShot.getId(), e);
+		}
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -49,6 +222,113 @@ public class SnapShotDAOImpl extends BaseDAOImpl<ReportSnapShot, SnapShotDAOExce
 	 * {@inheritDoc}
 	 */
 	@Override
+	public List<Integer> findTemplateIds() throws SnapShotDAOException{
+		try {
+			return em.createNamedQuery("ReportSnapShot.findTemplateIds", Integer.class).getResultList();
+		} 
+		catch (PersistenceException e) {
+			throw new SnapShotDAOException("Failed to find template of snapshots.", e);
+		}
+	}
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public List<ReportSnapShotStorage> findStorageByTemplate(int templateId) throws SnapShotDAOException{
+		try {
+			return em.createNamedQuery("ReportSnapShot.findStorageByTemplate", ReportSnapShotStorage.class)
+					 .setParameter("templateId", templateId)
+					 .getResultList();
+		} 
+		catch (PersistenceException e) {
+			throw new SnapShotDAOException("Failed to find snapshots of template "+templateId, e);
+		}
+	}
+	/**
+	 * {@inheritDoc}
+	 */
+	@TransactionAttribute(TransactionAttributeType.REQUIRED)
+	@Override
+	public int deleteByIds(List<Integer> ids) throws SnapShotDAOException{
+		if(ids.isEmpty()){
+			return 0;
+		}
+		
+		try {
+			return em.createNamedQuery("ReportSnapShot.deleteByIds")
+					 .setParameter("ids", ids)
+					 .executeUpdate();
+		} 
+		catch (PersistenceException e) {
+			throw new SnapShotDAOException("Failed to delete snapshots.", e);
+		}
+	}
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void releaseSegments(Collection<String> hashes, long modifiedBefore, SnapShotCompactionResult result) throws SnapShotDAOException{
+		if(FILE_STORE==null || hashes.isEmpty()){
+			return;
+		}
+		
+		List<String> candidates = new ArrayList<String>(hashes);
+		
+		for(int from=0; from<candidates.size(); from+=HASH_LOOKUP_SIZE){
+			List<String> lookup = candidates.subList(from, Math.min(from + HASH_LOOKUP_SIZE, candidates.size()));
+			
+			//1. segments still shared by other snapshots are kept
+			Set<String> referenced = null;
+			
+			try {
+				referenced = new HashSet<String>(em.createNamedQuery("ReportSnapShot.findReferencedHashes", String.class)
+												   .setParameter("hashes", lookup)
+												   .getResultList());
+			} 
+			catch (PersistenceException e) {
+				throw new SnapShotDAOException("Failed to find referenced snapshot segments.", e);
+			}
+			
+			//2. remove the others, unless rewritten for snapshot being inserted
+			for(String hash: lookup){
+				if(referenced.contains(hash)){
+					continue;
+				}
+				
+				try{
+					long size = FILE_STORE.delete(hash, modifiedBefore);
+					
+					if(size >= 0){
+						result.addRemovedSegments(1);
+						result.addReclaimedBytes(size);
+					}
+				}
+				catch(IOException e){
+					LOG.warn("Failed to remove snapshot segment {}", hash, e);
+				}
+			}
+		}
+	}
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void purgeOrphanSegments(long modifiedBefore, SnapShotCompactionResult result) throws SnapShotDAOException{
+		if(FILE_STORE==null){
+			return;
+		}
+		
+		try{
+			releaseSegments(FILE_STORE.list(modifiedBefore), modifiedBefore, result);
+		}
+		catch(IOException e){
+			throw new SnapShotDAOException("Failed to list snapshot segments.", e);
+		}
+	}
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
 	public Logger getLogger() {
 		return LOG;
 	}
@@ -80,4 +360,42 @@ public class SnapShotDAOImpl extends BaseDAOImpl<ReportSnapShot, SnapShotDAOExce
 	public String getFindAllNamedQuery() {
 		return "ReportSnapShot.findAll";
 	}
+	
+	/**
+	 * record the payload size and move the payload to file store if configured
+	 * @param entity
+	 * @throws SnapShotDAOException
+	 */
+	private void storeSnapShot(ReportSnapShot entity) throws SnapShotDAOException{
+		byte[] payload = entity.getSnapShot();
+		
+		if(payload==null){
+			return;
+		}
+		
+		entity.setSnapShotSize((long) payload.length);
+		
+		if(FILE_STORE==null){
+			entity.setSnapShotHash(null);
+			return;
+		}
+		
+		try{
+			entity.setSnapShotHash(FILE_STORE.write(payload));
+			entity.setSnapShot(null);
+		}
+		catch(IOException e){
+			throw new SnapShotDAOException("Failed to store snapshot payload", e);
+		}
+	}
+	
+	/**
+	 * 
+	 * @return null if snapshot payload is stored in database
+	 */
+	private static SnapShotFileStore createFileStore(){
+		String directory = SystemProperties.getProperty(STORE_DIR_PROPERTY);
+		
+		return StringUtils.isBlank(directory)? null : new SnapShotFileStore(Paths.get(directory));
+	}
 }
\ No newline at end of file
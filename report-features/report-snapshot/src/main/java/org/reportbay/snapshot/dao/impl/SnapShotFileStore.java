@@ -0,0 +1,187 @@
+package org.reportbay.snapshot.dao.impl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * content addressed store of snapshot payload.
+ * Payload is written once to a segment file named by its SHA-256 hash (under sub directory of the
+ * first 2 hex digits), so identical payloads share the same file. Segment file content is never modified
+ * once written and is read through memory mapping. Its last modified time is refreshed whenever the payload
+ * is written again, so that a segment about to be referenced by a new snapshot is not removed as unreferenced
+ */
+class SnapShotFileStore {
+
+	private static final String HASH_ALGORITHM = "SHA-256";
+
+	private static final String SEGMENT_SUFFIX = ".snap";
+
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+	private final Path directory;
+
+	/**
+	 * 
+	 * @param directory root of the segment files
+	 */
+	SnapShotFileStore(Path directory){
+		this.directory = directory;
+	}
+
+	/**
+	 * 
+	 * @param payload
+	 * @return hash of the payload, identify the segment file
+	 * @throws IOException
+	 */
+	String write(byte[] payload) throws IOException{
+		String hash = hash(payload);
+		Path segment = resolve(hash);
+
+		//1. same content already stored, touched to be kept until the new reference is committed
+		if(Files.exists(segment) && Files.size(segment)==payload.length){
+			Files.setLastModifiedTime(segment, FileTime.fromMillis(System.currentTimeMillis()));
+			return hash;
+		}
+
+		//2. write to temporary file and move in place, reader never see partial segment
+		Files.createDirectories(segment.getParent());
+
+		Path temp = Files.createTempFile(segment.getParent(), hash, ".tmp");
+
+		try{
+			try(FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)){
+				ByteBuffer buffer = ByteBuffer.wrap(payload);
+
+				while(buffer.hasRemaining()){
+					channel.write(buffer);
+				}
+				channel.force(false);
+			}
+			Files.move(temp, segment, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+		}
+		finally{
+			Files.deleteIfExists(temp);
+		}
+
+		return hash;
+	}
+
+	/**
+	 * 
+	 * @param hash
+	 * @param size expected size of the payload
+	 * @return read only mapping of the segment file
+	 * @throws IOException if the segment is missing or of different size
+	 */
+	ByteBuffer read(String hash, long size) throws IOException{
+		try(FileChannel channel = FileChannel.open(resolve(hash), StandardOpenOption.READ)){
+			if(channel.size()!=size){
+				throw new IOException("snapshot segment "+hash+" is "+channel.size()+" bytes, expected "+size);
+			}
+			//mapping remains valid after the channel is closed
+			return channel.map(MapMode.READ_ONLY, 0, size);
+		}
+	}
+
+	/**
+	 * 
+	 * @param hash
+	 * @param modifiedBefore epoch millisecond, segment modified since is kept
+	 * @return size of the removed segment file, -1 if not exist or kept
+	 * @throws IOException
+	 */
+	long delete(String hash, long modifiedBefore) throws IOException{
+		Path segment = resolve(hash);
+		
+		if(!Files.exists(segment) || Files.getLastModifiedTime(segment).toMillis() >= modifiedBefore){
+			return -1;
+		}
+		
+		long size = Files.size(segment);
+		
+		return Files.deleteIfExists(segment)? size : -1;
+	}
+
+	/**
+	 * 
+	 * @param modifiedBefore epoch millisecond
+	 * @return hash of segment files last modified before the time
+	 * @throws IOException
+	 */
+	List<String> list(long modifiedBefore) throws IOException{
+		List<String> hashes = new ArrayList<String>();
+		
+		if(!Files.isDirectory(directory)){
+			return hashes;
+		}
+		
+		try(DirectoryStream<Path> subDirectories = Files.newDirectoryStream(directory)){
+			for(Path subDirectory: subDirectories){
+				if(!Files.isDirectory(subDirectory)){
+					continue;
+				}
+				
+				try(DirectoryStream<Path> segments = Files.newDirectoryStream(subDirectory, "*"+SEGMENT_SUFFIX)){
+					for(Path segment: segments){
+						if(Files.getLastModifiedTime(segment).toMillis() < modifiedBefore){
+							String fileName = segment.getFileName().toString();
+							hashes.add(fileName.substring(0, fileName.length() - SEGMENT_SUFFIX.length()));
+						}
+					}
+				}
+			}
+		}
+		
+		return hashes;
+	}
+
+	/**
+	 * 
+	 * @param hash
+	 * @return
+	 * @throws IOException if the hash is malformed
+	 */
+	private Path resolve(String hash) throws IOException{
+		//hash is read back from database, never let it escape the directory
+		if(hash==null || hash.length()!=64 || !hash.matches("[0-9a-f]+")){
+			throw new IOException("invalid snapshot hash "+hash);
+		}
+		return directory.resolve(hash.substring(0, 2)).resolve(hash+SEGMENT_SUFFIX);
+	}
+
+	/**
+	 * 
+	 * @param payload
+	 * @return hex encoded hash
+	 */
+	private static String hash(byte[] payload){
+		try{
+			byte[] digest = MessageDigest.getInstance(HASH_ALGORITHM).digest(payload);
+
+			char[] hex = new char[digest.length * 2];
+
+			for(int i=0; i<digest.length; i++){
+				hex[i * 2] = HEX_DIGITS[(digest[i] >> 4) & 0x0F];
+				hex[i * 2 + 1] = HEX_DIGITS[digest[i] & 0x0F];
+			}
+			return new String(hex);
+		}
+		catch(NoSuchAlgorithmException nsae){
+			//every Java platform is required to support SHA-256
+			throw new IllegalStateException(nsae);
+		}
+	}
+}
@@ -7,10 +7,23 @@ import javax.persistence.NamedQueries;
 import javax.persistence.NamedQuery;
 import javax.persistence.Table;
 
+import org.hibernate.annotations.Index;
+
 @Entity
 @Table(name = "report_snap_shot")
+//JPA 2.0 @Table has no index, created by hibernate schema update
+@org.hibernate.annotations.Table(appliesTo = "report_snap_shot", 
+	   indexes = { @Index(name = "idx_report_snap_shot_creation", columnNames = {"creation_date", "id"}),
+				   @Index(name = "idx_report_snap_shot_template", columnNames = {"template_id", "creation_date", "id"}),
+				   @Index(name = "idx_report_snap_shot_base", columnNames = {"base_snap_shot_id"}) })
 @NamedQueries({ @NamedQuery(name = "ReportSnapShot.findAll", query = "SELECT e FROM ReportSnapShot e"),
-				@NamedQuery(name = "ReportSnapShot.findAllBase", query="Select NEW org.reportbay.snapshot.domain.ReportSnapShotBase(e.id, e.creationDate, e.templateType,e.templateId, e.reportName) FROM ReportSnapShot e ")})
+				@NamedQuery(name = "ReportSnapShot.findAllBase", query="Select NEW org.reportbay.snapshot.domain.ReportSnapShotBase(e.id, e.creationDate, e.templateType,e.templateId, e.reportName) FROM ReportSnapShot e "),
+				@NamedQuery(name = "ReportSnapShot.findByTemplate", query = "SELECT e FROM ReportSnapShot e WHERE e.templateId = :templateId ORDER BY e.creationDate DESC, e.id DESC"),
+				@NamedQuery(name = "ReportSnapShot.countByBase", query = "SELECT COUNT(e) FROM ReportSnapShot e WHERE e.baseSnapShotId = :baseSnapShotId"),
+				@NamedQuery(name = "ReportSnapShot.findReferencedHashes", query = "SELECT DISTINCT e.snapShotHash FROM ReportSnapShot e WHERE e.snapShotHash IN :hashes"),
+				@NamedQuery(name = "ReportSnapShot.findTemplateIds", query = "SELECT DISTINCT e.templateId FROM ReportSnapShot e"),
+				@NamedQuery(name = "ReportSnapShot.findStorageByTemplate", query = "SELECT NEW org.reportbay.snapshot.domain.ReportSnapShotStorage(e.id, e.templateId, e.creationDate, e.snapShotHash, e.snapShotSize, e.baseSnapShotId) FROM ReportSnapShot e WHERE e.templateId = :templateId ORDER BY e.creationDate DESC, e.id DESC"),
+				@NamedQuery(name = "ReportSnapShot.deleteByIds", query = "DELETE FROM ReportSnapShot e WHERE e.id IN :ids")})
 public class ReportSnapShot extends ReportSnapShotBase{
 	
 	public ReportSnapShot(){
@@ -26,6 +39,21 @@ public class ReportSnapShot extends ReportSnapShotBase{
 	@Column(name="snap_shot")
 	private byte[] snapShot;
 	
+	//hash of the payload when stored in file instead of snap_shot
+	@Column(name="snap_shot_hash", length=64)
+	private String snapShotHash;
+	
+	@Column(name="snap_shot_size")
+	private Long snapShotSize;
+	
+	//snapshot the payload is a delta of, null if the payload is a key frame
+	@Column(name="base_snap_shot_id")
+	private Integer baseSnapShotId;
+	
+	//number of deltas from the key frame, bound of the reconstruction
+	@Column(name="key_frame_distance")
+	private Integer keyFrameDistance;
+	
 
 	/**
 	 * @return the snapShot
@@ -40,6 +68,62 @@ public class ReportSnapShot extends ReportSnapShotBase{
 	public void setSnapShot(byte[] snapShot) {
 		this.snapShot = snapShot;
 	}
+
+	/**
+	 * @return the snapShotHash, null if the payload is stored in database
+	 */
+	public String getSnapShotHash() {
+		return snapShotHash;
+	}
+
+	/**
+	 * @param snapShotHash the snapShotHash to set
+	 */
+	public void setSnapShotHash(String snapShotHash) {
+		this.snapShotHash = snapShotHash;
+	}
+
+	/**
+	 * @return the snapShotSize in byte, null for snapshot stored before the size is tracked
+	 */
+	public Long getSnapShotSize() {
+		return snapShotSize;
+	}
+
+	/**
+	 * @param snapShotSize the snapShotSize to set
+	 */
+	public void setSnapShotSize(Long snapShotSize) {
+		this.snapShotSize = snapShotSize;
+	}
+
+	/**
+	 * @return the baseSnapShotId, null if the payload is a full report (key frame)
+	 */
+	public Integer getBaseSnapShotId() {
+		return baseSnapShotId;
+	}
+
+	/**
+	 * @param baseSnapShotId the baseSnapShotId to set
+	 */
+	public void setBaseSnapShotId(Integer baseSnapShotId) {
+		this.baseSnapShotId = baseSnapShotId;
+	}
+
+	/**
+	 * @return the keyFrameDistance, null or 0 for key frame
+	 */
+	public Integer getKeyFrameDistance() {
+		return keyFrameDistance;
+	}
+
+	/**
+	 * @param keyFrameDistance the keyFrameDistance to set
+	 */
+	public void setKeyFrameDistance(Integer keyFrameDistance) {
+		this.keyFrameDistance = keyFrameDistance;
+	}
 }
 
 
@@ -0,0 +1,123 @@
+package org.reportbay.snapshot.domain;
+
+import java.util.Date;
+
+import org.apache.commons.lang3.math.NumberUtils;
+
+/**
+ * criteria of snapshot listing, all criteria are optional.
+ * Listing is ordered by creation date then id, both descending, and continues after the
+ * position of the last snapshot of previous page (keyset) identified by its cursor
+ */
+public class ReportSnapShotFilter {
+	
+	private static final char CURSOR_SEPARATOR = '_';
+	
+	private Integer templateId;
+	
+	private Character templateType;
+	
+	private Date fromDate;
+	
+	private Date toDate;
+	
+	private Date afterCreationDate;
+	
+	private Integer afterId;
+	
+	/**
+	 * 
+	 * @param last last snapshot of a page
+	 * @return cursor to continue listing after the snapshot
+	 */
+	public static String toCursor(ReportSnapShotBase last){
+		return last.getCreationDate().getTime() + String.valueOf(CURSOR_SEPARATOR) + last.getId();
+	}
+	
+	/**
+	 * continue listing after the position of the cursor
+	 * @param cursor returned by {@link #toCursor(ReportSnapShotBase)}
+	 * @throws IllegalArgumentException if the cursor is malformed
+	 */
+	public void setCursor(String cursor){
+		int separator = cursor==null? -1 : cursor.indexOf(CURSOR_SEPARATOR);
+		
+		if(separator<=0 || !NumberUtils.isDigits(cursor.substring(0, separator)) 
+			|| !NumberUtils.isDigits(cursor.substring(separator+1))){
+			throw new IllegalArgumentException("invalid cursor "+cursor);
+		}
+		
+		afterCreationDate = new Date(Long.parseLong(cursor.substring(0, separator)));
+		afterId = Integer.valueOf(cursor.substring(separator+1));
+	}
+
+	/**
+	 * @return the templateId
+	 */
+	public Integer getTemplateId() {
+		return templateId;
+	}
+
+	/**
+	 * @param templateId the templateId to set
+	 */
+	public void setTemplateId(Integer templateId) {
+		this.templateId = templateId;
+	}
+
+	/**
+	 * @return the templateType
+	 */
+	public Character getTemplateType() {
+		return templateType;
+	}
+
+	/**
+	 * @param templateType the templateType to set
+	 */
+	public void setTemplateType(Character templateType) {
+		this.templateType = templateType;
+	}
+
+	/**
+	 * @return the fromDate (inclusive)
+	 */
+	public Date getFromDate() {
+		return fromDate;
+	}
+
+	/**
+	 * @param fromDate the fromDate to set
+	 */
+	public void setFromDate(Date fromDate) {
+		this.fromDate = fromDate;
+	}
+
+	/**
+	 * @return the toDate (exclusive)
+	 */
+	public Date getToDate() {
+		return toDate;
+	}
+
+	/**
+	 * @param toDate the toDate to set
+	 */
+	public void setToDate(Date toDate) {
+		this.toDate = toDate;
+	}
+
+	/**
+	 * @return the creation date of the last snapshot of previous page
+	 */
+	public Date getAfterCreationDate() {
+		return afterCreationDate;
+	}
+
+	/**
+	 * @return the id of the last snapshot of previous page
+	 */
+	public Integer getAfterId() {
+		return afterId;
+	}
+}
@@ -0,0 +1,81 @@
+package org.reportbay.snapshot.domain;
+
+import java.util.Date;
+
+/**
+ * storage footprint of a snapshot, projected without the payload
+ */
+public class ReportSnapShotStorage {
+	
+	private final int id;
+	
+	private final int templateId;
+	
+	private final Date creationDate;
+	
+	private final String snapShotHash;
+	
+	private final Long snapShotSize;
+	
+	private final Integer baseSnapShotId;
+	
+	/**
+	 * 
+	 * @param id
+	 * @param templateId
+	 * @param creationDate
+	 * @param snapShotHash
+	 * @param snapShotSize
+	 * @param baseSnapShotId
+	 */
+	public ReportSnapShotStorage(int id, int templateId, Date creationDate, String snapShotHash, Long snapShotSize, Integer baseSnapShotId){
+		this.id = id;
+		this.templateId = templateId;
+		this.creationDate = creationDate;
+		this.snapShotHash = snapShotHash;
+		this.snapShotSize = snapShotSize;
+		this.baseSnapShotId = baseSnapShotId;
+	}
+
+	/**
+	 * @return the id
+	 */
+	public int getId() {
+		return id;
+	}
+
+	/**
+	 * @return the templateId
+	 */
+	public int getTemplateId() {
+		return templateId;
+	}
+
+	/**
+	 * @return the creationDate
+	 */
+	public Date getCreationDate() {
+		return creationDate;
+	}
+
+	/**
+	 * @return the snapShotHash, null if the payload is stored in database
+	 */
+	public String getSnapShotHash() {
+		return snapShotHash;
+	}
+
+	/**
+	 * @return the snapShotSize, null if not tracked
+	 */
+	public Long getSnapShotSize() {
+		return snapShotSize;
+	}
+
+	/**
+	 * @return the baseSnapShotId, null if the snapshot is a key frame
+	 */
+	public Integer getBaseSnapShotId() {
+		return baseSnapShotId;
+	}
+}
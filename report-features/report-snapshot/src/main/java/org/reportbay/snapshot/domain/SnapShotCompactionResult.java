@@ -0,0 +1,124 @@
+package org.reportbay.snapshot.domain;
+
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * outcome of a snapshot compaction run
+ */
+public class SnapShotCompactionResult implements Serializable{
+	
+	/**
+	 * 
+	 */
+	private static final long serialVersionUID = 1L;
+	
+	private Date startTime;
+	
+	private long elapsedMillis;
+	
+	private int deletedSnapShots;
+	
+	private int removedSegments;
+	
+	private long reclaimedBytes;
+	
+	private boolean completed;
+	
+	/**
+	 * 
+	 * @param count
+	 */
+	public void addDeletedSnapShots(int count){
+		deletedSnapShots += count;
+	}
+	
+	/**
+	 * 
+	 * @param count
+	 */
+	public void addRemovedSegments(int count){
+		removedSegments += count;
+	}
+	
+	/**
+	 * 
+	 * @param bytes
+	 */
+	public void addReclaimedBytes(long bytes){
+		reclaimedBytes += bytes;
+	}
+
+	/**
+	 * @return the startTime
+	 */
+	public Date getStartTime() {
+		return startTime;
+	}
+
+	/**
+	 * @param startTime the startTime to set
+	 */
+	public void setStartTime(Date startTime) {
+		this.startTime = startTime;
+	}
+
+	/**
+	 * @return the elapsedMillis
+	 */
+	public long getElapsedMillis() {
+		return elapsedMillis;
+	}
+
+	/**
+	 * @param elapsedMillis the elapsedMillis to set
+	 */
+	public void setElapsedMillis(long elapsedMillis) {
+		this.elapsedMillis = elapsedMillis;
+	}
+
+	/**
+	 * @return the deletedSnapShots
+	 */
+	public int getDeletedSnapShots() {
+		return deletedSnapShots;
+	}
+
+	/**
+	 * @return the removedSegments, segment files no longer referenced
+	 */
+	public int getRemovedSegments() {
+		return removedSegments;
+	}
+
+	/**
+	 * @return the reclaimedBytes, payload of snapshot without recorded size is not counted
+	 */
+	public long getReclaimedBytes() {
+		return reclaimedBytes;
+	}
+
+	/**
+	 * @return false if the run is stopped by its time budget or failure
+	 */
+	public boolean isCompleted() {
+		return completed;
+	}
+
+	/**
+	 * @param completed the completed to set
+	 */
+	public void setCompleted(boolean completed) {
+		this.completed = completed;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public String toString() {
+		return "SnapShotCompactionResult [startTime=" + startTime + ", elapsedMillis=" + elapsedMillis
+				+ ", deletedSnapShots=" + deletedSnapShots + ", removedSegments=" + removedSegments
+				+ ", reclaimedBytes=" + reclaimedBytes + ", completed=" + completed + "]";
+	}
+}
@@ -0,0 +1,163 @@
+package org.reportbay.snapshot.domain;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * retention of the snapshots of a template. A snapshot is retained if any applicable rule retains it:
+ * one of the most recent keepLast snapshots, the last snapshot of a day within the last keepDailyDays days,
+ * or the last snapshot of a month when keepMonthly is set. Without any rule, all snapshots are retained.
+ * The base snapshots a retained delta snapshot is reconstructed from are retained along with it
+ */
+public class SnapShotRetentionPolicy {
+	
+	private final Integer keepLast;
+	
+	private final Integer keepDailyDays;
+	
+	private final boolean keepMonthly;
+	
+	/**
+	 * 
+	 * @param keepLast null if not applied
+	 * @param keepDailyDays null if not applied
+	 * @param keepMonthly
+	 */
+	public SnapShotRetentionPolicy(Integer keepLast, Integer keepDailyDays, boolean keepMonthly){
+		this.keepLast = keepLast;
+		this.keepDailyDays = keepDailyDays;
+		this.keepMonthly = keepMonthly;
+	}
+	
+	/**
+	 * 
+	 * @return true if no rule is applied, nothing expires
+	 */
+	public boolean isRetainAll(){
+		return keepLast==null && keepDailyDays==null && !keepMonthly;
+	}
+	
+	/**
+	 * 
+	 * @param snapShots of a template, newest first
+	 * @param now
+	 * @return snapshots not retained by any rule, newest first so that delta snapshot is removed before its base
+	 */
+	public List<ReportSnapShotStorage> selectExpired(List<ReportSnapShotStorage> snapShots, Date now){
+		List<ReportSnapShotStorage> expired = new ArrayList<ReportSnapShotStorage>();
+		
+		if(isRetainAll()){
+			return expired;
+		}
+		
+		//1. daily rule covers from the start of the earliest retained day
+		Calendar calendar = Calendar.getInstance();
+		calendar.setTime(now);
+		truncateToDay(calendar);
+		calendar.add(Calendar.DAY_OF_MONTH, 1 - (keepDailyDays==null? 0 : keepDailyDays));
+		
+		long dailyFrom = calendar.getTimeInMillis();
+		
+		//2. newest first, so the first snapshot seen of a day or month is its last
+		Set<Long> retainedDays = new HashSet<Long>();
+		Set<Long> retainedMonths = new HashSet<Long>();
+		
+		Set<Integer> expiredIds = new HashSet<Integer>();
+		
+		for(int i=0; i<snapShots.size(); i++){
+			ReportSnapShotStorage snapShot = snapShots.get(i);
+			
+			Date creationDate = snapShot.getCreationDate();
+			
+			//undated snapshot can not be judged
+			if(creationDate==null){
+				continue;
+			}
+			
+			boolean retained = keepLast!=null && i < keepLast;
+			
+			//day and month are claimed even if already retained by other rule
+			calendar.setTime(creationDate);
+			truncateToDay(calendar);
+			
+			if(keepDailyDays!=null && keepDailyDays > 0 && creationDate.getTime() >= dailyFrom){
+				retained |= retainedDays.add(calendar.getTimeInMillis());
+			}
+			
+			calendar.set(Calendar.DAY_OF_MONTH, 1);
+			
+			if(keepMonthly){
+				retained |= retainedMonths.add(calendar.getTimeInMillis());
+			}
+			
+			if(!retained){
+				expiredIds.add(snapShot.getId());
+			}
+		}
+		
+		//3. base chain of retained snapshot is kept, each chain is walked until it joins a retained snapshot
+		Map<Integer, ReportSnapShotStorage> snapShotById = new HashMap<Integer, ReportSnapShotStorage>();
+		
+		for(ReportSnapShotStorage snapShot: snapShots){
+			snapShotById.put(snapShot.getId(), snapShot);
+		}
+		
+		for(ReportSnapShotStorage snapShot: snapShots){
+			if(expiredIds.contains(snapShot.getId())){
+				continue;
+			}
+			
+			Integer baseId = snapShot.getBaseSnapShotId();
+			
+			while(baseId!=null && expiredIds.remove(baseId)){
+				baseId = snapShotById.get(baseId).getBaseSnapShotId();
+			}
+		}
+		
+		for(ReportSnapShotStorage snapShot: snapShots){
+			if(expiredIds.contains(snapShot.getId())){
+				expired.add(snapShot);
+			}
+		}
+		
+		return expired;
+	}
+	
+	/**
+	 * @return the keepLast
+	 */
+	public Integer getKeepLast() {
+		return keepLast;
+	}
+	
+	/**
+	 * @return the keepDailyDays
+	 */
+	public Integer getKeepDailyDays() {
+		return keepDailyDays;
+	}
+	
+	/**
+	 * @return the keepMonthly
+	 */
+	public boolean isKeepMonthly() {
+		return keepMonthly;
+	}
+	
+	/**
+	 * 
+	 * @param calendar
+	 */
+	private static void truncateToDay(Calendar calendar){
+		calendar.set(Calendar.HOUR_OF_DAY, 0);
+		calendar.set(Calendar.MINUTE, 0);
+		calendar.set(Calendar.SECOND, 0);
+		calendar.set(Calendar.MILLISECOND, 0);
+	}
+}
@@ -0,0 +1,28 @@
+package org.reportbay.snapshot.service;
+
+import javax.ejb.Local;
+
+import org.reportbay.snapshot.domain.SnapShotCompactionResult;
+import org.reportbay.snapshot.service.exception.SnapShotServiceException;
+
+/**
+ * removal of snapshots expired by the retention policy of their template, along with the
+ * segment files no longer referenced. Runs daily in background, and can be run on demand
+ */
+@Local
+public interface SnapShotCompactionService {
+	
+	/**
+	 * 
+	 * @param budgetMillis time after which no further batch is started
+	 * @return outcome of the run, or of the run in progress if one is already running
+	 * @throws SnapShotServiceException
+	 */
+	SnapShotCompactionResult compact(long budgetMillis) throws SnapShotServiceException;
+	
+	/**
+	 * 
+	 * @return outcome of the last run, null if never run
+	 */
+	SnapShotCompactionResult getLastResult();
+}
@@ -1,11 +1,13 @@
 package org.reportbay.snapshot.service;
 
+import java.nio.ByteBuffer;
 import java.util.List;
 
 import javax.ejb.Local;
 
 import org.reportbay.snapshot.domain.ReportSnapShot;
 import org.reportbay.snapshot.domain.ReportSnapShotBase;
+import org.reportbay.snapshot.domain.ReportSnapShotFilter;
 import org.reportbay.snapshot.service.exception.SnapShotServiceException;
 
 @Local
@@ -35,6 +37,14 @@ public interface SnapShotService{
 	 */
 	ReportSnapShot findReportSnapShot(int reportSnapShotId) throws SnapShotServiceException;
 	
+	/**
+	 * 
+	 * @param templateId
+	 * @return most recent snapshot of the template, null if none
+	 * @throws SnapShotServiceException
+	 */
+	ReportSnapShot findLatestReportSnapShot(int templateId) throws SnapShotServiceException;
+	
 	/**
 	 * 
 	 * @return
@@ -42,6 +52,23 @@ public interface SnapShotService{
 	 */
 	List<ReportSnapShotBase> findAllReportSnapShotBase() throws SnapShotServiceException ;
 	
+	/**
+	 * 
+	 * @param filter
+	 * @param maxResults
+	 * @return page of snapshot matching the filter, newest first
+	 * @throws SnapShotServiceException
+	 */
+	List<ReportSnapShotBase> findReportSnapShotBase(ReportSnapShotFilter filter, int maxResults) throws SnapShotServiceException;
+	
+	/**
+	 * 
+	 * @param reportSnapShot
+	 * @return payload of the snapshot, memory mapped if stored in file
+	 * @throws SnapShotServiceException
+	 */
+	ByteBuffer readSnapShot(ReportSnapShot reportSnapShot) throws SnapShotServiceException;
+	
 	/**
 	 * 
 	 * @param reportSnapShot
@@ -0,0 +1,289 @@
+package org.reportbay.snapshot.service.impl;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.ScheduleExpression;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.ejb.Timeout;
+import javax.ejb.TimerConfig;
+import javax.ejb.TimerService;
+import javax.ejb.TransactionManagement;
+import javax.ejb.TransactionManagementType;
+import javax.inject.Inject;
+
+import org.apache.commons.lang3.BooleanUtils;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.reportbay.common.util.SystemProperties;
+import org.reportbay.reporttemplate.domain.BaseReportTemplate;
+import org.reportbay.reporttemplate.service.ReportTemplateService;
+import org.reportbay.reporttemplate.service.exception.ReportTemplateServiceException;
+import org.reportbay.snapshot.dao.SnapShotDAO;
+import org.reportbay.snapshot.dao.exception.SnapShotDAOException;
+import org.reportbay.snapshot.domain.ReportSnapShotStorage;
+import org.reportbay.snapshot.domain.SnapShotCompactionResult;
+import org.reportbay.snapshot.domain.SnapShotRetentionPolicy;
+import org.reportbay.snapshot.service.SnapShotCompactionService;
+import org.reportbay.snapshot.service.exception.SnapShotServiceException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compaction is configured by system properties (prefix {@value #PROPERTY_PREFIX}): enabled,
+ * hour and minute of the daily run, budgetSeconds, batchSize (snapshots deleted per transaction)
+ * and orphanGraceMinutes (age of unreferenced segment file before removal).
+ * Retention of template without its own policy is read from system properties
+ * (prefix {@value #RETENTION_PROPERTY_PREFIX}): keepLast, keepDailyDays and keepMonthly,
+ * all snapshots are retained if none is set.
+ * Transaction is bean managed without transaction of its own, so that each batch is committed by the DAO call.
+ */
+@Singleton
+@Startup
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+@TransactionManagement(TransactionManagementType.BEAN)
+public class SnapShotCompactionServiceImpl implements SnapShotCompactionService{
+	
+	private final Logger LOG = LoggerFactory.getLogger(SnapShotCompactionServiceImpl.class);
+	
+	private static final String PROPERTY_PREFIX = "reportbay.snapshot.compaction.";
+	private static final String RETENTION_PROPERTY_PREFIX = "reportbay.snapshot.retention.";
+	
+	private static final int DEFAULT_HOUR = 3;
+	private static final int DEFAULT_MINUTE = 0;
+	private static final long DEFAULT_BUDGET_SECONDS = 600L;
+	private static final int DEFAULT_BATCH_SIZE = 100;
+	private static final long DEFAULT_ORPHAN_GRACE_MINUTES = 60L;
+	
+	@Resource
+	private TimerService timerService;
+	
+	@Inject
+	private SnapShotDAO snapShotDAO;
+	
+	@Inject
+	private ReportTemplateService reportTemplateService;
+	
+	private final AtomicBoolean running = new AtomicBoolean();
+	
+	private volatile SnapShotCompactionResult currentResult;
+	
+	private volatile SnapShotCompactionResult lastResult;
+	
+	private long budgetMillis;
+	private int batchSize;
+	private long orphanGraceMillis;
+	
+	@PostConstruct
+	public void init(){
+		budgetMillis = NumberUtils.toLong(SystemProperties.getProperty(PROPERTY_PREFIX+"budgetSeconds"), DEFAULT_BUDGET_SECONDS) * 1000L;
+		batchSize = Math.max(1, NumberUtils.toInt(SystemProperties.getProperty(PROPERTY_PREFIX+"batchSize"), DEFAULT_BATCH_SIZE));
+		orphanGraceMillis = NumberUtils.toLong(SystemProperties.getProperty(PROPERTY_PREFIX+"orphanGraceMinutes"), DEFAULT_ORPHAN_GRACE_MINUTES) * 60000L;
+		
+		if(!getBooleanProperty(PROPERTY_PREFIX+"enabled", true)){
+			LOG.info("snapshot compaction is disabled");
+			return;
+		}
+		
+		int hour = NumberUtils.toInt(SystemProperties.getProperty(PROPERTY_PREFIX+"hour"), DEFAULT_HOUR);
+		int minute = NumberUtils.toInt(SystemProperties.getProperty(PROPERTY_PREFIX+"minute"), DEFAULT_MINUTE);
+		
+		//not persistent, timer is recreated on every start
+		timerService.createCalendarTimer(new ScheduleExpression().hour(hour).minute(minute), 
+										 new TimerConfig("snapshot compaction", false));
+	}
+	
+	/**
+	 * daily run
+	 */
+	@Timeout
+	public void scheduledCompact(){
+		try{
+			compact(budgetMillis);
+		}
+		catch(SnapShotServiceException e){
+			LOG.warn("scheduled snapshot compaction failed", e);
+		}
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public SnapShotCompactionResult compact(long budgetMillis) throws SnapShotServiceException {
+		if(!running.compareAndSet(false, true)){
+			LOG.info("snapshot compaction already running");
+			return currentResult;
+		}
+		
+		long startTime = System.currentTimeMillis();
+		long deadline = startTime + budgetMillis;
+		
+		SnapShotCompactionResult result = new SnapShotCompactionResult();
+		result.setStartTime(new Date(startTime));
+		currentResult = result;
+		
+		try{
+			//1. expire snapshots by retention policy, template by template
+			boolean completed = true;
+			
+			for(Integer templateId: snapShotDAO.findTemplateIds()){
+				if(!expireSnapShots(templateId, new Date(startTime), deadline, result)){
+					completed = false;
+					break;
+				}
+			}
+			
+			//2. segment files left by failed insertion, deleted snapshot or within grace period above
+			if(completed && System.currentTimeMillis() < deadline){
+				snapShotDAO.purgeOrphanSegments(startTime - orphanGraceMillis, result);
+			}
+			
+			result.setCompleted(completed && System.currentTimeMillis() <= deadline);
+		}
+		catch(SnapShotDAOException ssde){
+			throw new SnapShotServiceException(ssde);
+		}
+		finally{
+			result.setElapsedMillis(System.currentTimeMillis() - startTime);
+			lastResult = result;
+			currentResult = null;
+			running.set(false);
+			
+			LOG.info("snapshot compaction {} snapshots deleted, {} segments removed, {} bytes reclaimed in {} ms{}", 
+					 result.getDeletedSnapShots(), result.getRemovedSegments(), result.getReclaimedBytes(), 
+					 result.getElapsedMillis(), result.isCompleted()? "" : " (incomplete)");
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public SnapShotCompactionResult getLastResult() {
+		return lastResult;
+	}
+	
+	/*************** private methods ****************/
+	
+	/**
+	 * delete the expired snapshots of the template in batches, each batch in its own transaction
+	 * @param templateId
+	 * @param now
+	 * @param deadline
+	 * @param result
+	 * @return false if stopped by the deadline
+	 * @throws SnapShotDAOException
+	 */
+	private boolean expireSnapShots(int templateId, Date now, long deadline, SnapShotCompactionResult result) throws SnapShotDAOException{
+		if(System.currentTimeMillis() >= deadline){
+			return false;
+		}
+		
+		SnapShotRetentionPolicy policy = getRetentionPolicy(templateId);
+		
+		if(policy.isRetainAll()){
+			return true;
+		}
+		
+		List<ReportSnapShotStorage> expired = policy.selectExpired(snapShotDAO.findStorageByTemplate(templateId), now);
+		
+		for(int from=0; from<expired.size(); from+=batchSize){
+			if(System.currentTimeMillis() >= deadline){
+				return false;
+			}
+			
+			List<ReportSnapShotStorage> batch = expired.subList(from, Math.min(from + batchSize, expired.size()));
+			
+			List<Integer> ids = new ArrayList<Integer>(batch.size());
+			Set<String> hashes = new LinkedHashSet<String>();
+			long databaseBytes = 0;
+			
+			for(ReportSnapShotStorage snapShot: batch){
+				ids.add(snapShot.getId());
+				
+				if(snapShot.getSnapShotHash()!=null){
+					hashes.add(snapShot.getSnapShotHash());
+				}
+				else if(snapShot.getSnapShotSize()!=null){
+					databaseBytes += snapShot.getSnapShotSize();
+				}
+			}
+			
+			//1. committed on return, lock is held for the batch only
+			result.addDeletedSnapShots(snapShotDAO.deleteByIds(ids));
+			result.addReclaimedBytes(databaseBytes);
+			
+			//2. segment file is removed after the deletion is committed
+			snapShotDAO.releaseSegments(hashes, now.getTime() - orphanGraceMillis, result);
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * policy of the template, falling back to system default for rule not set
+	 * @param templateId
+	 * @return
+	 */
+	private SnapShotRetentionPolicy getRetentionPolicy(int templateId){
+		Integer keepLast = getIntegerProperty(RETENTION_PROPERTY_PREFIX+"keepLast");
+		Integer keepDailyDays = getIntegerProperty(RETENTION_PROPERTY_PREFIX+"keepDailyDays");
+		boolean keepMonthly = getBooleanProperty(RETENTION_PROPERTY_PREFIX+"keepMonthly", false);
+		
+		try{
+			BaseReportTemplate template = reportTemplateService.findReportTemplate(templateId);
+			
+			//snapshot of deleted template follow the system default
+			if(template!=null){
+				if(template.getSnapshotKeepLast()!=null){
+					keepLast = template.getSnapshotKeepLast();
+				}
+				if(template.getSnapshotKeepDailyDays()!=null){
+					keepDailyDays = template.getSnapshotKeepDailyDays();
+				}
+				if(template.getSnapshotKeepMonthly()!=null){
+					keepMonthly = template.getSnapshotKeepMonthly();
+				}
+			}
+		}
+		catch(ReportTemplateServiceException rtse){
+			//unable to tell the policy, keep everything
+			LOG.warn("Failed to find report template {}, snapshots are retained", templateId, rtse);
+			return new SnapShotRetentionPolicy(null, null, false);
+		}
+		
+		return new SnapShotRetentionPolicy(keepLast, keepDailyDays, keepMonthly);
+	}
+	
+	/**
+	 * 
+	 * @param name
+	 * @return null if not set
+	 */
+	private static Integer getIntegerProperty(String name){
+		String value = SystemProperties.getProperty(name);
+		
+		return NumberUtils.isDigits(value)? Integer.valueOf(value) : null;
+	}
+	
+	/**
+	 * 
+	 * @param name
+	 * @param defaultValue
+	 * @return
+	 */
+	private static boolean getBooleanProperty(String name, boolean defaultValue){
+		return BooleanUtils.toBooleanDefaultIfNull(BooleanUtils.toBooleanObject(SystemProperties.getProperty(name)), defaultValue);
+	}
+}
@@ -1,5 +1,6 @@
 package org.reportbay.snapshot.service.impl;
 
+import java.nio.ByteBuffer;
 import java.util.List;
 
 import javax.ejb.Stateless;
@@ -13,6 +14,7 @@ import org.reportbay.snapshot.dao.SnapShotDAO;
 import org.reportbay.snapshot.dao.exception.SnapShotDAOException;
 import org.reportbay.snapshot.domain.ReportSnapShot;
 import org.reportbay.snapshot.domain.ReportSnapShotBase;
+import org.reportbay.snapshot.domain.ReportSnapShotFilter;
 import org.reportbay.snapshot.service.SnapShotService;
 import org.reportbay.snapshot.service.exception.SnapShotServiceException;
 import org.slf4j.Logger;
@@ -76,6 +78,18 @@ public class SnapShotServiceImpl implements SnapShotService{
 	 * {@inheritDoc}
 	 */
 	@Override
+	public ReportSnapShot findLatestReportSnapShot(int templateId) throws SnapShotServiceException {
+		try{
+			return snapShotDAO.findLatestByTemplate(templateId);
+		}
+		catch(SnapShotDAOException ssde){
+			throw new SnapShotServiceException(ssde);
+		}
+	}
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
 	public List<ReportSnapShotBase> findAllReportSnapShotBase() throws SnapShotServiceException {
 		try{
 			return snapShotDAO.findAllBase();
@@ -88,6 +102,30 @@ public class SnapShotServiceImpl implements SnapShotService{
 	 * {@inheritDoc}
 	 */
 	@Override
+	public List<ReportSnapShotBase> findReportSnapShotBase(ReportSnapShotFilter filter, int maxResults) throws SnapShotServiceException {
+		try{
+			return snapShotDAO.findBase(filter, maxResults);
+		}
+		catch(SnapShotDAOException ssde){
+			throw new SnapShotServiceException(ssde);
+		}
+	}
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public ByteBuffer readSnapShot(ReportSnapShot reportSnapShot) throws SnapShotServiceException {
+		try{
+			return snapShotDAO.readSnapShot(reportSnapShot);
+		}
+		catch(SnapShotDAOException ssde){
+			throw new SnapShotServiceException(ssde);
+		}
+	}
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
 	@TransactionAttribute(TransactionAttributeType.REQUIRED)
 	public void delete(ReportSnapShot reportSnapShot) throws SnapShotServiceException {
 		try{
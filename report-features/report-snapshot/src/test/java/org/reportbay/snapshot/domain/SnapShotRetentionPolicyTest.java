@@ -0,0 +1,122 @@
+package org.reportbay.snapshot.domain;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Test;
+
+public class SnapShotRetentionPolicyTest {
+
+	private static final Date NOW = date(2015, Calendar.MARCH, 10, 12);
+
+	private static Date date(int year, int month, int day, int hour){
+		Calendar calendar = Calendar.getInstance();
+		calendar.clear();
+		calendar.set(year, month, day, hour, 0);
+		return calendar.getTime();
+	}
+
+	private static ReportSnapShotStorage snapShot(int id, Date creationDate, Integer baseSnapShotId){
+		return new ReportSnapShotStorage(id, 1, creationDate, null, null, baseSnapShotId);
+	}
+
+	private static List<Integer> ids(List<ReportSnapShotStorage> snapShots){
+		List<Integer> ids = new ArrayList<Integer>();
+
+		for(ReportSnapShotStorage snapShot: snapShots){
+			ids.add(snapShot.getId());
+		}
+		return ids;
+	}
+
+	@Test
+	public void testRetainAllWithoutRule(){
+		SnapShotRetentionPolicy policy = new SnapShotRetentionPolicy(null, null, false);
+
+		List<ReportSnapShotStorage> snapShots = Arrays.asList(snapShot(2, date(2015, Calendar.MARCH, 9, 8), null),
+															  snapShot(1, date(2014, Calendar.JANUARY, 1, 8), null));
+
+		assertTrue(policy.isRetainAll());
+		assertTrue(policy.selectExpired(snapShots, NOW).isEmpty());
+	}
+
+	@Test
+	public void testKeepLast(){
+		SnapShotRetentionPolicy policy = new SnapShotRetentionPolicy(2, null, false);
+
+		List<ReportSnapShotStorage> snapShots = Arrays.asList(snapShot(4, date(2015, Calendar.MARCH, 9, 8), null),
+															  snapShot(3, date(2015, Calendar.MARCH, 8, 8), null),
+															  snapShot(2, date(2015, Calendar.MARCH, 7, 8), null),
+															  snapShot(1, date(2015, Calendar.MARCH, 6, 8), null));
+
+		assertEquals(Arrays.asList(2, 1), ids(policy.selectExpired(snapShots, NOW)));
+	}
+
+	@Test
+	public void testKeepLastOfDayWithinDays(){
+		SnapShotRetentionPolicy policy = new SnapShotRetentionPolicy(null, 2, false);
+
+		List<ReportSnapShotStorage> snapShots = Arrays.asList(snapShot(5, date(2015, Calendar.MARCH, 10, 9), null),
+															  snapShot(4, date(2015, Calendar.MARCH, 10, 8), null),
+															  snapShot(3, date(2015, Calendar.MARCH, 9, 18), null),
+															  snapShot(2, date(2015, Calendar.MARCH, 9, 8), null),
+															  snapShot(1, date(2015, Calendar.MARCH, 8, 8), null));
+
+		assertEquals(Arrays.asList(4, 2, 1), ids(policy.selectExpired(snapShots, NOW)));
+	}
+
+	@Test
+	public void testKeepLastOfMonth(){
+		SnapShotRetentionPolicy policy = new SnapShotRetentionPolicy(null, null, true);
+
+		List<ReportSnapShotStorage> snapShots = Arrays.asList(snapShot(4, date(2015, Calendar.MARCH, 2, 8), null),
+															  snapShot(3, date(2015, Calendar.MARCH, 1, 8), null),
+															  snapShot(2, date(2015, Calendar.FEBRUARY, 28, 8), null),
+															  snapShot(1, date(2015, Calendar.FEBRUARY, 1, 8), null));
+
+		assertEquals(Arrays.asList(3, 1), ids(policy.selectExpired(snapShots, NOW)));
+	}
+
+	@Test
+	public void testBaseChainOfRetainedDeltaIsRetained(){
+		SnapShotRetentionPolicy policy = new SnapShotRetentionPolicy(1, null, false);
+
+		//4 is a delta of 3, delta of key frame 2
+		List<ReportSnapShotStorage> snapShots = Arrays.asList(snapShot(4, date(2015, Calendar.MARCH, 9, 8), 3),
+															  snapShot(3, date(2015, Calendar.MARCH, 8, 8), 2),
+															  snapShot(2, date(2015, Calendar.MARCH, 7, 8), null),
+															  snapShot(1, date(2015, Calendar.MARCH, 6, 8), null));
+
+		assertEquals(Arrays.asList(1), ids(policy.selectExpired(snapShots, NOW)));
+	}
+
+	@Test
+	public void testExpiredDeltaDoesNotRetainItsBase(){
+		SnapShotRetentionPolicy policy = new SnapShotRetentionPolicy(1, null, false);
+
+		//4 is a key frame, 3 is an expired delta of 2
+		List<ReportSnapShotStorage> snapShots = Arrays.asList(snapShot(4, date(2015, Calendar.MARCH, 9, 8), null),
+															  snapShot(3, date(2015, Calendar.MARCH, 8, 8), 2),
+															  snapShot(2, date(2015, Calendar.MARCH, 7, 8), null));
+
+		//newest first, delta is removed before its base
+		assertEquals(Arrays.asList(3, 2), ids(policy.selectExpired(snapShots, NOW)));
+	}
+
+	@Test
+	public void testUndatedSnapShotIsRetained(){
+		SnapShotRetentionPolicy policy = new SnapShotRetentionPolicy(1, null, false);
+
+		List<ReportSnapShotStorage> snapShots = Arrays.asList(snapShot(3, date(2015, Calendar.MARCH, 9, 8), null),
+															  snapShot(2, null, null),
+															  snapShot(1, date(2015, Calendar.MARCH, 7, 8), null));
+
+		assertEquals(Arrays.asList(1), ids(policy.selectExpired(snapShots, NOW)));
+	}
+}
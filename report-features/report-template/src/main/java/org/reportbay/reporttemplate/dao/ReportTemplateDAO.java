@@ -1,8 +1,11 @@
 package org.reportbay.reporttemplate.dao;
 
+import java.util.List;
+
 import org.reportbay.common.dao.BaseDAO;
 import org.reportbay.reporttemplate.dao.exception.ReportTemplateDAOException;
 import org.reportbay.reporttemplate.domain.BaseReportTemplate;
+import org.reportbay.reporttemplate.domain.CrossTabTemplate;
 
 /**
  * 
@@ -10,5 +13,13 @@ import org.reportbay.reporttemplate.domain.BaseReportTemplate;
  *
  */
 public interface ReportTemplateDAO extends BaseDAO<BaseReportTemplate, ReportTemplateDAOException>{
+	
+	/**
+	 * 
+	 * @param modelId
+	 * @return CrossTabTemplate(s) built on the model
+	 * @throws ReportTemplateDAOException
+	 */
+	List<CrossTabTemplate> findCrossTabTemplatesByModel(int modelId) throws ReportTemplateDAOException;
 
 }
\ No newline at end of file
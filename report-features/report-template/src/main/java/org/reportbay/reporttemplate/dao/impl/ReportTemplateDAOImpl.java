@@ -1,5 +1,7 @@
 package org.reportbay.reporttemplate.dao.impl;
 
+import java.util.List;
+
 import javax.ejb.Local;
 import javax.ejb.Stateless;
 import javax.ejb.TransactionAttribute;
@@ -10,6 +12,9 @@ import javax.interceptor.Interceptors;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import javax.persistence.PersistenceException;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Root;
 
 import org.reportbay.common.dao.impl.BaseDAOImpl;
 import org.reportbay.common.interceptor.DAOLogger;
@@ -18,6 +23,7 @@ import org.reportbay.reporttemplate.dao.ReportTemplateDAO;
 import org.reportbay.reporttemplate.dao.exception.ReportTemplateDAOException;
 import org.reportbay.reporttemplate.domain.BaseReportTemplate;
 import org.reportbay.reporttemplate.domain.CartesianChartTemplate;
+import org.reportbay.reporttemplate.domain.CrossTabTemplate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -92,6 +98,26 @@ public class ReportTemplateDAOImpl extends BaseDAOImpl<BaseReportTemplate, Repor
 		}
 	}
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public List<CrossTabTemplate> findCrossTabTemplatesByModel(int modelId) throws ReportTemplateDAOException {
+		try {
+			CriteriaBuilder criteriaBuilder = em.getCriteriaBuilder();
+			
+			CriteriaQuery<CrossTabTemplate> criteriaQuery = criteriaBuilder.createQuery(CrossTabTemplate.class);
+			Root<CrossTabTemplate> templateTable = criteriaQuery.from(CrossTabTemplate.class);
+			
+			criteriaQuery.select(templateTable)
+						 .where(criteriaBuilder.equal(templateTable.get("modelId"), modelId));
+			
+			return em.createQuery(criteriaQuery).getResultList();
+		} catch(PersistenceException e) {
+			throw new ReportTemplateDAOException("Failed to find CrossTab Templates of model "+modelId, e);
+		}
+	}
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -73,6 +73,31 @@ public abstract class BaseReportTemplate extends BaseJPAEntity {
 	 */
 	@Column(name="report_display_name")
 	private String reportDisplayName;
+	/**
+	 * time to live (second) of cached generated report, null to apply system default, 0 to disable caching
+	 */
+	@Column(name="result_cache_ttl")
+	private Integer resultCacheTtl;
+	/**
+	 * true to keep DECIMAL / NUMERIC value exact (BigDecimal) instead of double, null or false by default
+	 */
+	@Column(name="exact_decimal")
+	private Boolean exactDecimal;
+	/**
+	 * number of most recent snapshots always retained, null to apply system default
+	 */
+	@Column(name="snapshot_keep_last")
+	private Integer snapshotKeepLast;
+	/**
+	 * number of days for which the last snapshot of each day is retained, null to apply system default
+	 */
+	@Column(name="snapshot_keep_daily_days")
+	private Integer snapshotKeepDailyDays;
+	/**
+	 * true to retain the last snapshot of each month indefinitely, null to apply system default
+	 */
+	@Column(name="snapshot_keep_monthly")
+	private Boolean snapshotKeepMonthly;
 	
 	/**
 	 * this attribute is not persisted along with report template entity
@@ -162,6 +187,66 @@ public abstract class BaseReportTemplate extends BaseJPAEntity {
 	public void setReportDisplayName(String reportDisplayName) { 
 		 this.reportDisplayName = reportDisplayName; 
 	}
+	/**
+	 * @return the resultCacheTtl
+	 */
+	public Integer getResultCacheTtl() {
+		return resultCacheTtl;
+	}
+	/**
+	 * @param resultCacheTtl the resultCacheTtl to set
+	 */
+	public void setResultCacheTtl(Integer resultCacheTtl) {
+		this.resultCacheTtl = resultCacheTtl;
+	}
+	/**
+	 * @return the exactDecimal
+	 */
+	public Boolean getExactDecimal() {
+		return exactDecimal;
+	}
+	/**
+	 * @param exactDecimal the exactDecimal to set
+	 */
+	public void setExactDecimal(Boolean exactDecimal) {
+		this.exactDecimal = exactDecimal;
+	}
+	/**
+	 * @return the snapshotKeepLast
+	 */
+	public Integer getSnapshotKeepLast() {
+		return snapshotKeepLast;
+	}
+	/**
+	 * @param snapshotKeepLast the snapshotKeepLast to set
+	 */
+	public void setSnapshotKeepLast(Integer snapshotKeepLast) {
+		this.snapshotKeepLast = snapshotKeepLast;
+	}
+	/**
+	 * @return the snapshotKeepDailyDays
+	 */
+	public Integer getSnapshotKeepDailyDays() {
+		return snapshotKeepDailyDays;
+	}
+	/**
+	 * @param snapshotKeepDailyDays the snapshotKeepDailyDays to set
+	 */
+	public void setSnapshotKeepDailyDays(Integer snapshotKeepDailyDays) {
+		this.snapshotKeepDailyDays = snapshotKeepDailyDays;
+	}
+	/**
+	 * @return the snapshotKeepMonthly
+	 */
+	public Boolean getSnapshotKeepMonthly() {
+		return snapshotKeepMonthly;
+	}
+	/**
+	 * @param snapshotKeepMonthly the snapshotKeepMonthly to set
+	 */
+	public void setSnapshotKeepMonthly(Boolean snapshotKeepMonthly) {
+		this.snapshotKeepMonthly = snapshotKeepMonthly;
+	}
 	/**
 	 * @return the id
 	 */
@@ -193,6 +278,11 @@ public abstract class BaseReportTemplate extends BaseJPAEntity {
 		  .append(modelId, testRef.modelId)
 		  .append(templateName, testRef.templateName)
 		  .append(reportDisplayName, testRef.reportDisplayName)
+		  .append(resultCacheTtl, testRef.resultCacheTtl)
+		  .append(exactDecimal, testRef.exactDecimal)
+		  .append(snapshotKeepLast, testRef.snapshotKeepLast)
+		  .append(snapshotKeepDailyDays, testRef.snapshotKeepDailyDays)
+		  .append(snapshotKeepMonthly, testRef.snapshotKeepMonthly)
 		  .append(type, testRef.type);
 		
 		return eb.isEquals();
@@ -212,6 +302,11 @@ public abstract class BaseReportTemplate extends BaseJPAEntity {
 		   .append(modelId)
 		   .append(templateName)
 		   .append(reportDisplayName)
+		   .append(resultCacheTtl)
+		   .append(exactDecimal)
+		   .append(snapshotKeepLast)
+		   .append(snapshotKeepDailyDays)
+		   .append(snapshotKeepMonthly)
 		   .append(type);
 		
 		return hcb.toHashCode();
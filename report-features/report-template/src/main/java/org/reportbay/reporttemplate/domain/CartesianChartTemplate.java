@@ -1,6 +1,8 @@
 package org.reportbay.reporttemplate.domain;
 
 import javax.persistence.Column;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
 import javax.persistence.MappedSuperclass;
 
 import org.apache.commons.lang3.builder.EqualsBuilder;
@@ -61,6 +63,31 @@ public class CartesianChartTemplate extends ChartTemplate {
 	 */
 	@Column(name="model_series_grp_field")
 	private String modelSeriesGroupField;
+	/**
+	 * aggregate applied on data value field grouped by label and series field,
+	 * null to retrieve model rows as is
+	 */
+	@Column(name="data_aggregate")
+	@Enumerated(EnumType.STRING)
+	private SqlFunction dataAggregate;
+	/**
+	 * number of point(s) per series to be kept after downsampling, null or 0 to keep all
+	 */
+	@Column(name="downsample_points")
+	private Integer downsamplePoints;
+	/**
+	 * downsampling algorithm, LTTB if not specified
+	 */
+	@Column(name="downsample_algorithm")
+	@Enumerated(EnumType.STRING)
+	private DownsampleAlgorithm downsampleAlgorithm;
+	/**
+	 * granularity the DATE / TIMESTAMP data label truncated to at database, null to keep label as is.
+	 * Data aggregate must be specified, it decides the value of each bucket
+	 */
+	@Column(name="label_time_bucket")
+	@Enumerated(EnumType.STRING)
+	private TimeBucket labelTimeBucket;
 	
 	/**
 	 * 
@@ -167,6 +194,10 @@ public class CartesianChartTemplate extends ChartTemplate {
 		  .append(modelDataLabelField, testRef.modelDataLabelField)
 		  .append(modelDataValueField, testRef.modelDataValueField)
 		  .append(modelSeriesGroupField, testRef.modelSeriesGroupField)
+		  .append(dataAggregate, testRef.dataAggregate)
+		  .append(downsamplePoints, testRef.downsamplePoints)
+		  .append(downsampleAlgorithm, testRef.downsampleAlgorithm)
+		  .append(labelTimeBucket, testRef.labelTimeBucket)
 		  .append(getDataSeries(), testRef.getDataSeries());
 		
 		return eb.isEquals();
@@ -187,6 +218,10 @@ public class CartesianChartTemplate extends ChartTemplate {
 		   .append(modelDataLabelField)
 		   .append(modelDataValueField)
 		   .append(modelSeriesGroupField)
+		   .append(dataAggregate)
+		   .append(downsamplePoints)
+		   .append(downsampleAlgorithm)
+		   .append(labelTimeBucket)
 		   .append(getDataSeries());
 		
 		return hcb.toHashCode();
@@ -233,4 +268,52 @@ public class CartesianChartTemplate extends ChartTemplate {
 	public void setModelSeriesGroupField(String modelSeriesGroupField) {
 		this.modelSeriesGroupField = modelSeriesGroupField;
 	}
+	/**
+	 * @return the dataAggregate
+	 */
+	public SqlFunction getDataAggregate() {
+		return dataAggregate;
+	}
+	/**
+	 * @param dataAggregate the dataAggregate to set
+	 */
+	public void setDataAggregate(SqlFunction dataAggregate) {
+		this.dataAggregate = dataAggregate;
+	}
+	/**
+	 * @return the downsamplePoints
+	 */
+	public Integer getDownsamplePoints() {
+		return downsamplePoints;
+	}
+	/**
+	 * @param downsamplePoints the downsamplePoints to set
+	 */
+	public void setDownsamplePoints(Integer downsamplePoints) {
+		this.downsamplePoints = downsamplePoints;
+	}
+	/**
+	 * @return the downsampleAlgorithm
+	 */
+	public DownsampleAlgorithm getDownsampleAlgorithm() {
+		return downsampleAlgorithm;
+	}
+	/**
+	 * @param downsampleAlgorithm the downsampleAlgorithm to set
+	 */
+	public void setDownsampleAlgorithm(DownsampleAlgorithm downsampleAlgorithm) {
+		this.downsampleAlgorithm = downsampleAlgorithm;
+	}
+	/**
+	 * @return the labelTimeBucket
+	 */
+	public TimeBucket getLabelTimeBucket() {
+		return labelTimeBucket;
+	}
+	/**
+	 * @param labelTimeBucket the labelTimeBucket to set
+	 */
+	public void setLabelTimeBucket(TimeBucket labelTimeBucket) {
+		this.labelTimeBucket = labelTimeBucket;
+	}
 }
@@ -24,6 +24,12 @@ public class CrossTabTemplateDetail extends BaseJPAEntity{
 	 * 
 	 */
 	private static final long serialVersionUID = -1966934340275786589L;
+	
+	/**
+	 * suffix of the column alias holding the row count of an AVG measure, 
+	 * AVG is selected as SUM and COUNT so that subtotals can be averaged over the source rows
+	 */
+	public static final String AVG_COUNT_ALIAS_SUFFIX = "_avg_count";
 		
 	@Column(name="model_attribute_name",nullable=false)
 	private String modelAttributeName;
@@ -0,0 +1,21 @@
+package org.reportbay.reporttemplate.domain;
+
+/**
+ * 
+ * server side downsampling of dense cartesian chart series
+ *
+ */
+public enum DownsampleAlgorithm {
+	/**
+	 * Largest-Triangle-Three-Buckets, keep the point forming the largest triangle with its neighbour buckets
+	 */
+	LTTB,
+	/**
+	 * keep the minimum and maximum point of each bucket
+	 */
+	MIN_MAX,
+	/**
+	 * average of each bucket, labelled by the first point of the bucket
+	 */
+	AVERAGE;
+}
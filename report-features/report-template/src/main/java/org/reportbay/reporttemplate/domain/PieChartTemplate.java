@@ -7,6 +7,8 @@ import javax.persistence.AccessType;
 import javax.persistence.Column;
 import javax.persistence.DiscriminatorValue;
 import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
 import javax.persistence.Table;
 import javax.persistence.Transient;
 
@@ -39,6 +41,13 @@ public class PieChartTemplate extends ChartTemplate {
 	 */
 	@Column(name="model_data_field")
 	private String modelDataField;
+	/**
+	 * aggregate applied on data field grouped by category field,
+	 * null to retrieve model rows as is
+	 */
+	@Column(name="data_aggregate")
+	@Enumerated(EnumType.STRING)
+	private SqlFunction dataAggregate;
 	/**
 	 * 
 	 */
@@ -89,6 +98,20 @@ public class PieChartTemplate extends ChartTemplate {
 	public void setModelDataField(String modelDataField) { 
 		 this.modelDataField = modelDataField; 
 	}
+	/**
+	 * 
+	 * @return 
+	 */
+	public SqlFunction getDataAggregate() {
+	 	 return dataAggregate; 
+	}
+	/**
+	 * 
+	 * @param dataAggregate 
+	 */
+	public void setDataAggregate(SqlFunction dataAggregate) { 
+		 this.dataAggregate = dataAggregate; 
+	}
 	/**
 	 * Getter of showDataLabel
 	 */
@@ -166,6 +189,7 @@ public class PieChartTemplate extends ChartTemplate {
 		  .append(dataTypeFormat, testRef.dataTypeFormat)
 		  .append(modelCategoryField, testRef.modelCategoryField)
 		  .append(modelDataField, testRef.modelDataField)
+		  .append(dataAggregate, testRef.dataAggregate)
 		  .append(showDataLabel, testRef.showDataLabel);
 		  
 		return eb.isEquals();
@@ -182,6 +206,7 @@ public class PieChartTemplate extends ChartTemplate {
 		   .append(dataTypeFormat)
 		   .append(modelCategoryField)
 		   .append(modelDataField)
+		   .append(dataAggregate)
 		   .append(showDataLabel);
 		
 		return hcb.toHashCode();
@@ -0,0 +1,10 @@
+package org.reportbay.reporttemplate.domain;
+
+/**
+ * 
+ * granularity of date / time label truncated at database, week starts on Monday
+ *
+ */
+public enum TimeBucket {
+	MINUTE, HOUR, DAY, WEEK, MONTH;
+}
@@ -277,6 +277,22 @@ public interface ReportTemplateService {
 	 * @throws ReportTemplateServiceException
 	 */
 	Optional<ReportQuery> constructReportQuery(CrossTabTemplate crossTabTemplate) throws ReportTemplateServiceException;
+	
+	/**
+	 * compiled ReportQuery of the CrossTabTemplate, the persisted one is returned without reconstruction. 
+	 * Query is constructed for template not yet persisted, and also persisted for template saved without query
+	 * @param crossTabTemplate
+	 * @return {@link Optional}<{@link ReportQuery}>
+	 * @throws ReportTemplateServiceException
+	 */
+	Optional<ReportQuery> findOrConstructReportQuery(CrossTabTemplate crossTabTemplate) throws ReportTemplateServiceException;
+	
+	/**
+	 * recompile the persisted ReportQuery of all CrossTabTemplate(s) built on the model, e.g. after model update
+	 * @param modelId
+	 * @throws ReportTemplateServiceException
+	 */
+	void recompileCrossTabReportQueries(int modelId) throws ReportTemplateServiceException;
 	/**
 	 * Parse the Select Query String and return {@link Select} object.
 	 * @param {@link String} String representation of Query String
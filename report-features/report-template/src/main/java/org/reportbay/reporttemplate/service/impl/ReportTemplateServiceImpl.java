@@ -1,10 +1,10 @@
 package org.reportbay.reporttemplate.service.impl;
 
-import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -22,7 +22,7 @@ import net.sf.jsqlparser.expression.Alias;
 import net.sf.jsqlparser.expression.Expression;
 import net.sf.jsqlparser.expression.Function;
 import net.sf.jsqlparser.expression.operators.relational.ExpressionList;
-import net.sf.jsqlparser.parser.CCJSqlParserManager;
+import net.sf.jsqlparser.parser.CCJSqlParserUtil;
 import net.sf.jsqlparser.schema.Column;
 import net.sf.jsqlparser.statement.Statement;
 import net.sf.jsqlparser.statement.select.AllColumns;
@@ -39,7 +39,9 @@ import net.sf.jsqlparser.util.deparser.SelectDeParser;
 
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.reportbay.common.domain.SqlTypeEnum;
 import org.reportbay.common.util.CommonUtils;
+import org.reportbay.datasource.domain.DatabaseType.DatabaseFamily;
 import org.reportbay.datasource.service.JdbcClient;
 import org.reportbay.datasource.service.exception.JdbcClientException;
 import org.reportbay.model.dao.ModelDAO;
@@ -47,6 +49,7 @@ import org.reportbay.model.dao.exception.ModelDAOException;
 import org.reportbay.model.domain.AttributeMapping;
 import org.reportbay.model.domain.Model;
 import org.reportbay.model.domain.ModelQuery;
+import org.reportbay.model.service.ParsedQueryCache;
 import org.reportbay.model.service.util.SelectFieldMatcher;
 import org.reportbay.reporttemplate.dao.ReportQueryDAO;
 import org.reportbay.reporttemplate.dao.ReportTemplateDAO;
@@ -64,6 +67,7 @@ import org.reportbay.reporttemplate.domain.LineChartTemplate;
 import org.reportbay.reporttemplate.domain.PieChartTemplate;
 import org.reportbay.reporttemplate.domain.ReportQuery;
 import org.reportbay.reporttemplate.domain.SqlFunction;
+import org.reportbay.reporttemplate.domain.TimeBucket;
 import org.reportbay.reporttemplate.service.ReportTemplateService;
 import org.reportbay.reporttemplate.service.exception.ReportTemplateServiceException;
 import org.slf4j.Logger;
@@ -77,6 +81,8 @@ public class ReportTemplateServiceImpl implements ReportTemplateService {
 
 	private final Logger LOG = LoggerFactory.getLogger(ReportTemplateServiceImpl.class);
 	
+	private static final String CHART_DERIVED_TABLE_ALIAS = "chart_data";
+	
 	@Inject
 	private ReportTemplateDAO reportTemplateDAO;
 
@@ -88,6 +94,9 @@ public class ReportTemplateServiceImpl implements ReportTemplateService {
 	
 	@Inject
 	private JdbcClient jdbcClient;
+	
+	@Inject
+	private ParsedQueryCache parsedQueryCache;
 
 	
 	/**
@@ -459,7 +468,7 @@ public class ReportTemplateServiceImpl implements ReportTemplateService {
 
 				Map<String, String> aliasLookUpMap = constructAliasLookupMap(model, requiredColumnList);
 
-				reportQuery = constructReportQueryFromModel( model, aliasLookUpMap);
+				reportQuery = constructReportQueryFromModel( model, aliasLookUpMap, template.getModelDataField(), template.getDataAggregate(), null, null);
 				reportQuery.setId(template.getId());
 			} catch (ModelDAOException mde) {
 				throw new ReportTemplateServiceException("Error finding model [" + template.getModelId() + "]", mde);
@@ -508,8 +517,17 @@ public class ReportTemplateServiceImpl implements ReportTemplateService {
 				List<String> requiredColumnList = constructCartesianChartTemplateRequiredFields(template);
 
 				Map<String, String> aliasLookUpMap = constructAliasLookupMap(model, requiredColumnList);
+				
+				if (template.getLabelTimeBucket() != null) {
+					//value of a bucket (sum, average, ...) is not guessed
+					if (template.getDataAggregate() == null) {
+						throw new ReportTemplateServiceException("Time bucket requires data aggregate, none specified for " + template.getTemplateName());
+					}
+					verifyTimeBucketLabel(model, template.getModelDataLabelField());
+				}
 
-				reportQuery = constructReportQueryFromModel(model, aliasLookUpMap);
+				reportQuery = constructReportQueryFromModel(model, aliasLookUpMap, template.getModelDataValueField(), template.getDataAggregate(),
+															template.getModelDataLabelField(), template.getLabelTimeBucket());
 				reportQuery.setId(template.getId());
 			} catch (ModelDAOException mde) {
 				throw new ReportTemplateServiceException("Error finding model [" + template.getModelId() + "]", mde);
@@ -519,6 +537,26 @@ public class ReportTemplateServiceImpl implements ReportTemplateService {
 		return reportQuery;
 	}
 
+	/**
+	 * time bucket only applies to date / time label
+	 * @param model
+	 * @param labelAlias
+	 * @throws ReportTemplateServiceException
+	 */
+	private void verifyTimeBucketLabel(Model model, String labelAlias) throws ReportTemplateServiceException {
+		for (AttributeMapping attributeMapping : model.getAttributeBindings()) {
+			if (labelAlias.equals(attributeMapping.getAlias())) {
+				SqlTypeEnum sqlType = SqlTypeEnum.fromString(attributeMapping.getTypeName());
+				
+				//type not captured for attribute, left to database to reject
+				if (sqlType != null && sqlType != SqlTypeEnum.DATE && sqlType != SqlTypeEnum.TIMESTAMP) {
+					throw new ReportTemplateServiceException("Time bucket requires DATE or TIMESTAMP label, " + labelAlias + " is " + sqlType);
+				}
+				return;
+			}
+		}
+	}
+
 	/**
 	 * 
 	 * @param template
@@ -558,15 +596,19 @@ public class ReportTemplateServiceImpl implements ReportTemplateService {
 	 * @throws ReportTemplateServiceException
 	 */
 	private Map<String, String> constructAliasLookupMap(Model model, List<String> requiredColumnList) throws ReportTemplateServiceException {
-		Map<String, String> aliasLookupMap = new HashMap<String, String>();
+		// keep the template required field order, so that report query select them in the same order
+		Map<String, String> aliasLookupMap = new LinkedHashMap<String, String>();
 
 		List<AttributeMapping> attrList = model.getAttributeBindings();
 
-		for (AttributeMapping attributeMapping : attrList) {
+		for (String requiredColumn : requiredColumnList) {
+			for (AttributeMapping attributeMapping : attrList) {
 
-			// store those mapping required by template
-			if (requiredColumnList.contains(attributeMapping.getAlias())) {
-				aliasLookupMap.put(attributeMapping.getAlias(), attributeMapping.getReferencedColumn());
+				// store those mapping required by template
+				if (requiredColumn.equals(attributeMapping.getAlias())) {
+					aliasLookupMap.put(attributeMapping.getAlias(), attributeMapping.getReferencedColumn());
+					break;
+				}
 			}
 		}
 
@@ -591,22 +633,24 @@ public class ReportTemplateServiceImpl implements ReportTemplateService {
 	 * 
 	 * @param model
 	 * @param aliasLookUpMap
+	 * @param valueAlias template field holding the data value
+	 * @param aggregate aggregate of the data value, null if no aggregation required
+	 * @param labelAlias template field holding the data label
+	 * @param timeBucket granularity the date / time label truncated to, null to keep label as is. Only applied along with aggregate
 	 * @return
 	 * @throws ReportTemplateServiceException
 	 */
-	private ReportQuery constructReportQueryFromModel(Model model, Map<String, String> aliasLookUpMap) throws ReportTemplateServiceException {
-
-		//autoclose StringReader wrapping the model query
-		try(StringReader queryStringReader = new StringReader(model.getQuery().getValue())){
+	private ReportQuery constructReportQueryFromModel(Model model, Map<String, String> aliasLookUpMap, 
+													  String valueAlias, SqlFunction aggregate,
+													  String labelAlias, TimeBucket timeBucket) throws ReportTemplateServiceException {
 
-			CCJSqlParserManager pm = new CCJSqlParserManager();
+		try{
+			//1. parse query into Statement object, own copy of the cached statement is safe to rewrite
+			Select statement = parsedQueryCache.parseSelect(model.getId(), model.getQuery().getValue());
 			
-			//1. parse query into Statement object
-			net.sf.jsqlparser.statement.Statement statement =  pm.parse(queryStringReader);
-			
-			if (statement instanceof Select) {
+			if (statement!=null) {
 				//2. obtain the select body
-				SelectBody selectBody = ((Select)statement).getSelectBody();
+				SelectBody selectBody = statement.getSelectBody();
 				
 				if(selectBody instanceof PlainSelect){
 					PlainSelect ps = (PlainSelect)selectBody;
@@ -629,6 +673,12 @@ public class ReportTemplateServiceImpl implements ReportTemplateService {
 					ps.getSelectItems().clear();
 					ps.getSelectItems().addAll(finalSelectItemList);
 					
+					//6. aggregate data value at database, only chart sized result to be returned
+					if(aggregate!=null){
+						DatabaseFamily family = model.getDatasource().getType()==null? null : model.getDatasource().getType().getFamily();
+						ps = applyAggregate(ps, valueAlias, aggregate, quotedIdentifier, labelAlias, timeBucket, family);
+					}
+					
 					ReportQuery reportQuery = new ReportQuery();
 
 					reportQuery.setQuery(ps.toString());
@@ -652,6 +702,152 @@ public class ReportTemplateServiceImpl implements ReportTemplateService {
 		}
 	}
 	
+	/**
+	 * replace the data value select item with its aggregate and group by the remaining select item(s)
+	 * @param ps
+	 * @param valueAlias
+	 * @param aggregate
+	 * @param quotedIdentifier
+	 * @param labelAlias
+	 * @param timeBucket granularity the label truncated to before grouping, null to group by label as is
+	 * @param family database family of the model datasource
+	 * @return
+	 * @throws ReportTemplateServiceException
+	 */
+	private PlainSelect applyAggregate(PlainSelect ps, String valueAlias, SqlFunction aggregate, String quotedIdentifier,
+									   String labelAlias, TimeBucket timeBucket, DatabaseFamily family) 
+			throws ReportTemplateServiceException{
+		
+		//1. only aggregate supported by all database family
+		switch(aggregate){
+			case SUM:
+			case AVG:
+			case COUNT:
+			case MIN:
+			case MAX:
+				break;
+			default:
+				throw new ReportTemplateServiceException("Unsupported chart data aggregate "+aggregate);
+		}
+		
+		boolean limited = isRowLimited(ps);
+		
+		//ordering of model query is meaningless for aggregated result and may refer to non grouped column,
+		//unless it decides the rows kept by the limit
+		if(!limited){
+			ps.setOrderByElements(null);
+		}
+		
+		PlainSelect aggregateSelect = ps;
+		
+		//2. model query already distinct / grouped / limited, aggregate on top of it as derived table
+		if(limited || ps.getDistinct()!=null || CollectionUtils.isNotEmpty(ps.getGroupByColumnReferences())){
+			aggregateSelect = wrapAsDerivedTable(ps);
+		}
+		
+		String quotedValueAlias = quotedIdentifier+valueAlias+quotedIdentifier;
+		String quotedLabelAlias = quotedIdentifier+labelAlias+quotedIdentifier;
+		
+		List<SelectItem> selectItems = new ArrayList<SelectItem>();
+		List<Expression> groupByColumns = new ArrayList<Expression>();
+		
+		//3. aggregate the value, group by label (and series)
+		for(SelectItem si: aggregateSelect.getSelectItems()){
+			SelectExpressionItem sei = (SelectExpressionItem)si;
+			
+			if(sei.getAlias()!=null && quotedValueAlias.equals(sei.getAlias().getName())){
+				SelectExpressionItem aggregateItem = constructAggregate(sei.getExpression(), aggregate);
+				aggregateItem.setAlias(sei.getAlias());
+				selectItems.add(aggregateItem);
+			}
+			else{
+				//truncate the label to bucket start, so that grouping happens per bucket
+				if(timeBucket!=null && sei.getAlias()!=null && quotedLabelAlias.equals(sei.getAlias().getName())){
+					sei = truncateToTimeBucket(sei, timeBucket, family);
+				}
+				selectItems.add(sei);
+				groupByColumns.add(sei.getExpression());
+			}
+		}
+		
+		if(selectItems.size()==groupByColumns.size()){
+			throw new ReportTemplateServiceException("Unable to find data value field "+valueAlias+" to aggregate");
+		}
+		
+		aggregateSelect.setSelectItems(selectItems);
+		aggregateSelect.setGroupByColumnReferences(groupByColumns);
+		
+		return aggregateSelect;
+	}
+	
+	/**
+	 * 
+	 * @param ps
+	 * @return true if the query keeps a limited number of rows (LIMIT, TOP, OFFSET or FETCH)
+	 */
+	private boolean isRowLimited(PlainSelect ps){
+		return ps.getLimit()!=null || ps.getTop()!=null || ps.getOffset()!=null || ps.getFetch()!=null;
+	}
+	
+	/**
+	 * 
+	 * @param sei
+	 * @param timeBucket
+	 * @param family
+	 * @return select item of the truncated expression, keeping the alias
+	 * @throws ReportTemplateServiceException
+	 */
+	private SelectExpressionItem truncateToTimeBucket(SelectExpressionItem sei, TimeBucket timeBucket, DatabaseFamily family) 
+			throws ReportTemplateServiceException{
+		String truncation = TimeBucketDialect.truncate(family, timeBucket, sei.getExpression().toString());
+		
+		if(truncation==null){
+			throw new ReportTemplateServiceException("Time bucket is not supported for database family "+family);
+		}
+		
+		try{
+			SelectExpressionItem bucketItem = new SelectExpressionItem(CCJSqlParserUtil.parseExpression(truncation));
+			bucketItem.setAlias(sei.getAlias());
+			
+			return bucketItem;
+		}
+		catch(JSQLParserException e){
+			throw new ReportTemplateServiceException("Unable to construct time bucket expression "+truncation, e);
+		}
+	}
+	
+	/**
+	 * select the aliased item(s) of the query from it as derived table
+	 * @param ps
+	 * @return
+	 */
+	private PlainSelect wrapAsDerivedTable(PlainSelect ps){
+		SubSelect subSelect = new SubSelect();
+		subSelect.setSelectBody(ps);
+		subSelect.setAlias(new Alias(CHART_DERIVED_TABLE_ALIAS, false));
+		
+		List<SelectItem> outerSelectItems = new ArrayList<SelectItem>();
+		
+		for(SelectItem si: ps.getSelectItems()){
+			String aliasName = ((SelectExpressionItem)si).getAlias().getName();
+			
+			Column column = new Column();
+			column.setColumnName(aliasName);
+			
+			SelectExpressionItem outerItem = new SelectExpressionItem();
+			outerItem.setExpression(column);
+			outerItem.setAlias(new Alias(aliasName, true));
+			
+			outerSelectItems.add(outerItem);
+		}
+		
+		PlainSelect outerSelect = new PlainSelect();
+		outerSelect.setFromItem(subSelect);
+		outerSelect.setSelectItems(outerSelectItems);
+		
+		return outerSelect;
+	}
+	
 	/**
 	 * 
 	 * @param finalSelectItemList
@@ -726,18 +922,24 @@ public class ReportTemplateServiceImpl implements ReportTemplateService {
 													String quotedIdentifier) 
 			throws ReportTemplateServiceException{
 		
-		List<SelectItem> finalSelectItemList = new ArrayList<SelectItem>();
-		
 		//1. prepare field matcher selectItem visitor for given reference column(s) name
 		List<SelectFieldMatcher> fieldMatcherList = prepareFieldMatchers(referenceFieldCollection,quotedIdentifier);
 		
+		//matched select item kept at the position of its matcher, i.e. reference field order
+		SelectItem[] matchedSelectItems = new SelectItem[fieldMatcherList.size()];
+		int unmatchedCount = fieldMatcherList.size();
+		
 		//2. loop through each select item
 		for(SelectItem si : ps.getSelectItems()){
 			
 			if(si!=null){
 				
-				//3. loop through each field match for matching
+				//3. loop through each not yet matched field matcher
 				for(int idx = 0; idx < fieldMatcherList.size(); idx++){
+					
+					if(matchedSelectItems[idx] != null){
+						continue;
+					}
 
 					SelectFieldMatcher matcher = fieldMatcherList.get(idx);
 					si.accept(matcher);
@@ -748,9 +950,8 @@ public class ReportTemplateServiceImpl implements ReportTemplateService {
 					//5. if match found 
 					if(matchedSelectItem != null){
 						//collect the match item to retain as final select item(s)
-						finalSelectItemList.add(matchedSelectItem);
-						//remove the matcher from next iteration processing
-						fieldMatcherList.remove(idx);
+						matchedSelectItems[idx] = matchedSelectItem;
+						unmatchedCount--;
 						
 						break;
 					}
@@ -758,11 +959,12 @@ public class ReportTemplateServiceImpl implements ReportTemplateService {
 			}
 		}
 		
-		if(!fieldMatcherList.isEmpty()){
-			throw new ReportTemplateServiceException(fieldMatcherList.size()+" references not able to be processed");
+		if(unmatchedCount > 0){
+			throw new ReportTemplateServiceException(unmatchedCount+" references not able to be processed");
 		}
 		
-		return finalSelectItemList;
+		//only the required column(s) are selected, in the order of reference field(s)
+		return new ArrayList<SelectItem>(Arrays.asList(matchedSelectItems));
 	}
 	/**
 	 * prepare FiledMatcher selectItemVisitor for reference field name
@@ -800,6 +1002,112 @@ public class ReportTemplateServiceImpl implements ReportTemplateService {
 	}
 	
 
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	@TransactionAttribute(TransactionAttributeType.REQUIRED)
+	public Optional<ReportQuery> findOrConstructReportQuery(CrossTabTemplate crossTabTemplate) throws ReportTemplateServiceException {
+		Objects.requireNonNull(crossTabTemplate, CrossTabTemplate.class.getSimpleName()+" must not be null");
+		
+		try {
+			//1. compiled on save / update of the template
+			if(crossTabTemplate.getId()>0){
+				ReportQuery reportQuery = reportQueryDAO.find(crossTabTemplate.getId());
+				
+				if(reportQuery!=null && isMeasureAliased(reportQuery)){
+					return Optional.of(reportQuery);
+				}
+				//compiled before measures were aliased by attribute name, pivot find the measure by name
+				if(reportQuery!=null){
+					Optional<ReportQuery> recompiled = constructReportQuery(crossTabTemplate);
+					
+					if(recompiled.isPresent()){
+						LOG.info("Recompile ReportQuery of CrossTab Template {}", crossTabTemplate.getId());
+						reportQuery.setQuery(recompiled.get().getQuery());
+						reportQuery.setDatasource(recompiled.get().getDatasource());
+					}
+					return Optional.of(reportQuery);
+				}
+			}
+			
+			//2. template not yet persisted or persisted without query
+			Optional<ReportQuery> reportQuery = constructReportQuery(crossTabTemplate);
+			
+			if(reportQuery.isPresent() && crossTabTemplate.getId()>0){
+				LOG.info("Persist compiled ReportQuery of CrossTab Template {}", crossTabTemplate.getId());
+				reportQueryDAO.insert(reportQuery.get());
+			}
+			
+			return reportQuery;
+		} catch (ReportQueryDAOException e) {
+			throw new ReportTemplateServiceException("Error resolving ReportQuery of CrossTab Template "+crossTabTemplate.getId(), e);
+		}
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	@TransactionAttribute(TransactionAttributeType.REQUIRED)
+	public void recompileCrossTabReportQueries(int modelId) throws ReportTemplateServiceException {
+		try {
+			for(CrossTabTemplate crossTabTemplate: reportTemplateDAO.findCrossTabTemplatesByModel(modelId)){
+				Optional<ReportQuery> reportQuery = constructReportQuery(crossTabTemplate);
+				
+				if(!reportQuery.isPresent()){
+					LOG.warn("Unable to recompile ReportQuery of CrossTab Template {}", crossTabTemplate.getId());
+					continue;
+				}
+				
+				ReportQuery managedReportQuery = reportQueryDAO.find(crossTabTemplate.getId());
+				
+				if(managedReportQuery==null){
+					reportQueryDAO.insert(reportQuery.get());
+				}
+				else{
+					managedReportQuery.setQuery(reportQuery.get().getQuery());
+					managedReportQuery.setDatasource(reportQuery.get().getDatasource());
+				}
+			}
+		} catch (ReportTemplateDAOException | ReportQueryDAOException e) {
+			throw new ReportTemplateServiceException("Error recompiling CrossTab ReportQuery of model "+modelId, e);
+		}
+	}
+
+	/**
+	 * 
+	 * @param reportQuery compiled crosstab query
+	 * @return false if an aggregate of the query has no alias
+	 */
+	private boolean isMeasureAliased(ReportQuery reportQuery){
+		try {
+			Statement statement = CCJSqlParserUtil.parse(reportQuery.getQuery());
+			
+			if(statement instanceof Select && ((Select) statement).getSelectBody() instanceof PlainSelect){
+				for(SelectItem si: ((PlainSelect) ((Select) statement).getSelectBody()).getSelectItems()){
+					if(si instanceof SelectExpressionItem && ((SelectExpressionItem) si).getAlias()==null
+							&& ((SelectExpressionItem) si).getExpression() instanceof Function
+							&& isAggregate((Function) ((SelectExpressionItem) si).getExpression())){
+						return false;
+					}
+				}
+			}
+		} catch (JSQLParserException e) {
+			LOG.warn("Unable to parse compiled ReportQuery {}", reportQuery.getId(), e);
+		}
+		return true;
+	}
+	
+	private boolean isAggregate(Function function){
+		for(SqlFunction sqlFunction: SqlFunction.values()){
+			if(sqlFunction.name().equalsIgnoreCase(function.getName())){
+				return true;
+			}
+		}
+		return false;
+	}
+
 	private Optional<ReportQuery> constructCrossTabReportQuery(CrossTabTemplate crossTabTemplate)throws ReportTemplateServiceException{
 		LOG.info("Construct Cross Tab Report Query {}",crossTabTemplate);
 		if (crossTabTemplate.getModelId()>0) {
@@ -842,11 +1150,20 @@ public class ReportTemplateServiceImpl implements ReportTemplateService {
 	 */
 	@Override
 	public Optional<Select> parseSelectQuery(String query) throws ReportTemplateServiceException{
-		CCJSqlParserManager sqlParser = new CCJSqlParserManager();
+		return parseSelectQuery(0, query);
+	}
+	
+	/**
+	 * 
+	 * @param modelId model owning the query, 0 if none
+	 * @param query
+	 * @return copy of the cached parsed query
+	 * @throws ReportTemplateServiceException
+	 */
+	private Optional<Select> parseSelectQuery(int modelId, String query) throws ReportTemplateServiceException{
 		try {
-			Statement statement = sqlParser.parse(new StringReader(query));
-			if (statement instanceof Select) {
-				Select select = (Select) statement;
+			Select select = parsedQueryCache.parseSelect(modelId, query);
+			if (select!=null) {
 				return Optional.of(select);
 			}else{
 				throw new ReportTemplateServiceException("Query ["+query+"] must be of type SELECT in order to parse");
@@ -894,7 +1211,7 @@ public class ReportTemplateServiceImpl implements ReportTemplateService {
 			throw new ReportTemplateServiceException("Query String on ModelQuery Object cannot be Empty/Null/Blank");
 		}
 		LOG.info("Model Query {}", modelQuery.getValue());
-		Optional<Select> select = parseSelectQuery(modelQuery.getValue());
+		Optional<Select> select = parseSelectQuery(model.getId(), modelQuery.getValue());
 		if (!select.isPresent()) {
 			throw new ReportTemplateServiceException("Unable to parse Query "+ modelQuery.getValue());
 		}
@@ -906,6 +1223,13 @@ public class ReportTemplateServiceImpl implements ReportTemplateService {
 			List<SelectItem> selects = new ArrayList<SelectItem>();
 			List<Expression> groupByColumns = new ArrayList<Expression>();
 			LOG.info("SelectBody of Type PlainSelect [{}]",selectBody);
+			//JDBC driver specific quoted identifier character, to alias the aggregate with its attribute name
+			String quotedIdentifier;
+			try {
+				quotedIdentifier = jdbcClient.getQuotedIdentifier(model.getDatasource());
+			} catch (JdbcClientException e) {
+				throw new ReportTemplateServiceException("error finding quoted identifier from jdbc driver",e);
+			}
 			PlainSelect plainSelect = (PlainSelect) selectBody;
 			for (CrossTabTemplateDetail crossTabDetail : crossTabDetails) {
 				Distinct distinct = plainSelect.getDistinct();
@@ -951,8 +1275,22 @@ public class ReportTemplateServiceImpl implements ReportTemplateService {
 						LOG.info("Computed SelectItem is not empty");
 						//check if the crosstabdetail is of aggregate or grouping
 						if (crossTabDetail.getGroupOrAggregate().equals(GroupOrSum.SUM)){
-							//construct a aggregate function of select item
-							selects.add(constructAggregate(selectItem.get().getExpression(), crossTabDetail.getSqlFunction()));
+							//construct a aggregate function of select item, aliased so that the pivot find the measure by name
+							String attributeName = crossTabDetail.getModelAttributeName();
+							Expression expression = selectItem.get().getExpression();
+							if (crossTabDetail.getSqlFunction() == SqlFunction.AVG) {
+								//average of subtotal is computed from sum and count of the source rows
+								SelectExpressionItem sumItem = constructAggregate(expression, SqlFunction.SUM);
+								sumItem.setAlias(new Alias(quotedIdentifier+attributeName+quotedIdentifier, true));
+								selects.add(sumItem);
+								SelectExpressionItem countItem = constructAggregate(expression, SqlFunction.COUNT);
+								countItem.setAlias(new Alias(quotedIdentifier+attributeName+CrossTabTemplateDetail.AVG_COUNT_ALIAS_SUFFIX+quotedIdentifier, true));
+								selects.add(countItem);
+							} else {
+								SelectExpressionItem aggregateItem = constructAggregate(expression, crossTabDetail.getSqlFunction());
+								aggregateItem.setAlias(new Alias(quotedIdentifier+attributeName+quotedIdentifier, true));
+								selects.add(aggregateItem);
+							}
 						}else if (crossTabDetail.getGroupOrAggregate().equals(GroupOrSum.GROUPING)) {
 							//Add the selectItem to the list
 							selects.add(selectItem.get());
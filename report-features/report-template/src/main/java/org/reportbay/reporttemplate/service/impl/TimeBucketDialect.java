@@ -0,0 +1,96 @@
+package org.reportbay.reporttemplate.service.impl;
+
+import org.reportbay.datasource.domain.DatabaseType.DatabaseFamily;
+import org.reportbay.reporttemplate.domain.TimeBucket;
+
+/**
+ * database family specific truncation of date / time expression to the start of its time bucket
+ */
+final class TimeBucketDialect {
+	
+	private TimeBucketDialect(){
+	}
+	
+	/**
+	 * 
+	 * @param family
+	 * @param bucket
+	 * @param expression date / time sql expression
+	 * @return sql expression truncating the expression, null if family not supported
+	 */
+	static String truncate(DatabaseFamily family, TimeBucket bucket, String expression){
+		if(family==null){
+			return null;
+		}
+		
+		switch(family){
+			case MySQL:
+				return truncateMySQL(bucket, expression);
+			case MsSQL:
+				return truncateMsSQL(bucket, expression);
+			case Oracle:
+				return truncateOracle(bucket, expression);
+			default:
+				return null;
+		}
+	}
+	
+	/**
+	 * every bucket is formatted then cast back to DATETIME, so that labels of all granularities share
+	 * the same type, as they do for the other families
+	 * @param bucket
+	 * @param expression
+	 * @return
+	 */
+	private static String truncateMySQL(TimeBucket bucket, String expression){
+		switch(bucket){
+			case MINUTE:
+				return castMySQL("DATE_FORMAT("+expression+", '%Y-%m-%d %H:%i:00')");
+			case HOUR:
+				return castMySQL("DATE_FORMAT("+expression+", '%Y-%m-%d %H:00:00')");
+			case DAY:
+				return castMySQL("DATE_FORMAT("+expression+", '%Y-%m-%d 00:00:00')");
+			case WEEK:
+				//WEEKDAY() is 0 for Monday
+				return castMySQL("DATE_FORMAT(SUBDATE("+expression+", WEEKDAY("+expression+")), '%Y-%m-%d 00:00:00')");
+			default:
+				return castMySQL("DATE_FORMAT("+expression+", '%Y-%m-01 00:00:00')");
+		}
+	}
+	
+	private static String castMySQL(String expression){
+		return "CAST("+expression+" AS DATETIME)";
+	}
+	
+	private static String truncateMsSQL(TimeBucket bucket, String expression){
+		switch(bucket){
+			case MINUTE:
+				return "DATEADD(minute, DATEDIFF(minute, 0, "+expression+"), 0)";
+			case HOUR:
+				return "DATEADD(hour, DATEDIFF(hour, 0, "+expression+"), 0)";
+			case DAY:
+				return "DATEADD(day, DATEDIFF(day, 0, "+expression+"), 0)";
+			case WEEK:
+				//day 0 (1900-01-01) is a Monday, independent of DATEFIRST setting
+				return "DATEADD(day, (DATEDIFF(day, 0, "+expression+") / 7) * 7, 0)";
+			default:
+				return "DATEADD(month, DATEDIFF(month, 0, "+expression+"), 0)";
+		}
+	}
+	
+	private static String truncateOracle(TimeBucket bucket, String expression){
+		switch(bucket){
+			case MINUTE:
+				return "TRUNC("+expression+", 'MI')";
+			case HOUR:
+				return "TRUNC("+expression+", 'HH24')";
+			case DAY:
+				return "TRUNC("+expression+", 'DD')";
+			case WEEK:
+				//ISO week starts on Monday
+				return "TRUNC("+expression+", 'IW')";
+			default:
+				return "TRUNC("+expression+", 'MM')";
+		}
+	}
+}
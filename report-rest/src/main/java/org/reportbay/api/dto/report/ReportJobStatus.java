@@ -0,0 +1,22 @@
+package org.reportbay.api.dto.report;
+
+/**
+ * 
+ * life cycle of asynchronous report generation job
+ *
+ */
+public enum ReportJobStatus {
+	QUEUED,
+	RUNNING,
+	COMPLETED,
+	FAILED,
+	CANCELLED;
+	
+	/**
+	 * 
+	 * @return true if the job will not change anymore
+	 */
+	public boolean isDone(){
+		return this==COMPLETED || this==FAILED || this==CANCELLED;
+	}
+}
@@ -0,0 +1,173 @@
+package org.reportbay.api.dto.report;
+
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ *
+ * JSON Wrapper class for status of asynchronous report generation job,
+ * report is only available once the job is completed
+ *
+ */
+public class RestReportJob implements Serializable{
+
+	/**
+	 *
+	 */
+	private static final long serialVersionUID = 1L;
+
+	private String jobId;
+
+	private String jobType;
+
+	private int reportConnectorId;
+
+	private ReportJobStatus status;
+
+	private Date submitTime;
+
+	private Date startTime;
+
+	private Date endTime;
+
+	private long elapsedMillis;
+
+	private long rowsRead;
+
+	private String errorMessage;
+
+	private RestReport report;
+
+	/**
+	 * @return the jobId
+	 */
+	public String getJobId() {
+		return jobId;
+	}
+	/**
+	 * @param jobId the jobId to set
+	 */
+	public void setJobId(String jobId) {
+		this.jobId = jobId;
+	}
+	/**
+	 * @return the jobType
+	 */
+	public String getJobType() {
+		return jobType;
+	}
+	/**
+	 * @param jobType the jobType to set
+	 */
+	public void setJobType(String jobType) {
+		this.jobType = jobType;
+	}
+	/**
+	 * @return the reportConnectorId, 0 for preview of unsaved connector
+	 */
+	public int getReportConnectorId() {
+		return reportConnectorId;
+	}
+	/**
+	 * @param reportConnectorId the reportConnectorId to set
+	 */
+	public void setReportConnectorId(int reportConnectorId) {
+		this.reportConnectorId = reportConnectorId;
+	}
+	/**
+	 * @return the status
+	 */
+	public ReportJobStatus getStatus() {
+		return status;
+	}
+	/**
+	 * @param status the status to set
+	 */
+	public void setStatus(ReportJobStatus status) {
+		this.status = status;
+	}
+	/**
+	 * @return the submitTime
+	 */
+	public Date getSubmitTime() {
+		return submitTime;
+	}
+	/**
+	 * @param submitTime the submitTime to set
+	 */
+	public void setSubmitTime(Date submitTime) {
+		this.submitTime = submitTime;
+	}
+	/**
+	 * @return the startTime, null if still queued
+	 */
+	public Date getStartTime() {
+		return startTime;
+	}
+	/**
+	 * @param startTime the startTime to set
+	 */
+	public void setStartTime(Date startTime) {
+		this.startTime = startTime;
+	}
+	/**
+	 * @return the endTime, null if not yet done
+	 */
+	public Date getEndTime() {
+		return endTime;
+	}
+	/**
+	 * @param endTime the endTime to set
+	 */
+	public void setEndTime(Date endTime) {
+		this.endTime = endTime;
+	}
+	/**
+	 * @return the elapsedMillis since the job is started
+	 */
+	public long getElapsedMillis() {
+		return elapsedMillis;
+	}
+	/**
+	 * @param elapsedMillis the elapsedMillis to set
+	 */
+	public void setElapsedMillis(long elapsedMillis) {
+		this.elapsedMillis = elapsedMillis;
+	}
+	/**
+	 * @return the rowsRead from database so far
+	 */
+	public long getRowsRead() {
+		return rowsRead;
+	}
+	/**
+	 * @param rowsRead the rowsRead to set
+	 */
+	public void setRowsRead(long rowsRead) {
+		this.rowsRead = rowsRead;
+	}
+	/**
+	 * @return the errorMessage of failed job
+	 */
+	public String getErrorMessage() {
+		return errorMessage;
+	}
+	/**
+	 * @param errorMessage the errorMessage to set
+	 */
+	public void setErrorMessage(String errorMessage) {
+		this.errorMessage = errorMessage;
+	}
+	/**
+	 * @return the report
+	 */
+	public RestReport getReport() {
+		return report;
+	}
+	/**
+	 * @param report the report to set
+	 */
+	public void setReport(RestReport report) {
+		this.report = report;
+	}
+}
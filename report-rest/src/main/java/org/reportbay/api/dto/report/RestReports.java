@@ -14,6 +14,8 @@ public class RestReports implements Serializable{
 	private static final long serialVersionUID = 1L;
 	
 	private List<ReportSnapShotBase> liteReports = new ArrayList<ReportSnapShotBase>();
+	
+	private String nextCursor;
 
 	/**
 	 * @return the liteReports
@@ -28,5 +30,19 @@ public class RestReports implements Serializable{
 	public void setLiteReports(List<ReportSnapShotBase> liteReports) {
 		this.liteReports = liteReports;
 	}
+
+	/**
+	 * @return the nextCursor to retrieve the next page, null if this is the last page
+	 */
+	public String getNextCursor() {
+		return nextCursor;
+	}
+
+	/**
+	 * @param nextCursor the nextCursor to set
+	 */
+	public void setNextCursor(String nextCursor) {
+		this.nextCursor = nextCursor;
+	}
 	
 }
\ No newline at end of file
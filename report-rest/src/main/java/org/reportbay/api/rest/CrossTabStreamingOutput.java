@@ -0,0 +1,158 @@
+package org.reportbay.api.rest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Map;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.StreamingOutput;
+
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonGenerator;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.reportbay.api.dto.report.RestReport;
+import org.reportbay.report.domain.CrossTabMatrix;
+import org.reportbay.report.domain.CrossTabReport;
+
+/**
+ *
+ * write a page of crosstab report as JSON, one row header (with its cells) at a time,
+ * so that the response is not materialized as a whole and client receives the first rows early.
+ * The JSON is the same as {@link RestReport} serialized by the JAX-RS provider,
+ * nested values are written by the same Jackson mapper
+ *
+ */
+class CrossTabStreamingOutput implements StreamingOutput{
+
+	private static final ObjectMapper MAPPER = new ObjectMapper();
+
+	/**
+	 * rows written between flushes
+	 */
+	private static final int FLUSH_INTERVAL = 1000;
+
+	private final RestReport report;
+
+	/**
+	 *
+	 * @param report holding the page of crosstab report
+	 */
+	CrossTabStreamingOutput(RestReport report){
+		this.report = report;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void write(OutputStream output) throws IOException, WebApplicationException {
+		JsonGenerator gen = MAPPER.getJsonFactory().createJsonGenerator(output, JsonEncoding.UTF8);
+		gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+		gen.writeStartObject();
+		gen.writeStringField("type", report.getType());
+		gen.writeNullField("cartesianChartReport");
+		gen.writeNullField("pieChartReport");
+		gen.writeFieldName("crossTabReport");
+		writeCrossTab(gen, report.getCrossTabReport());
+		gen.writeEndObject();
+		gen.close();
+	}
+
+	/**
+	 *
+	 * @param gen
+	 * @param crossTab
+	 * @throws IOException
+	 */
+	private void writeCrossTab(JsonGenerator gen, CrossTabReport crossTab) throws IOException{
+		gen.writeStartObject();
+		gen.writeStringField("reportName", crossTab.getReportName());
+		gen.writeObjectField("reportType", crossTab.getReportType());
+		gen.writeObjectField("attributes", crossTab.getAttributes());
+
+		CrossTabMatrix matrix = crossTab.getMatrix();
+
+		if(matrix!=null){
+			gen.writeFieldName("matrix");
+			writeMatrix(gen, matrix);
+		}
+		else{
+			gen.writeNullField("matrix");
+		}
+
+		//snapshot taken before server side pivot
+		gen.writeNumberField("resultSetTotalCount", crossTab.getResultSetTotalCount());
+		gen.writeArrayFieldStart("resultSet");
+
+		int count = 0;
+
+		for(Map<String, String> row: crossTab.getResultSet()){
+			gen.writeObject(row);
+
+			if(++count % FLUSH_INTERVAL == 0){
+				gen.flush();
+			}
+		}
+		gen.writeEndArray();
+
+		gen.writeEndObject();
+	}
+
+	/**
+	 *
+	 * @param gen
+	 * @param matrix
+	 * @throws IOException
+	 */
+	private void writeMatrix(JsonGenerator gen, CrossTabMatrix matrix) throws IOException{
+		gen.writeStartObject();
+		gen.writeObjectField("rowFields", matrix.getRowFields());
+		gen.writeObjectField("columnFields", matrix.getColumnFields());
+		gen.writeObjectField("measureFields", matrix.getMeasureFields());
+		gen.writeObjectField("columnHeaders", matrix.getColumnHeaders());
+		gen.writeNumberField("sourceRowCount", matrix.getSourceRowCount());
+		gen.writeNumberField("rowOffset", matrix.getRowOffset());
+		gen.writeNumberField("totalRowCount", matrix.getTotalRowCount());
+
+		//1. row headers, small enough to be written ahead of the cells
+		gen.writeArrayFieldStart("rowHeaders");
+
+		for(int i = 0; i < matrix.getRowHeaders().size(); i++){
+			gen.writeObject(matrix.getRowHeaders().get(i));
+		}
+		gen.writeEndArray();
+
+		//2. cells of each row header
+		if(!matrix.hasCells()){
+			gen.writeNullField("cells");
+			gen.writeEndObject();
+			return;
+		}
+
+		gen.writeArrayFieldStart("cells");
+
+		for(int i = 0; i < matrix.getRowHeaders().size(); i++){
+			gen.writeStartArray();
+
+			for(int j = 0; j < matrix.cellColumnCount(); j++){
+				if(matrix.isFilled(i, j)){
+					gen.writeNumber(matrix.getCell(i, j));
+				}
+				else{
+					gen.writeNull();
+				}
+			}
+
+			gen.writeEndArray();
+
+			//push the first page of rows to client as soon as possible
+			if((i + 1) % FLUSH_INTERVAL == 0){
+				gen.flush();
+			}
+		}
+
+		gen.writeEndArray();
+		gen.writeEndObject();
+	}
+}
@@ -21,10 +21,13 @@ import org.reportbay.api.dto.datasource.RestTable;
 import org.reportbay.api.dto.datasource.RestTables;
 import org.reportbay.api.rest.exception.CustomizedWebException;
 import org.reportbay.datasource.domain.Datasource;
+import org.reportbay.datasource.domain.DatasourcePoolStats;
 import org.reportbay.datasource.service.DatasourceHandler;
+import org.reportbay.datasource.service.DatasourcePoolRegistry;
 import org.reportbay.datasource.service.JdbcClient;
 import org.reportbay.datasource.service.exception.DatasourceHandlerException;
 import org.reportbay.datasource.service.exception.JdbcClientException;
+import org.reportbay.report.service.ReportResultCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -40,6 +43,12 @@ public class DataSourcesResource{
 	@Inject
 	private JdbcClient jdbcClient;
 	
+	@Inject
+	private DatasourcePoolRegistry poolRegistry;
+	
+	@Inject
+	private ReportResultCache reportResultCache;
+	
 	@GET
 	@Produces(MediaType.APPLICATION_JSON)
 	 public RestDataSources getAllDataSources(){
@@ -105,6 +114,8 @@ public class DataSourcesResource{
 			}
 			
 			dataSourceService.update(datasource);
+			
+			reportResultCache.invalidateDatasource(datasource.getId());
 		}
 		catch (Exception e ) {
 			LOG.warn("Exception in updating datasource", e);
@@ -155,6 +166,7 @@ public class DataSourcesResource{
 		if(datasource!=null){
 			try {
 				dataSourceService.delete(datasource);
+				reportResultCache.invalidateDatasource(datasourceId);
 				builder = Response.ok();
 			} catch (Exception e) {
 				//Failed to delete
@@ -206,6 +218,31 @@ public class DataSourcesResource{
 		return tables;
 	}
 	
+	@GET
+	@Path("/poolstats")
+	@Produces(MediaType.APPLICATION_JSON)
+	public List<DatasourcePoolStats> getAllDataSourcePoolStats(){
+		LOG.info("get connection pool statistics of all data sources");
+		
+		return poolRegistry.getStatistics();
+	}
+	
+	@GET
+	@Path("/{datasourceId}/poolstats")
+	@Produces(MediaType.APPLICATION_JSON)
+	public DatasourcePoolStats getDataSourcePoolStats(@PathParam("datasourceId") int datasourceId){
+		LOG.info("get connection pool statistics of data source {}", datasourceId);
+		
+		DatasourcePoolStats stats = poolRegistry.getStatistics(datasourceId);
+		
+		if(stats==null){
+			LOG.warn("no connection pool created for datasource id {}",datasourceId);
+			throw new CustomizedWebException(Response.Status.NOT_FOUND, "connection pool not found");
+		}
+		
+		return stats;
+	}
+	
 	/********** private method ******/
 	/**
 	 * 
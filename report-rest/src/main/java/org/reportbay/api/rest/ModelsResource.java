@@ -5,9 +5,14 @@ import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
-import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
+import javax.annotation.Resource;
+import javax.enterprise.concurrent.ManagedExecutorService;
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
 import javax.ws.rs.Consumes;
@@ -26,20 +31,29 @@ import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
 
-import org.apache.commons.collections.CollectionUtils;
+import org.apache.commons.lang3.math.NumberUtils;
 import org.reportbay.api.dto.model.RestModel;
 import org.reportbay.api.dto.model.RestModelPreviewResult;
 import org.reportbay.api.dto.model.RestModels;
 import org.reportbay.api.rest.exception.CustomizedWebException;
+import org.reportbay.common.util.SystemProperties;
 import org.reportbay.datasource.domain.ColumnMetadata;
 import org.reportbay.datasource.domain.Datasource;
 import org.reportbay.datasource.service.DatasourceHandler;
+import org.reportbay.datasource.service.DatasourceMetadataCache;
 import org.reportbay.datasource.service.JdbcClient;
+import org.reportbay.datasource.service.QueryContext;
+import org.reportbay.datasource.service.QueryRegistry;
+import org.reportbay.datasource.service.exception.JdbcClientException;
 import org.reportbay.model.domain.AttributeMapping;
 import org.reportbay.model.domain.ComplexModel;
 import org.reportbay.model.domain.Model;
+import org.reportbay.model.domain.ParsedQueryCacheStats;
 import org.reportbay.model.domain.SimpleModel;
 import org.reportbay.model.service.ModelService;
+import org.reportbay.model.service.ParsedQueryCache;
+import org.reportbay.report.service.ReportResultCache;
+import org.reportbay.reporttemplate.service.ReportTemplateService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -49,9 +63,19 @@ import org.slf4j.LoggerFactory;
 public class ModelsResource{
 	private final Logger LOG = LoggerFactory.getLogger(ModelsResource.class);
 	
+	/**
+	 * time to wait for the record count once preview rows are ready
+	 */
+	private static final String PREVIEW_COUNT_WAIT_PROPERTY = "reportbay.model.preview.countWaitMillis";
+	private static final long DEFAULT_PREVIEW_COUNT_WAIT = 3000L;
+	private static final int COUNT_NOT_AVAILABLE = -1;
+	
     @Context
     ResourceContext rc;
     
+    @Resource
+    private ManagedExecutorService executor;
+    
 	@Inject
 	private ModelService modelService;
 	
@@ -60,6 +84,21 @@ public class ModelsResource{
 	
 	@Inject
 	private DatasourceHandler dataSourceService;
+	
+	@Inject
+	private ReportResultCache reportResultCache;
+	
+	@Inject
+	private DatasourceMetadataCache metadataCache;
+	
+	@Inject
+	private ParsedQueryCache parsedQueryCache;
+	
+	@Inject
+	private ReportTemplateService reportTemplateService;
+	
+	@Inject
+	private QueryRegistry queryRegistry;
     
     @GET
     @Produces(MediaType.APPLICATION_JSON)
@@ -131,6 +170,11 @@ public class ModelsResource{
 
     		//2. update domain model
     		modelService.update(model);
+    		
+    		//crosstab query compiled from the model is outdated
+    		reportTemplateService.recompileCrossTabReportQueries(model.getId());
+    		
+    		reportResultCache.invalidateModel(model.getId());
 			
     		//3. convert back the result to REST domain model
 			resultModel = createRestModelFromModel(model);
@@ -142,6 +186,19 @@ public class ModelsResource{
     	
     	return resultModel;
     }
+    
+    /**
+     * 
+     * @return parse count, parse time and hit counters of parsed model query cache
+     */
+    @GET
+    @Path("/parsecachestats")
+    @Produces(MediaType.APPLICATION_JSON)
+    public ParsedQueryCacheStats getParsedQueryCacheStats(){
+    	LOG.info("get parsed query cache statistics");
+    	
+    	return parsedQueryCache.getStatistics();
+    }
 
     @GET
     @Path("/{modelId}")
@@ -179,6 +236,7 @@ public class ModelsResource{
 		if(model!=null){
 			try {
 				modelService.delete(model);
+				reportResultCache.invalidateModel(modelId);
 				builder = Response.ok();
 			} catch (Exception e) {
 				//Failed to delete
@@ -198,17 +256,23 @@ public class ModelsResource{
      * base on the model, derive the actual query + rebuild the attribute mapping
      * Use PUT as derive based on model is idempotent, always return same result for same content  
      * @param restModel
+     * @param refresh reload the cached table and column metadata of model datasource, e.g. after schema change
      * @return
      */
     @PUT
     @Path("/derivemodelattributes")
     @Produces(MediaType.APPLICATION_JSON)
     @Consumes(MediaType.APPLICATION_JSON)
-    public RestModel deriveModelAttributes(RestModel restModel){
+    public RestModel deriveModelAttributes(RestModel restModel,
+    									   @DefaultValue("false") @QueryParam("refresh") boolean refresh){
     	LOG.info("derive Model Attributes");
     	RestModel resultModel = null;
     	
     	try {
+    		if(refresh && restModel.getDatasource()!=null){
+    			metadataCache.invalidate(restModel.getDatasource().getId());
+    		}
+    		
 	    	Model model = convertRestModel(restModel);
 	    	
 	    	if(model instanceof ComplexModel){
@@ -234,11 +298,17 @@ public class ModelsResource{
     @Consumes(MediaType.APPLICATION_JSON)
     public RestModelPreviewResult generateModelPreview(RestModel restModel,
     												   //default max 20 records if not specified
-    												   @DefaultValue("20") @QueryParam("maxRow") int maxRow){
+    												   @DefaultValue("20") @QueryParam("maxRow") int maxRow,
+    												   //count of all matched records is optional, matchRecordCount is -1 if skipped or not ready in time
+    												   @DefaultValue("true") @QueryParam("count") boolean withCount){
     
     	LOG.info("generate Model Preview");
     	RestModelPreviewResult result = new RestModelPreviewResult();
     	
+    	QueryContext countContext = new QueryContext("model-preview-count-"+UUID.randomUUID());
+    	Future<Integer> countFuture = null;
+    	Future<List<ColumnMetadata>> columnsFuture = null;
+    	
     	try{
     		
     		Datasource modelDatasource = restModel.getDatasource();
@@ -246,28 +316,46 @@ public class ModelsResource{
     		Datasource dbDatasource = dataSourceService.find(modelDatasource.getId());
     		String modelQuery = restModel.getQuery().getValue();
     		
-    		//1. find out the result's column in case no result match
-    		List<ColumnMetadata> resultColumnList = jdbcClient.getColumnsFromQuery(dbDatasource, modelQuery);
+    		//1. count of total matched records and result's column (in case no result match) on separate pooled connections
+    		if(withCount){
+    			countFuture = executor.submit(() -> findQueryCount(countContext, dbDatasource, modelQuery));
+    		}
+    		columnsFuture = executor.submit(() -> jdbcClient.getColumnsFromQuery(dbDatasource, modelQuery));
     		
-    		updateRestModelPreviewResultColumnName(result, resultColumnList);
+    		//2. query result with result limit set, meanwhile
+    		List<Map<ColumnMetadata, String>> dbResultList = jdbcClient.execute(dbDatasource, modelQuery, maxRow);
     		
-    		//2. find out count of total matched records
-    		int matchRecordCount = jdbcClient.findQueryCount(dbDatasource, modelQuery);
+    		updateRestModelPreviewResult(result, dbResultList);
     		
-    		LOG.info("match record(s) = {}",matchRecordCount);
+    		//3. result's column
+    		updateRestModelPreviewResultColumnName(result, columnsFuture.get());
     		
-    		result.setMatchRecordCount(matchRecordCount);
+    		//4. count only if ready in time, preview rows are not held back by it
+    		int matchRecordCount = awaitQueryCount(countFuture);
     		
-    		//3. query result with result limit set 
-    		List<Map<ColumnMetadata, String>> dbResultList = jdbcClient.execute(dbDatasource, modelQuery, maxRow);
-    		
-    		updateRestModelPreviewResult(result, dbResultList);
+    		LOG.info("match record(s) = {}",matchRecordCount);
     		
+    		result.setMatchRecordCount(matchRecordCount);
+    	}
+    	catch(ExecutionException e){
+    		LOG.warn("Exception in generateModelPreview", e.getCause());
+			throw new CustomizedWebException(Response.Status.INTERNAL_SERVER_ERROR, e.getCause().getMessage());
     	}
     	catch(Exception e){
     		LOG.warn("Exception in generateModelPreview", e);
 			throw new CustomizedWebException(Response.Status.INTERNAL_SERVER_ERROR, e.getMessage());
     	}
+    	finally{
+    		//abort the count query still running
+    		if(countFuture!=null && !countFuture.isDone()){
+    			countContext.cancel();
+    			countFuture.cancel(true);
+    		}
+    		//column lookup no longer needed once the preview query failed
+    		if(columnsFuture!=null && !columnsFuture.isDone()){
+    			columnsFuture.cancel(true);
+    		}
+    	}
     	
     	return result;
     }
@@ -306,60 +394,35 @@ public class ModelsResource{
     		Datasource modelDatasource = model.getDatasource();
     		String modelQuery = model.getQuery().getValue();
     		LOG.info("Model Query ["+modelQuery.replace("", "")+"]");
-    		//1. Fetch data for the query with max row set 
-    		List<Map<ColumnMetadata, String>> dbResultList = jdbcClient.execute(modelDatasource, modelQuery, maxRow);
-    		if (CollectionUtils.isNotEmpty(dbResultList)) {
-    			//Store the colummetadata in a map for faster processing
-    			Map<String, Integer> columnMeta = new LinkedHashMap<String, Integer>();
-    			LOG.debug("columMeta values are ["+columnMeta+"]");
-    			LOG.info("Iterating Collection for each row");
-//				for (Map<ColumnMetadata, String> map : dbResultList) {
-//					Map<String, String> row = new HashMap<String, String>();
-//					for (Map.Entry<String, String> field : fieldNames.entrySet()) {
-//						//Use stream api to find the particular search field in the map and return if found
-//						Optional<Entry<ColumnMetadata, String>> column = map.entrySet().stream()
-//						.filter(m -> m.getKey().getLabel().equalsIgnoreCase(field.getKey()))
-//						.findFirst();
-//						if (column.isPresent()) {
-//							LOG.debug("Column Name ["+field.getValue()+"] and Value is ["+column.get().getValue()+"]");
-//							row.put(field.getValue(), column.get().getValue());
-//						}else{
-//							LOG.warn("Field ["+field.getValue()+"] Not found");
-//							row.put(field.getValue(), "");
-//						}
-//					}
-//					modelData.add(row);
-//				}
-    			//Above commented logic is rewritten using Java Stream below
-    			//Need to confirm the working functionality before removing above code
-    			//Get Stream for dbResultList and run foreach instead of traditional For each
-    			dbResultList
-    			.stream()
-    			.forEach(dbList -> 
-    				{
-    					Map<String, String> row = new HashMap<String, String>();
-    					//Use Stream API to loop through each fieldNames as foreach
-    					fieldNames.entrySet()
-    					.stream()
-    					.forEach(fields ->{
-    						//Use stream api to find the particular search field in the map and return if found
-    						//Find the matching value and return the first find
-    						Optional<Entry<ColumnMetadata, String>> column = dbList.entrySet()
-    								.stream()
-    								.filter(m -> m.getKey().getLabel().equalsIgnoreCase(fields.getKey()))
-    								.findFirst();
-    						if (column.isPresent()) {
-    							LOG.debug("Column Name ["+fields.getValue()+"] and Value is ["+column.get().getValue()+"]");
-    							row.put(fields.getValue(), column.get().getValue());
-    						}else{
-    							//Add empty string for the particular field if it is not found
-    							LOG.warn("Field ["+fields.getValue()+"] Not found");
-    							row.put(fields.getValue(), "");
-    						}    						    						
-    					});
-    					modelData.add(row);
-    				});
-			}else{
+    		//1. Stream data for the query with max row set
+    		//Column of each field is resolved once against the result metadata
+    		Map<String, ColumnMetadata> fieldColumns = new LinkedHashMap<String, ColumnMetadata>();
+    		int rowCount = jdbcClient.execute(modelDatasource, modelQuery, maxRow, dbRow -> {
+    			if (dbRow.getRowNumber() == 1) {
+    				LOG.info("Iterating result for each row");
+    				//reference column name as key and its column metadata as value
+    				for (String referencedColumn : fieldNames.keySet()) {
+    					fieldColumns.put(referencedColumn, dbRow.findColumn(referencedColumn));
+    				}
+    				LOG.debug("columMeta values are ["+fieldColumns+"]");
+    			}
+    			Map<String, String> row = new HashMap<String, String>();
+    			for (Map.Entry<String, String> fields : fieldNames.entrySet()) {
+    				ColumnMetadata column = fieldColumns.get(fields.getKey());
+    				if (column != null) {
+    					String value = dbRow.getString(column.getOrder());
+    					LOG.debug("Column Name ["+fields.getValue()+"] and Value is ["+value+"]");
+    					row.put(fields.getValue(), value);
+    				}else{
+    					//Add empty string for the particular field if it is not found
+    					LOG.warn("Field ["+fields.getValue()+"] Not found");
+    					row.put(fields.getValue(), "");
+    				}
+    			}
+    			modelData.add(row);
+    			return true;
+    		});
+    		if (rowCount == 0) {
 				LOG.warn("Results for above Model Query is Empty");
 			}
     	}catch(CustomizedWebException e){
@@ -496,6 +559,52 @@ public class ModelsResource{
     	}
     }
     
+    /**
+     * count within the context so that the statement can be cancelled once no longer awaited
+     * @param context
+     * @param datasource
+     * @param query
+     * @return
+     * @throws JdbcClientException
+     */
+    private int findQueryCount(QueryContext context, Datasource datasource, String query) throws JdbcClientException{
+    	queryRegistry.begin(context);
+    	
+    	try{
+    		return jdbcClient.findQueryCount(datasource, query);
+    	}
+    	finally{
+    		queryRegistry.end(context);
+    	}
+    }
+    
+    /**
+     * 
+     * @param countFuture null if count not requested
+     * @return {@value #COUNT_NOT_AVAILABLE} if count not requested, failed or not ready in time
+     * @throws InterruptedException
+     */
+    private int awaitQueryCount(Future<Integer> countFuture) throws InterruptedException{
+    	if(countFuture==null){
+    		return COUNT_NOT_AVAILABLE;
+    	}
+    	
+    	long waitMillis = NumberUtils.toLong(SystemProperties.getProperty(PREVIEW_COUNT_WAIT_PROPERTY), DEFAULT_PREVIEW_COUNT_WAIT);
+    	
+    	try{
+    		return countFuture.get(waitMillis, TimeUnit.MILLISECONDS);
+    	}
+    	catch(TimeoutException e){
+    		LOG.info("record count not ready within {} ms, skipped", waitMillis);
+    		return COUNT_NOT_AVAILABLE;
+    	}
+    	catch(ExecutionException e){
+    		//preview rows are still returned, count is optional
+    		LOG.warn("record count failed, skipped", e.getCause());
+    		return COUNT_NOT_AVAILABLE;
+    	}
+    }
+    
     /**
      * convert the db result into REST simplified format
      * @param previewResult
@@ -1,24 +1,49 @@
 package org.reportbay.api.rest;
 
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
 import javax.ws.rs.Consumes;
+import javax.ws.rs.DELETE;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.container.ResourceContext;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.apache.commons.lang3.math.NumberUtils;
 import org.reportbay.api.dto.report.RestReport;
+import org.reportbay.api.dto.report.RestReportJob;
 import org.reportbay.api.dto.report.RestReports;
 import org.reportbay.api.dto.reportconnector.RestReportConnector;
 import org.reportbay.api.rest.exception.CustomizedWebException;
 import org.reportbay.api.service.ReportConnectorService;
+import org.reportbay.api.service.ReportJobService;
 import org.reportbay.api.service.exception.ReportConnectorServiceException;
+import org.reportbay.api.service.exception.ReportJobServiceException;
+import org.reportbay.common.util.SystemProperties;
+import org.reportbay.datasource.service.QueryContext;
+import org.reportbay.datasource.service.QueryRegistry;
+import org.reportbay.datasource.service.exception.QueryTimeoutException;
+import org.reportbay.report.domain.ReportResultCacheStats;
+import org.reportbay.report.service.ReportResultCache;
+import org.reportbay.snapshot.domain.ReportSnapShotFilter;
+import org.reportbay.snapshot.domain.SnapShotCompactionResult;
+import org.reportbay.snapshot.service.SnapShotCompactionService;
+import org.reportbay.snapshot.service.exception.SnapShotServiceException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -27,26 +52,74 @@ import org.slf4j.LoggerFactory;
 public class ReportResource{
 	
 	private final Logger LOG = LoggerFactory.getLogger(ReportResource.class);
+	
+	/**
+	 * client supplied request id, to cancel the running request
+	 */
+	private static final String REQUEST_ID_HEADER = "X-Request-Id";
+	/**
+	 * client supplied time budget (second) of the request
+	 */
+	private static final String REQUEST_TIMEOUT_HEADER = "X-Request-Timeout";
+	
+	/**
+	 * server wide time budget (second) of the request when the client supplies none
+	 */
+	private static final String REQUEST_TIMEOUT_PROPERTY = "reportbay.rest.requestTimeout";
+	//no deadline unless the client or the server asks for one
+	private static final int DEFAULT_REQUEST_TIMEOUT = 0;
+	
+	//not defined by JAX-RS 1.1 Response.Status
+	private static final int GATEWAY_TIMEOUT = 504;
+	
+	private static final int DEFAULT_SNAPSHOT_PAGE_SIZE = 100;
+	private static final int MAX_SNAPSHOT_PAGE_SIZE = 1000;
 
     @Context
     ResourceContext rc;
     
     @Inject ReportConnectorService reportConnectorService;
     
+    @Inject ReportResultCache reportResultCache;
+    
+    @Inject ReportJobService reportJobService;
+    
+    @Inject QueryRegistry queryRegistry;
+    
+    @Inject SnapShotCompactionService snapShotCompactionService;
+    
     /**
-     * 
+     * without any criteria, all snapshots and on demand reports are returned. Otherwise a page of
+     * snapshots matching the criteria is returned, newest first, along with the cursor of next page
+     * @param templateId
+     * @param templateType
+     * @param from creation date (epoch millisecond, inclusive)
+     * @param to creation date (epoch millisecond, exclusive)
+     * @param cursor nextCursor of previous page
+     * @param limit page size
      * @return
      */
     @GET
     @Produces(MediaType.APPLICATION_JSON)
-    public RestReports retrieveReportSnapshots(){
+    public RestReports retrieveReportSnapshots(@QueryParam("templateId") Integer templateId,
+    										   @QueryParam("templateType") String templateType,
+    										   @QueryParam("from") Long from,
+    										   @QueryParam("to") Long to,
+    										   @QueryParam("cursor") String cursor,
+    										   @DefaultValue("0") @QueryParam("limit") int limit){
     	LOG.info("retrieve report snapshots and one demand reports");
     	
     	RestReports reports = null;
     	
     	try {
     		//TODO: obtain by profile
-    		reports = reportConnectorService.getReports();
+    		if(templateId==null && templateType==null && from==null && to==null && cursor==null && limit<=0){
+    			reports = reportConnectorService.getReports();
+    		}
+    		else{
+    			reports = reportConnectorService.getReports(createSnapShotFilter(templateId, templateType, from, to, cursor),
+    														limit > 0? Math.min(limit, MAX_SNAPSHOT_PAGE_SIZE) : DEFAULT_SNAPSHOT_PAGE_SIZE);
+    		}
 		} 
     	catch(ReportConnectorServiceException e){
     		LOG.warn("Exception in retrieving report snapshots ", e);
@@ -63,7 +136,9 @@ public class ReportResource{
     @GET
     @Path("/{reportId}")
     @Produces(MediaType.APPLICATION_JSON)
-    public RestReport retrieveReportSnapshot(@PathParam("reportId") int reportId){
+    public RestReport retrieveReportSnapshot(@PathParam("reportId") int reportId,
+    										 @DefaultValue("0") @QueryParam("offset") int offset,
+    										 @DefaultValue("0") @QueryParam("limit") int limit){
     	LOG.info("retrieve report snapshot by reportid {}", reportId);
     	
     	RestReport report = null;
@@ -76,7 +151,77 @@ public class ReportResource{
 			throw new CustomizedWebException(Response.Status.INTERNAL_SERVER_ERROR, e.getMessage());
     	}
     	
-    	return report;
+    	return pageCrossTab(report, offset, limit);
+    }
+    /**
+     * 
+     * @param reportId
+     * @param offset index of first crosstab row
+     * @param limit maximum number of crosstab rows, 0 for all
+     * @return crosstab of the snapshot streamed row by row
+     */
+    @GET
+    @Path("/{reportId}/crosstab")
+    @Produces(MediaType.APPLICATION_JSON)
+    public StreamingOutput streamReportSnapshotCrossTab(@PathParam("reportId") int reportId,
+    													@DefaultValue("0") @QueryParam("offset") int offset,
+    													@DefaultValue("0") @QueryParam("limit") int limit){
+    	LOG.info("stream crosstab of report snapshot {}", reportId);
+    	
+    	RestReport report = null;
+    	
+    	try {
+    		report = reportConnectorService.getReportSnapshot(reportId);
+		} 
+    	catch(ReportConnectorServiceException e){
+    		LOG.warn("Exception in retrieving report snapshot ", e);
+			throw new CustomizedWebException(Response.Status.INTERNAL_SERVER_ERROR, e.getMessage());
+    	}
+    	
+    	return streamCrossTab(report, offset, limit);
+    }
+    /**
+     * 
+     * @return hit, miss and eviction counters of generated report cache
+     */
+    @GET
+    @Path("/cachestats")
+    @Produces(MediaType.APPLICATION_JSON)
+    public ReportResultCacheStats getReportCacheStats(){
+    	LOG.info("get report result cache statistics");
+    	
+    	return reportResultCache.getStatistics();
+    }
+    /**
+     * 
+     * @return outcome of the last snapshot compaction, no content if never run
+     */
+    @GET
+    @Path("/compaction")
+    @Produces(MediaType.APPLICATION_JSON)
+    public SnapShotCompactionResult getSnapshotCompaction(){
+    	LOG.info("get last snapshot compaction result");
+    	
+    	return snapShotCompactionService.getLastResult();
+    }
+    /**
+     * run snapshot compaction on demand
+     * @param budgetSeconds time after which no further batch is started
+     * @return deleted snapshots and reclaimed bytes
+     */
+    @POST
+    @Path("/compaction")
+    @Produces(MediaType.APPLICATION_JSON)
+    public SnapShotCompactionResult runSnapshotCompaction(@DefaultValue("600") @QueryParam("budgetSeconds") long budgetSeconds){
+    	LOG.info("run snapshot compaction");
+    	
+    	try {
+    		return snapShotCompactionService.compact(budgetSeconds * 1000L);
+		} 
+    	catch(SnapShotServiceException e){
+    		LOG.warn("Exception in snapshot compaction ", e);
+			throw new CustomizedWebException(Response.Status.INTERNAL_SERVER_ERROR, e.getMessage());
+    	}
     }
     /**
      * 
@@ -86,19 +231,48 @@ public class ReportResource{
     @GET
     @Path("/previewconnector/{reportConnectorId}")
     @Produces(MediaType.APPLICATION_JSON)
-    public RestReport genReportByID(@PathParam("reportConnectorId") int reportConnectorId){
+    public RestReport genReportByID(@PathParam("reportConnectorId") int reportConnectorId, @Context HttpHeaders headers,
+    								@DefaultValue("0") @QueryParam("offset") int offset,
+    								@DefaultValue("0") @QueryParam("limit") int limit){
     	LOG.info("generate report by report connector id");
     	RestReport report = null;
     	
     	try{
-    		report = reportConnectorService.generateReportPreview(reportConnectorId);
+    		report = generateWithinDeadline(headers, () -> reportConnectorService.generateReportPreview(reportConnectorId));
     	}
     	catch(ReportConnectorServiceException e){
     		LOG.warn("Exception in generating report preview for {}",reportConnectorId, e);
-			throw new CustomizedWebException(Response.Status.INTERNAL_SERVER_ERROR, e.getMessage());
+			throw createWebException(e);
     	}
     	
-    	return report;
+    	return pageCrossTab(report, offset, limit);
+    }
+    
+    /**
+     * 
+     * @param reportConnectorId
+     * @param offset index of first crosstab row
+     * @param limit maximum number of crosstab rows, 0 for all
+     * @return crosstab of the preview streamed row by row
+     */
+    @GET
+    @Path("/previewconnector/{reportConnectorId}/crosstab")
+    @Produces(MediaType.APPLICATION_JSON)
+    public StreamingOutput streamReportPreviewCrossTab(@PathParam("reportConnectorId") int reportConnectorId, @Context HttpHeaders headers,
+    												   @DefaultValue("0") @QueryParam("offset") int offset,
+    												   @DefaultValue("0") @QueryParam("limit") int limit){
+    	LOG.info("stream crosstab preview of report connector {}", reportConnectorId);
+    	RestReport report = null;
+    	
+    	try{
+    		report = generateWithinDeadline(headers, () -> reportConnectorService.generateReportPreview(reportConnectorId));
+    	}
+    	catch(ReportConnectorServiceException e){
+    		LOG.warn("Exception in generating report preview for {}",reportConnectorId, e);
+			throw createWebException(e);
+    	}
+    	
+    	return streamCrossTab(report, offset, limit);
     }
     
     /**
@@ -110,19 +284,21 @@ public class ReportResource{
     @Path("/preview")
     @Produces(MediaType.APPLICATION_JSON)
     @Consumes(MediaType.APPLICATION_JSON)
-    public RestReport genReportPreview(RestReportConnector restReportConnector){
+    public RestReport genReportPreview(RestReportConnector restReportConnector, @Context HttpHeaders headers,
+    								   @DefaultValue("0") @QueryParam("offset") int offset,
+    								   @DefaultValue("0") @QueryParam("limit") int limit){
     	LOG.info("generate report preview by connector");
     	RestReport report = null;
 
     	try {
-    		report = reportConnectorService.generateReportPreview(restReportConnector);
+    		report = generateWithinDeadline(headers, () -> reportConnectorService.generateReportPreview(restReportConnector));
 		} 
     	catch(ReportConnectorServiceException e){
     		LOG.warn("Exception in generating report preview ", e);
-			throw new CustomizedWebException(Response.Status.INTERNAL_SERVER_ERROR, e.getMessage());
+			throw createWebException(e);
     	}
     	
-    	return report;
+    	return pageCrossTab(report, offset, limit);
     }
     
     /**
@@ -133,19 +309,279 @@ public class ReportResource{
     @POST
     @Path("/snapshots/{reportConnectorId}")
     @Produces(MediaType.APPLICATION_JSON)
-    public RestReport genReportSnapshot(@PathParam("reportConnectorId") int reportConnectorId){
+    public RestReport genReportSnapshot(@PathParam("reportConnectorId") int reportConnectorId, @Context HttpHeaders headers){
     	LOG.info("generate report snapshot by connector {}",reportConnectorId);
     	
     	RestReport report = null;
     	
     	try {
-    		report = reportConnectorService.generateReportSnapshot(reportConnectorId);
+    		report = generateWithinDeadline(headers, () -> reportConnectorService.generateReportSnapshot(reportConnectorId));
 		} 
     	catch(ReportConnectorServiceException e){
     		LOG.warn("Exception in generating report snapshot ", e);
-			throw new CustomizedWebException(Response.Status.INTERNAL_SERVER_ERROR, e.getMessage());
+			throw createWebException(e);
     	}
     	
     	return report;
     }
+    
+    /**
+     * submit report preview generation job, report to be retrieved by polling the job
+     * @param reportConnectorId
+     * @return
+     */
+    @POST
+    @Path("/jobs/preview/{reportConnectorId}")
+    @Produces(MediaType.APPLICATION_JSON)
+    public RestReportJob submitReportPreviewJob(@PathParam("reportConnectorId") int reportConnectorId){
+    	LOG.info("submit report preview job by connector {}", reportConnectorId);
+    	
+    	try {
+    		return reportJobService.submitReportPreview(reportConnectorId);
+    	}
+    	catch(ReportJobServiceException e){
+    		LOG.warn("Exception in submitting report preview job ", e);
+    		throw new CustomizedWebException(Response.Status.SERVICE_UNAVAILABLE, e.getMessage());
+    	}
+    }
+    
+    /**
+     * 
+     * @param restReportConnector
+     * @return
+     */
+    @POST
+    @Path("/jobs/preview")
+    @Produces(MediaType.APPLICATION_JSON)
+    @Consumes(MediaType.APPLICATION_JSON)
+    public RestReportJob submitReportPreviewJob(RestReportConnector restReportConnector){
+    	LOG.info("submit report preview job by connector");
+    	
+    	try {
+    		return reportJobService.submitReportPreview(restReportConnector);
+    	}
+    	catch(ReportJobServiceException e){
+    		LOG.warn("Exception in submitting report preview job ", e);
+    		throw new CustomizedWebException(Response.Status.SERVICE_UNAVAILABLE, e.getMessage());
+    	}
+    }
+    
+    /**
+     * 
+     * @param reportConnectorId
+     * @return
+     */
+    @POST
+    @Path("/jobs/snapshots/{reportConnectorId}")
+    @Produces(MediaType.APPLICATION_JSON)
+    public RestReportJob submitReportSnapshotJob(@PathParam("reportConnectorId") int reportConnectorId){
+    	LOG.info("submit report snapshot job by connector {}", reportConnectorId);
+    	
+    	try {
+    		return reportJobService.submitReportSnapshot(reportConnectorId);
+    	}
+    	catch(ReportJobServiceException e){
+    		LOG.warn("Exception in submitting report snapshot job ", e);
+    		throw new CustomizedWebException(Response.Status.SERVICE_UNAVAILABLE, e.getMessage());
+    	}
+    }
+    
+    /**
+     * 
+     * @param jobId
+     * @param waitMillis wait up to the given time for the job to be done (long polling)
+     * @return status of the job, along with the report once completed
+     */
+    @GET
+    @Path("/jobs/{jobId}")
+    @Produces(MediaType.APPLICATION_JSON)
+    public RestReportJob getReportJob(@PathParam("jobId") String jobId, @DefaultValue("0") @QueryParam("wait") long waitMillis){
+    	LOG.debug("get report job {}", jobId);
+    	
+    	RestReportJob job = reportJobService.getJob(jobId, waitMillis);
+    	
+    	if(job==null){
+    		LOG.warn("unable to find report job {}", jobId);
+    		throw new CustomizedWebException(Response.Status.NOT_FOUND, "report job not found");
+    	}
+    	
+    	return job;
+    }
+    
+    /**
+     * 
+     * @param jobId
+     * @return
+     */
+    @DELETE
+    @Path("/jobs/{jobId}")
+    @Produces(MediaType.APPLICATION_JSON)
+    public RestReportJob cancelReportJob(@PathParam("jobId") String jobId){
+    	LOG.info("cancel report job {}", jobId);
+    	
+    	RestReportJob job = reportJobService.cancel(jobId);
+    	
+    	if(job==null){
+    		LOG.warn("unable to find report job {}", jobId);
+    		throw new CustomizedWebException(Response.Status.NOT_FOUND, "report job not found");
+    	}
+    	
+    	return job;
+    }
+    
+    /**
+     * 
+     * @return queries currently executed on behalf of report requests and jobs
+     */
+    @GET
+    @Path("/requests")
+    @Produces(MediaType.APPLICATION_JSON)
+    public List<QueryContext> getRunningRequests(){
+    	LOG.info("get running report requests");
+    	
+    	return queryRegistry.getRunningQueries();
+    }
+    
+    /**
+     * abort the running queries of the request
+     * @param requestId value of {@value #REQUEST_ID_HEADER} header or job id
+     * @return
+     */
+    @DELETE
+    @Path("/requests/{requestId}")
+    public Response cancelRequest(@PathParam("requestId") String requestId){
+    	LOG.info("cancel report request {}", requestId);
+    	
+    	if(!queryRegistry.cancel(requestId)){
+    		LOG.warn("unable to find running request {}", requestId);
+    		throw new CustomizedWebException(Response.Status.NOT_FOUND, "running request not found");
+    	}
+    	
+    	return Response.ok().build();
+    }
+    
+    /********** private method ******/
+    
+    /**
+     * 
+     * @param templateId
+     * @param templateType
+     * @param from
+     * @param to
+     * @param cursor
+     * @return
+     */
+    private ReportSnapShotFilter createSnapShotFilter(Integer templateId, String templateType, Long from, Long to, String cursor){
+    	ReportSnapShotFilter filter = new ReportSnapShotFilter();
+    	
+    	filter.setTemplateId(templateId);
+    	filter.setFromDate(from==null? null : new Date(from));
+    	filter.setToDate(to==null? null : new Date(to));
+    	
+    	if(templateType!=null){
+    		if(templateType.length()!=1){
+    			throw new CustomizedWebException(Response.Status.BAD_REQUEST, "invalid template type "+templateType);
+    		}
+    		filter.setTemplateType(templateType.charAt(0));
+    	}
+    	
+    	if(cursor!=null){
+    		try{
+    			filter.setCursor(cursor);
+    		}
+    		catch(IllegalArgumentException iae){
+    			throw new CustomizedWebException(Response.Status.BAD_REQUEST, iae.getMessage());
+    		}
+    	}
+    	
+    	return filter;
+    }
+    
+    /**
+     * report may be shared by result cache, the page is returned in a new report instead of altering it
+     * @param report
+     * @param offset
+     * @param limit
+     * @return report holding the page of crosstab, the report itself if not crosstab or not paged
+     */
+    private RestReport pageCrossTab(RestReport report, int offset, int limit){
+    	if(report==null || report.getCrossTabReport()==null || (offset<=0 && limit<=0)){
+    		return report;
+    	}
+    	
+    	RestReport page = new RestReport();
+    	page.setType(report.getType());
+    	page.setCrossTabReport(report.getCrossTabReport().page(offset, limit));
+    	
+    	return page;
+    }
+    
+    /**
+     * 
+     * @param report
+     * @param offset
+     * @param limit
+     * @return crosstab written in the same JSON as {@link RestReport}
+     */
+    private StreamingOutput streamCrossTab(RestReport report, int offset, int limit){
+    	if(report==null || report.getCrossTabReport()==null){
+    		throw new CustomizedWebException(Response.Status.NOT_FOUND, "crosstab report not found");
+    	}
+    	
+    	return new CrossTabStreamingOutput(pageCrossTab(report, offset, limit));
+    }
+    
+    /**
+     * generate the report with queries bound to the request deadline and cancellable by request id,
+     * the deadline also bounds the wait for a generation of the same report coalesced with other requests
+     * @param headers
+     * @param generation
+     * @return
+     * @throws ReportConnectorServiceException
+     */
+    private RestReport generateWithinDeadline(HttpHeaders headers, ReportGeneration generation) throws ReportConnectorServiceException{
+    	String requestId = headers.getRequestHeaders().getFirst(REQUEST_ID_HEADER);
+    	
+    	if(StringUtils.isBlank(requestId)){
+    		requestId = UUID.randomUUID().toString();
+    	}
+    	
+    	int timeout = NumberUtils.toInt(headers.getRequestHeaders().getFirst(REQUEST_TIMEOUT_HEADER), 
+    									NumberUtils.toInt(SystemProperties.getProperty(REQUEST_TIMEOUT_PROPERTY), DEFAULT_REQUEST_TIMEOUT));
+    	
+    	QueryContext context = new QueryContext(requestId, timeout > 0? System.currentTimeMillis() + timeout * 1000L : 0);
+    	
+    	queryRegistry.begin(context);
+    	
+    	try{
+    		return generation.generate();
+    	}
+    	finally{
+    		queryRegistry.end(context);
+    	}
+    }
+    
+    /**
+     * timed out generation is reported as gateway timeout, so that client could resubmit as background job
+     * @param e
+     * @return
+     */
+    private CustomizedWebException createWebException(ReportConnectorServiceException e){
+    	if(ExceptionUtils.indexOfType(e, QueryTimeoutException.class)!=-1){
+    		return new CustomizedWebException(GATEWAY_TIMEOUT, 
+    										  "Report generation timed out, submit it as background job instead");
+    	}
+    	
+    	return new CustomizedWebException(Response.Status.INTERNAL_SERVER_ERROR, e.getMessage());
+    }
+    
+    /**
+     * 
+     * synchronous report generation
+     *
+     */
+    @FunctionalInterface
+    private interface ReportGeneration{
+    	RestReport generate() throws ReportConnectorServiceException;
+    }
 }
\ No newline at end of file
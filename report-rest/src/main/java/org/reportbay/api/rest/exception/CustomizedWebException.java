@@ -31,6 +31,15 @@ public class CustomizedWebException extends WebApplicationException{
 		super(Response.status(status).entity(message).type(MediaType.TEXT_PLAIN).build());
 	}
 	
+	/**
+	 * 
+	 * @param status HTTP status code not defined by {@link Response.Status}
+	 * @param message
+	 */
+	public CustomizedWebException(int status, String message){
+		super(Response.status(status).entity(message).type(MediaType.TEXT_PLAIN).build());
+	}
+	
 	/**
 	 * 
 	 * @param status
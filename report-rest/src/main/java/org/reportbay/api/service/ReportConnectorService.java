@@ -5,6 +5,7 @@ import org.reportbay.api.dto.report.RestReports;
 import org.reportbay.api.dto.reportconnector.RestReportConnector;
 import org.reportbay.api.dto.reportconnector.RestReportConnectors;
 import org.reportbay.api.service.exception.ReportConnectorServiceException;
+import org.reportbay.snapshot.domain.ReportSnapShotFilter;
 
 public interface ReportConnectorService{
 
@@ -84,4 +85,13 @@ public interface ReportConnectorService{
 	 * @throws ReportConnectorServiceException
 	 */
 	RestReports getReports() throws ReportConnectorServiceException;
+	
+	/**
+	 * page of report snapshots matching the filter, newest first. On demand reports are not included
+	 * @param filter
+	 * @param limit maximum number of snapshots
+	 * @return
+	 * @throws ReportConnectorServiceException
+	 */
+	RestReports getReports(ReportSnapShotFilter filter, int limit) throws ReportConnectorServiceException;
 }
\ No newline at end of file
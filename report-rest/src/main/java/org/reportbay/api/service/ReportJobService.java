@@ -0,0 +1,53 @@
+package org.reportbay.api.service;
+
+import org.reportbay.api.dto.report.RestReportJob;
+import org.reportbay.api.dto.reportconnector.RestReportConnector;
+import org.reportbay.api.service.exception.ReportJobServiceException;
+
+/**
+ *
+ * asynchronous report generation on bounded worker pool,
+ * submission return immediately with job id for status polling
+ *
+ */
+public interface ReportJobService {
+
+	/**
+	 *
+	 * @param reportConnectorId
+	 * @return queued job
+	 * @throws ReportJobServiceException if job queue is full
+	 */
+	RestReportJob submitReportPreview(int reportConnectorId) throws ReportJobServiceException;
+
+	/**
+	 *
+	 * @param restReportConnector
+	 * @return queued job
+	 * @throws ReportJobServiceException if job queue is full
+	 */
+	RestReportJob submitReportPreview(RestReportConnector restReportConnector) throws ReportJobServiceException;
+
+	/**
+	 *
+	 * @param reportConnectorId
+	 * @return queued job
+	 * @throws ReportJobServiceException if job queue is full
+	 */
+	RestReportJob submitReportSnapshot(int reportConnectorId) throws ReportJobServiceException;
+
+	/**
+	 *
+	 * @param jobId
+	 * @param waitMillis time to wait for the job to be done, 0 to return current status immediately
+	 * @return null if job not found
+	 */
+	RestReportJob getJob(String jobId, long waitMillis);
+
+	/**
+	 * cancel the job, running query of the job is aborted
+	 * @param jobId
+	 * @return null if job not found
+	 */
+	RestReportJob cancel(String jobId);
+}
@@ -0,0 +1,30 @@
+package org.reportbay.api.service.exception;
+
+public class ReportJobServiceException extends Exception {
+	/**
+	 * 
+	 */
+	private static final long serialVersionUID = 1L;
+	/**
+	 * 
+	 * @param message
+	 */
+	public ReportJobServiceException(String message) {
+		super(message);
+	}
+	/**
+	 * 
+	 * @param cause
+	 */
+	public ReportJobServiceException(Throwable cause) {
+		super(cause);
+	}
+	/**
+	 * 
+	 * @param message
+	 * @param cause
+	 */
+	public ReportJobServiceException(String message, Throwable cause) {
+		super(message, cause);
+	}
+}
@@ -1,16 +1,24 @@
 package org.reportbay.api.service.impl;
 
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.Deque;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeoutException;
 
 import javax.inject.Inject;
 import javax.inject.Named;
 
 import org.apache.commons.collections.CollectionUtils;
-import org.apache.commons.lang3.SerializationUtils;
+import org.apache.commons.lang3.math.NumberUtils;
+import org.reportbay.common.util.SingleFlight;
+import org.reportbay.common.util.SystemProperties;
 import org.reportbay.api.dto.report.RestReport;
 import org.reportbay.api.dto.report.RestReports;
 import org.reportbay.api.dto.reportconnector.RestLiteReportConnector;
@@ -19,12 +27,19 @@ import org.reportbay.api.dto.reportconnector.RestReportConnectors;
 import org.reportbay.api.dto.reportconnector.TemplateType;
 import org.reportbay.api.service.ReportConnectorService;
 import org.reportbay.api.service.exception.ReportConnectorServiceException;
+import org.reportbay.datasource.service.QueryContext;
+import org.reportbay.datasource.service.QueryRegistry;
+import org.reportbay.datasource.service.exception.QueryTimeoutException;
 import org.reportbay.report.domain.BaseReport;
 import org.reportbay.report.domain.CartesianChartReport;
 import org.reportbay.report.domain.CrossTabReport;
 import org.reportbay.report.domain.PieChartReport;
+import org.reportbay.report.domain.ReportResultCacheKey;
 import org.reportbay.report.service.ReportGenerationService;
+import org.reportbay.report.service.ReportResultCache;
+import org.reportbay.report.service.ReportSnapshotCodec;
 import org.reportbay.report.service.exception.ReportGenerationServiceException;
+import org.reportbay.report.service.exception.ReportSnapshotCodecException;
 import org.reportbay.reporttemplate.domain.AreaChartTemplate;
 import org.reportbay.reporttemplate.domain.BarChartTemplate;
 import org.reportbay.reporttemplate.domain.BaseReportTemplate;
@@ -42,6 +57,7 @@ import org.reportbay.reporttemplate.service.ReportTemplateService;
 import org.reportbay.reporttemplate.service.exception.ReportTemplateServiceException;
 import org.reportbay.snapshot.domain.ReportSnapShot;
 import org.reportbay.snapshot.domain.ReportSnapShotBase;
+import org.reportbay.snapshot.domain.ReportSnapShotFilter;
 import org.reportbay.snapshot.service.SnapShotService;
 import org.reportbay.snapshot.service.exception.SnapShotServiceException;
 import org.slf4j.Logger;
@@ -49,7 +65,10 @@ import org.slf4j.LoggerFactory;
 
 /**
  * 
- * helper service on report connector implementation
+ * helper service on report connector implementation.
+ * Snapshot of a template is stored as delta of its previous snapshot when system property
+ * {@value #KEY_FRAME_INTERVAL_PROPERTY} is above 1, a full snapshot (key frame) is stored every that many
+ * snapshots so that at most that many snapshots are decoded to reconstruct one
  *
  */
 @Named
@@ -57,6 +76,16 @@ public class ReportConnectorServiceImpl implements ReportConnectorService{
 	
 	private final Logger LOG = LoggerFactory.getLogger(ReportConnectorServiceImpl.class);
 	
+	/**
+	 * in flight report generation shared by all instances, keyed by template and report query
+	 */
+	private static final SingleFlight<ReportResultCacheKey, RestReport> REPORT_GENERATION = new SingleFlight<ReportResultCacheKey, RestReport>();
+	
+	private static final String KEY_FRAME_INTERVAL_PROPERTY = "reportbay.snapshot.delta.keyFrameInterval";
+	
+	//1 disables delta snapshot
+	private static final int KEY_FRAME_INTERVAL = Math.max(1, NumberUtils.toInt(SystemProperties.getProperty(KEY_FRAME_INTERVAL_PROPERTY), 1));
+	
 	@Inject
 	private ReportTemplateService reportTemplateService;
 	
@@ -66,6 +95,15 @@ public class ReportConnectorServiceImpl implements ReportConnectorService{
 	@Inject 
 	private SnapShotService reportSnapShotService;
 	
+	@Inject
+	private ReportResultCache reportResultCache;
+
+	@Inject
+	private ReportSnapshotCodec reportSnapshotCodec;
+	
+	@Inject
+	private QueryRegistry queryRegistry;
+	
 	/**
 	 * {@inheritDoc}
 	 */
@@ -128,8 +166,8 @@ public class ReportConnectorServiceImpl implements ReportConnectorService{
     			throw new ReportConnectorServiceException("report template not found for "+reportConnectorId);
     		}
     		
-    		//2. generate report based on template
-    		report = generateReport(reportTemplate);
+    		//2. generate report based on template, reuse recently generated report if any
+    		report = generateCachedReport(reportTemplate);
 		}
 		catch(ReportTemplateServiceException rtse){
 			throw new ReportConnectorServiceException("exception in finding report template for  "+reportConnectorId,rtse);
@@ -204,6 +242,8 @@ public class ReportConnectorServiceImpl implements ReportConnectorService{
 		//2. delete the entity
 		try {
 			reportTemplateService.deleteReportTemplate(reportTemplate);
+			
+			reportResultCache.invalidateTemplate(reportConnectorId);
 		}
 		catch(ReportTemplateServiceException e) {
 			throw new ReportConnectorServiceException("Error deleting report connector "+reportConnectorId,e);
@@ -225,6 +265,8 @@ public class ReportConnectorServiceImpl implements ReportConnectorService{
 			//2. save entity
 			BaseReportTemplate resultTemplate = update(reportTemplate);
 			
+			reportResultCache.invalidateTemplate(reportTemplate.getId());
+			
 			//3. convert result entity to REST
 			resultConnector = createRestReportConnectorFromBaseReportTemplate(resultTemplate);
 		}
@@ -329,6 +371,10 @@ public class ReportConnectorServiceImpl implements ReportConnectorService{
     
     private CrossTabTemplate createCrossTabFromReportConnector(RestReportConnector connector){
     	CrossTabTemplate template = connector.getCrossTabTemplate();
+    	//query is always compiled at server side, never taken from client
+    	if(template!=null){
+    		template.setReportQuery(null);
+    	}
     	return template;
     }
     
@@ -408,6 +454,10 @@ public class ReportConnectorServiceImpl implements ReportConnectorService{
     	
     	target.setModelDataLabelField(source.getModelDataLabelField());
     	target.setModelDataValueField(source.getModelDataValueField());
+    	target.setDataAggregate(source.getDataAggregate());
+    	target.setDownsamplePoints(source.getDownsamplePoints());
+    	target.setDownsampleAlgorithm(source.getDownsampleAlgorithm());
+    	target.setLabelTimeBucket(source.getLabelTimeBucket());
 
     	target.setModelSeriesGroupField(source.getModelSeriesGroupField());
     	
@@ -443,6 +493,11 @@ public class ReportConnectorServiceImpl implements ReportConnectorService{
     	target.setTemplateName(source.getTemplateName());
     	target.setReportDisplayName(source.getReportDisplayName());
     	target.setModelId(source.getModelId());
+    	target.setResultCacheTtl(source.getResultCacheTtl());
+    	target.setExactDecimal(source.getExactDecimal());
+    	target.setSnapshotKeepLast(source.getSnapshotKeepLast());
+    	target.setSnapshotKeepDailyDays(source.getSnapshotKeepDailyDays());
+    	target.setSnapshotKeepMonthly(source.getSnapshotKeepMonthly());
     }
     /**
      * 
@@ -478,7 +533,11 @@ public class ReportConnectorServiceImpl implements ReportConnectorService{
 				LOG.info("Generate Report for CrossTabTemplate...");
 				CrossTabTemplate crossTabTemplate = (CrossTabTemplate) reportTemplate;
 				restReport.setType(TemplateType.CROSSTAB.name());
-				Optional<ReportQuery> reportQuery = reportTemplateService.constructReportQuery(crossTabTemplate);
+				//compiled query resolved by caller or persisted along with the template, only unsaved template is compiled here
+				Optional<ReportQuery> reportQuery = Optional.ofNullable(crossTabTemplate.getReportQuery());
+				if (!reportQuery.isPresent()) {
+					reportQuery = reportTemplateService.findOrConstructReportQuery(crossTabTemplate);
+				}
 				if (reportQuery.isPresent()) {
 					LOG.info("Generated Query {}",reportQuery.get().getQuery());
 					//Set the Report Query to crosstabtemplate
@@ -505,6 +564,106 @@ public class ReportConnectorServiceImpl implements ReportConnectorService{
     	return restReport;
     }
     
+    /**
+     * generate report of persisted template, reuse the cached report generated with the same report query
+     * @param reportTemplate
+     * @return
+     * @throws ReportConnectorServiceException
+     * @throws ReportTemplateServiceException
+     */
+    private RestReport generateCachedReport(BaseReportTemplate reportTemplate) throws ReportConnectorServiceException, ReportTemplateServiceException{
+    	//1. resolve the report query to be executed
+    	ReportQuery reportQuery = null;
+    	
+    	if(reportTemplate instanceof CrossTabTemplate){
+    		reportQuery = reportTemplateService.findOrConstructReportQuery((CrossTabTemplate)reportTemplate).orElse(null);
+    	}
+    	else{
+    		reportQuery = reportTemplateService.findReportQuery(reportTemplate.getId());
+    	}
+    	
+    	if(reportQuery==null){
+    		return generateReport(reportTemplate);
+    	}
+    	
+    	//generation make use of the resolved query instead of retrieving again
+    	reportTemplate.setReportQuery(reportQuery);
+    	
+    	//2. lookup report generated by the same template version and query
+    	ReportResultCacheKey cacheKey = reportResultCache.createKey(reportTemplate, reportQuery);
+    	
+    	BaseReport cachedReport = reportResultCache.get(cacheKey);
+    	
+    	if(cachedReport!=null){
+    		LOG.debug("report cache hit for {}", cacheKey);
+    		return constructRestReport(cachedReport, deriveRestTemplateType(deriveTemplateType(reportTemplate)));
+    	}
+    	
+    	//3. generate and cache the report, concurrent callers of the same report wait for the same generation within their own deadline
+    	try{
+    		return REPORT_GENERATION.execute(cacheKey, (SingleFlight.SharedCall<RestReport, ReportConnectorServiceException>) flight -> generateSharedReport(reportTemplate, cacheKey, flight),
+    										 QueryContext.current());
+    	}
+    	catch(TimeoutException e){
+    		throw new ReportConnectorServiceException(new QueryTimeoutException("Deadline exceeded waiting for report generation of template "+reportTemplate.getId(), e));
+    	}
+    	catch(CancellationException e){
+    		throw new ReportConnectorServiceException("Report generation of template "+reportTemplate.getId()+" is cancelled", e);
+    	}
+    }
+    
+    /**
+     * generation shared by the coalesced callers runs in its own query context instead of the leading caller's,
+     * so that cancelling the leading caller or reaching its deadline does not abort the statement the other callers still wait for.
+     * The leading caller leaves the flight when it is cancelled or past its deadline, the shared context is cancelled once
+     * every caller left, hence a generation nobody waits for (e.g. a lone caller) is aborted as if run under the caller's context
+     * @param reportTemplate
+     * @param cacheKey
+     * @param flight callers waiting for the generation
+     * @return
+     * @throws ReportConnectorServiceException
+     */
+    private RestReport generateSharedReport(BaseReportTemplate reportTemplate, ReportResultCacheKey cacheKey, SingleFlight.Flight flight) throws ReportConnectorServiceException{
+    	QueryContext callerContext = QueryContext.current();
+    	//rows read are reported to the leading caller as well, e.g. progress of its preview job
+    	QueryContext sharedContext = new QueryContext("report-generation-"+reportTemplate.getId()+"-"+UUID.randomUUID(), callerContext);
+    	Runnable leave = flight::leave;
+    	
+    	queryRegistry.begin(sharedContext);
+    	flight.onAbandoned(sharedContext::cancel);
+    	
+    	if(callerContext!=null){
+    		callerContext.addAbortListener(leave);
+    	}
+    	
+    	try{
+    		RestReport restReport = generateReport(reportTemplate);
+    		
+    		reportResultCache.put(cacheKey, getReportFromRestReport(restReport));
+    		
+    		return restReport;
+    	}
+    	catch(ReportConnectorServiceException e){
+    		//aborted as the leading caller reached its deadline
+    		if(callerContext!=null && callerContext.hasDeadline() && callerContext.getRemainingMillis() <= 0){
+    			throw new ReportConnectorServiceException(new QueryTimeoutException("Deadline exceeded generating report of template "+reportTemplate.getId(), e));
+    		}
+    		throw e;
+    	}
+    	finally{
+    		if(callerContext!=null){
+    			callerContext.removeAbortListener(leave);
+    		}
+    		
+    		queryRegistry.end(sharedContext);
+    		
+    		//restore the context of the leading caller for its remaining work
+    		if(callerContext!=null){
+    			QueryContext.bind(callerContext);
+    		}
+    	}
+    }
+    
     /**
      * 
      * @param restReport
@@ -662,7 +821,8 @@ public class ReportConnectorServiceImpl implements ReportConnectorService{
     		reportSnapShot.setReportName(reportTemplate.getReportDisplayName());
     		reportSnapShot.setTemplateType(deriveTemplateType(reportTemplate));
     		reportSnapShot.setTemplateId(reportConnectorId);
-    		reportSnapShot.setSnapShot(SerializationUtils.serialize(getReportFromRestReport(report)));
+    		
+    		encodeSnapShot(reportSnapShot, getReportFromRestReport(report));
     		
     		reportSnapShotService.save(reportSnapShot);
 
@@ -674,6 +834,9 @@ public class ReportConnectorServiceImpl implements ReportConnectorService{
 		catch(ReportTemplateServiceException rtse ){
 			throw new ReportConnectorServiceException("exception in finding report template for  "+reportConnectorId,rtse);
 		}
+		catch(ReportSnapshotCodecException rsce){
+			throw new ReportConnectorServiceException("exception in encoding report snapshot for  "+reportConnectorId,rsce);
+		}
 		
 		return report;
 	}
@@ -688,7 +851,7 @@ public class ReportConnectorServiceImpl implements ReportConnectorService{
 		try {
 			ReportSnapShot reportSnapShot = reportSnapShotService.findReportSnapShot(reportId);
 			
-			BaseReport baseReport = (BaseReport)SerializationUtils.deserialize(reportSnapShot.getSnapShot());
+			BaseReport baseReport = decodeCachedSnapShot(reportSnapShot);
 			
 			report = constructRestReport(baseReport, deriveRestTemplateType(reportSnapShot.getTemplateType()));
 			
@@ -696,6 +859,9 @@ public class ReportConnectorServiceImpl implements ReportConnectorService{
 		catch (SnapShotServiceException e) {
 			throw new ReportConnectorServiceException("exception in finding snap shot for report",e);
 		}
+		catch (ReportSnapshotCodecException rsce) {
+			throw new ReportConnectorServiceException("exception in decoding snap shot for report "+reportId,rsce);
+		}
 		
 		return report;
 	}
@@ -729,6 +895,148 @@ public class ReportConnectorServiceImpl implements ReportConnectorService{
 
 		return reports;
 	}
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public RestReports getReports(ReportSnapShotFilter filter, int limit) throws ReportConnectorServiceException {
+		
+		RestReports reports = new RestReports();
+		
+		try {
+			//1. one more than requested to tell if there is next page
+			List<ReportSnapShotBase> reportSnapShotBaseList = reportSnapShotService.findReportSnapShotBase(filter, limit + 1);
+			
+			//2. continue after the last snapshot of this page
+			if(reportSnapShotBaseList.size() > limit){
+				reportSnapShotBaseList = reportSnapShotBaseList.subList(0, limit);
+				reports.setNextCursor(ReportSnapShotFilter.toCursor(reportSnapShotBaseList.get(limit - 1)));
+			}
+			
+			reports.getLiteReports().addAll(reportSnapShotBaseList);
+		} 
+		catch (SnapShotServiceException ssse) {
+			throw new ReportConnectorServiceException("exception in get report snapshots ", ssse);
+		} 
+
+		return reports;
+	}
+	
+	/**
+	 * encode the report as delta of the previous snapshot of the template if it is smaller,
+	 * a key frame is stored once the previous snapshot is the last delta allowed
+	 * @param reportSnapShot
+	 * @param report
+	 * @throws ReportSnapshotCodecException
+	 * @throws SnapShotServiceException
+	 */
+	private void encodeSnapShot(ReportSnapShot reportSnapShot, BaseReport report) throws ReportSnapshotCodecException, SnapShotServiceException{
+		byte[] snapShot = reportSnapshotCodec.encode(report);
+		
+		reportSnapShot.setSnapShot(snapShot);
+		
+		if(KEY_FRAME_INTERVAL <= 1){
+			return;
+		}
+		
+		//1. previous snapshot of the template
+		ReportSnapShot previous = reportSnapShotService.findLatestReportSnapShot(reportSnapShot.getTemplateId());
+		
+		if(previous==null){
+			return;
+		}
+		
+		int distance = getKeyFrameDistance(previous) + 1;
+		
+		if(distance >= KEY_FRAME_INTERVAL){
+			return;
+		}
+		
+		//2. delta against the reconstructed previous report, key frame is kept if previous can not be reconstructed
+		byte[] delta = null;
+		
+		try{
+			delta = reportSnapshotCodec.encodeDelta(decodeCachedSnapShot(previous), report);
+		}
+		catch(ReportSnapshotCodecException rsce){
+			LOG.warn("Failed to reconstruct snapshot {}, key frame is stored", previous.getId(), rsce);
+		}
+		
+		if(delta!=null && delta.length < snapShot.length){
+			reportSnapShot.setSnapShot(delta);
+			reportSnapShot.setBaseSnapShotId(previous.getId());
+			reportSnapShot.setKeyFrameDistance(distance);
+		}
+	}
+	
+	/**
+	 * page requests of the same snapshot share its decoded report instead of decoding it again
+	 * @param reportSnapShot
+	 * @return decoded report, must not be modified
+	 * @throws ReportSnapshotCodecException
+	 * @throws SnapShotServiceException
+	 */
+	private BaseReport decodeCachedSnapShot(ReportSnapShot reportSnapShot) throws ReportSnapshotCodecException, SnapShotServiceException{
+		BaseReport report = reportResultCache.getSnapShot(reportSnapShot.getId());
+		
+		if(report==null){
+			report = decodeSnapShot(reportSnapShot);
+			reportResultCache.putSnapShot(reportSnapShot.getId(), report);
+		}
+		
+		return report;
+	}
+	
+	/**
+	 * decode the key frame of the snapshot and apply the deltas up to the snapshot
+	 * @param reportSnapShot
+	 * @return
+	 * @throws ReportSnapshotCodecException
+	 * @throws SnapShotServiceException
+	 */
+	private BaseReport decodeSnapShot(ReportSnapShot reportSnapShot) throws ReportSnapshotCodecException, SnapShotServiceException{
+		//1. walk back to the key frame, bounded by the distance recorded on the snapshot
+		Deque<ReportSnapShot> chain = new ArrayDeque<ReportSnapShot>();
+		
+		ReportSnapShot current = reportSnapShot;
+		
+		chain.push(current);
+		
+		while(current.getBaseSnapShotId()!=null){
+			if(chain.size() > getKeyFrameDistance(reportSnapShot)){
+				throw new ReportSnapshotCodecException("key frame of snapshot "+reportSnapShot.getId()+" not found within "+getKeyFrameDistance(reportSnapShot)+" snapshot(s)");
+			}
+			
+			ReportSnapShot base = reportSnapShotService.findReportSnapShot(current.getBaseSnapShotId());
+			
+			if(base==null){
+				throw new ReportSnapshotCodecException("base snapshot "+current.getBaseSnapShotId()+" of snapshot "+current.getId()+" not found");
+			}
+			
+			current = base;
+			chain.push(current);
+		}
+		
+		//2. oldest first, each delta is decoded on top of the report of its base
+		BaseReport report = null;
+		
+		for(ReportSnapShot snapShot: chain){
+			ByteBuffer payload = reportSnapShotService.readSnapShot(snapShot);
+			
+			report = reportSnapshotCodec.decode(payload, report);
+		}
+		
+		return report;
+	}
+	
+	/**
+	 * 
+	 * @param reportSnapShot
+	 * @return number of deltas from the key frame, 0 for key frame
+	 */
+	private int getKeyFrameDistance(ReportSnapShot reportSnapShot){
+		return reportSnapShot.getKeyFrameDistance()==null? 0 : reportSnapShot.getKeyFrameDistance();
+	}
 	
 	/**
 	 * 
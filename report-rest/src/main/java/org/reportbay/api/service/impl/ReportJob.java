@@ -0,0 +1,176 @@
+package org.reportbay.api.service.impl;
+
+import java.util.Date;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.reportbay.api.dto.report.ReportJobStatus;
+import org.reportbay.api.dto.report.RestReport;
+import org.reportbay.api.dto.report.RestReportJob;
+import org.reportbay.datasource.service.QueryContext;
+
+/**
+ *
+ * state of an asynchronous report generation job,
+ * status transition is guarded by the job itself
+ *
+ */
+class ReportJob {
+
+	private final String jobId;
+	private final String jobType;
+	private final int reportConnectorId;
+	private final QueryContext queryContext;
+	private final long submitTime = System.currentTimeMillis();
+	private final CountDownLatch done = new CountDownLatch(1);
+
+	private volatile ReportJobStatus status = ReportJobStatus.QUEUED;
+	private volatile long startTime;
+	private volatile long endTime;
+	private volatile RestReport report;
+	private volatile String errorMessage;
+	private volatile Future<?> future;
+
+	/**
+	 *
+	 * @param jobId
+	 * @param jobType
+	 * @param reportConnectorId
+	 */
+	ReportJob(String jobId, String jobType, int reportConnectorId){
+		this.jobId = jobId;
+		this.jobType = jobType;
+		this.reportConnectorId = reportConnectorId;
+		this.queryContext = new QueryContext(jobId);
+	}
+
+	String getJobId() {
+		return jobId;
+	}
+
+	QueryContext getQueryContext() {
+		return queryContext;
+	}
+
+	void setFuture(Future<?> future) {
+		this.future = future;
+	}
+
+	/**
+	 *
+	 * @return false if the job is cancelled before started
+	 */
+	synchronized boolean start(){
+		if(status!=ReportJobStatus.QUEUED){
+			return false;
+		}
+		status = ReportJobStatus.RUNNING;
+		startTime = System.currentTimeMillis();
+		return true;
+	}
+
+	/**
+	 *
+	 * @param report
+	 */
+	synchronized void complete(RestReport report){
+		if(status==ReportJobStatus.RUNNING){
+			this.report = report;
+			finish(ReportJobStatus.COMPLETED);
+		}
+	}
+
+	/**
+	 *
+	 * @param errorMessage
+	 */
+	synchronized void fail(String errorMessage){
+		if(status==ReportJobStatus.RUNNING){
+			this.errorMessage = errorMessage;
+			finish(ReportJobStatus.FAILED);
+		}
+	}
+
+	/**
+	 * abort the running query or drop the queued job
+	 * @return false if the job is already done
+	 */
+	synchronized boolean cancel(){
+		if(status.isDone()){
+			return false;
+		}
+
+		queryContext.cancel();
+
+		if(future!=null){
+			future.cancel(false);
+		}
+
+		finish(ReportJobStatus.CANCELLED);
+		return true;
+	}
+
+	/**
+	 *
+	 * @param waitMillis
+	 * @throws InterruptedException
+	 */
+	void await(long waitMillis) throws InterruptedException{
+		done.await(waitMillis, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 *
+	 * @param now
+	 * @param retentionMillis
+	 * @return true if job is done for longer than retention period
+	 */
+	boolean isExpired(long now, long retentionMillis){
+		return status.isDone() && now - endTime > retentionMillis;
+	}
+
+	/**
+	 *
+	 * @return
+	 */
+	RestReportJob toRestReportJob(){
+		RestReportJob restJob = new RestReportJob();
+
+		//read status first, report and end time are published before status change
+		ReportJobStatus currentStatus = status;
+
+		restJob.setJobId(jobId);
+		restJob.setJobType(jobType);
+		restJob.setReportConnectorId(reportConnectorId);
+		restJob.setStatus(currentStatus);
+		restJob.setSubmitTime(new Date(submitTime));
+		restJob.setRowsRead(queryContext.getRowsRead());
+		restJob.setErrorMessage(errorMessage);
+
+		if(startTime>0){
+			restJob.setStartTime(new Date(startTime));
+			restJob.setElapsedMillis((currentStatus.isDone()? endTime : System.currentTimeMillis()) - startTime);
+		}
+
+		if(currentStatus.isDone()){
+			restJob.setEndTime(new Date(endTime));
+		}
+
+		if(currentStatus==ReportJobStatus.COMPLETED){
+			restJob.setReport(report);
+		}
+
+		return restJob;
+	}
+
+	/**
+	 *
+	 * @param finalStatus
+	 */
+	private void finish(ReportJobStatus finalStatus){
+		endTime = System.currentTimeMillis();
+		status = finalStatus;
+		done.countDown();
+	}
+}
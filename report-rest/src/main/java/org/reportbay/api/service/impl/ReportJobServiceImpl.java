@@ -0,0 +1,243 @@
+package org.reportbay.api.service.impl;
+
+import java.util.Iterator;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.enterprise.concurrent.ManagedThreadFactory;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import org.apache.commons.lang3.math.NumberUtils;
+import org.reportbay.api.dto.report.RestReport;
+import org.reportbay.api.dto.report.RestReportJob;
+import org.reportbay.api.dto.reportconnector.RestReportConnector;
+import org.reportbay.api.service.ReportConnectorService;
+import org.reportbay.api.service.ReportJobService;
+import org.reportbay.api.service.exception.ReportConnectorServiceException;
+import org.reportbay.api.service.exception.ReportJobServiceException;
+import org.reportbay.common.util.SystemProperties;
+import org.reportbay.datasource.service.QueryRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ *
+ * Worker pool is built on the container managed thread factory and sized by system properties
+ * (prefix {@value #PROPERTY_PREFIX}): poolSize, queueSize, retentionMillis (how long a finished
+ * job remains available for polling) and maxWaitMillis (upper bound of long polling).
+ *
+ */
+@ApplicationScoped
+public class ReportJobServiceImpl implements ReportJobService{
+
+	private final Logger LOG = LoggerFactory.getLogger(ReportJobServiceImpl.class);
+
+	private static final String PROPERTY_PREFIX = "reportbay.report.job.";
+
+	private static final int DEFAULT_POOL_SIZE = 4;
+	private static final int DEFAULT_QUEUE_SIZE = 50;
+	private static final long DEFAULT_RETENTION = 600000L;
+	private static final long DEFAULT_MAX_WAIT = 30000L;
+
+	private static final String JOB_TYPE_PREVIEW = "PREVIEW";
+	private static final String JOB_TYPE_SNAPSHOT = "SNAPSHOT";
+
+	@Resource
+	private ManagedThreadFactory threadFactory;
+
+	@Inject
+	private ReportConnectorService reportConnectorService;
+	
+	@Inject
+	private QueryRegistry queryRegistry;
+
+	private ThreadPoolExecutor executor;
+
+	private final ConcurrentMap<String, ReportJob> jobs = new ConcurrentHashMap<String, ReportJob>();
+
+	private long retentionMillis;
+	private long maxWaitMillis;
+
+	@PostConstruct
+	public void init(){
+		int poolSize = NumberUtils.toInt(SystemProperties.getProperty(PROPERTY_PREFIX+"poolSize"), DEFAULT_POOL_SIZE);
+		int queueSize = NumberUtils.toInt(SystemProperties.getProperty(PROPERTY_PREFIX+"queueSize"), DEFAULT_QUEUE_SIZE);
+
+		retentionMillis = NumberUtils.toLong(SystemProperties.getProperty(PROPERTY_PREFIX+"retentionMillis"), DEFAULT_RETENTION);
+		maxWaitMillis = NumberUtils.toLong(SystemProperties.getProperty(PROPERTY_PREFIX+"maxWaitMillis"), DEFAULT_MAX_WAIT);
+
+		//bounded queue, submission beyond capacity is rejected instead of piling up
+		executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+										  new ArrayBlockingQueue<Runnable>(queueSize), threadFactory);
+	}
+
+	@PreDestroy
+	public void shutdown(){
+		for(ReportJob job: jobs.values()){
+			job.cancel();
+		}
+		executor.shutdownNow();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public RestReportJob submitReportPreview(int reportConnectorId) throws ReportJobServiceException {
+		return submit(JOB_TYPE_PREVIEW, reportConnectorId, () -> reportConnectorService.generateReportPreview(reportConnectorId));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public RestReportJob submitReportPreview(RestReportConnector restReportConnector) throws ReportJobServiceException {
+		return submit(JOB_TYPE_PREVIEW, 0, () -> reportConnectorService.generateReportPreview(restReportConnector));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public RestReportJob submitReportSnapshot(int reportConnectorId) throws ReportJobServiceException {
+		return submit(JOB_TYPE_SNAPSHOT, reportConnectorId, () -> reportConnectorService.generateReportSnapshot(reportConnectorId));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public RestReportJob getJob(String jobId, long waitMillis) {
+		ReportJob job = jobs.get(jobId);
+
+		if(job==null){
+			return null;
+		}
+
+		//long polling, return as soon as job is done
+		if(waitMillis > 0){
+			try {
+				job.await(Math.min(waitMillis, maxWaitMillis));
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		return job.toRestReportJob();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public RestReportJob cancel(String jobId) {
+		ReportJob job = jobs.get(jobId);
+
+		if(job==null){
+			return null;
+		}
+
+		if(job.cancel()){
+			LOG.info("report job {} cancelled", jobId);
+			
+			//cancelled job still waiting in the queue would otherwise hold its slot until a worker picks it up
+			executor.purge();
+		}
+
+		return job.toRestReportJob();
+	}
+
+	/*************** private methods ****************/
+
+	/**
+	 *
+	 * @param jobType
+	 * @param reportConnectorId
+	 * @param generation
+	 * @return
+	 * @throws ReportJobServiceException
+	 */
+	private RestReportJob submit(String jobType, int reportConnectorId, ReportGeneration generation) throws ReportJobServiceException{
+		//1. drop finished job no longer polled
+		purgeExpiredJobs();
+
+		//2. register the job before submission so that it is visible once worker picks it up
+		ReportJob job = new ReportJob(UUID.randomUUID().toString(), jobType, reportConnectorId);
+		jobs.put(job.getJobId(), job);
+
+		//3. queue for execution
+		try{
+			job.setFuture(executor.submit(() -> run(job, generation)));
+		}
+		catch(RejectedExecutionException ree){
+			jobs.remove(job.getJobId());
+			throw new ReportJobServiceException("Report job queue is full, please retry later", ree);
+		}
+
+		LOG.info("report job {} {} submitted for connector {}", job.getJobId(), jobType, reportConnectorId);
+
+		return job.toRestReportJob();
+	}
+
+	/**
+	 * execute the generation on worker thread, queries are bound to the job for cancellation (by job id)
+	 * @param job
+	 * @param generation
+	 */
+	private void run(ReportJob job, ReportGeneration generation){
+		if(!job.start()){
+			return;
+		}
+
+		queryRegistry.begin(job.getQueryContext());
+
+		try{
+			job.complete(generation.generate());
+		}
+		catch(ReportConnectorServiceException | RuntimeException e){
+			//failure of cancelled job is expected, status already cancelled
+			if(!job.getQueryContext().isCancelled()){
+				LOG.warn("report job {} failed", job.getJobId(), e);
+			}
+			job.fail(e.getMessage());
+		}
+		finally{
+			queryRegistry.end(job.getQueryContext());
+		}
+	}
+
+	/**
+	 *
+	 */
+	private void purgeExpiredJobs(){
+		long now = System.currentTimeMillis();
+
+		Iterator<ReportJob> iter = jobs.values().iterator();
+
+		while(iter.hasNext()){
+			if(iter.next().isExpired(now, retentionMillis)){
+				iter.remove();
+			}
+		}
+	}
+
+	/**
+	 *
+	 * report generation delegated to report connector service
+	 *
+	 */
+	@FunctionalInterface
+	private interface ReportGeneration{
+		RestReport generate() throws ReportConnectorServiceException;
+	}
+}